@@ -22,6 +22,7 @@ import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SWARUtil;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
@@ -43,6 +44,7 @@ import java.util.Locale;
 
 import static io.netty.util.internal.MathUtil.isOutOfBounds;
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.PlatformDependent.BIG_ENDIAN_NATIVE_ORDER;
 import static io.netty.util.internal.StringUtil.NEWLINE;
 import static io.netty.util.internal.StringUtil.isSurrogate;
 
@@ -67,6 +69,11 @@ public final class ByteBufUtil {
             (int) CharsetUtil.encoder(CharsetUtil.UTF_8).maxBytesPerChar();
 
     static final int WRITE_CHUNK_SIZE = 8192;
+    static final int UNKNOWN_PROCESSOR = -2;
+    private static final byte CARRIAGE_RETURN = (byte) '\r';
+    private static final byte LINE_FEED = (byte) '\n';
+    private static final byte SPACE = (byte) ' ';
+    private static final byte HTAB = (byte) '\t';
     static final ByteBufAllocator DEFAULT_ALLOCATOR;
 
     static {
@@ -197,13 +204,21 @@ public final class ByteBufUtil {
      * Returns the reader index of needle in haystack, or -1 if needle is not in haystack.
      */
     public static int indexOf(ByteBuf needle, ByteBuf haystack) {
-        // TODO: maybe use Boyer Moore for efficiency.
-        int attempts = haystack.readableBytes() - needle.readableBytes() + 1;
-        for (int i = 0; i < attempts; i++) {
-            if (equals(needle, needle.readerIndex(),
-                       haystack, haystack.readerIndex() + i,
-                       needle.readableBytes())) {
-                return haystack.readerIndex() + i;
+        int needleLength = needle.readableBytes();
+        if (needleLength == 0) {
+            return haystack.readerIndex();
+        }
+        // Only the candidates which start with the first byte of the needle are compared, and those are found by
+        // the word-at-a-time search of ByteBuf.indexOf(...).
+        byte first = needle.getByte(needle.readerIndex());
+        int lastStart = haystack.writerIndex() - needleLength;
+        for (int i = haystack.readerIndex(); i <= lastStart; i++) {
+            i = haystack.indexOf(i, lastStart + 1, first);
+            if (i < 0) {
+                break;
+            }
+            if (needleLength == 1 || equals(needle, needle.readerIndex() + 1, haystack, i + 1, needleLength - 1)) {
+                return i;
             }
         }
         return -1;
@@ -448,9 +463,81 @@ public final class ByteBufUtil {
             return -1;
         }
 
+        if (buffer instanceof AbstractByteBuf) {
+            AbstractByteBuf buf = (AbstractByteBuf) buffer;
+            buf.checkIndex(fromIndex, toIndex - fromIndex);
+            return firstIndexOf(buf, fromIndex, toIndex, value, value);
+        }
         return buffer.forEachByte(fromIndex, toIndex - fromIndex, new ByteProcessor.IndexOfProcessor(value));
     }
 
+    /**
+     * Returns the index of the first byte which is either {@code a} or {@code b} in the range
+     * {@code [fromIndex, toIndex)}, which must have been checked already, or {@code -1} if there is none.
+     * Eight bytes are compared at once by the means of {@link SWARUtil}.
+     */
+    static int firstIndexOf(AbstractByteBuf buffer, int fromIndex, int toIndex, byte a, byte b) {
+        final int longCount = (toIndex - fromIndex) >>> 3;
+        if (longCount > 0) {
+            final long patternA = SWARUtil.compilePattern(a);
+            final long patternB = SWARUtil.compilePattern(b);
+            for (int i = longCount; i > 0; i --) {
+                // Read the word in the native byte order, so no bytes need to be swapped.
+                long word = BIG_ENDIAN_NATIVE_ORDER ? buffer._getLong(fromIndex) : buffer._getLongLE(fromIndex);
+                long result = SWARUtil.applyPattern(word, patternA);
+                if (a != b) {
+                    result |= SWARUtil.applyPattern(word, patternB);
+                }
+                if (result != 0) {
+                    return fromIndex + SWARUtil.getIndex(result, BIG_ENDIAN_NATIVE_ORDER);
+                }
+                fromIndex += 8;
+            }
+        }
+        for (; fromIndex < toIndex; fromIndex ++) {
+            byte value = buffer._getByte(fromIndex);
+            if (value == a || value == b) {
+                return fromIndex;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches the range {@code [fromIndex, toIndex)}, which must have been checked already, word-at-a-time if the
+     * {@link ByteProcessor} is one of the constants which search for one or two specific bytes.
+     *
+     * @return the index of the first byte the {@link ByteProcessor} aborts on, {@code -1} if there is none or
+     *         {@link #UNKNOWN_PROCESSOR} if the {@link ByteProcessor} is not known.
+     */
+    static int firstIndexOf(AbstractByteBuf buffer, int fromIndex, int toIndex, ByteProcessor processor) {
+        if (processor == ByteProcessor.FIND_LF) {
+            return firstIndexOf(buffer, fromIndex, toIndex, LINE_FEED, LINE_FEED);
+        }
+        if (processor == ByteProcessor.FIND_CRLF) {
+            return firstIndexOf(buffer, fromIndex, toIndex, CARRIAGE_RETURN, LINE_FEED);
+        }
+        if (processor == ByteProcessor.FIND_CR) {
+            return firstIndexOf(buffer, fromIndex, toIndex, CARRIAGE_RETURN, CARRIAGE_RETURN);
+        }
+        if (processor == ByteProcessor.FIND_NUL) {
+            return firstIndexOf(buffer, fromIndex, toIndex, (byte) 0, (byte) 0);
+        }
+        if (processor == ByteProcessor.FIND_LINEAR_WHITESPACE) {
+            return firstIndexOf(buffer, fromIndex, toIndex, SPACE, HTAB);
+        }
+        if (processor == ByteProcessor.FIND_ASCII_SPACE) {
+            return firstIndexOf(buffer, fromIndex, toIndex, SPACE, SPACE);
+        }
+        if (processor == ByteProcessor.FIND_SEMI_COLON) {
+            return firstIndexOf(buffer, fromIndex, toIndex, (byte) ';', (byte) ';');
+        }
+        if (processor == ByteProcessor.FIND_COMMA) {
+            return firstIndexOf(buffer, fromIndex, toIndex, (byte) ',', (byte) ',');
+        }
+        return UNKNOWN_PROCESSOR;
+    }
+
     private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
         fromIndex = Math.min(fromIndex, buffer.capacity());
         if (fromIndex < 0 || buffer.capacity() == 0) {
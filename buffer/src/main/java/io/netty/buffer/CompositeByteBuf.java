@@ -31,7 +31,6 @@ import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.NoSuchElementException;
 
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
@@ -48,9 +47,17 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private final ByteBufAllocator alloc;
     private final boolean direct;
-    private final ComponentList components;
     private final int maxNumComponents;
 
+    // The components are kept in a flat array, the first componentCount elements are used and sorted by offset.
+    private Component[] components;
+    private int componentCount;
+    // Subtracted from the offsets of the components, so discarding the read components does not need to reposition
+    // all the remaining ones. The offsets may wrap around, so they must only be compared once this was subtracted.
+    private int baseOffset;
+    // The component which was accessed last, so it is found without a binary search if accessed again.
+    private Component lastAccessed;
+
     private boolean freed;
 
     public CompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents) {
@@ -61,7 +68,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         this.alloc = alloc;
         this.direct = direct;
         this.maxNumComponents = maxNumComponents;
-        components = newList(0, maxNumComponents);
+        components = newCompArray(0, maxNumComponents);
     }
 
     public CompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents, ByteBuf... buffers) {
@@ -82,7 +89,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         this.alloc = alloc;
         this.direct = direct;
         this.maxNumComponents = maxNumComponents;
-        components = newList(len, maxNumComponents);
+        components = newCompArray(len, maxNumComponents);
 
         addComponents0(false, 0, buffers, offset, len);
         consolidateIfNeeded();
@@ -105,16 +112,16 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         this.alloc = alloc;
         this.direct = direct;
         this.maxNumComponents = maxNumComponents;
-        components = newList(len, maxNumComponents);
+        components = newCompArray(len, maxNumComponents);
 
         addComponents0(false, 0, buffers);
         consolidateIfNeeded();
         setIndex(0, capacity());
     }
 
-    private static ComponentList newList(int initComponents, int maxNumComponents) {
+    private static Component[] newCompArray(int initComponents, int maxNumComponents) {
         int capacityGuess = Math.min(AbstractByteBufAllocator.DEFAULT_MAX_COMPONENTS, maxNumComponents);
-        return new ComponentList(Math.max(initComponents, capacityGuess));
+        return new Component[Math.max(initComponents, capacityGuess)];
     }
 
     // Special constructor used by WrappedCompositeByteBuf
@@ -195,7 +202,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public CompositeByteBuf addComponent(boolean increaseWriterIndex, ByteBuf buffer) {
         checkNotNull(buffer, "buffer");
-        addComponent0(increaseWriterIndex, components.size(), buffer);
+        addComponent0(increaseWriterIndex, componentCount, buffer);
         consolidateIfNeeded();
         return this;
     }
@@ -210,7 +217,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * ownership of all {@link ByteBuf} objects is transfered to this {@link CompositeByteBuf}.
      */
     public CompositeByteBuf addComponents(boolean increaseWriterIndex, ByteBuf... buffers) {
-        addComponents0(increaseWriterIndex, components.size(), buffers, 0, buffers.length);
+        addComponents0(increaseWriterIndex, componentCount, buffers, 0, buffers.length);
         consolidateIfNeeded();
         return this;
     }
@@ -225,7 +232,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * ownership of all {@link ByteBuf} objects is transfered to this {@link CompositeByteBuf}.
      */
     public CompositeByteBuf addComponents(boolean increaseWriterIndex, Iterable<ByteBuf> buffers) {
-        addComponents0(increaseWriterIndex, components.size(), buffers);
+        addComponents0(increaseWriterIndex, componentCount, buffers);
         consolidateIfNeeded();
         return this;
     }
@@ -255,29 +262,18 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         try {
             checkComponentIndex(cIndex);
 
-            int readableBytes = buffer.readableBytes();
-
             // No need to consolidate - just add a component to the list.
-            @SuppressWarnings("deprecation")
-            Component c = new Component(buffer.order(ByteOrder.BIG_ENDIAN).slice());
-            if (cIndex == components.size()) {
-                wasAdded = components.add(c);
-                if (cIndex == 0) {
-                    c.endOffset = readableBytes;
-                } else {
-                    Component prev = components.get(cIndex - 1);
-                    c.offset = prev.endOffset;
-                    c.endOffset = c.offset + readableBytes;
-                }
+            Component c = newComponent(buffer);
+            int readableBytes = c.length;
+            addComp(cIndex, c);
+            wasAdded = true;
+            if (readableBytes > 0 && cIndex < componentCount - 1) {
+                updateComponentOffsets(cIndex);
             } else {
-                components.add(cIndex, c);
-                wasAdded = true;
-                if (readableBytes != 0) {
-                    updateComponentOffsets(cIndex);
-                }
+                c.reposition(cIndex > 0 ? components[cIndex - 1].endOffset : baseOffset);
             }
             if (increaseWriterIndex) {
-                writerIndex(writerIndex() + buffer.readableBytes());
+                writerIndex(writerIndex() + readableBytes);
             }
             return cIndex;
         } finally {
@@ -287,6 +283,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
     }
 
+    @SuppressWarnings("deprecation")
+    private static Component newComponent(ByteBuf buffer) {
+        return new Component(buffer.order(ByteOrder.BIG_ENDIAN).slice());
+    }
+
     /**
      * Add the given {@link ByteBuf}s on the specific index
      * <p>
@@ -313,21 +314,47 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         try {
             checkComponentIndex(cIndex);
 
-            // No need for consolidation
-            while (i < len) {
-                // Increment i now to prepare for the next iteration and prevent a duplicate release (addComponent0
-                // will release if an exception occurs, and we also release in the finally block here).
-                ByteBuf b = buffers[i++];
-                if (b == null) {
-                    break;
+            // Everything up to the first null is added at once, so the array is shifted and the offsets of the
+            // following components are updated only once and not for every single buffer.
+            int count = 0;
+            while (offset + count < len && buffers[offset + count] != null) {
+                count ++;
+            }
+            if (count == 0) {
+                return cIndex;
+            }
+
+            shiftComps(cIndex, count);
+            final int endCIndex = cIndex + count;
+            final int startOffset = cIndex > 0 ? components[cIndex - 1].endOffset : baseOffset;
+            int nextOffset = startOffset;
+            int ci = cIndex;
+            try {
+                for (; ci < endCIndex; ci ++) {
+                    // Only increment i once the component was created, so the outer finally block releases the
+                    // buffer if that fails.
+                    Component c = newComponent(buffers[i]);
+                    i ++;
+                    c.reposition(nextOffset);
+                    nextOffset = c.endOffset;
+                    components[ci] = c;
                 }
-                cIndex = addComponent0(increaseWriterIndex, cIndex, b) + 1;
-                int size = components.size();
-                if (cIndex > size) {
-                    cIndex = size;
+                return ci;
+            } finally {
+                if (ci < endCIndex) {
+                    // Close the gap of the components which could not be added.
+                    removeCompRange(ci, endCIndex);
+                }
+                // The components which were added are kept even if a later one failed, so the following components
+                // and the writerIndex must account for them in any case.
+                int addedBytes = nextOffset - startOffset;
+                if (addedBytes > 0 && ci < componentCount) {
+                    updateComponentOffsets(ci);
+                }
+                if (increaseWriterIndex) {
+                    writerIndex(writerIndex() + addedBytes);
                 }
             }
-            return cIndex;
         } finally {
             for (; i < len; ++i) {
                 ByteBuf b = buffers[i];
@@ -401,64 +428,106 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     private void consolidateIfNeeded() {
         // Consolidate if the number of components will exceed the allowed maximum by the current
         // operation.
-        final int numComponents = components.size();
+        final int numComponents = componentCount;
         if (numComponents > maxNumComponents) {
-            final int capacity = components.get(numComponents - 1).endOffset;
+            final int capacity = components[numComponents - 1].endOffset - baseOffset;
 
             ByteBuf consolidated = allocBuffer(capacity);
 
             // We're not using foreach to avoid creating an iterator.
             for (int i = 0; i < numComponents; i ++) {
-                Component c = components.get(i);
+                Component c = components[i];
                 ByteBuf b = c.buf;
                 consolidated.writeBytes(b);
                 c.freeIfNecessary();
             }
             Component c = new Component(consolidated);
-            c.endOffset = c.length;
-            components.clear();
-            components.add(c);
+            c.reposition(baseOffset);
+            removeCompRange(1, numComponents);
+            components[0] = c;
+            lastAccessed = null;
         }
     }
 
     private void checkComponentIndex(int cIndex) {
         ensureAccessible();
-        if (cIndex < 0 || cIndex > components.size()) {
+        if (cIndex < 0 || cIndex > componentCount) {
             throw new IndexOutOfBoundsException(String.format(
                     "cIndex: %d (expected: >= 0 && <= numComponents(%d))",
-                    cIndex, components.size()));
+                    cIndex, componentCount));
         }
     }
 
     private void checkComponentIndex(int cIndex, int numComponents) {
         ensureAccessible();
-        if (cIndex < 0 || cIndex + numComponents > components.size()) {
+        if (cIndex < 0 || cIndex + numComponents > componentCount) {
             throw new IndexOutOfBoundsException(String.format(
                     "cIndex: %d, numComponents: %d " +
                     "(expected: cIndex >= 0 && cIndex + numComponents <= totalNumComponents(%d))",
-                    cIndex, numComponents, components.size()));
+                    cIndex, numComponents, componentCount));
         }
     }
 
     private void updateComponentOffsets(int cIndex) {
-        int size = components.size();
+        int size = componentCount;
         if (size <= cIndex) {
             return;
         }
 
-        Component c = components.get(cIndex);
-        if (cIndex == 0) {
-            c.offset = 0;
-            c.endOffset = c.length;
-            cIndex ++;
+        int nextOffset = cIndex > 0 ? components[cIndex - 1].endOffset : baseOffset;
+        for (; cIndex < size; cIndex ++) {
+            Component c = components[cIndex];
+            c.reposition(nextOffset);
+            nextOffset = c.endOffset;
         }
+    }
+
+    /**
+     * Inserts the {@link Component} at the given index.
+     */
+    private void addComp(int cIndex, Component c) {
+        shiftComps(cIndex, 1);
+        components[cIndex] = c;
+    }
+
+    /**
+     * Makes room for {@code count} components at the given index, which need to be set by the caller.
+     */
+    private void shiftComps(int cIndex, int count) {
+        final int size = componentCount;
+        final int newSize = size + count;
+        assert cIndex >= 0 && cIndex <= size && count > 0;
+        if (newSize > components.length) {
+            // Grow the array by 50% and copy the components around the gap at once.
+            Component[] newArray = new Component[Math.max(size + (size >> 1), newSize)];
+            System.arraycopy(components, 0, newArray, 0, cIndex);
+            System.arraycopy(components, cIndex, newArray, cIndex + count, size - cIndex);
+            components = newArray;
+        } else if (cIndex < size) {
+            System.arraycopy(components, cIndex, components, cIndex + count, size - cIndex);
+        }
+        componentCount = newSize;
+    }
 
-        for (int i = cIndex; i < size; i ++) {
-            Component prev = components.get(i - 1);
-            Component cur = components.get(i);
-            cur.offset = prev.endOffset;
-            cur.endOffset = cur.offset + cur.length;
+    /**
+     * Removes the components in the range {@code [fromIndex, toIndex)} without releasing them or updating the
+     * offsets of the remaining ones.
+     */
+    private void removeCompRange(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
+        final int size = componentCount;
+        assert fromIndex >= 0 && toIndex <= size;
+        if (toIndex < size) {
+            System.arraycopy(components, toIndex, components, fromIndex, size - toIndex);
         }
+        final int newSize = size - toIndex + fromIndex;
+        for (int i = newSize; i < size; i ++) {
+            components[i] = null;
+        }
+        componentCount = newSize;
+        lastAccessed = null;
     }
 
     /**
@@ -467,8 +536,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * @param cIndex the index on from which the {@link ByteBuf} will be remove
      */
     public CompositeByteBuf removeComponent(int cIndex) {
-        checkComponentIndex(cIndex);
-        Component comp = components.remove(cIndex);
+        checkComponentIndex(cIndex, 1);
+        Component comp = components[cIndex];
+        removeCompRange(cIndex, cIndex + 1);
         comp.freeIfNecessary();
         if (comp.length > 0) {
             // Only need to call updateComponentOffsets if the length was > 0
@@ -492,13 +562,13 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int endIndex = cIndex + numComponents;
         boolean needsUpdate = false;
         for (int i = cIndex; i < endIndex; ++i) {
-            Component c = components.get(i);
+            Component c = components[i];
             if (c.length > 0) {
                 needsUpdate = true;
             }
             c.freeIfNecessary();
         }
-        components.removeRange(cIndex, endIndex);
+        removeCompRange(cIndex, endIndex);
 
         if (needsUpdate) {
             // Only need to call updateComponentOffsets if the length was > 0
@@ -510,7 +580,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     public Iterator<ByteBuf> iterator() {
         ensureAccessible();
-        if (components.isEmpty()) {
+        if (componentCount == 0) {
             return EMPTY_ITERATOR;
         }
         return new CompositeByteBufIterator();
@@ -526,12 +596,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
 
         int componentId = toComponentIndex(offset);
-        List<ByteBuf> slice = new ArrayList<ByteBuf>(components.size());
+        List<ByteBuf> slice = new ArrayList<ByteBuf>(componentCount);
 
         // The first component
-        Component firstC = components.get(componentId);
+        Component firstC = components[componentId];
         ByteBuf first = firstC.buf.duplicate();
-        first.readerIndex(offset - firstC.offset);
+        first.readerIndex(offset + baseOffset - firstC.offset);
 
         ByteBuf buf = first;
         int bytesToSlice = length;
@@ -549,7 +619,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
                 componentId ++;
 
                 // Fetch the next component.
-                buf = components.get(componentId).buf.duplicate();
+                buf = components[componentId].buf.duplicate();
             }
         } while (bytesToSlice > 0);
 
@@ -563,12 +633,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public boolean isDirect() {
-        int size = components.size();
+        int size = componentCount;
         if (size == 0) {
             return false;
         }
         for (int i = 0; i < size; i++) {
-           if (!components.get(i).buf.isDirect()) {
+           if (!components[i].buf.isDirect()) {
                return false;
            }
         }
@@ -577,11 +647,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public boolean hasArray() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return true;
         case 1:
-            return components.get(0).buf.hasArray();
+            return components[0].buf.hasArray();
         default:
             return false;
         }
@@ -589,11 +659,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public byte[] array() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return EmptyArrays.EMPTY_BYTES;
         case 1:
-            return components.get(0).buf.array();
+            return components[0].buf.array();
         default:
             throw new UnsupportedOperationException();
         }
@@ -601,11 +671,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public int arrayOffset() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return 0;
         case 1:
-            return components.get(0).buf.arrayOffset();
+            return components[0].buf.arrayOffset();
         default:
             throw new UnsupportedOperationException();
         }
@@ -613,11 +683,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public boolean hasMemoryAddress() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return Unpooled.EMPTY_BUFFER.hasMemoryAddress();
         case 1:
-            return components.get(0).buf.hasMemoryAddress();
+            return components[0].buf.hasMemoryAddress();
         default:
             return false;
         }
@@ -625,11 +695,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public long memoryAddress() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return Unpooled.EMPTY_BUFFER.memoryAddress();
         case 1:
-            return components.get(0).buf.memoryAddress();
+            return components[0].buf.memoryAddress();
         default:
             throw new UnsupportedOperationException();
         }
@@ -637,11 +707,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public int capacity() {
-        final int numComponents = components.size();
+        final int numComponents = componentCount;
         if (numComponents == 0) {
             return 0;
         }
-        return components.get(numComponents - 1).endOffset;
+        return components[numComponents - 1].endOffset - baseOffset;
     }
 
     @Override
@@ -652,36 +722,37 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         if (newCapacity > oldCapacity) {
             final int paddingLength = newCapacity - oldCapacity;
             ByteBuf padding;
-            int nComponents = components.size();
+            int nComponents = componentCount;
             if (nComponents < maxNumComponents) {
                 padding = allocBuffer(paddingLength);
                 padding.setIndex(0, paddingLength);
-                addComponent0(false, components.size(), padding);
+                addComponent0(false, componentCount, padding);
             } else {
                 padding = allocBuffer(paddingLength);
                 padding.setIndex(0, paddingLength);
                 // FIXME: No need to create a padding buffer and consolidate.
                 // Just create a big single buffer and put the current content there.
-                addComponent0(false, components.size(), padding);
+                addComponent0(false, componentCount, padding);
                 consolidateIfNeeded();
             }
         } else if (newCapacity < oldCapacity) {
             int bytesToTrim = oldCapacity - newCapacity;
-            for (ListIterator<Component> i = components.listIterator(components.size()); i.hasPrevious();) {
-                Component c = i.previous();
+            int i = componentCount;
+            while (i > 0) {
+                Component c = components[--i];
                 if (bytesToTrim >= c.length) {
                     bytesToTrim -= c.length;
-                    i.remove();
                     continue;
                 }
 
                 // Replace the last component with the trimmed slice.
                 Component newC = new Component(c.buf.slice(0, c.length - bytesToTrim));
-                newC.offset = c.offset;
-                newC.endOffset = newC.offset + newC.length;
-                i.set(newC);
+                newC.reposition(c.offset);
+                components[i++] = newC;
+                lastAccessed = null;
                 break;
             }
+            removeCompRange(i, componentCount);
 
             if (readerIndex() > newCapacity) {
                 setIndex(newCapacity, newCapacity);
@@ -706,7 +777,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * Return the current number of {@link ByteBuf}'s that are composed in this instance
      */
     public int numComponents() {
-        return components.size();
+        return componentCount;
     }
 
     /**
@@ -721,13 +792,16 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public int toComponentIndex(int offset) {
         checkIndex(offset);
+        return toComponentIndex0(offset);
+    }
 
-        for (int low = 0, high = components.size(); low <= high;) {
+    private int toComponentIndex0(int offset) {
+        for (int low = 0, high = componentCount - 1; low <= high;) {
             int mid = low + high >>> 1;
-            Component c = components.get(mid);
-            if (offset >= c.endOffset) {
+            Component c = components[mid];
+            if (offset >= c.endOffset - baseOffset) {
                 low = mid + 1;
-            } else if (offset < c.offset) {
+            } else if (offset < c.offset - baseOffset) {
                 high = mid - 1;
             } else {
                 return mid;
@@ -738,8 +812,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     }
 
     public int toByteIndex(int cIndex) {
-        checkComponentIndex(cIndex);
-        return components.get(cIndex).offset;
+        checkComponentIndex(cIndex, 1);
+        return components[cIndex].offset - baseOffset;
     }
 
     @Override
@@ -750,14 +824,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected byte _getByte(int index) {
         Component c = findComponent(index);
-        return c.buf.getByte(index - c.offset);
+        return c.buf.getByte(index + baseOffset - c.offset);
     }
 
     @Override
     protected short _getShort(int index) {
         Component c = findComponent(index);
-        if (index + 2 <= c.endOffset) {
-            return c.buf.getShort(index - c.offset);
+        if (index + 2 <= c.endOffset - baseOffset) {
+            return c.buf.getShort(index + baseOffset - c.offset);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (short) ((_getByte(index) & 0xff) << 8 | _getByte(index + 1) & 0xff);
         } else {
@@ -768,8 +842,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected short _getShortLE(int index) {
         Component c = findComponent(index);
-        if (index + 2 <= c.endOffset) {
-            return c.buf.getShortLE(index - c.offset);
+        if (index + 2 <= c.endOffset - baseOffset) {
+            return c.buf.getShortLE(index + baseOffset - c.offset);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (short) (_getByte(index) & 0xff | (_getByte(index + 1) & 0xff) << 8);
         } else {
@@ -780,8 +854,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getUnsignedMedium(int index) {
         Component c = findComponent(index);
-        if (index + 3 <= c.endOffset) {
-            return c.buf.getUnsignedMedium(index - c.offset);
+        if (index + 3 <= c.endOffset - baseOffset) {
+            return c.buf.getUnsignedMedium(index + baseOffset - c.offset);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getShort(index) & 0xffff) << 8 | _getByte(index + 2) & 0xff;
         } else {
@@ -792,8 +866,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getUnsignedMediumLE(int index) {
         Component c = findComponent(index);
-        if (index + 3 <= c.endOffset) {
-            return c.buf.getUnsignedMediumLE(index - c.offset);
+        if (index + 3 <= c.endOffset - baseOffset) {
+            return c.buf.getUnsignedMediumLE(index + baseOffset - c.offset);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getShortLE(index) & 0xffff | (_getByte(index + 2) & 0xff) << 16;
         } else {
@@ -804,8 +878,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getInt(int index) {
         Component c = findComponent(index);
-        if (index + 4 <= c.endOffset) {
-            return c.buf.getInt(index - c.offset);
+        if (index + 4 <= c.endOffset - baseOffset) {
+            return c.buf.getInt(index + baseOffset - c.offset);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getShort(index) & 0xffff) << 16 | _getShort(index + 2) & 0xffff;
         } else {
@@ -816,8 +890,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected int _getIntLE(int index) {
         Component c = findComponent(index);
-        if (index + 4 <= c.endOffset) {
-            return c.buf.getIntLE(index - c.offset);
+        if (index + 4 <= c.endOffset - baseOffset) {
+            return c.buf.getIntLE(index + baseOffset - c.offset);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getShortLE(index) & 0xffff | (_getShortLE(index + 2) & 0xffff) << 16;
         } else {
@@ -828,8 +902,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected long _getLong(int index) {
         Component c = findComponent(index);
-        if (index + 8 <= c.endOffset) {
-            return c.buf.getLong(index - c.offset);
+        if (index + 8 <= c.endOffset - baseOffset) {
+            return c.buf.getLong(index + baseOffset - c.offset);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getInt(index) & 0xffffffffL) << 32 | _getInt(index + 4) & 0xffffffffL;
         } else {
@@ -840,8 +914,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected long _getLongLE(int index) {
         Component c = findComponent(index);
-        if (index + 8 <= c.endOffset) {
-            return c.buf.getLongLE(index - c.offset);
+        if (index + 8 <= c.endOffset - baseOffset) {
+            return c.buf.getLongLE(index + baseOffset - c.offset);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getIntLE(index) & 0xffffffffL | (_getIntLE(index + 4) & 0xffffffffL) << 32;
         } else {
@@ -858,9 +932,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
+            int adjustment = c.offset - baseOffset;
             int localLength = Math.min(length, s.capacity() - (index - adjustment));
             s.getBytes(index - adjustment, dst, dstIndex, localLength);
             index += localLength;
@@ -884,9 +958,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex(index);
         try {
             while (length > 0) {
-                Component c = components.get(i);
+                Component c = components[i];
                 ByteBuf s = c.buf;
-                int adjustment = c.offset;
+                int adjustment = c.offset - baseOffset;
                 int localLength = Math.min(length, s.capacity() - (index - adjustment));
                 dst.limit(dst.position() + localLength);
                 s.getBytes(index - adjustment, dst);
@@ -909,9 +983,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
+            int adjustment = c.offset - baseOffset;
             int localLength = Math.min(length, s.capacity() - (index - adjustment));
             s.getBytes(index - adjustment, dst, dstIndex, localLength);
             index += localLength;
@@ -965,9 +1039,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
+            int adjustment = c.offset - baseOffset;
             int localLength = Math.min(length, s.capacity() - (index - adjustment));
             s.getBytes(index - adjustment, out, localLength);
             index += localLength;
@@ -980,7 +1054,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     public CompositeByteBuf setByte(int index, int value) {
         Component c = findComponent(index);
-        c.buf.setByte(index - c.offset, value);
+        c.buf.setByte(index + baseOffset - c.offset, value);
         return this;
     }
 
@@ -997,8 +1071,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setShort(int index, int value) {
         Component c = findComponent(index);
-        if (index + 2 <= c.endOffset) {
-            c.buf.setShort(index - c.offset, value);
+        if (index + 2 <= c.endOffset - baseOffset) {
+            c.buf.setShort(index + baseOffset - c.offset, value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setByte(index, (byte) (value >>> 8));
             _setByte(index + 1, (byte) value);
@@ -1011,8 +1085,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setShortLE(int index, int value) {
         Component c = findComponent(index);
-        if (index + 2 <= c.endOffset) {
-            c.buf.setShortLE(index - c.offset, value);
+        if (index + 2 <= c.endOffset - baseOffset) {
+            c.buf.setShortLE(index + baseOffset - c.offset, value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setByte(index, (byte) value);
             _setByte(index + 1, (byte) (value >>> 8));
@@ -1030,8 +1104,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setMedium(int index, int value) {
         Component c = findComponent(index);
-        if (index + 3 <= c.endOffset) {
-            c.buf.setMedium(index - c.offset, value);
+        if (index + 3 <= c.endOffset - baseOffset) {
+            c.buf.setMedium(index + baseOffset - c.offset, value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShort(index, (short) (value >> 8));
             _setByte(index + 2, (byte) value);
@@ -1044,8 +1118,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setMediumLE(int index, int value) {
         Component c = findComponent(index);
-        if (index + 3 <= c.endOffset) {
-            c.buf.setMediumLE(index - c.offset, value);
+        if (index + 3 <= c.endOffset - baseOffset) {
+            c.buf.setMediumLE(index + baseOffset - c.offset, value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShortLE(index, (short) value);
             _setByte(index + 2, (byte) (value >>> 16));
@@ -1063,8 +1137,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setInt(int index, int value) {
         Component c = findComponent(index);
-        if (index + 4 <= c.endOffset) {
-            c.buf.setInt(index - c.offset, value);
+        if (index + 4 <= c.endOffset - baseOffset) {
+            c.buf.setInt(index + baseOffset - c.offset, value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShort(index, (short) (value >>> 16));
             _setShort(index + 2, (short) value);
@@ -1077,8 +1151,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setIntLE(int index, int value) {
         Component c = findComponent(index);
-        if (index + 4 <= c.endOffset) {
-            c.buf.setIntLE(index - c.offset, value);
+        if (index + 4 <= c.endOffset - baseOffset) {
+            c.buf.setIntLE(index + baseOffset - c.offset, value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShortLE(index, (short) value);
             _setShortLE(index + 2, (short) (value >>> 16));
@@ -1096,8 +1170,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setLong(int index, long value) {
         Component c = findComponent(index);
-        if (index + 8 <= c.endOffset) {
-            c.buf.setLong(index - c.offset, value);
+        if (index + 8 <= c.endOffset - baseOffset) {
+            c.buf.setLong(index + baseOffset - c.offset, value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setInt(index, (int) (value >>> 32));
             _setInt(index + 4, (int) value);
@@ -1110,8 +1184,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected void _setLongLE(int index, long value) {
         Component c = findComponent(index);
-        if (index + 8 <= c.endOffset) {
-            c.buf.setLongLE(index - c.offset, value);
+        if (index + 8 <= c.endOffset - baseOffset) {
+            c.buf.setLongLE(index + baseOffset - c.offset, value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setIntLE(index, (int) value);
             _setIntLE(index + 4, (int) (value >>> 32));
@@ -1130,9 +1204,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
+            int adjustment = c.offset - baseOffset;
             int localLength = Math.min(length, s.capacity() - (index - adjustment));
             s.setBytes(index - adjustment, src, srcIndex, localLength);
             index += localLength;
@@ -1156,9 +1230,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex(index);
         try {
             while (length > 0) {
-                Component c = components.get(i);
+                Component c = components[i];
                 ByteBuf s = c.buf;
-                int adjustment = c.offset;
+                int adjustment = c.offset - baseOffset;
                 int localLength = Math.min(length, s.capacity() - (index - adjustment));
                 src.limit(src.position() + localLength);
                 s.setBytes(index - adjustment, src);
@@ -1181,9 +1255,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
+            int adjustment = c.offset - baseOffset;
             int localLength = Math.min(length, s.capacity() - (index - adjustment));
             s.setBytes(index - adjustment, src, srcIndex, localLength);
             index += localLength;
@@ -1205,9 +1279,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int readBytes = 0;
 
         do {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
+            int adjustment = c.offset - baseOffset;
             int localLength = Math.min(length, s.capacity() - (index - adjustment));
             if (localLength == 0) {
                 // Skip empty buffer
@@ -1248,9 +1322,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex(index);
         int readBytes = 0;
         do {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
+            int adjustment = c.offset - baseOffset;
             int localLength = Math.min(length, s.capacity() - (index - adjustment));
             if (localLength == 0) {
                 // Skip empty buffer
@@ -1296,9 +1370,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = toComponentIndex(index);
         int readBytes = 0;
         do {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
+            int adjustment = c.offset - baseOffset;
             int localLength = Math.min(length, s.capacity() - (index - adjustment));
             if (localLength == 0) {
                 // Skip empty buffer
@@ -1349,9 +1423,9 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = componentId;
 
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
+            int adjustment = c.offset - baseOffset;
             int localLength = Math.min(length, s.capacity() - (index - adjustment));
             s.getBytes(index - adjustment, dst, dstIndex, localLength);
             index += localLength;
@@ -1390,8 +1464,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * @param cIndex the index for which the {@link ByteBuf} should be returned
      */
     public ByteBuf internalComponent(int cIndex) {
-        checkComponentIndex(cIndex);
-        return components.get(cIndex).buf;
+        checkComponentIndex(cIndex, 1);
+        return components[cIndex].buf;
     }
 
     /**
@@ -1405,36 +1479,32 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     }
 
     private Component findComponent(int offset) {
-        checkIndex(offset);
-
-        for (int low = 0, high = components.size(); low <= high;) {
-            int mid = low + high >>> 1;
-            Component c = components.get(mid);
-            if (offset >= c.endOffset) {
-                low = mid + 1;
-            } else if (offset < c.offset) {
-                high = mid - 1;
-            } else {
-                assert c.length != 0;
-                return c;
-            }
+        Component la = lastAccessed;
+        if (la != null && offset >= la.offset - baseOffset && offset < la.endOffset - baseOffset) {
+            // The cached component is within the capacity, so only the reference count needs to be checked.
+            ensureAccessible();
+            return la;
         }
+        checkIndex(offset);
 
-        throw new Error("should not reach here");
+        Component c = components[toComponentIndex0(offset)];
+        assert c.length != 0;
+        lastAccessed = c;
+        return c;
     }
 
     @Override
     public int nioBufferCount() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return 1;
         case 1:
-            return components.get(0).buf.nioBufferCount();
+            return components[0].buf.nioBufferCount();
         default:
             int count = 0;
-            int componentsCount = components.size();
+            int componentsCount = componentCount;
             for (int i = 0; i < componentsCount; i++) {
-                Component c = components.get(i);
+                Component c = components[i];
                 count += c.buf.nioBufferCount();
             }
             return count;
@@ -1443,11 +1513,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public ByteBuffer internalNioBuffer(int index, int length) {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return EMPTY_NIO_BUFFER;
         case 1:
-            return components.get(0).buf.internalNioBuffer(index, length);
+            return components[0].buf.internalNioBuffer(index, length);
         default:
             throw new UnsupportedOperationException();
         }
@@ -1457,13 +1527,13 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     public ByteBuffer nioBuffer(int index, int length) {
         checkIndex(index, length);
 
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return EMPTY_NIO_BUFFER;
         case 1:
-            ByteBuf buf = components.get(0).buf;
+            ByteBuf buf = components[0].buf;
             if (buf.nioBufferCount() == 1) {
-                return components.get(0).buf.nioBuffer(index, length);
+                return components[0].buf.nioBuffer(index, length);
             }
         }
 
@@ -1489,12 +1559,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return new ByteBuffer[] { EMPTY_NIO_BUFFER };
         }
 
-        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(components.size());
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(componentCount);
         int i = toComponentIndex(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
+            int adjustment = c.offset - baseOffset;
             int localLength = Math.min(length, s.capacity() - (index - adjustment));
             switch (s.nioBufferCount()) {
                 case 0:
@@ -1524,19 +1594,19 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this;
         }
 
-        final Component last = components.get(numComponents - 1);
-        final int capacity = last.endOffset;
+        final Component last = components[numComponents - 1];
+        final int capacity = last.endOffset - baseOffset;
         final ByteBuf consolidated = allocBuffer(capacity);
 
         for (int i = 0; i < numComponents; i ++) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf b = c.buf;
             consolidated.writeBytes(b);
             c.freeIfNecessary();
         }
 
-        components.clear();
-        components.add(new Component(consolidated));
+        removeCompRange(1, numComponents);
+        components[0] = new Component(consolidated);
         updateComponentOffsets(0);
         return this;
     }
@@ -1554,19 +1624,19 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
 
         final int endCIndex = cIndex + numComponents;
-        final Component last = components.get(endCIndex - 1);
-        final int capacity = last.endOffset - components.get(cIndex).offset;
+        final Component last = components[endCIndex - 1];
+        final int capacity = last.endOffset - components[cIndex].offset;
         final ByteBuf consolidated = allocBuffer(capacity);
 
         for (int i = cIndex; i < endCIndex; i ++) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf b = c.buf;
             consolidated.writeBytes(b);
             c.freeIfNecessary();
         }
 
-        components.removeRange(cIndex + 1, endCIndex);
-        components.set(cIndex, new Component(consolidated));
+        removeCompRange(cIndex + 1, endCIndex);
+        components[cIndex] = new Component(consolidated);
         updateComponentOffsets(cIndex);
         return this;
     }
@@ -1584,11 +1654,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Discard everything if (readerIndex = writerIndex = capacity).
         int writerIndex = writerIndex();
         if (readerIndex == writerIndex && writerIndex == capacity()) {
-            int size = components.size();
+            int size = componentCount;
             for (int i = 0; i < size; i++) {
-                components.get(i).freeIfNecessary();
+                components[i].freeIfNecessary();
             }
-            components.clear();
+            removeCompRange(0, size);
             setIndex(0, 0);
             adjustMarkers(readerIndex);
             return this;
@@ -1597,14 +1667,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Remove read components.
         int firstComponentId = toComponentIndex(readerIndex);
         for (int i = 0; i < firstComponentId; i ++) {
-            components.get(i).freeIfNecessary();
+            components[i].freeIfNecessary();
         }
-        components.removeRange(0, firstComponentId);
+        removeCompRange(0, firstComponentId);
 
         // Update indexes and markers.
-        Component first = components.get(0);
-        int offset = first.offset;
-        updateComponentOffsets(0);
+        Component first = components[0];
+        int offset = first.offset - baseOffset;
+        baseOffset = first.offset;
         setIndex(readerIndex - offset, writerIndex - offset);
         adjustMarkers(offset);
         return this;
@@ -1621,11 +1691,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Discard everything if (readerIndex = writerIndex = capacity).
         int writerIndex = writerIndex();
         if (readerIndex == writerIndex && writerIndex == capacity()) {
-            int size = components.size();
+            int size = componentCount;
             for (int i = 0; i < size; i++) {
-                components.get(i).freeIfNecessary();
+                components[i].freeIfNecessary();
             }
-            components.clear();
+            removeCompRange(0, size);
             setIndex(0, 0);
             adjustMarkers(readerIndex);
             return this;
@@ -1634,24 +1704,26 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Remove read components.
         int firstComponentId = toComponentIndex(readerIndex);
         for (int i = 0; i < firstComponentId; i ++) {
-            components.get(i).freeIfNecessary();
+            components[i].freeIfNecessary();
         }
 
         // Remove or replace the first readable component with a new slice.
-        Component c = components.get(firstComponentId);
-        int adjustment = readerIndex - c.offset;
+        Component c = components[firstComponentId];
+        int adjustment = readerIndex + baseOffset - c.offset;
         if (adjustment == c.length) {
             // new slice would be empty, so remove instead
             firstComponentId++;
         } else {
             Component newC = new Component(c.buf.slice(adjustment, c.length - adjustment));
-            components.set(firstComponentId, newC);
+            newC.reposition(c.offset + adjustment);
+            components[firstComponentId] = newC;
+            lastAccessed = null;
         }
 
-        components.removeRange(0, firstComponentId);
+        removeCompRange(0, firstComponentId);
 
         // Update indexes and markers.
-        updateComponentOffsets(0);
+        baseOffset += readerIndex;
         setIndex(0, writerIndex - readerIndex);
         adjustMarkers(readerIndex);
         return this;
@@ -1665,7 +1737,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     public String toString() {
         String result = super.toString();
         result = result.substring(0, result.length() - 1);
-        return result + ", components=" + components.size() + ')';
+        return result + ", components=" + componentCount + ')';
     }
 
     private static final class Component {
@@ -1679,6 +1751,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             length = buf.readableBytes();
         }
 
+        void reposition(int newOffset) {
+            offset = newOffset;
+            endOffset = newOffset + length;
+        }
+
         void freeIfNecessary() {
             buf.release(); // We should not get a NPE here. If so, it must be a bug.
         }
@@ -1941,11 +2018,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
 
         freed = true;
-        int size = components.size();
+        int size = componentCount;
         // We're not using foreach to avoid creating an iterator.
         // see https://github.com/netty/netty/issues/2642
         for (int i = 0; i < size; i++) {
-            components.get(i).freeIfNecessary();
+            components[i].freeIfNecessary();
         }
     }
 
@@ -1955,7 +2032,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     }
 
     private final class CompositeByteBufIterator implements Iterator<ByteBuf> {
-        private final int size = components.size();
+        private final int size = componentCount;
         private int index;
 
         @Override
@@ -1965,14 +2042,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         @Override
         public ByteBuf next() {
-            if (size != components.size()) {
+            if (size != componentCount) {
                 throw new ConcurrentModificationException();
             }
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
             try {
-                return components.get(index++).buf;
+                return components[index++].buf;
             } catch (IndexOutOfBoundsException e) {
                 throw new ConcurrentModificationException();
             }
@@ -1983,17 +2060,4 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             throw new UnsupportedOperationException("Read-Only");
         }
     }
-
-    private static final class ComponentList extends ArrayList<Component> {
-
-        ComponentList(int initialCapacity) {
-            super(initialCapacity);
-        }
-
-        // Expose this methods so we not need to create a new subList just to remove a range of elements.
-        @Override
-        public void removeRange(int fromIndex, int toIndex) {
-            super.removeRange(fromIndex, toIndex);
-        }
-    }
 }
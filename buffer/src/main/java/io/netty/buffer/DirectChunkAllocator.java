@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates the memory of the chunks of the direct arenas of a {@link PooledByteBufAllocator}, so they can be backed
+ * by other memory than the one of {@link ByteBuffer#allocateDirect(int)}, for example by huge pages.
+ */
+public interface DirectChunkAllocator {
+
+    /**
+     * Returns the name of the memory which backs the allocated chunks, like {@code "hugetlb"}. It is reported by
+     * {@link PoolChunkMemoryMetric#memoryBacking()} for every chunk which was allocated by this
+     * {@link DirectChunkAllocator}.
+     */
+    String memoryBacking();
+
+    /**
+     * Returns a direct {@link ByteBuffer} with the given capacity or {@code null} if no memory could be allocated, in
+     * which case the chunk is allocated as if there was no {@link DirectChunkAllocator}.
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Releases the memory of a {@link ByteBuffer} which was returned by {@link #allocate(int)}.
+     */
+    void free(ByteBuffer memory);
+}
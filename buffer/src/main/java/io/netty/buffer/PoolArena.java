@@ -24,11 +24,13 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.Math.max;
 
-abstract class PoolArena<T> implements PoolArenaMetric {
+abstract class PoolArena<T> implements PoolArenaUsageMetric {
     static final boolean HAS_UNSAFE = PlatformDependent.hasUnsafe();
 
     enum SizeClass {
@@ -39,6 +41,13 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     static final int numTinySubpagePools = 512 >>> 4;
 
+    // Number of fine size classes between two powers of two, see normalizeCapacity(int).
+    private static final int FINE_SIZE_CLASSES_PER_DOUBLING = 3;
+
+    // The smallest size which is tracked by its own histogram bucket, everything below is counted in the first one.
+    private static final int HISTOGRAM_MIN_SHIFT = 4;
+    static final int numAllocationSizeBuckets = Integer.SIZE - HISTOGRAM_MIN_SHIFT;
+
     final PooledByteBufAllocator parent;
 
     private final int maxOrder;
@@ -52,6 +61,13 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     private final PoolSubpage<T>[] tinySubpagePools;
     private final PoolSubpage<T>[] smallSubpagePools;
 
+    // Non power of two size classes which are allocated out of runs of one or more pages, like sub-pages.
+    // maxFineCapacity is the largest power of two which is preceded by fine size classes or 0 if these are disabled.
+    private final int maxFineCapacity;
+    private final int[] fineSizeClasses;
+    private final int[] fineRunSizes;
+    private final PoolSubpage<T>[] fineSubpagePools;
+
     private final PoolChunkList<T> q050;
     private final PoolChunkList<T> q025;
     private final PoolChunkList<T> q000;
@@ -61,6 +77,12 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     private final List<PoolChunkListMetric> chunkListMetrics;
 
+    // Policy for destroying unused chunks, see PooledByteBufAllocator. Both are disabled if 0.
+    private final long maxChunkIdleNanos;
+    private final long chunkReleaseWatermark;
+    private long nextIdleCheckNanos;
+    private int numChunks;
+
     // Metrics for allocations and deallocations
     private long allocationsNormal;
     // We need to use the LongCounter here as this is not guarded via synchronized block.
@@ -76,14 +98,22 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     // We need to use the LongCounter here as this is not guarded via synchronized block.
     private final LongCounter deallocationsHuge = PlatformDependent.newLongCounter();
 
+    // Histogram of the requested capacities, bucket i counts the allocations of at most (1 << (i + 4)) bytes.
+    private final LongCounter[] allocationSizeHistogram = newAllocationSizeHistogram();
+
     // Number of thread caches backed by this arena.
     final AtomicInteger numThreadCaches = new AtomicInteger();
 
+    // Metrics of the thread caches backed by this arena, maintained by PoolThreadCache.
+    final Set<PoolThreadCacheMetric> threadCacheMetrics =
+            Collections.newSetFromMap(PlatformDependent.<PoolThreadCacheMetric, Boolean>newConcurrentHashMap());
+
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
     protected PoolArena(PooledByteBufAllocator parent, int pageSize,
-          int maxOrder, int pageShifts, int chunkSize, int cacheAlignment) {
+          int maxOrder, int pageShifts, int chunkSize, int cacheAlignment, boolean fineSizeClasses,
+          long maxChunkIdleTimeMillis, long chunkReleaseWatermark) {
         this.parent = parent;
         this.pageSize = pageSize;
         this.maxOrder = maxOrder;
@@ -103,6 +133,30 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             smallSubpagePools[i] = newSubpagePoolHead(pageSize);
         }
 
+        // Fine size classes are only used up to 16 pages and never need a run larger than 4 times their size,
+        // so they always fit into a chunk.
+        maxFineCapacity = fineSizeClasses ? Math.min(pageSize << 4, chunkSize >>> 2) : 0;
+        int numFineSizeClasses = 0;
+        for (int capacity = 1024; capacity <= maxFineCapacity; capacity <<= 1) {
+            numFineSizeClasses += FINE_SIZE_CLASSES_PER_DOUBLING;
+        }
+        this.fineSizeClasses = new int[numFineSizeClasses];
+        fineRunSizes = new int[numFineSizeClasses];
+        fineSubpagePools = newSubpagePoolArray(numFineSizeClasses);
+        for (int i = 0; i < numFineSizeClasses; i ++) {
+            // The capacities between 2^n and 2^(n + 1) are 5, 6 and 7 times 2^(n - 2).
+            int capacity = 5 + i % FINE_SIZE_CLASSES_PER_DOUBLING << i / FINE_SIZE_CLASSES_PER_DOUBLING + 7;
+            int runSize = pageSize;
+            // Use the smallest run which wastes at most 12.5% of its memory.
+            while (runSize % capacity > runSize >>> 3) {
+                runSize <<= 1;
+            }
+            assert runSize <= chunkSize;
+            this.fineSizeClasses[i] = capacity;
+            fineRunSizes[i] = runSize;
+            fineSubpagePools[i] = newSubpagePoolHead(runSize);
+        }
+
         q100 = new PoolChunkList<T>(this, null, 100, Integer.MAX_VALUE, chunkSize);
         q075 = new PoolChunkList<T>(this, q100, 75, 100, chunkSize);
         q050 = new PoolChunkList<T>(this, q075, 50, 100, chunkSize);
@@ -125,6 +179,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         metrics.add(q075);
         metrics.add(q100);
         chunkListMetrics = Collections.unmodifiableList(metrics);
+
+        maxChunkIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxChunkIdleTimeMillis);
+        this.chunkReleaseWatermark = chunkReleaseWatermark;
+        nextIdleCheckNanos = System.nanoTime();
     }
 
     private PoolSubpage<T> newSubpagePoolHead(int pageSize) {
@@ -151,6 +209,29 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return normCapacity >>> 4;
     }
 
+    static int fineIdx(int normCapacity) {
+        // normCapacity is 5, 6 or 7 times 2^(n - 2) where 2^n is the next smaller power of two.
+        int log2 = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(normCapacity);
+        return (log2 - 9) * FINE_SIZE_CLASSES_PER_DOUBLING + (normCapacity >>> log2 - 2) - 5;
+    }
+
+    // normCapacity is one of the non power of two size classes which are allocated out of a run of pages.
+    boolean isFineSizeClass(int normCapacity) {
+        return normCapacity < maxFineCapacity && (normCapacity & normCapacity - 1) != 0 && !isTiny(normCapacity);
+    }
+
+    int fineRunSize(int normCapacity) {
+        return fineRunSizes[fineIdx(normCapacity)];
+    }
+
+    int numFineSizeClasses() {
+        return fineSizeClasses.length;
+    }
+
+    int fineSizeClass(int fineIdx) {
+        return fineSizeClasses[fineIdx];
+    }
+
     static int smallIdx(int normCapacity) {
         int tableIdx = 0;
         int i = normCapacity >>> 10;
@@ -171,44 +252,42 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return (normCapacity & 0xFFFFFE00) == 0;
     }
 
+    private static LongCounter[] newAllocationSizeHistogram() {
+        LongCounter[] histogram = new LongCounter[numAllocationSizeBuckets];
+        for (int i = 0; i < histogram.length; i ++) {
+            histogram[i] = PlatformDependent.newLongCounter();
+        }
+        return histogram;
+    }
+
+    static int allocationSizeBucket(int reqCapacity) {
+        if (reqCapacity <= 1 << HISTOGRAM_MIN_SHIFT) {
+            return 0;
+        }
+        // log2 of the next power of two
+        return Integer.SIZE - Integer.numberOfLeadingZeros(reqCapacity - 1) - HISTOGRAM_MIN_SHIFT;
+    }
+
     private void allocate(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity) {
+        allocationSizeHistogram[allocationSizeBucket(reqCapacity)].increment();
         final int normCapacity = normalizeCapacity(reqCapacity);
         if (isTinyOrSmall(normCapacity)) { // capacity < pageSize
-            int tableIdx;
-            PoolSubpage<T>[] table;
             boolean tiny = isTiny(normCapacity);
             if (tiny) { // < 512
                 if (cache.allocateTiny(this, buf, reqCapacity, normCapacity)) {
                     // was able to allocate out of the cache so move on
                     return;
                 }
-                tableIdx = tinyIdx(normCapacity);
-                table = tinySubpagePools;
             } else {
                 if (cache.allocateSmall(this, buf, reqCapacity, normCapacity)) {
                     // was able to allocate out of the cache so move on
                     return;
                 }
-                tableIdx = smallIdx(normCapacity);
-                table = smallSubpagePools;
             }
 
-            final PoolSubpage<T> head = table[tableIdx];
-
-            /**
-             * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
-             * {@link PoolChunk#free(long)} may modify the doubly linked list as well.
-             */
-            synchronized (head) {
-                final PoolSubpage<T> s = head.next;
-                if (s != head) {
-                    assert s.doNotDestroy && s.elemSize == normCapacity;
-                    long handle = s.allocate();
-                    assert handle >= 0;
-                    s.chunk.initBufWithSubpage(buf, handle, reqCapacity);
-                    incTinySmallAllocation(tiny);
-                    return;
-                }
+            if (allocateFromSubpagePool(buf, reqCapacity, normCapacity)) {
+                incTinySmallAllocation(tiny);
+                return;
             }
             synchronized (this) {
                 allocateNormal(buf, reqCapacity, normCapacity);
@@ -222,8 +301,12 @@ abstract class PoolArena<T> implements PoolArenaMetric {
                 // was able to allocate out of the cache so move on
                 return;
             }
+            boolean allocated = isFineSizeClass(normCapacity) &&
+                    allocateFromSubpagePool(buf, reqCapacity, normCapacity);
             synchronized (this) {
-                allocateNormal(buf, reqCapacity, normCapacity);
+                if (!allocated) {
+                    allocateNormal(buf, reqCapacity, normCapacity);
+                }
                 ++allocationsNormal;
             }
         } else {
@@ -232,6 +315,26 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
     }
 
+    private boolean allocateFromSubpagePool(PooledByteBuf<T> buf, int reqCapacity, int normCapacity) {
+        final PoolSubpage<T> head = findSubpagePoolHead(normCapacity);
+
+        /**
+         * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
+         * {@link PoolChunk#free(long)} may modify the doubly linked list as well.
+         */
+        synchronized (head) {
+            final PoolSubpage<T> s = head.next;
+            if (s != head) {
+                assert s.doNotDestroy && s.elemSize == normCapacity;
+                long handle = s.allocate();
+                assert handle >= 0;
+                s.chunk.initBufWithSubpage(buf, handle, reqCapacity);
+                return true;
+            }
+        }
+        return false;
+    }
+
     // Method must be called inside synchronized(this) { ... } block
     private void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int normCapacity) {
         if (q050.allocate(buf, reqCapacity, normCapacity) || q025.allocate(buf, reqCapacity, normCapacity) ||
@@ -242,6 +345,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
         // Add a new chunk.
         PoolChunk<T> c = newChunk(pageSize, maxOrder, pageShifts, chunkSize);
+        ++numChunks;
         long handle = c.allocate(normCapacity);
         assert handle > 0;
         c.initBuf(buf, handle, reqCapacity);
@@ -289,6 +393,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     void freeChunk(PoolChunk<T> chunk, long handle, SizeClass sizeClass) {
         final boolean destroyChunk;
+        List<PoolChunk<T>> idleChunks = null;
         synchronized (this) {
             switch (sizeClass) {
             case Normal:
@@ -303,12 +408,97 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             default:
                 throw new Error();
             }
-            destroyChunk = !chunk.parent.free(chunk, handle);
+            destroyChunk = !chunk.parent.free(chunk, handle) || removeIfAboveWatermark(chunk);
+            if (destroyChunk) {
+                --numChunks;
+            }
+            if (maxChunkIdleNanos > 0) {
+                idleChunks = removeIdleChunks();
+            }
         }
         if (destroyChunk) {
             // destroyChunk not need to be called while holding the synchronized lock.
             destroyChunk(chunk);
         }
+        if (idleChunks != null) {
+            destroyChunks(idleChunks);
+        }
+    }
+
+    // Method must be called inside synchronized(this) { ... } block
+    private boolean removeIfAboveWatermark(PoolChunk<T> chunk) {
+        if (chunkReleaseWatermark > 0 && chunk.isUnused() && (long) numChunks * chunkSize > chunkReleaseWatermark) {
+            chunk.parent.remove(chunk);
+            return true;
+        }
+        return false;
+    }
+
+    // Method must be called inside synchronized(this) { ... } block
+    private List<PoolChunk<T>> removeIdleChunks() {
+        long now = System.nanoTime();
+        if (now - nextIdleCheckNanos < 0) {
+            return null;
+        }
+        // Check at most twice per idle time, so a chunk is destroyed after at most 1.5 times the idle time.
+        nextIdleCheckNanos = now + (maxChunkIdleNanos >>> 1);
+        return removeUnusedChunks(now - maxChunkIdleNanos);
+    }
+
+    // Method must be called inside synchronized(this) { ... } block
+    private List<PoolChunk<T>> removeUnusedChunks(long unusedSinceNanos) {
+        List<PoolChunk<T>> unused = new ArrayList<PoolChunk<T>>(0);
+        // Unused chunks are only retained by qInit, all the other lists destroy them as soon as they become unused.
+        qInit.removeUnused(unusedSinceNanos, unused);
+        numChunks -= unused.size();
+        return unused;
+    }
+
+    private void destroyChunks(List<PoolChunk<T>> chunks) {
+        for (int i = 0; i < chunks.size(); i ++) {
+            destroyChunk(chunks.get(i));
+        }
+    }
+
+    /**
+     * Releases the runs of all sub-pages which are retained by their pool although none of their elements is in use
+     * and destroys all chunks which are unused afterwards.
+     */
+    void trim() {
+        List<PoolChunk<T>> unused = new ArrayList<PoolChunk<T>>();
+        synchronized (this) {
+            releaseUnusedSubpages(tinySubpagePools, unused);
+            releaseUnusedSubpages(smallSubpagePools, unused);
+            releaseUnusedSubpages(fineSubpagePools, unused);
+            unused.addAll(removeUnusedChunks(System.nanoTime()));
+        }
+        destroyChunks(unused);
+    }
+
+    // Method must be called inside synchronized(this) { ... } block
+    private void releaseUnusedSubpages(PoolSubpage<T>[] pools, List<PoolChunk<T>> destroyed) {
+        List<PoolSubpage<T>> released = new ArrayList<PoolSubpage<T>>(0);
+        for (PoolSubpage<T> head : pools) {
+            synchronized (head) {
+                PoolSubpage<T> s = head.next;
+                while (s != head) {
+                    PoolSubpage<T> next = s.next;
+                    if (s.releaseIfUnused()) {
+                        released.add(s);
+                    }
+                    s = next;
+                }
+            }
+        }
+        for (int i = 0; i < released.size(); i ++) {
+            PoolSubpage<T> subpage = released.get(i);
+            PoolChunk<T> chunk = subpage.chunk;
+            // A handle without a bitmapIdx frees the whole run of the sub-page.
+            if (!chunk.parent.free(chunk, subpage.memoryMapIdx)) {
+                --numChunks;
+                destroyed.add(chunk);
+            }
+        }
     }
 
     PoolSubpage<T> findSubpagePoolHead(int elemSize) {
@@ -317,6 +507,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         if (isTiny(elemSize)) { // < 512
             tableIdx = elemSize >>> 4;
             table = tinySubpagePools;
+        } else if (isFineSizeClass(elemSize)) {
+            tableIdx = fineIdx(elemSize);
+            table = fineSubpagePools;
         } else {
             tableIdx = 0;
             elemSize >>>= 10;
@@ -356,6 +549,16 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             }
             assert directMemoryCacheAlignment == 0 || (normalizedCapacity & directMemoryCacheAlignmentMask) == 0;
 
+            if (normalizedCapacity <= maxFineCapacity && normalizedCapacity != reqCapacity) {
+                // Round up to the next multiple of an eighth of the power of two instead, which results in the
+                // size classes 5/8, 6/8, 7/8 and 8/8 of it (like jemalloc 4) and so wastes at most 20% instead of
+                // 50% of the memory.
+                int spacing = normalizedCapacity >>> 3;
+                int fineCapacity = reqCapacity + spacing - 1 & -spacing;
+                if (directMemoryCacheAlignment == 0 || (fineCapacity & directMemoryCacheAlignmentMask) == 0) {
+                    return fineCapacity;
+                }
+            }
             return normalizedCapacity;
         }
 
@@ -431,7 +634,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     @Override
     public int numSmallSubpages() {
-        return smallSubpagePools.length;
+        return smallSubpagePools.length + fineSubpagePools.length;
     }
 
     @Override
@@ -446,7 +649,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     @Override
     public List<PoolSubpageMetric> smallSubpages() {
-        return subPageMetricList(smallSubpagePools);
+        List<PoolSubpageMetric> metrics = subPageMetricList(smallSubpagePools);
+        metrics.addAll(subPageMetricList(fineSubpagePools));
+        return metrics;
     }
 
     @Override
@@ -472,6 +677,20 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return metrics;
     }
 
+    @Override
+    public List<PoolThreadCacheMetric> threadCaches() {
+        return Collections.unmodifiableList(new ArrayList<PoolThreadCacheMetric>(threadCacheMetrics));
+    }
+
+    @Override
+    public long[] allocationSizeHistogram() {
+        long[] histogram = new long[allocationSizeHistogram.length];
+        for (int i = 0; i < histogram.length; i ++) {
+            histogram[i] = allocationSizeHistogram[i].value();
+        }
+        return histogram;
+    }
+
     @Override
     public long numAllocations() {
         final long allocsNormal;
@@ -615,6 +834,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         buf.append(StringUtil.NEWLINE)
            .append("small subpages:");
         appendPoolSubPages(buf, smallSubpagePools);
+        buf.append(StringUtil.NEWLINE)
+           .append("fine subpages:");
+        appendPoolSubPages(buf, fineSubpagePools);
         buf.append(StringUtil.NEWLINE);
 
         return buf.toString();
@@ -648,6 +870,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         } finally {
             destroyPoolSubPages(smallSubpagePools);
             destroyPoolSubPages(tinySubpagePools);
+            destroyPoolSubPages(fineSubpagePools);
             destroyPoolChunkLists(qInit, q000, q025, q050, q075, q100);
         }
     }
@@ -667,9 +890,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     static final class HeapArena extends PoolArena<byte[]> {
 
         HeapArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
-                int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
+                int pageShifts, int chunkSize, int directMemoryCacheAlignment, boolean fineSizeClasses,
+                long maxChunkIdleTimeMillis, long chunkReleaseWatermark) {
             super(parent, pageSize, maxOrder, pageShifts, chunkSize,
-                    directMemoryCacheAlignment);
+                    directMemoryCacheAlignment, fineSizeClasses, maxChunkIdleTimeMillis, chunkReleaseWatermark);
         }
 
         private static byte[] newByteArray(int size) {
@@ -683,7 +907,8 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
         @Override
         protected PoolChunk<byte[]> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize) {
-            return new PoolChunk<byte[]>(this, newByteArray(chunkSize), pageSize, maxOrder, pageShifts, chunkSize, 0);
+            return new PoolChunk<byte[]>(
+                    this, newByteArray(chunkSize), pageSize, maxOrder, pageShifts, chunkSize, 0, null);
         }
 
         @Override
@@ -714,10 +939,14 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     static final class DirectArena extends PoolArena<ByteBuffer> {
 
+        private final DirectChunkAllocator chunkAllocator;
+
         DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder,
-                int pageShifts, int chunkSize, int directMemoryCacheAlignment) {
+                int pageShifts, int chunkSize, int directMemoryCacheAlignment, boolean fineSizeClasses,
+                long maxChunkIdleTimeMillis, long chunkReleaseWatermark, DirectChunkAllocator chunkAllocator) {
             super(parent, pageSize, maxOrder, pageShifts, chunkSize,
-                    directMemoryCacheAlignment);
+                    directMemoryCacheAlignment, fineSizeClasses, maxChunkIdleTimeMillis, chunkReleaseWatermark);
+            this.chunkAllocator = chunkAllocator;
         }
 
         @Override
@@ -735,16 +964,16 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         @Override
         protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxOrder,
                 int pageShifts, int chunkSize) {
-            if (directMemoryCacheAlignment == 0) {
-                return new PoolChunk<ByteBuffer>(this,
-                        allocateDirect(chunkSize), pageSize, maxOrder,
-                        pageShifts, chunkSize, 0);
+            int capacity = directMemoryCacheAlignment == 0 ? chunkSize : chunkSize + directMemoryCacheAlignment;
+            ByteBuffer memory = chunkAllocator == null ? null : chunkAllocator.allocate(capacity);
+            String memoryBacking = null;
+            if (memory != null) {
+                memoryBacking = chunkAllocator.memoryBacking();
+            } else {
+                memory = allocateDirect(capacity);
             }
-            final ByteBuffer memory = allocateDirect(chunkSize
-                    + directMemoryCacheAlignment);
-            return new PoolChunk<ByteBuffer>(this, memory, pageSize,
-                    maxOrder, pageShifts, chunkSize,
-                    offsetCacheLine(memory));
+            return new PoolChunk<ByteBuffer>(this, memory, pageSize, maxOrder, pageShifts, chunkSize,
+                    directMemoryCacheAlignment == 0 ? 0 : offsetCacheLine(memory), memoryBacking);
         }
 
         @Override
@@ -766,7 +995,9 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
         @Override
         protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
-            if (PlatformDependent.useDirectBufferNoCleaner()) {
+            if (chunk.memoryBacking != null) {
+                chunkAllocator.free(chunk.memory);
+            } else if (PlatformDependent.useDirectBufferNoCleaner()) {
                 PlatformDependent.freeDirectNoCleaner(chunk.memory);
             } else {
                 PlatformDependent.freeDirectBuffer(chunk.memory);
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.util.List;
+
+/**
+ * Expose how an arena is used by the thread caches and allocations. All {@link PoolArenaMetric}s which are returned
+ * by {@link PooledByteBufAllocatorMetric} implement this interface.
+ */
+public interface PoolArenaUsageMetric extends PoolArenaMetric {
+
+    /**
+     * Returns an unmodifiable snapshot {@link List} which holds the {@link PoolThreadCacheMetric}s of the thread caches
+     * backed by this arena.
+     */
+    List<PoolThreadCacheMetric> threadCaches();
+
+    /**
+     * Returns a snapshot of the histogram of the requested capacities of all allocations done via the arena. The
+     * element at index {@code 0} counts the allocations of at most {@code 16} bytes and every element at index
+     * {@code i > 0} counts the allocations of more than {@code 8 << i} and at most {@code 16 << i} bytes.
+     */
+    long[] allocationSizeHistogram();
+}
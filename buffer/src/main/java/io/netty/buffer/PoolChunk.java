@@ -32,7 +32,7 @@ package io.netty.buffer;
  *
  * For simplicity all sizes are normalized according to PoolArena#normalizeCapacity method
  * This ensures that when we request for memory segments of size >= pageSize the normalizedCapacity
- * equals the next nearest power of 2
+ * equals the next nearest power of 2, unless the arena uses fine size classes (see below)
  *
  * To search for the first offset in chunk that has at least requested size available we construct a
  * complete balanced binary tree and store it in an array (just like heaps) - memoryMap
@@ -91,6 +91,9 @@ package io.netty.buffer;
  * 2) use this handle to construct the PoolSubpage object or if it already exists just call init(normCapacity)
  *    note that this PoolSubpage object is added to subpagesPool in the PoolArena when we init() it
  *
+ * Fine size classes, which are not a power of 2, are allocated like sub-pages but out of a run of pages
+ * (PoolArena#fineRunSize) instead of a single page. So their PoolSubpage may belong to any node of the tree.
+ *
  * Note:
  * -----
  * In the implementation for improving cache coherence,
@@ -99,7 +102,7 @@ package io.netty.buffer;
  * memoryMap[id]= depth_of_id  is defined above
  * depthMap[id]= x  indicates that the first node which is free to be allocated is at depth x (from root)
  */
-final class PoolChunk<T> implements PoolChunkMetric {
+final class PoolChunk<T> implements PoolChunkMemoryMetric {
 
     private static final int INTEGER_SIZE_MINUS_ONE = Integer.SIZE - 1;
 
@@ -107,10 +110,14 @@ final class PoolChunk<T> implements PoolChunkMetric {
     final T memory;
     final boolean unpooled;
     final int offset;
+    /** The {@link DirectChunkAllocator#memoryBacking()} if the memory was allocated by one, {@code null} otherwise. */
+    final String memoryBacking;
 
     private final byte[] memoryMap;
     private final byte[] depthMap;
     private final PoolSubpage<T>[] subpages;
+    /** Sub-pages of fine size classes which use a run of pages, indexed by memoryMapIdx (the non-leaf nodes). */
+    private final PoolSubpage<T>[] runSubpages;
     /** Used to determine if the requested capacity is equal to or greater than pageSize. */
     private final int subpageOverflowMask;
     private final int pageSize;
@@ -123,6 +130,8 @@ final class PoolChunk<T> implements PoolChunkMetric {
     private final byte unusable;
 
     private int freeBytes;
+    /** The {@link System#nanoTime()} at which this chunk became completely unused, only valid if it is unused. */
+    private long unusedSinceNanos;
 
     PoolChunkList<T> parent;
     PoolChunk<T> prev;
@@ -131,10 +140,12 @@ final class PoolChunk<T> implements PoolChunkMetric {
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
-    PoolChunk(PoolArena<T> arena, T memory, int pageSize, int maxOrder, int pageShifts, int chunkSize, int offset) {
+    PoolChunk(PoolArena<T> arena, T memory, int pageSize, int maxOrder, int pageShifts, int chunkSize, int offset,
+              String memoryBacking) {
         unpooled = false;
         this.arena = arena;
         this.memory = memory;
+        this.memoryBacking = memoryBacking;
         this.pageSize = pageSize;
         this.pageShifts = pageShifts;
         this.maxOrder = maxOrder;
@@ -163,6 +174,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
         }
 
         subpages = newSubpageArray(maxSubpageAllocs);
+        runSubpages = arena.numFineSizeClasses() > 0 ? newSubpageArray(maxSubpageAllocs) : null;
     }
 
     /** Creates a special chunk that is not pooled. */
@@ -170,10 +182,12 @@ final class PoolChunk<T> implements PoolChunkMetric {
         unpooled = true;
         this.arena = arena;
         this.memory = memory;
+        memoryBacking = null;
         this.offset = offset;
         memoryMap = null;
         depthMap = null;
         subpages = null;
+        runSubpages = null;
         subpageOverflowMask = 0;
         pageSize = 0;
         pageShifts = 0;
@@ -211,7 +225,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
     }
 
     long allocate(int normCapacity) {
-        if ((normCapacity & subpageOverflowMask) != 0) { // >= pageSize
+        if ((normCapacity & subpageOverflowMask) != 0 && !arena.isFineSizeClass(normCapacity)) { // >= pageSize
             return allocateRun(normCapacity);
         } else {
             return allocateSubpage(normCapacity);
@@ -322,21 +336,27 @@ final class PoolChunk<T> implements PoolChunkMetric {
         PoolSubpage<T> head = arena.findSubpagePoolHead(normCapacity);
         synchronized (head) {
             int d = maxOrder; // subpages are only be allocated from pages i.e., leaves
+            int runSize = pageSize;
+            if (arena.isFineSizeClass(normCapacity)) {
+                // unless they belong to a fine size class which uses a run of pages
+                runSize = arena.fineRunSize(normCapacity);
+                d -= log2(runSize) - pageShifts;
+            }
             int id = allocateNode(d);
             if (id < 0) {
                 return id;
             }
 
-            final PoolSubpage<T>[] subpages = this.subpages;
-            final int pageSize = this.pageSize;
-
-            freeBytes -= pageSize;
+            freeBytes -= runSize;
 
-            int subpageIdx = subpageIdx(id);
-            PoolSubpage<T> subpage = subpages[subpageIdx];
+            PoolSubpage<T> subpage = subpage(id);
             if (subpage == null) {
-                subpage = new PoolSubpage<T>(head, this, id, runOffset(id), pageSize, normCapacity);
-                subpages[subpageIdx] = subpage;
+                subpage = new PoolSubpage<T>(head, this, id, runOffset(id), runSize, normCapacity);
+                if (id < maxSubpageAllocs) {
+                    runSubpages[id] = subpage;
+                } else {
+                    subpages[subpageIdx(id)] = subpage;
+                }
             } else {
                 subpage.init(head, normCapacity);
             }
@@ -357,7 +377,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
         int bitmapIdx = bitmapIdx(handle);
 
         if (bitmapIdx != 0) { // free a subpage
-            PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx)];
+            PoolSubpage<T> subpage = subpage(memoryMapIdx);
             assert subpage != null && subpage.doNotDestroy;
 
             // Obtain the head of the PoolSubPage pool that is owned by the PoolArena and synchronize on it.
@@ -372,6 +392,23 @@ final class PoolChunk<T> implements PoolChunkMetric {
         freeBytes += runLength(memoryMapIdx);
         setValue(memoryMapIdx, depth(memoryMapIdx));
         updateParentsFree(memoryMapIdx);
+        if (freeBytes == chunkSize) {
+            unusedSinceNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns {@code true} if no memory of this chunk is in use, so it may be destroyed.
+     */
+    boolean isUnused() {
+        return freeBytes == chunkSize;
+    }
+
+    /**
+     * Returns {@code true} if this chunk is unused since the given {@link System#nanoTime()} or earlier.
+     */
+    boolean isUnusedSince(long nanoTime) {
+        return isUnused() && unusedSinceNanos - nanoTime <= 0;
     }
 
     void initBuf(PooledByteBuf<T> buf, long handle, int reqCapacity) {
@@ -396,7 +433,7 @@ final class PoolChunk<T> implements PoolChunkMetric {
 
         int memoryMapIdx = memoryMapIdx(handle);
 
-        PoolSubpage<T> subpage = subpages[subpageIdx(memoryMapIdx)];
+        PoolSubpage<T> subpage = subpage(memoryMapIdx);
         assert subpage.doNotDestroy;
         assert reqCapacity <= subpage.elemSize;
 
@@ -434,6 +471,11 @@ final class PoolChunk<T> implements PoolChunkMetric {
         return shift * runLength(id);
     }
 
+    private PoolSubpage<T> subpage(int memoryMapIdx) {
+        // Only the leaves are in subpages, the other nodes can only be used by fine size classes.
+        return memoryMapIdx < maxSubpageAllocs ? runSubpages[memoryMapIdx] : subpages[subpageIdx(memoryMapIdx)];
+    }
+
     private int subpageIdx(int memoryMapIdx) {
         return memoryMapIdx ^ maxSubpageAllocs; // remove highest set bit, to get offset
     }
@@ -451,6 +493,14 @@ final class PoolChunk<T> implements PoolChunkMetric {
         return chunkSize;
     }
 
+    @Override
+    public String memoryBacking() {
+        if (memoryBacking != null) {
+            return memoryBacking;
+        }
+        return arena.isDirect() ? "direct" : "heap";
+    }
+
     @Override
     public int freeBytes() {
         synchronized (arena) {
@@ -161,7 +161,23 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         }
     }
 
-    private void remove(PoolChunk<T> cur) {
+    /**
+     * Removes all {@link PoolChunk}s which are unused since the given {@link System#nanoTime()} or earlier from this
+     * {@link PoolChunkList} and adds them to {@code unused}, so they can be destroyed.
+     */
+    void removeUnused(long unusedSinceNanos, List<PoolChunk<T>> unused) {
+        PoolChunk<T> cur = head;
+        while (cur != null) {
+            PoolChunk<T> next = cur.next;
+            if (cur.isUnusedSince(unusedSinceNanos)) {
+                remove(cur);
+                unused.add(cur);
+            }
+            cur = next;
+        }
+    }
+
+    void remove(PoolChunk<T> cur) {
         if (cur == head) {
             head = cur.next;
             if (head != null) {
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+/**
+ * Expose which memory backs a chunk. All {@link PoolChunkMetric}s which are returned by the
+ * {@link PoolChunkListMetric}s of a {@link PooledByteBufAllocator} implement this interface.
+ */
+public interface PoolChunkMemoryMetric extends PoolChunkMetric {
+
+    /**
+     * Return the name of the memory which backs the chunk, which is {@code "heap"} or {@code "direct"} unless it was
+     * allocated by a {@link DirectChunkAllocator}, see {@link DirectChunkAllocator#memoryBacking()}.
+     */
+    String memoryBacking();
+}
@@ -19,7 +19,7 @@ package io.netty.buffer;
 final class PoolSubpage<T> implements PoolSubpageMetric {
 
     final PoolChunk<T> chunk;
-    private final int memoryMapIdx;
+    final int memoryMapIdx;
     private final int runOffset;
     private final int pageSize;
     private final long[] bitmap;
@@ -135,6 +135,21 @@ final class PoolSubpage<T> implements PoolSubpageMetric {
         }
     }
 
+    /**
+     * Removes this subpage from its pool if none of its elements are in use, even if it is the only one left in the
+     * pool.
+     *
+     * @return {@code true} if this subpage was removed and so its run can be released by its chunk.
+     */
+    boolean releaseIfUnused() {
+        if (elemSize == 0 || !doNotDestroy || numAvail != maxNumElems) {
+            return false;
+        }
+        doNotDestroy = false;
+        removeFromPool();
+        return true;
+    }
+
     private void addToPool(PoolSubpage<T> head) {
         assert prev == null && next == null;
         prev = head;
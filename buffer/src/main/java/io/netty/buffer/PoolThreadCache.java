@@ -20,14 +20,20 @@ package io.netty.buffer;
 import io.netty.buffer.PoolArena.SizeClass;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
+import io.netty.util.internal.LongCounter;
 import io.netty.util.internal.MathUtil;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Acts a Thread cache for allocations. This implementation is moduled after
@@ -43,33 +49,44 @@ final class PoolThreadCache {
     final PoolArena<byte[]> heapArena;
     final PoolArena<ByteBuffer> directArena;
 
-    // Hold the caches for the different size classes, which are tiny, small and normal.
+    // Hold the caches for the different size classes, which are tiny, small, normal and the fine size classes which
+    // are not a power of two.
     private final MemoryRegionCache<byte[]>[] tinySubPageHeapCaches;
     private final MemoryRegionCache<byte[]>[] smallSubPageHeapCaches;
     private final MemoryRegionCache<ByteBuffer>[] tinySubPageDirectCaches;
     private final MemoryRegionCache<ByteBuffer>[] smallSubPageDirectCaches;
     private final MemoryRegionCache<byte[]>[] normalHeapCaches;
     private final MemoryRegionCache<ByteBuffer>[] normalDirectCaches;
+    private final MemoryRegionCache<byte[]>[] fineHeapCaches;
+    private final MemoryRegionCache<ByteBuffer>[] fineDirectCaches;
 
     // Used for bitshifting when calculate the index of normal caches later
     private final int numShiftsNormalDirect;
     private final int numShiftsNormalHeap;
     private final int freeSweepAllocationThreshold;
     private final AtomicBoolean freed = new AtomicBoolean();
+    private final ArenaCacheMetric heapMetric;
+    private final ArenaCacheMetric directMetric;
+    // Incremented by PooledByteBufAllocator.trim() to request all caches to be freed. Caches which are not owned by an
+    // EventExecutor only notice this on the allocation slow path.
+    private final AtomicInteger trimRequests;
 
     private int allocations;
+    private int handledTrimRequests;
 
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
     PoolThreadCache(PoolArena<byte[]> heapArena, PoolArena<ByteBuffer> directArena,
                     int tinyCacheSize, int smallCacheSize, int normalCacheSize,
-                    int maxCachedBufferCapacity, int freeSweepAllocationThreshold) {
+                    int maxCachedBufferCapacity, int freeSweepAllocationThreshold, AtomicInteger trimRequests) {
         if (maxCachedBufferCapacity < 0) {
             throw new IllegalArgumentException("maxCachedBufferCapacity: "
                     + maxCachedBufferCapacity + " (expected: >= 0)");
         }
         this.freeSweepAllocationThreshold = freeSweepAllocationThreshold;
+        this.trimRequests = trimRequests;
+        handledTrimRequests = trimRequests.get();
         this.heapArena = heapArena;
         this.directArena = directArena;
         if (directArena != null) {
@@ -81,14 +98,21 @@ final class PoolThreadCache {
             numShiftsNormalDirect = log2(directArena.pageSize);
             normalDirectCaches = createNormalCaches(
                     normalCacheSize, maxCachedBufferCapacity, directArena);
+            fineDirectCaches = createFineCaches(
+                    smallCacheSize, normalCacheSize, maxCachedBufferCapacity, directArena);
 
+            directMetric = new ArenaCacheMetric(true, tinySubPageDirectCaches, smallSubPageDirectCaches,
+                    normalDirectCaches, fineDirectCaches, directArena.pageSize);
             directArena.numThreadCaches.getAndIncrement();
+            directArena.threadCacheMetrics.add(directMetric);
         } else {
             // No directArea is configured so just null out all caches
             tinySubPageDirectCaches = null;
             smallSubPageDirectCaches = null;
             normalDirectCaches = null;
+            fineDirectCaches = null;
             numShiftsNormalDirect = -1;
+            directMetric = null;
         }
         if (heapArena != null) {
             // Create the caches for the heap allocations
@@ -100,14 +124,21 @@ final class PoolThreadCache {
             numShiftsNormalHeap = log2(heapArena.pageSize);
             normalHeapCaches = createNormalCaches(
                     normalCacheSize, maxCachedBufferCapacity, heapArena);
+            fineHeapCaches = createFineCaches(
+                    smallCacheSize, normalCacheSize, maxCachedBufferCapacity, heapArena);
 
+            heapMetric = new ArenaCacheMetric(false, tinySubPageHeapCaches, smallSubPageHeapCaches,
+                    normalHeapCaches, fineHeapCaches, heapArena.pageSize);
             heapArena.numThreadCaches.getAndIncrement();
+            heapArena.threadCacheMetrics.add(heapMetric);
         } else {
             // No heapArea is configured so just null out all caches
             tinySubPageHeapCaches = null;
             smallSubPageHeapCaches = null;
             normalHeapCaches = null;
+            fineHeapCaches = null;
             numShiftsNormalHeap = -1;
+            heapMetric = null;
         }
 
         // Only check if there are caches in use.
@@ -126,7 +157,8 @@ final class PoolThreadCache {
             MemoryRegionCache<T>[] cache = new MemoryRegionCache[numCaches];
             for (int i = 0; i < cache.length; i++) {
                 // TODO: maybe use cacheSize / cache.length
-                cache[i] = new SubPageMemoryRegionCache<T>(cacheSize, sizeClass);
+                int elementSize = sizeClass == SizeClass.Tiny ? i << 4 : 512 << i;
+                cache[i] = new SubPageMemoryRegionCache<T>(cacheSize, elementSize, sizeClass);
             }
             return cache;
         } else {
@@ -143,7 +175,7 @@ final class PoolThreadCache {
             @SuppressWarnings("unchecked")
             MemoryRegionCache<T>[] cache = new MemoryRegionCache[arraySize];
             for (int i = 0; i < cache.length; i++) {
-                cache[i] = new NormalMemoryRegionCache<T>(cacheSize);
+                cache[i] = new NormalMemoryRegionCache<T>(cacheSize, area.pageSize << i);
             }
             return cache;
         } else {
@@ -151,6 +183,28 @@ final class PoolThreadCache {
         }
     }
 
+    private static <T> MemoryRegionCache<T>[] createFineCaches(
+            int smallCacheSize, int normalCacheSize, int maxCachedBufferCapacity, PoolArena<T> area) {
+        int numCaches = area.numFineSizeClasses();
+        if (numCaches == 0 || smallCacheSize <= 0 && normalCacheSize <= 0) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        MemoryRegionCache<T>[] cache = new MemoryRegionCache[numCaches];
+        for (int i = 0; i < cache.length; i++) {
+            int elementSize = area.fineSizeClass(i);
+            if (elementSize < area.pageSize) {
+                if (smallCacheSize > 0) {
+                    cache[i] = new SubPageMemoryRegionCache<T>(smallCacheSize, elementSize, SizeClass.Small);
+                }
+            } else if (normalCacheSize > 0 && elementSize <= maxCachedBufferCapacity) {
+                cache[i] = new SubPageMemoryRegionCache<T>(normalCacheSize, elementSize, SizeClass.Normal);
+            }
+        }
+        return cache;
+    }
+
     private static int log2(int val) {
         int res = 0;
         while (val > 1) {
@@ -185,16 +239,33 @@ final class PoolThreadCache {
     private boolean allocate(MemoryRegionCache<?> cache, PooledByteBuf buf, int reqCapacity) {
         if (cache == null) {
             // no cache found so just return false here
+            freeCachedIfTrimRequested();
             return false;
         }
         boolean allocated = cache.allocate(buf, reqCapacity);
         if (++ allocations >= freeSweepAllocationThreshold) {
             allocations = 0;
             trim();
+            freeCachedIfTrimRequested();
+        } else if (!allocated) {
+            freeCachedIfTrimRequested();
         }
         return allocated;
     }
 
+    /**
+     * Frees the cached buffers if {@link PooledByteBufAllocator#trim()} was called since the last check. This is only
+     * done when the allocation could not be served by the cache or on a sweep, so the hit path stays free of the
+     * volatile read.
+     */
+    private void freeCachedIfTrimRequested() {
+        int trimRequests = this.trimRequests.get();
+        if (trimRequests != handledTrimRequests) {
+            handledTrimRequests = trimRequests;
+            freeCached();
+        }
+    }
+
     /**
      * Add {@link PoolChunk} and {@code handle} to the cache if there is enough room.
      * Returns {@code true} if it fit into the cache {@code false} otherwise.
@@ -238,12 +309,7 @@ final class PoolThreadCache {
         // As free() may be called either by the finalizer or by FastThreadLocal.onRemoval(...) we need to ensure
         // we only call this one time.
         if (freed.compareAndSet(false, true)) {
-            int numFreed = free(tinySubPageDirectCaches) +
-                    free(smallSubPageDirectCaches) +
-                    free(normalDirectCaches) +
-                    free(tinySubPageHeapCaches) +
-                    free(smallSubPageHeapCaches) +
-                    free(normalHeapCaches);
+            int numFreed = freeCached();
 
             if (numFreed > 0 && logger.isDebugEnabled()) {
                 logger.debug("Freed {} thread-local buffer(s) from thread: {}", numFreed,
@@ -252,14 +318,32 @@ final class PoolThreadCache {
 
             if (directArena != null) {
                 directArena.numThreadCaches.getAndDecrement();
+                directArena.threadCacheMetrics.remove(directMetric);
             }
 
             if (heapArena != null) {
                 heapArena.numThreadCaches.getAndDecrement();
+                heapArena.threadCacheMetrics.remove(heapMetric);
             }
         }
     }
 
+    /**
+     * Releases all cached buffers to their arenas. Unlike {@link #free()} this cache can still be used afterwards.
+     *
+     * @return the number of released buffers.
+     */
+    int freeCached() {
+        return free(tinySubPageDirectCaches) +
+                free(smallSubPageDirectCaches) +
+                free(normalDirectCaches) +
+                free(fineDirectCaches) +
+                free(tinySubPageHeapCaches) +
+                free(smallSubPageHeapCaches) +
+                free(normalHeapCaches) +
+                free(fineHeapCaches);
+    }
+
     private static int free(MemoryRegionCache<?>[] caches) {
         if (caches == null) {
             return 0;
@@ -283,9 +367,11 @@ final class PoolThreadCache {
         trim(tinySubPageDirectCaches);
         trim(smallSubPageDirectCaches);
         trim(normalDirectCaches);
+        trim(fineDirectCaches);
         trim(tinySubPageHeapCaches);
         trim(smallSubPageHeapCaches);
         trim(normalHeapCaches);
+        trim(fineHeapCaches);
     }
 
     private static void trim(MemoryRegionCache<?>[] caches) {
@@ -313,6 +399,9 @@ final class PoolThreadCache {
     }
 
     private MemoryRegionCache<?> cacheForSmall(PoolArena<?> area, int normCapacity) {
+        if (area.isFineSizeClass(normCapacity)) {
+            return cacheForFine(area, normCapacity);
+        }
         int idx = PoolArena.smallIdx(normCapacity);
         if (area.isDirect()) {
             return cache(smallSubPageDirectCaches, idx);
@@ -321,6 +410,9 @@ final class PoolThreadCache {
     }
 
     private MemoryRegionCache<?> cacheForNormal(PoolArena<?> area, int normCapacity) {
+        if (area.isFineSizeClass(normCapacity)) {
+            return cacheForFine(area, normCapacity);
+        }
         if (area.isDirect()) {
             int idx = log2(normCapacity >> numShiftsNormalDirect);
             return cache(normalDirectCaches, idx);
@@ -329,6 +421,14 @@ final class PoolThreadCache {
         return cache(normalHeapCaches, idx);
     }
 
+    private MemoryRegionCache<?> cacheForFine(PoolArena<?> area, int normCapacity) {
+        int idx = PoolArena.fineIdx(normCapacity);
+        if (area.isDirect()) {
+            return cache(fineDirectCaches, idx);
+        }
+        return cache(fineHeapCaches, idx);
+    }
+
     private static <T> MemoryRegionCache<T> cache(MemoryRegionCache<T>[] cache, int idx) {
         if (cache == null || idx > cache.length - 1) {
             return null;
@@ -336,12 +436,141 @@ final class PoolThreadCache {
         return cache[idx];
     }
 
+    /**
+     * Exposes the caches of a {@link PoolThreadCache} which belong to one of its arenas. This does not reference the
+     * {@link PoolThreadCache} itself, so it can be registered with the arena without preventing the cache from being
+     * finalized.
+     */
+    private static final class ArenaCacheMetric implements PoolThreadCacheMetric {
+        private final String threadName = Thread.currentThread().getName();
+        private final boolean direct;
+        private final List<PoolThreadCacheRegionMetric> tinyCaches;
+        private final List<PoolThreadCacheRegionMetric> smallCaches;
+        private final List<PoolThreadCacheRegionMetric> normalCaches;
+
+        ArenaCacheMetric(boolean direct, MemoryRegionCache<?>[] tinyCaches, MemoryRegionCache<?>[] smallCaches,
+                         MemoryRegionCache<?>[] normalCaches, MemoryRegionCache<?>[] fineCaches, int pageSize) {
+            this.direct = direct;
+            this.tinyCaches = metricList(tinyCaches, null, 0, 0);
+            // The caches of the fine size classes are reported together with the small and normal ones.
+            this.smallCaches = metricList(smallCaches, fineCaches, 0, pageSize);
+            this.normalCaches = metricList(normalCaches, fineCaches, pageSize, Integer.MAX_VALUE);
+        }
+
+        private static List<PoolThreadCacheRegionMetric> metricList(
+                MemoryRegionCache<?>[] caches, MemoryRegionCache<?>[] fineCaches, int minFineSize, int maxFineSize) {
+            List<PoolThreadCacheRegionMetric> metrics = new ArrayList<PoolThreadCacheRegionMetric>();
+            if (caches != null) {
+                Collections.addAll(metrics, caches);
+            }
+            if (fineCaches != null) {
+                for (MemoryRegionCache<?> c: fineCaches) {
+                    if (c != null && c.elementSize() >= minFineSize && c.elementSize() < maxFineSize) {
+                        metrics.add(c);
+                    }
+                }
+            }
+            return Collections.unmodifiableList(metrics);
+        }
+
+        @Override
+        public String threadName() {
+            return threadName;
+        }
+
+        @Override
+        public boolean isDirect() {
+            return direct;
+        }
+
+        @Override
+        public List<PoolThreadCacheRegionMetric> tinyCaches() {
+            return tinyCaches;
+        }
+
+        @Override
+        public List<PoolThreadCacheRegionMetric> smallCaches() {
+            return smallCaches;
+        }
+
+        @Override
+        public List<PoolThreadCacheRegionMetric> normalCaches() {
+            return normalCaches;
+        }
+
+        @Override
+        public long numHits() {
+            return numHits(tinyCaches) + numHits(smallCaches) + numHits(normalCaches);
+        }
+
+        @Override
+        public long numMisses() {
+            return numMisses(tinyCaches) + numMisses(smallCaches) + numMisses(normalCaches);
+        }
+
+        @Override
+        public long numTrimmed() {
+            return numTrimmed(tinyCaches) + numTrimmed(smallCaches) + numTrimmed(normalCaches);
+        }
+
+        @Override
+        public long numCachedBytes() {
+            return numCachedBytes(tinyCaches) + numCachedBytes(smallCaches) + numCachedBytes(normalCaches);
+        }
+
+        private static long numHits(List<PoolThreadCacheRegionMetric> caches) {
+            long val = 0;
+            for (int i = 0; i < caches.size(); i++) {
+                val += caches.get(i).numHits();
+            }
+            return val;
+        }
+
+        private static long numMisses(List<PoolThreadCacheRegionMetric> caches) {
+            long val = 0;
+            for (int i = 0; i < caches.size(); i++) {
+                val += caches.get(i).numMisses();
+            }
+            return val;
+        }
+
+        private static long numTrimmed(List<PoolThreadCacheRegionMetric> caches) {
+            long val = 0;
+            for (int i = 0; i < caches.size(); i++) {
+                val += caches.get(i).numTrimmed();
+            }
+            return val;
+        }
+
+        private static long numCachedBytes(List<PoolThreadCacheRegionMetric> caches) {
+            long val = 0;
+            for (int i = 0; i < caches.size(); i++) {
+                PoolThreadCacheRegionMetric m = caches.get(i);
+                val += (long) m.numElements() * m.elementSize();
+            }
+            return val;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(128);
+            sb.append(StringUtil.simpleClassName(PoolThreadCache.class))
+                    .append("(thread: ").append(threadName)
+                    .append("; direct: ").append(direct)
+                    .append("; hits: ").append(numHits())
+                    .append("; misses: ").append(numMisses())
+                    .append("; trimmed: ").append(numTrimmed())
+                    .append("; cachedBytes: ").append(numCachedBytes()).append(')');
+            return sb.toString();
+        }
+    }
+
     /**
      * Cache used for buffers which are backed by TINY or SMALL size.
      */
     private static final class SubPageMemoryRegionCache<T> extends MemoryRegionCache<T> {
-        SubPageMemoryRegionCache(int size, SizeClass sizeClass) {
-            super(size, sizeClass);
+        SubPageMemoryRegionCache(int size, int elementSize, SizeClass sizeClass) {
+            super(size, elementSize, sizeClass);
         }
 
         @Override
@@ -355,8 +584,8 @@ final class PoolThreadCache {
      * Cache used for buffers which are backed by NORMAL size.
      */
     private static final class NormalMemoryRegionCache<T> extends MemoryRegionCache<T> {
-        NormalMemoryRegionCache(int size) {
-            super(size, SizeClass.Normal);
+        NormalMemoryRegionCache(int size, int elementSize) {
+            super(size, elementSize, SizeClass.Normal);
         }
 
         @Override
@@ -366,18 +595,55 @@ final class PoolThreadCache {
         }
     }
 
-    private abstract static class MemoryRegionCache<T> {
+    private abstract static class MemoryRegionCache<T> implements PoolThreadCacheRegionMetric {
         private final int size;
+        private final int elementSize;
         private final Queue<Entry<T>> queue;
         private final SizeClass sizeClass;
         private int allocations;
 
-        MemoryRegionCache(int size, SizeClass sizeClass) {
+        // Metrics are read by other threads, so use LongCounter even if these are only updated by the owning thread.
+        private final LongCounter hits = PlatformDependent.newLongCounter();
+        private final LongCounter misses = PlatformDependent.newLongCounter();
+        private final LongCounter trimmed = PlatformDependent.newLongCounter();
+
+        MemoryRegionCache(int size, int elementSize, SizeClass sizeClass) {
             this.size = MathUtil.safeFindNextPositivePowerOfTwo(size);
+            this.elementSize = elementSize;
             queue = PlatformDependent.newFixedMpscQueue(this.size);
             this.sizeClass = sizeClass;
         }
 
+        @Override
+        public int elementSize() {
+            return elementSize;
+        }
+
+        @Override
+        public int maxNumElements() {
+            return size;
+        }
+
+        @Override
+        public int numElements() {
+            return queue.size();
+        }
+
+        @Override
+        public long numHits() {
+            return hits.value();
+        }
+
+        @Override
+        public long numMisses() {
+            return misses.value();
+        }
+
+        @Override
+        public long numTrimmed() {
+            return trimmed.value();
+        }
+
         /**
          * Init the {@link PooledByteBuf} using the provided chunk and handle with the capacity restrictions.
          */
@@ -405,10 +671,12 @@ final class PoolThreadCache {
         public final boolean allocate(PooledByteBuf<T> buf, int reqCapacity) {
             Entry<T> entry = queue.poll();
             if (entry == null) {
+                misses.increment();
                 return false;
             }
             initBuf(entry.chunk, entry.handle, buf, reqCapacity);
             entry.recycle();
+            hits.increment();
 
             // allocations is not thread-safe which is fine as this is only called from the same thread all time.
             ++ allocations;
@@ -445,7 +713,10 @@ final class PoolThreadCache {
 
             // We not even allocated all the number that are
             if (free > 0) {
-                free(free);
+                int numFreed = free(free);
+                if (numFreed > 0) {
+                    trimmed.add(numFreed);
+                }
             }
         }
 
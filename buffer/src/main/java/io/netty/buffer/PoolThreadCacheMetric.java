@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+import java.util.List;
+
+/**
+ * Metrics for the part of a thread local cache which caches memory of a single arena.
+ */
+public interface PoolThreadCacheMetric {
+
+    /**
+     * Return the name of the thread which created the cache.
+     */
+    String threadName();
+
+    /**
+     * Return {@code true} if the cache holds direct memory, {@code false} if it holds heap memory.
+     */
+    boolean isDirect();
+
+    /**
+     * Returns an unmodifiable {@link List} which holds {@link PoolThreadCacheRegionMetric}s for tiny sizes.
+     */
+    List<PoolThreadCacheRegionMetric> tinyCaches();
+
+    /**
+     * Returns an unmodifiable {@link List} which holds {@link PoolThreadCacheRegionMetric}s for small sizes.
+     */
+    List<PoolThreadCacheRegionMetric> smallCaches();
+
+    /**
+     * Returns an unmodifiable {@link List} which holds {@link PoolThreadCacheRegionMetric}s for normal sizes.
+     */
+    List<PoolThreadCacheRegionMetric> normalCaches();
+
+    /**
+     * Return the number of allocations which were served by the cache. This includes all sizes.
+     */
+    long numHits();
+
+    /**
+     * Return the number of allocations which could not be served by the cache. This includes all sizes.
+     */
+    long numMisses();
+
+    /**
+     * Return the number of cached buffers which were released back to the arena because they were not used
+     * often enough. This includes all sizes.
+     */
+    long numTrimmed();
+
+    /**
+     * Return the number of bytes which are currently held by the cache.
+     */
+    long numCachedBytes();
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.buffer;
+
+/**
+ * Metrics for the part of a thread local cache which caches buffers of a single size.
+ */
+public interface PoolThreadCacheRegionMetric {
+
+    /**
+     * Return the size (in bytes) of the cached buffers.
+     */
+    int elementSize();
+
+    /**
+     * Return the number of maximal buffers that can be cached.
+     */
+    int maxNumElements();
+
+    /**
+     * Return the number of buffers which are currently cached.
+     */
+    int numElements();
+
+    /**
+     * Return the number of allocations which were served by the cache.
+     */
+    long numHits();
+
+    /**
+     * Return the number of allocations which could not be served because the cache was empty.
+     */
+    long numMisses();
+
+    /**
+     * Return the number of cached buffers which were released back to the arena because they were not used
+     * often enough.
+     */
+    long numTrimmed();
+}
@@ -17,11 +17,13 @@
 package io.netty.buffer;
 
 import io.netty.util.NettyRuntime;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThreadExecutorMap;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
@@ -29,6 +31,9 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PooledByteBufAllocator extends AbstractByteBufAllocator implements ByteBufAllocatorMetricProvider {
 
@@ -45,6 +50,9 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     private static final int DEFAULT_CACHE_TRIM_INTERVAL;
     private static final boolean DEFAULT_USE_CACHE_FOR_ALL_THREADS;
     private static final int DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT;
+    private static final boolean DEFAULT_FINE_SIZE_CLASSES;
+    private static final long DEFAULT_MAX_CHUNK_IDLE_TIME_MILLIS;
+    private static final long DEFAULT_CHUNK_RELEASE_WATERMARK;
 
     private static final int MIN_PAGE_SIZE = 4096;
     private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);
@@ -116,6 +124,15 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         DEFAULT_DIRECT_MEMORY_CACHE_ALIGNMENT = SystemPropertyUtil.getInt(
                 "io.netty.allocator.directMemoryCacheAlignment", 0);
 
+        DEFAULT_FINE_SIZE_CLASSES = SystemPropertyUtil.getBoolean(
+                "io.netty.allocator.fineSizeClasses", false);
+
+        // unused chunks are retained until trim() is called by default
+        DEFAULT_MAX_CHUNK_IDLE_TIME_MILLIS = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.maxChunkIdleTimeMillis", 0));
+        DEFAULT_CHUNK_RELEASE_WATERMARK = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.chunkReleaseWatermark", 0));
+
         if (logger.isDebugEnabled()) {
             logger.debug("-Dio.netty.allocator.numHeapArenas: {}", DEFAULT_NUM_HEAP_ARENA);
             logger.debug("-Dio.netty.allocator.numDirectArenas: {}", DEFAULT_NUM_DIRECT_ARENA);
@@ -136,6 +153,9 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             logger.debug("-Dio.netty.allocator.maxCachedBufferCapacity: {}", DEFAULT_MAX_CACHED_BUFFER_CAPACITY);
             logger.debug("-Dio.netty.allocator.cacheTrimInterval: {}", DEFAULT_CACHE_TRIM_INTERVAL);
             logger.debug("-Dio.netty.allocator.useCacheForAllThreads: {}", DEFAULT_USE_CACHE_FOR_ALL_THREADS);
+            logger.debug("-Dio.netty.allocator.fineSizeClasses: {}", DEFAULT_FINE_SIZE_CLASSES);
+            logger.debug("-Dio.netty.allocator.maxChunkIdleTimeMillis: {}", DEFAULT_MAX_CHUNK_IDLE_TIME_MILLIS);
+            logger.debug("-Dio.netty.allocator.chunkReleaseWatermark: {}", DEFAULT_CHUNK_RELEASE_WATERMARK);
         }
     }
 
@@ -152,6 +172,10 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     private final PoolThreadLocalCache threadCache;
     private final int chunkSize;
     private final PooledByteBufAllocatorMetric metric;
+    private final AtomicInteger trimRequests = new AtomicInteger();
+    // The caches of the threads which belong to an EventExecutor, so trim() can submit a task to free them.
+    private final Map<PoolThreadCache, EventExecutor> executorCaches =
+            PlatformDependent.newConcurrentHashMap();
 
     public PooledByteBufAllocator() {
         this(false);
@@ -200,6 +224,60 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int tinyCacheSize, int smallCacheSize, int normalCacheSize,
                                   boolean useCacheForAllThreads, int directMemoryCacheAlignment) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                tinyCacheSize, smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment, DEFAULT_FINE_SIZE_CLASSES);
+    }
+
+    /**
+     * @param fineSizeClasses {@code true} to round capacities of at least {@code 512} bytes and up to
+     *                        {@code 16 * pageSize} to the next multiple of an eighth of their next power of two, so
+     *                        there are four size classes per doubling (like jemalloc 4) instead of one. This wastes
+     *                        at most 20% instead of 50% of each buffer, while the power of two sizes are still
+     *                        allocated in the same way.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  boolean fineSizeClasses) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                tinyCacheSize, smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment, fineSizeClasses,
+                DEFAULT_MAX_CHUNK_IDLE_TIME_MILLIS, DEFAULT_CHUNK_RELEASE_WATERMARK);
+    }
+
+    /**
+     * Unused chunks are retained by the arenas until {@link #trim()} is called, unless one of the following is
+     * configured.
+     *
+     * @param maxChunkIdleTimeMillis the time in milliseconds after which an unused chunk is destroyed, so its memory
+     *                               is returned to the system, or {@code 0} to disable. It is checked whenever a
+     *                               buffer is released to the arena of the chunk.
+     * @param chunkReleaseWatermark  the amount of memory in bytes which each arena may retain in chunks, or {@code 0}
+     *                               to disable. Chunks which become unused while the arena holds more memory are
+     *                               destroyed immediately.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  boolean fineSizeClasses, long maxChunkIdleTimeMillis, long chunkReleaseWatermark) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
+                tinyCacheSize, smallCacheSize, normalCacheSize,
+                useCacheForAllThreads, directMemoryCacheAlignment, fineSizeClasses,
+                maxChunkIdleTimeMillis, chunkReleaseWatermark, null);
+    }
+
+    /**
+     * @param directChunkAllocator the {@link DirectChunkAllocator} which allocates the memory of the chunks of the
+     *                             direct arenas, or {@code null} to use {@link ByteBuffer#allocateDirect(int)}. If it
+     *                             can not allocate the memory of a chunk this is used as well, which is reported by
+     *                             {@link PoolChunkMemoryMetric#memoryBacking()}.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int tinyCacheSize, int smallCacheSize, int normalCacheSize,
+                                  boolean useCacheForAllThreads, int directMemoryCacheAlignment,
+                                  boolean fineSizeClasses, long maxChunkIdleTimeMillis, long chunkReleaseWatermark,
+                                  DirectChunkAllocator directChunkAllocator) {
         super(preferDirect);
         threadCache = new PoolThreadLocalCache(useCacheForAllThreads);
         this.tinyCacheSize = tinyCacheSize;
@@ -227,6 +305,15 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
                     + directMemoryCacheAlignment + " (expected: power of two)");
         }
 
+        if (maxChunkIdleTimeMillis < 0) {
+            throw new IllegalArgumentException("maxChunkIdleTimeMillis: "
+                    + maxChunkIdleTimeMillis + " (expected: >= 0)");
+        }
+        if (chunkReleaseWatermark < 0) {
+            throw new IllegalArgumentException("chunkReleaseWatermark: "
+                    + chunkReleaseWatermark + " (expected: >= 0)");
+        }
+
         int pageShifts = validateAndCalculatePageShifts(pageSize);
 
         if (nHeapArena > 0) {
@@ -234,8 +321,8 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(heapArenas.length);
             for (int i = 0; i < heapArenas.length; i ++) {
                 PoolArena.HeapArena arena = new PoolArena.HeapArena(this,
-                        pageSize, maxOrder, pageShifts, chunkSize,
-                        directMemoryCacheAlignment);
+                        pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment,
+                        fineSizeClasses, maxChunkIdleTimeMillis, chunkReleaseWatermark);
                 heapArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -250,7 +337,8 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(directArenas.length);
             for (int i = 0; i < directArenas.length; i ++) {
                 PoolArena.DirectArena arena = new PoolArena.DirectArena(
-                        this, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment);
+                        this, pageSize, maxOrder, pageShifts, chunkSize, directMemoryCacheAlignment,
+                        fineSizeClasses, maxChunkIdleTimeMillis, chunkReleaseWatermark, directChunkAllocator);
                 directArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -423,6 +511,76 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
         threadCache.remove();
     }
 
+    /**
+     * Releases all the memory of this allocator which is not used by any buffer, so it can be returned to the system.
+     * This destroys all unused chunks of all arenas, including those which only retain sub-pages for later
+     * allocations, and frees the buffers cached by the calling {@link Thread}.
+     * <p>
+     * The caches of the other {@link Thread}s can only be freed by themselves. If such a {@link Thread} belongs to an
+     * {@link EventExecutor}, a task which frees its cache and releases the memory of its arenas is submitted to it.
+     * Any other {@link Thread} frees its cache on its next allocation which can not be served by the cache, after
+     * which calling this method again releases the memory to the system. To do so immediately, call
+     * {@link #trimCurrentThreadCache()} from each of these threads before calling this method.
+     */
+    public void trim() {
+        trimRequests.incrementAndGet();
+        trimCurrentThreadCache();
+        for (Map.Entry<PoolThreadCache, EventExecutor> entry : executorCaches.entrySet()) {
+            EventExecutor executor = entry.getValue();
+            if (executor.inEventLoop()) {
+                continue;
+            }
+            try {
+                executor.execute(new TrimCacheTask(entry.getKey()));
+            } catch (RejectedExecutionException ignore) {
+                // The executor is shutting down and frees its cache once its thread terminates.
+            }
+        }
+        trimArenas(heapArenas);
+        trimArenas(directArenas);
+    }
+
+    private static final class TrimCacheTask implements Runnable {
+        private final PoolThreadCache cache;
+
+        TrimCacheTask(PoolThreadCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public void run() {
+            if (cache.freeCached() > 0) {
+                if (cache.heapArena != null) {
+                    cache.heapArena.trim();
+                }
+                if (cache.directArena != null) {
+                    cache.directArena.trim();
+                }
+            }
+        }
+    }
+
+    private static void trimArenas(PoolArena<?>[] arenas) {
+        if (arenas != null) {
+            for (PoolArena<?> arena : arenas) {
+                arena.trim();
+            }
+        }
+    }
+
+    /**
+     * Frees all the buffers cached by the calling {@link Thread}, which may still use its cache afterwards.
+     *
+     * @return {@code true} if the calling {@link Thread} had a cache.
+     */
+    public boolean trimCurrentThreadCache() {
+        if (!threadCache.isSet()) {
+            return false;
+        }
+        threadCache.get().freeCached();
+        return true;
+    }
+
     final class PoolThreadLocalCache extends FastThreadLocal<PoolThreadCache> {
         private final boolean useCacheForAllThreads;
 
@@ -437,16 +595,22 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator implements
 
             Thread current = Thread.currentThread();
             if (useCacheForAllThreads || current instanceof FastThreadLocalThread) {
-                return new PoolThreadCache(
+                PoolThreadCache cache = new PoolThreadCache(
                         heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize,
-                        DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL);
+                        DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL, trimRequests);
+                EventExecutor executor = ThreadExecutorMap.currentExecutor();
+                if (executor != null) {
+                    executorCaches.put(cache, executor);
+                }
+                return cache;
             }
             // No caching so just use 0 as sizes.
-            return new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0, 0);
+            return new PoolThreadCache(heapArena, directArena, 0, 0, 0, 0, 0, trimRequests);
         }
 
         @Override
         protected void onRemoval(PoolThreadCache threadCache) {
+            executorCaches.remove(threadCache);
             threadCache.free();
         }
 
@@ -17,6 +17,8 @@ package io.netty.buffer;
 
 import io.netty.util.internal.StringUtil;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -66,6 +68,36 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
         return allocator.numThreadLocalCaches();
     }
 
+    /**
+     * Return an unmodifiable snapshot {@link List} of the {@link PoolThreadCacheMetric}s of all thread local caches
+     * used by this {@link PooledByteBufAllocator}. Every thread local cache contributes one
+     * {@link PoolThreadCacheMetric} for its heap and one for its direct arena.
+     */
+    public List<PoolThreadCacheMetric> threadCaches() {
+        List<PoolThreadCacheMetric> metrics = new ArrayList<PoolThreadCacheMetric>();
+        addThreadCaches(metrics, heapArenas());
+        addThreadCaches(metrics, directArenas());
+        return Collections.unmodifiableList(metrics);
+    }
+
+    private static void addThreadCaches(List<PoolThreadCacheMetric> metrics, List<PoolArenaMetric> arenas) {
+        for (PoolArenaMetric arena : arenas) {
+            metrics.addAll(((PoolArenaUsageMetric) arena).threadCaches());
+        }
+    }
+
+    /**
+     * Return the number of bytes which are currently held by the thread local caches used by this
+     * {@link PooledByteBufAllocator}.
+     */
+    public long cachedMemory() {
+        long val = 0;
+        for (PoolThreadCacheMetric metric : threadCaches()) {
+            val += metric.numCachedBytes();
+        }
+        return val;
+    }
+
     /**
      * Return the size of the tiny cache.
      */
@@ -116,6 +148,7 @@ public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetri
                 .append("; smallCacheSize: ").append(smallCacheSize())
                 .append("; normalCacheSize: ").append(normalCacheSize())
                 .append("; numThreadLocalCaches: ").append(numThreadLocalCaches())
+                .append("; cachedMemory: ").append(cachedMemory())
                 .append("; chunkSize: ").append(chunkSize()).append(')');
         return sb.toString();
     }
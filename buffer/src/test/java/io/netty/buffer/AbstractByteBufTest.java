@@ -2136,6 +2136,46 @@ public abstract class AbstractByteBufTest {
         assertEquals(3, buffer.indexOf(4, 1, (byte) 2));
     }
 
+    @Test
+    public void testIndexOfAllAlignments() {
+        // Searches every range of a region which is large enough for the word-at-a-time search, with the byte at
+        // every position and surrounded by bytes which only differ in a single bit.
+        byte[] fillers = { 0x0A ^ 0x01, (byte) (0x0A ^ 0x80), (byte) 0xFF, 0 };
+        for (byte filler : fillers) {
+            for (int position = 0; position < 24; position++) {
+                buffer.clear();
+                for (int i = 0; i < 24; i++) {
+                    buffer.writeByte(i == position ? 0x0A : filler);
+                }
+                for (int from = 0; from < 24; from++) {
+                    for (int to = from; to <= 24; to++) {
+                        int expected = position >= from && position < to ? position : -1;
+                        assertEquals(expected, buffer.indexOf(from, to, (byte) 0x0A));
+                        assertEquals(expected, buffer.forEachByte(from, to - from, ByteProcessor.FIND_LF));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testForEachByteFindConstants() {
+        buffer.clear();
+        buffer.writeBytes("abcdefghijklmnop \t,;\r\n\0".getBytes(CharsetUtil.US_ASCII));
+        assertEquals(16, buffer.forEachByte(ByteProcessor.FIND_ASCII_SPACE));
+        assertEquals(16, buffer.forEachByte(ByteProcessor.FIND_LINEAR_WHITESPACE));
+        assertEquals(17, buffer.forEachByte(17, 6, ByteProcessor.FIND_LINEAR_WHITESPACE));
+        assertEquals(18, buffer.forEachByte(ByteProcessor.FIND_COMMA));
+        assertEquals(19, buffer.forEachByte(ByteProcessor.FIND_SEMI_COLON));
+        assertEquals(20, buffer.forEachByte(ByteProcessor.FIND_CR));
+        assertEquals(20, buffer.forEachByte(ByteProcessor.FIND_CRLF));
+        assertEquals(21, buffer.forEachByte(21, 2, ByteProcessor.FIND_CRLF));
+        assertEquals(21, buffer.forEachByte(ByteProcessor.FIND_LF));
+        assertEquals(22, buffer.forEachByte(ByteProcessor.FIND_NUL));
+        assertEquals(-1, buffer.forEachByte(0, 16, ByteProcessor.FIND_NUL));
+        assertEquals(-1, buffer.forEachByte(0, 16, ByteProcessor.FIND_CRLF));
+    }
+
     @Test
     public void testNioBuffer1() {
         assumeTrue(buffer.nioBufferCount() == 1);
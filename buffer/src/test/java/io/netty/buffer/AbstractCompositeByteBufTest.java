@@ -1017,6 +1017,166 @@ public abstract class AbstractCompositeByteBufTest extends AbstractByteBufTest {
         cbuf.release();
     }
 
+    @Test
+    public void testInsertEmptyBufferInMiddle() {
+        CompositeByteBuf cbuf = compositeBuffer();
+        cbuf.addComponent(true, buffer().writeByte((byte) 1));
+        cbuf.addComponent(true, buffer().writeByte((byte) 2));
+        cbuf.addComponent(true, buffer().writeByte((byte) 3));
+        cbuf.addComponent(1, EMPTY_BUFFER);
+
+        assertEquals(4, cbuf.numComponents());
+        assertEquals(1, cbuf.toByteIndex(1));
+        assertEquals(1, cbuf.toByteIndex(2));
+        assertEquals(2, cbuf.toComponentIndex(1));
+        assertEquals(3, cbuf.toComponentIndex(2));
+        assertEquals((byte) 3, cbuf.getByte(2));
+        assertEquals((byte) 2, cbuf.getByte(1));
+        assertEquals((byte) 1, cbuf.getByte(0));
+        cbuf.release();
+    }
+
+    @Test
+    public void testAddComponentsInMiddle() {
+        CompositeByteBuf cbuf = compositeBuffer();
+        cbuf.addComponents(true, wrappedBuffer(new byte[] { 1, 2 }), wrappedBuffer(new byte[] { 7, 8 }));
+        // Read from the last component, so it is the last accessed one.
+        assertEquals((byte) 7, cbuf.getByte(2));
+        cbuf.addComponents(1, wrappedBuffer(new byte[] { 3, 4 }), EMPTY_BUFFER, wrappedBuffer(new byte[] { 5, 6 }));
+        cbuf.writerIndex(cbuf.capacity());
+
+        assertEquals(5, cbuf.numComponents());
+        assertEquals(8, cbuf.capacity());
+        int[] byteIndexes = { 0, 2, 4, 4, 6 };
+        for (int i = 0; i < byteIndexes.length; i++) {
+            assertEquals(byteIndexes[i], cbuf.toByteIndex(i));
+        }
+        for (int i = 0; i < 8; i++) {
+            assertEquals((byte) (i + 1), cbuf.getByte(i));
+        }
+        byte[] bytes = new byte[8];
+        cbuf.getBytes(0, bytes);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, bytes);
+        cbuf.release();
+    }
+
+    @Test
+    public void testAddComponentsInMiddleFailing() {
+        CompositeByteBuf cbuf = compositeBuffer();
+        cbuf.addComponents(true, wrappedBuffer(new byte[] { 1, 2 }), wrappedBuffer(new byte[] { 5, 6 }));
+        ByteBuf failing = new UnpooledHeapByteBuf(UnpooledByteBufAllocator.DEFAULT, 2, 2) {
+            @Override
+            public ByteBuf slice() {
+                throw new IllegalStateException();
+            }
+        }.writeZero(2);
+        ByteBuf notAdded = wrappedBuffer(new byte[] { 9, 9 });
+        try {
+            cbuf.addComponents(1, wrappedBuffer(new byte[] { 3, 4 }), failing, notAdded);
+            fail();
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertEquals(0, failing.refCnt());
+        assertEquals(0, notAdded.refCnt());
+
+        // The component which was added before the failure is kept and the following one was moved behind it.
+        cbuf.writerIndex(cbuf.capacity());
+        assertEquals(3, cbuf.numComponents());
+        assertEquals(6, cbuf.capacity());
+        assertEquals(4, cbuf.toByteIndex(2));
+        for (int i = 0; i < 6; i++) {
+            assertEquals((byte) (i + 1), cbuf.getByte(i));
+        }
+        cbuf.release();
+    }
+
+    @Test
+    public void testLastAccessedComponentIsNotStale() {
+        CompositeByteBuf cbuf = compositeBuffer();
+        cbuf.addComponents(true, wrappedBuffer(new byte[] { 1, 2 }), wrappedBuffer(new byte[] { 3, 4 }),
+                           wrappedBuffer(new byte[] { 5, 6 }));
+        assertEquals((byte) 3, cbuf.getByte(2));
+        cbuf.removeComponent(1);
+        cbuf.writerIndex(4);
+        assertEquals((byte) 5, cbuf.getByte(2));
+
+        cbuf.readerIndex(3);
+        cbuf.discardReadBytes();
+        assertEquals((byte) 6, cbuf.getByte(0));
+
+        cbuf.addComponent(true, 0, wrappedBuffer(new byte[] { 9 }));
+        assertEquals((byte) 9, cbuf.getByte(0));
+        assertEquals((byte) 6, cbuf.getByte(1));
+
+        cbuf.capacity(1);
+        cbuf.addComponent(true, wrappedBuffer(new byte[] { 10 }));
+        assertEquals((byte) 10, cbuf.getByte(1));
+        cbuf.release();
+    }
+
+    @Test
+    public void testOffsetsAfterRepeatedDiscards() {
+        CompositeByteBuf cbuf = compositeBuffer();
+        byte next = 0;
+        for (int i = 0; i < 100; i++) {
+            cbuf.addComponent(true, wrappedBuffer(new byte[] { next, (byte) (next + 1), (byte) (next + 2) }));
+            next += 3;
+            cbuf.skipBytes(2);
+            if (i % 2 == 0) {
+                cbuf.discardReadComponents();
+            } else {
+                cbuf.discardReadBytes();
+                assertEquals(0, cbuf.readerIndex());
+            }
+            assertEquals(0, cbuf.toByteIndex(0));
+            assertEquals(cbuf.capacity(), cbuf.toByteIndex(cbuf.numComponents() - 1) +
+                    cbuf.internalComponent(cbuf.numComponents() - 1).readableBytes());
+            assertEquals((byte) (next - cbuf.writerIndex() + cbuf.readerIndex()), cbuf.getByte(cbuf.readerIndex()));
+        }
+
+        cbuf.addComponent(true, 0, wrappedBuffer(new byte[] { 42 }));
+        assertEquals((byte) 42, cbuf.getByte(0));
+        assertEquals(1, cbuf.toByteIndex(1));
+        cbuf.consolidate();
+        assertEquals(1, cbuf.numComponents());
+        assertEquals((byte) 42, cbuf.getByte(0));
+        assertEquals((byte) (next - 1), cbuf.getByte(cbuf.capacity() - 1));
+        cbuf.release();
+    }
+
+    @Test
+    public void testManyComponents() {
+        int numComponents = 1000;
+        CompositeByteBuf cbuf = compositeBuffer(numComponents);
+        ByteBuf[] buffers = new ByteBuf[numComponents / 2];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = wrappedBuffer(new byte[] { (byte) (i * 2), (byte) (i * 2 + 1) });
+        }
+        cbuf.addComponents(true, buffers);
+        for (int i = numComponents / 2; i < numComponents; i++) {
+            cbuf.addComponent(true, wrappedBuffer(new byte[] { (byte) (i * 2), (byte) (i * 2 + 1) }));
+        }
+        assertEquals(numComponents, cbuf.numComponents());
+        assertEquals(numComponents * 2, cbuf.readableBytes());
+
+        // Access the bytes in an order which rarely hits the same component twice.
+        for (int i = 0; i < numComponents * 2; i++) {
+            int index = i * 7 % (numComponents * 2);
+            assertEquals((byte) index, cbuf.getByte(index));
+            assertEquals(index / 2, cbuf.toComponentIndex(index));
+        }
+
+        cbuf.readerIndex(numComponents);
+        cbuf.discardReadComponents();
+        assertEquals(numComponents / 2, cbuf.numComponents());
+        assertEquals(0, cbuf.readerIndex());
+        for (int i = 0; i < numComponents; i++) {
+            assertEquals((byte) (i + numComponents), cbuf.getByte(i));
+        }
+        cbuf.release();
+    }
+
     @Test
     public void testIterator() {
         CompositeByteBuf cbuf = compositeBuffer();
@@ -134,6 +134,23 @@ public class ByteBufUtilTest {
                 -1));
     }
 
+    @Test
+    public void indexOfBuffer() {
+        ByteBuf haystack = Unpooled.copiedBuffer("--ab-a-abc--abcab", CharsetUtil.US_ASCII);
+        haystack.readerIndex(1);
+        assertEquals(7, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abc", CharsetUtil.US_ASCII), haystack));
+        assertEquals(2, ByteBufUtil.indexOf(Unpooled.copiedBuffer("a", CharsetUtil.US_ASCII), haystack));
+        assertEquals(1, ByteBufUtil.indexOf(Unpooled.EMPTY_BUFFER, haystack));
+        assertEquals(3, ByteBufUtil.indexOf(Unpooled.copiedBuffer("ab", CharsetUtil.US_ASCII), haystack.slice(4, 13)));
+        assertEquals(-1, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abcb", CharsetUtil.US_ASCII), haystack));
+        assertEquals(-1, ByteBufUtil.indexOf(Unpooled.copiedBuffer("-", CharsetUtil.US_ASCII),
+                                             haystack.slice(2, 2)));
+        assertEquals(-1, ByteBufUtil.indexOf(haystack.copy(0, haystack.capacity()), haystack));
+        haystack.readerIndex(14);
+        assertEquals(-1, ByteBufUtil.indexOf(Unpooled.copiedBuffer("abcb", CharsetUtil.US_ASCII), haystack));
+        assertEquals(14, ByteBufUtil.indexOf(Unpooled.copiedBuffer("cab", CharsetUtil.US_ASCII), haystack));
+    }
+
     @SuppressWarnings("deprecation")
     @Test
     public void writeShortBE() {
@@ -20,12 +20,14 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PoolArenaTest {
 
     @Test
     public void testNormalizeCapacity() throws Exception {
-        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 0, 0, 9, 999999, 0);
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 0, 0, 9, 999999, 0, false, 0, 0, null);
         int[] reqCapacities = {0, 15, 510, 1024, 1023, 1025};
         int[] expectedResult = {0, 16, 512, 1024, 1024, 2048};
         for (int i = 0; i < reqCapacities.length; i ++) {
@@ -35,7 +37,7 @@ public class PoolArenaTest {
 
     @Test
     public void testNormalizeAlignedCapacity() throws Exception {
-        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 0, 0, 9, 999999, 64);
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 0, 0, 9, 999999, 64, false, 0, 0, null);
         int[] reqCapacities = {0, 15, 510, 1024, 1023, 1025};
         int[] expectedResult = {0, 64, 512, 1024, 1024, 2048};
         for (int i = 0; i < reqCapacities.length; i ++) {
@@ -43,6 +45,68 @@ public class PoolArenaTest {
         }
     }
 
+    @Test
+    public void testNormalizeFineCapacity() throws Exception {
+        PoolArena<ByteBuffer> arena = new PoolArena.DirectArena(null, 8192, 11, 13, 8192 << 11, 0, true, 0, 0, null);
+        int[] reqCapacities = {0, 15, 510, 512, 513, 641, 1023, 1025, 9000, 16385, 100000, 131072, 131073};
+        int[] expectedResult = {0, 16, 512, 512, 640, 768, 1024, 1280, 10240, 20480, 114688, 131072, 262144};
+        for (int i = 0; i < reqCapacities.length; i ++) {
+            Assert.assertEquals(expectedResult[i], arena.normalizeCapacity(reqCapacities[i]));
+        }
+    }
+
+    @Test
+    public void testFineSizeClasses() {
+        testFineSizeClasses(0);
+        testFineSizeClasses(64);
+    }
+
+    private static void testFineSizeClasses(int normalCacheSize) {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 1, 1, 8192, 11, 0, normalCacheSize, normalCacheSize, true, 0, true);
+        int[] sizes = {600, 1500, 5000, 9000, 12000, 20000, 100000};
+        List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+        try {
+            for (int i = 0; i < 64; i ++) {
+                int size = sizes[i % sizes.length];
+                ByteBuf buffer = allocator.heapBuffer(size);
+                buffers.add(buffer);
+                Assert.assertEquals(size, buffer.capacity());
+                Assert.assertEquals(((PoolArena<?>) allocator.heapArenas().get(0)).normalizeCapacity(size),
+                        unwrap(buffer).maxLength);
+                for (int j = 0; j < size; j ++) {
+                    buffer.setByte(j, i);
+                }
+            }
+            for (int i = 0; i < buffers.size(); i ++) {
+                ByteBuf buffer = buffers.get(i);
+                for (int j = 0; j < buffer.capacity(); j ++) {
+                    Assert.assertEquals((byte) i, buffer.getByte(j));
+                }
+            }
+        } finally {
+            for (ByteBuf buffer : buffers) {
+                buffer.release();
+            }
+        }
+
+        // Release the cached buffers to the arena as well.
+        allocator.freeThreadLocalCache();
+        PoolArenaMetric metric = allocator.heapArenas().get(0);
+        Assert.assertEquals(0, metric.numActiveAllocations());
+        Assert.assertEquals(64, metric.numAllocations());
+        for (PoolChunkListMetric list : metric.chunkLists()) {
+            for (PoolChunkMetric chunk : list) {
+                // Only the runs of the last sub-page of each size class may be retained.
+                Assert.assertTrue(chunk.usage() < 10);
+            }
+        }
+    }
+
+    private static PooledByteBuf<?> unwrap(ByteBuf buffer) {
+        return (PooledByteBuf<?>) (buffer instanceof PooledByteBuf ? buffer : buffer.unwrap());
+    }
+
     @Test
     public final void testAllocationCounter() {
         final PooledByteBufAllocator allocator = new PooledByteBufAllocator(
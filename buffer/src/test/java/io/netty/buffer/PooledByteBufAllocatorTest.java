@@ -16,6 +16,8 @@
 
 package io.netty.buffer;
 
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.concurrent.FastThreadLocalThread;
 import io.netty.util.internal.PlatformDependent;
@@ -23,7 +25,10 @@ import io.netty.util.internal.SystemPropertyUtil;
 import org.junit.Assume;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -191,6 +196,64 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         }
     }
 
+    @Test
+    public void testThreadCacheMetric() {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 8, 8, 8, true, 0);
+        try {
+            // The first allocation can not be served by the cache but the released buffer is cached.
+            allocator.directBuffer(16).release();
+            allocator.directBuffer(16).release();
+            allocator.directBuffer(1000).release();
+
+            List<PoolThreadCacheMetric> caches = allocator.metric().threadCaches();
+            assertEquals(2, caches.size());
+            PoolArenaUsageMetric directArena = (PoolArenaUsageMetric) allocator.metric().directArenas().get(0);
+            PoolArenaUsageMetric heapArena = (PoolArenaUsageMetric) allocator.metric().heapArenas().get(0);
+            PoolThreadCacheMetric direct = directArena.threadCaches().get(0);
+            assertTrue(direct.isDirect());
+            assertEquals(Thread.currentThread().getName(), direct.threadName());
+            assertEquals(1, direct.numHits());
+            assertEquals(2, direct.numMisses());
+            assertEquals(0, direct.numTrimmed());
+            assertEquals(16 + 1024, direct.numCachedBytes());
+            assertEquals(16 + 1024, allocator.metric().cachedMemory());
+
+            PoolThreadCacheRegionMetric tiny = direct.tinyCaches().get(1);
+            assertEquals(16, tiny.elementSize());
+            assertEquals(8, tiny.maxNumElements());
+            assertEquals(1, tiny.numElements());
+            assertEquals(1, tiny.numHits());
+            assertEquals(1, tiny.numMisses());
+            PoolThreadCacheRegionMetric small = direct.smallCaches().get(1);
+            assertEquals(1024, small.elementSize());
+            assertEquals(1, small.numElements());
+
+            PoolThreadCacheMetric heap = heapArena.threadCaches().get(0);
+            assertFalse(heap.isDirect());
+            assertEquals(0, heap.numHits());
+            assertEquals(0, heap.numMisses());
+            assertEquals(0, heap.numCachedBytes());
+
+            long[] histogram = directArena.allocationSizeHistogram();
+            assertEquals(2, histogram[0]);
+            assertEquals(1, histogram[6]);
+            assertEquals(3, sum(histogram));
+            assertEquals(0, sum(heapArena.allocationSizeHistogram()));
+        } finally {
+            allocator.freeThreadLocalCache();
+        }
+        assertTrue(allocator.metric().threadCaches().isEmpty());
+        assertEquals(0, allocator.metric().cachedMemory());
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
     @Test
     public void testAllocNotNull() {
         PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, 0);
@@ -240,6 +303,180 @@ public class PooledByteBufAllocatorTest extends AbstractByteBufAllocatorTest<Poo
         assertFalse(lists.get(5).iterator().hasNext());
     }
 
+    @Test(timeout = 3000)
+    public void testTrim() throws InterruptedException {
+        final PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 0, 8192, 11, 64, 64, 64, true);
+        PoolArenaMetric arena = allocator.metric().heapArenas().get(0);
+
+        // Buffers cached by another thread.
+        final CountDownLatch cached = new CountDownLatch(1);
+        final CountDownLatch trimmed = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread t = new FastThreadLocalThread(new Runnable() {
+            @Override
+            public void run() {
+                allocator.heapBuffer(8192).release();
+                cached.countDown();
+                try {
+                    trimmed.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                // The cache is freed on the next allocation, even if its size is too large to be cached.
+                allocator.heapBuffer(64 * 1024).release();
+                done.countDown();
+            }
+        });
+        t.start();
+        cached.await();
+
+        // Buffers cached by this thread and a sub-page which is retained although it is unused.
+        allocator.heapBuffer(100).release();
+        allocator.heapBuffer(16 * 1024).release();
+        assertEquals(1, numChunks(arena));
+
+        allocator.trim();
+        assertEquals(8192, allocator.metric().cachedMemory());
+        // The buffer cached by the other thread still uses the chunk.
+        assertEquals(1, numChunks(arena));
+        trimmed.countDown();
+        done.await();
+
+        allocator.trim();
+        assertEquals(0, numChunks(arena));
+        assertEquals(0, arena.numActiveAllocations());
+        t.join();
+    }
+
+    @Test(timeout = 3000)
+    public void testTrimFreesIdleEventExecutorCache() throws Exception {
+        final PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 0, 8192, 11, 64, 64, 64, true);
+        PoolArenaMetric arena = allocator.metric().heapArenas().get(0);
+        EventExecutor executor = new DefaultEventExecutor();
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    allocator.heapBuffer(8192).release();
+                }
+            }).sync();
+            assertEquals(1, numChunks(arena));
+
+            // The executor does not allocate anymore, so the cache is freed by a task submitted to it.
+            allocator.trim();
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }).sync();
+            assertEquals(0, numChunks(arena));
+            assertEquals(0, arena.numActiveAllocations());
+        } finally {
+            executor.shutdownGracefully(0, 0, MILLISECONDS).sync();
+        }
+    }
+
+    @Test
+    public void testChunkReleaseWatermark() {
+        int chunkSize = 8192 << 11;
+        assertEquals(2, numChunksAfterRelease(0));
+        assertEquals(1, numChunksAfterRelease(chunkSize));
+        assertEquals(1, numChunksAfterRelease(2 * chunkSize - 1));
+        assertEquals(2, numChunksAfterRelease(2 * chunkSize));
+    }
+
+    @Test
+    public void testMaxChunkIdleTime() throws InterruptedException {
+        assertEquals(1, numChunksAfterIdle(0, 100));
+        assertEquals(1, numChunksAfterIdle(60000, 100));
+        assertEquals(0, numChunksAfterIdle(1, 100));
+    }
+
+    private static int numChunksAfterRelease(long chunkReleaseWatermark) {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 1, 0, 8192, 11, 0, 0, 0, true, 0, false, 0, chunkReleaseWatermark);
+        PoolArenaMetric arena = allocator.metric().heapArenas().get(0);
+        ByteBuf small = allocator.heapBuffer(8192);
+        ByteBuf large = allocator.heapBuffer(allocator.metric().chunkSize());
+        assertEquals(2, numChunks(arena));
+        // The chunk of the small buffer is not destroyed by default when it becomes unused.
+        small.release();
+        int numChunks = numChunks(arena);
+        large.release();
+        return numChunks;
+    }
+
+    private static int numChunksAfterIdle(long maxChunkIdleTimeMillis, long sleepMillis) throws InterruptedException {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 1, 0, 8192, 11, 0, 0, 0, true, 0, false, maxChunkIdleTimeMillis, 0);
+        PoolArenaMetric arena = allocator.metric().heapArenas().get(0);
+        ByteBuf small = allocator.heapBuffer(8192);
+        ByteBuf large = allocator.heapBuffer(allocator.metric().chunkSize());
+        small.release();
+        Thread.sleep(sleepMillis);
+        // Idle chunks are destroyed once memory is released to the arena again.
+        large.release();
+        return numChunks(arena);
+    }
+
+    @Test
+    public void testDirectChunkAllocator() {
+        final List<ByteBuffer> allocated = new ArrayList<ByteBuffer>();
+        final List<ByteBuffer> freed = new ArrayList<ByteBuffer>();
+        DirectChunkAllocator chunkAllocator = new DirectChunkAllocator() {
+            @Override
+            public String memoryBacking() {
+                return "test";
+            }
+
+            @Override
+            public ByteBuffer allocate(int capacity) {
+                if (!allocated.isEmpty()) {
+                    // Only the first chunk is allocated by this allocator.
+                    return null;
+                }
+                ByteBuffer memory = ByteBuffer.allocateDirect(capacity);
+                allocated.add(memory);
+                return memory;
+            }
+
+            @Override
+            public void free(ByteBuffer memory) {
+                freed.add(memory);
+            }
+        };
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 11, 0, 0, 0, true, 0, false, 0, 0, chunkAllocator);
+        int chunkSize = allocator.metric().chunkSize();
+        ByteBuf first = allocator.directBuffer(chunkSize);
+        ByteBuf second = allocator.directBuffer(chunkSize);
+        assertEquals(1, allocated.size());
+        assertEquals(chunkSize, allocated.get(0).capacity());
+
+        List<String> memoryBackings = new ArrayList<String>();
+        for (PoolChunkMetric chunk : allocator.metric().directArenas().get(0).chunkLists().get(5)) {
+            memoryBackings.add(((PoolChunkMemoryMetric) chunk).memoryBacking());
+        }
+        Collections.sort(memoryBackings);
+        assertEquals(Arrays.asList("direct", "test"), memoryBackings);
+
+        assertTrue(second.release());
+        assertTrue(freed.isEmpty());
+        assertTrue(first.release());
+        assertEquals(allocated, freed);
+    }
+
+    private static int numChunks(PoolArenaMetric arena) {
+        int numChunks = 0;
+        for (PoolChunkListMetric list : arena.chunkLists()) {
+            for (PoolChunkMetric ignored : list) {
+                numChunks ++;
+            }
+        }
+        return numChunks;
+    }
+
     @Test (timeout = 4000)
     public void testThreadCacheDestroyedByThreadCleaner() throws InterruptedException {
         testThreadCacheDestroyed(false);
@@ -38,6 +38,7 @@ public class DatagramDnsResponseEncoder
     extends MessageToMessageEncoder<AddressedEnvelope<DnsResponse, InetSocketAddress>> {
 
     private final DnsRecordEncoder recordEncoder;
+    private final boolean compressNames;
 
     /**
      * Creates a new encoder with {@linkplain DnsRecordEncoder#DEFAULT the default record encoder}.
@@ -50,7 +51,19 @@ public class DatagramDnsResponseEncoder
      * Creates a new encoder with the specified {@code recordEncoder}.
      */
     public DatagramDnsResponseEncoder(DnsRecordEncoder recordEncoder) {
+        this(recordEncoder, false);
+    }
+
+    /**
+     * Creates a new encoder with the specified {@code recordEncoder}.
+     *
+     * @param compressNames {@code true} if the domain names written by a {@link DefaultDnsRecordEncoder} should be
+     *                      compressed as described in RFC 1035, 4.1.4. Message compression, which keeps more answers
+     *                      within the 512 bytes of a datagram
+     */
+    public DatagramDnsResponseEncoder(DnsRecordEncoder recordEncoder, boolean compressNames) {
         this.recordEncoder = checkNotNull(recordEncoder, "recordEncoder");
+        this.compressNames = compressNames;
     }
 
     @Override
@@ -62,6 +75,7 @@ public class DatagramDnsResponseEncoder
         final ByteBuf buf = allocateBuffer(ctx, in);
 
         boolean success = false;
+        DnsNameCompressor compressor = compressNames ? DnsNameCompressor.start(buf) : null;
         try {
             encodeHeader(response, buf);
             encodeQuestions(response, buf);
@@ -70,6 +84,9 @@ public class DatagramDnsResponseEncoder
             encodeRecords(response, DnsSection.ADDITIONAL, buf);
             success = true;
         } finally {
+            if (compressor != null) {
+                compressor.finish();
+            }
             if (!success) {
                 buf.release();
             }
@@ -30,6 +30,9 @@ public class DefaultDnsRecordDecoder implements DnsRecordDecoder {
 
     static final String ROOT = ".";
 
+    // See https://tools.ietf.org/html/rfc1035#section-2.3.4
+    private static final int MAX_NAME_LENGTH = 255;
+
     /**
      * Creates a new instance.
      */
@@ -125,6 +128,8 @@ public class DefaultDnsRecordDecoder implements DnsRecordDecoder {
     public static String decodeName(ByteBuf in) {
         int position = -1;
         int checked = 0;
+        // The length of the name on the wire, counting the length octets and the terminating zero octet.
+        int length = 1;
         final int end = in.writerIndex();
         final int readable = in.readableBytes();
 
@@ -167,6 +172,11 @@ public class DefaultDnsRecordDecoder implements DnsRecordDecoder {
                 if (!in.isReadable(len)) {
                     throw new CorruptedFrameException("truncated label in a name");
                 }
+                // Also bounds the name when the pointers make a label repeat, however long the message is.
+                length += len + 1;
+                if (length > MAX_NAME_LENGTH) {
+                    throw new CorruptedFrameException("name is longer than " + MAX_NAME_LENGTH + " bytes");
+                }
                 name.append(in.toString(in.readerIndex(), len, CharsetUtil.UTF_8)).append('.');
                 in.skipBytes(len);
             } else { // len == 0
@@ -71,7 +71,12 @@ public class DefaultDnsRecordEncoder implements DnsRecordEncoder {
 
     private void encodePtrRecord(DnsPtrRecord record, ByteBuf out) throws Exception {
         encodeRecord0(record, out);
+
+        // The length of the RDATA is only known once the (possibly compressed) hostname is written.
+        int lengthIndex = out.writerIndex();
+        out.writeShort(0);
         encodeName(record.hostname(), out);
+        out.setShort(lengthIndex, out.writerIndex() - lengthIndex - 2);
     }
 
     private void encodeOptPseudoRecord(DnsOptPseudoRecord record, ByteBuf out) throws Exception {
@@ -140,6 +145,10 @@ public class DefaultDnsRecordEncoder implements DnsRecordEncoder {
         out.writeBytes(content, content.readerIndex(), contentLen);
     }
 
+    /**
+     * Writes the given domain name. The name is compressed when the enclosing message is encoded by an encoder
+     * which was asked to compress the names, like {@link DatagramDnsResponseEncoder}.
+     */
     protected void encodeName(String name, ByteBuf buf) throws Exception {
         if (ROOT.equals(name)) {
             // Root domain
@@ -147,6 +156,11 @@ public class DefaultDnsRecordEncoder implements DnsRecordEncoder {
             return;
         }
 
+        DnsNameCompressor compressor = DnsNameCompressor.current(buf);
+        if (compressor != null && compressor.encodeName(name, buf)) {
+            return;
+        }
+
         final String[] labels = name.split("\\.");
         for (String label : labels) {
             final int labelLen = label.length();
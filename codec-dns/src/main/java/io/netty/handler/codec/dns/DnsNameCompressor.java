@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.dns;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AsciiString;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.InternalThreadLocalMap;
+
+import java.util.Arrays;
+
+/**
+ * Compresses the domain names of a single DNS message as described in
+ * <a href="https://tools.ietf.org/html/rfc1035#section-4.1.4">RFC 1035, 4.1.4. Message compression</a>.
+ * <p>
+ * The offsets of all the name suffixes written so far are kept in a hash table, so a name whose suffix was already
+ * written is ended with a pointer to it. The instances are reused per thread and the suffixes are hashed and compared
+ * in place, so no garbage is produced while encoding a message.
+ */
+final class DnsNameCompressor {
+
+    private static final FastThreadLocal<DnsNameCompressor> COMPRESSORS = new FastThreadLocal<DnsNameCompressor>() {
+        @Override
+        protected DnsNameCompressor initialValue() {
+            return new DnsNameCompressor();
+        }
+    };
+
+    // The offset of a pointer only has 14 bits.
+    private static final int MAX_OFFSET = 0x3FFF;
+    // A name can not be longer than 255 bytes, so it can not have more labels than this.
+    private static final int MAX_LABELS = 128;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int[] labelStarts = new int[MAX_LABELS];
+    private final int[] suffixHashes = new int[MAX_LABELS];
+
+    // Open addressing hash table of the suffixes written so far, a suffix is the region [start, end) of the name.
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private ByteBuf buf;
+    private int messageStart;
+
+    private DnsNameCompressor() { }
+
+    /**
+     * Starts the compression of the names of a DNS message which begins at the current {@code writerIndex} of the
+     * given {@link ByteBuf}. {@link #finish()} must be called once the message is encoded.
+     */
+    static DnsNameCompressor start(ByteBuf buf) {
+        DnsNameCompressor compressor = COMPRESSORS.get();
+        compressor.buf = buf;
+        compressor.messageStart = buf.writerIndex();
+        return compressor;
+    }
+
+    /**
+     * Returns the {@link DnsNameCompressor} which was {@linkplain #start(ByteBuf) started} for the given
+     * {@link ByteBuf} by the current thread, or {@code null} if the names written to it must not be compressed.
+     */
+    static DnsNameCompressor current(ByteBuf buf) {
+        InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getIfSet();
+        if (threadLocalMap == null || !COMPRESSORS.isSet(threadLocalMap)) {
+            return null;
+        }
+        DnsNameCompressor compressor = COMPRESSORS.get(threadLocalMap);
+        return compressor.buf == buf ? compressor : null;
+    }
+
+    /**
+     * Forgets all the names of the current message.
+     */
+    void finish() {
+        if (size != 0) {
+            Arrays.fill(names, null);
+            size = 0;
+        }
+        buf = null;
+    }
+
+    /**
+     * Writes the given name, ending it with a pointer if one of its suffixes was already written.
+     *
+     * @return {@code false} if the name has too many labels to be compressed, so nothing was written
+     */
+    boolean encodeName(String name, ByteBuf buf) {
+        // Find the labels, stopping at the first empty label which ends the name.
+        int labels = 0;
+        int end = 0;
+        for (int start = 0;;) {
+            int dot = name.indexOf('.', start);
+            int labelEnd = dot < 0 ? name.length() : dot;
+            if (labelEnd == start) {
+                break;
+            }
+            if (labels == MAX_LABELS) {
+                return false;
+            }
+            labelStarts[labels++] = start;
+            end = labelEnd;
+            if (dot < 0) {
+                break;
+            }
+            start = dot + 1;
+        }
+
+        // Hash all the suffixes at once, from the last label to the first one.
+        int hash = 0;
+        for (int i = labels - 1, pos = end; i >= 0; i--) {
+            int labelStart = labelStarts[i];
+            while (pos > labelStart) {
+                hash = 31 * hash + name.charAt(--pos);
+            }
+            suffixHashes[i] = hash;
+        }
+
+        for (int i = 0; i < labels; i++) {
+            int labelStart = labelStarts[i];
+            int offset = find(name, labelStart, end, suffixHashes[i]);
+            if (offset >= 0) {
+                buf.writeShort(0xC000 | offset);
+                return true;
+            }
+            offset = buf.writerIndex() - messageStart;
+            if (offset <= MAX_OFFSET) {
+                add(name, labelStart, end, suffixHashes[i], offset);
+            }
+
+            int labelEnd = i + 1 < labels ? labelStarts[i + 1] - 1 : end;
+            buf.writeByte(labelEnd - labelStart);
+            for (int j = labelStart; j < labelEnd; j++) {
+                buf.writeByte(AsciiString.c2b(name.charAt(j)));
+            }
+        }
+        buf.writeByte(0); // marks end of name field
+        return true;
+    }
+
+    private int find(String name, int start, int end, int hash) {
+        final int length = end - start;
+        final int mask = names.length - 1;
+        for (int i = index(hash, mask);; i = i + 1 & mask) {
+            String candidate = names[i];
+            if (candidate == null) {
+                return -1;
+            }
+            if (hashes[i] == hash && ends[i] - starts[i] == length &&
+                    name.regionMatches(start, candidate, starts[i], length)) {
+                return offsets[i];
+            }
+        }
+    }
+
+    private void add(String name, int start, int end, int hash, int offset) {
+        if (size + 1 << 1 > names.length) {
+            grow();
+        }
+        final int mask = names.length - 1;
+        int i = index(hash, mask);
+        while (names[i] != null) {
+            i = i + 1 & mask;
+        }
+        names[i] = name;
+        starts[i] = start;
+        ends[i] = end;
+        hashes[i] = hash;
+        offsets[i] = offset;
+        size++;
+    }
+
+    private void grow() {
+        String[] oldNames = names;
+        int[] oldStarts = starts;
+        int[] oldEnds = ends;
+        int[] oldHashes = hashes;
+        int[] oldOffsets = offsets;
+
+        int capacity = oldNames.length << 1;
+        names = new String[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        hashes = new int[capacity];
+        offsets = new int[capacity];
+        size = 0;
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                add(oldNames[i], oldStarts[i], oldEnds[i], oldHashes[i], oldOffsets[i]);
+            }
+        }
+    }
+
+    private static int index(int hash, int mask) {
+        return (hash ^ hash >>> 16) & mask;
+    }
+}
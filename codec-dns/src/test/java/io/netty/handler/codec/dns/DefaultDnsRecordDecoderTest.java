@@ -17,6 +17,7 @@ package io.netty.handler.codec.dns;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -60,6 +61,21 @@ public class DefaultDnsRecordDecoderTest {
         testDecodeName(".", Unpooled.wrappedBuffer(new byte[] { 0, 0 }));
     }
 
+    @Test(expected = CorruptedFrameException.class)
+    public void testDecodeNameTooLong() {
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            // 4 labels of 63 bytes make a name of 257 bytes.
+            for (int i = 0; i < 4; i++) {
+                buffer.writeByte(63).writeZero(63);
+            }
+            buffer.writeByte(0);
+            DefaultDnsRecordDecoder.decodeName(buffer);
+        } finally {
+            buffer.release();
+        }
+    }
+
     private static void testDecodeName(String expected, ByteBuf buffer) {
         try {
             DefaultDnsRecordDecoder decoder = new DefaultDnsRecordDecoder();
@@ -55,6 +55,65 @@ public class DefaultDnsRecordEncoderTest {
         testEncodeName(new byte[] { 0 }, ".");
     }
 
+    @Test
+    public void testEncodeNamesWithCompression() throws Exception {
+        DefaultDnsRecordEncoder encoder = new DefaultDnsRecordEncoder();
+        ByteBuf out = Unpooled.buffer();
+        ByteBuf expectedBuf = Unpooled.wrappedBuffer(new byte[] {
+                3, 'w', 'w', 'w', 5, 'n', 'e', 't', 't', 'y', 2, 'i', 'o', 0, // www.netty.io at 0
+                (byte) 0xC0, 4, // netty.io. points to offset 4
+                4, 'm', 'a', 'i', 'l', (byte) 0xC0, 4, // mail.netty.io at 16
+                (byte) 0xC0, 0, // www.netty.io points to offset 0
+                (byte) 0xC0, 10, // io points to offset 10
+                5, 'N', 'E', 'T', 'T', 'Y', (byte) 0xC0, 10, // names are compared case-sensitively
+                0 // the root is never compressed
+        });
+        DnsNameCompressor compressor = DnsNameCompressor.start(out);
+        try {
+            encoder.encodeName("www.netty.io", out);
+            encoder.encodeName("netty.io.", out);
+            encoder.encodeName("mail.netty.io", out);
+            encoder.encodeName("www.netty.io", out);
+            encoder.encodeName("io", out);
+            encoder.encodeName("NETTY.io", out);
+            encoder.encodeName(".", out);
+            assertEquals(expectedBuf, out);
+        } finally {
+            compressor.finish();
+            out.release();
+            expectedBuf.release();
+        }
+    }
+
+    @Test
+    public void testEncodeNameWithoutCompressionForOtherBuffer() throws Exception {
+        ByteBuf other = Unpooled.buffer();
+        DnsNameCompressor compressor = DnsNameCompressor.start(other);
+        try {
+            other.writeZero(12);
+            new DefaultDnsRecordEncoder().encodeName("netty.io", other);
+            testEncodeName(new byte[] { 5, 'n', 'e', 't', 't', 'y', 2, 'i', 'o', 0 }, "netty.io");
+        } finally {
+            compressor.finish();
+            other.release();
+        }
+    }
+
+    @Test
+    public void testEncodePtrRecord() throws Exception {
+        DefaultDnsRecordEncoder encoder = new DefaultDnsRecordEncoder();
+        ByteBuf out = Unpooled.buffer();
+        try {
+            encoder.encodeRecord(new DefaultDnsPtrRecord("4.3.2.1.in-addr.arpa", DnsRecord.CLASS_IN, 60, "netty.io"),
+                    out);
+            DnsRecord record = DnsRecordDecoder.DEFAULT.decodeRecord(out);
+            assertEquals("netty.io.", ((DnsPtrRecord) record).hostname());
+            assertEquals(0, out.readableBytes());
+        } finally {
+            out.release();
+        }
+    }
+
     private static void testEncodeName(byte[] expected, String name) throws Exception {
         DefaultDnsRecordEncoder encoder = new DefaultDnsRecordEncoder();
         ByteBuf out = Unpooled.buffer();
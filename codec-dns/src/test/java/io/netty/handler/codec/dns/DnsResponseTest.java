@@ -92,6 +92,48 @@ public class DnsResponseTest {
         }
     }
 
+    @Test
+    public void writeCompressedResponseTest() throws Exception {
+        EmbeddedChannel compressing = new EmbeddedChannel(
+                new DatagramDnsResponseEncoder(DnsRecordEncoder.DEFAULT, true));
+        EmbeddedChannel plain = new EmbeddedChannel(new DatagramDnsResponseEncoder());
+        EmbeddedChannel decoder = new EmbeddedChannel(new DatagramDnsResponseDecoder());
+
+        assertTrue(compressing.writeOutbound(newResponse()));
+        assertTrue(plain.writeOutbound(newResponse()));
+        DatagramPacket compressed = compressing.readOutbound();
+        DatagramPacket uncompressed = plain.readOutbound();
+        assertTrue(compressed.content().readableBytes() < uncompressed.content().readableBytes());
+        uncompressed.release();
+
+        decoder.writeInbound(compressed);
+        AddressedEnvelope<DnsResponse, InetSocketAddress> envelope = decoder.readInbound();
+        DnsResponse response = envelope.content();
+        assertEquals("service.example.com.", response.recordAt(DnsSection.QUESTION).name());
+        assertEquals(3, response.count(DnsSection.ANSWER));
+        for (int i = 0; i < 3; i++) {
+            DnsPtrRecord record = response.recordAt(DnsSection.ANSWER, i);
+            assertEquals("service.example.com.", record.name());
+            assertEquals("host" + i + ".example.com.", record.hostname());
+        }
+        envelope.release();
+
+        assertFalse(compressing.finish());
+        assertFalse(plain.finish());
+        assertFalse(decoder.finish());
+    }
+
+    private static DatagramDnsResponse newResponse() {
+        DatagramDnsResponse response = new DatagramDnsResponse(
+                new InetSocketAddress(0), new InetSocketAddress(0), 1);
+        response.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion("service.example.com", DnsRecordType.PTR));
+        for (int i = 0; i < 3; i++) {
+            response.addRecord(DnsSection.ANSWER, new DefaultDnsPtrRecord(
+                    "service.example.com", DnsRecord.CLASS_IN, 60, "host" + i + ".example.com"));
+        }
+        return response;
+    }
+
     @Rule
     public ExpectedException exception = ExpectedException.none();
 
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.dns;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.NetUtil;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TcpDnsTest {
+
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress(NetUtil.LOCALHOST4, 53);
+
+    @Test
+    public void testEncodeQuery() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new TcpDnsQueryEncoder());
+        DnsQuery query = new DefaultDnsQuery(42).setRecord(
+                DnsSection.QUESTION, new DefaultDnsQuestion("netty.io", DnsRecordType.A));
+        assertTrue(channel.writeOutbound(query));
+
+        ByteBuf buf = channel.readOutbound();
+        assertEquals(buf.readableBytes() - 2, buf.readUnsignedShort());
+
+        // Without its length prefix the message is the same as the one sent over UDP.
+        EmbeddedChannel decoder = new EmbeddedChannel(new DatagramDnsQueryDecoder());
+        assertTrue(decoder.writeInbound(new DatagramPacket(buf, ADDRESS, ADDRESS)));
+        DnsQuery decoded = decoder.readInbound();
+        assertEquals(42, decoded.id());
+        assertEquals("netty.io.", decoded.recordAt(DnsSection.QUESTION).name());
+        decoded.release();
+
+        assertFalse(channel.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testDecodeResponsesInFragments() throws Exception {
+        ByteBuf messages = Unpooled.buffer();
+        for (int id = 1; id <= 2; id++) {
+            ByteBuf message = encodeResponse(id);
+            messages.writeShort(message.readableBytes()).writeBytes(message);
+            message.release();
+        }
+
+        EmbeddedChannel channel = new EmbeddedChannel(new TcpDnsResponseDecoder());
+        // Split the first message, so it is only decoded once the rest of it is received.
+        int half = messages.readableBytes() / 4;
+        assertFalse(channel.writeInbound(messages.readRetainedSlice(half)));
+        assertNull(channel.readInbound());
+        assertTrue(channel.writeInbound(messages));
+
+        for (int id = 1; id <= 2; id++) {
+            DnsResponse response = channel.readInbound();
+            assertEquals(id, response.id());
+            assertEquals("netty.io.", response.recordAt(DnsSection.QUESTION).name());
+            assertEquals(4, response.count(DnsSection.ANSWER));
+            for (int i = 0; i < 4; i++) {
+                DnsPtrRecord record = response.recordAt(DnsSection.ANSWER, i);
+                assertEquals("netty.io.", record.name());
+                assertEquals("host" + i + ".netty.io.", record.hostname());
+            }
+            response.release();
+        }
+        assertFalse(channel.finish());
+    }
+
+    private static ByteBuf encodeResponse(int id) {
+        DatagramDnsResponse response = new DatagramDnsResponse(ADDRESS, ADDRESS, id);
+        response.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion("netty.io", DnsRecordType.PTR));
+        for (int i = 0; i < 4; i++) {
+            response.addRecord(DnsSection.ANSWER,
+                    new DefaultDnsPtrRecord("netty.io", DnsRecord.CLASS_IN, 60, "host" + i + ".netty.io"));
+        }
+
+        EmbeddedChannel encoder = new EmbeddedChannel(new DatagramDnsResponseEncoder(DnsRecordEncoder.DEFAULT, true));
+        assertTrue(encoder.writeOutbound(response));
+        DatagramPacket packet = encoder.readOutbound();
+        assertFalse(encoder.finish());
+        return packet.content();
+    }
+}
@@ -15,14 +15,20 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.BrotliEncoder;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.compression.ZstdEncoder;
 import io.netty.handler.codec.compression.ZlibWrapper;
 
 /**
- * Compresses an {@link HttpMessage} and an {@link HttpContent} in {@code gzip} or
- * {@code deflate} encoding while respecting the {@code "Accept-Encoding"} header.
+ * Compresses an {@link HttpMessage} and an {@link HttpContent} in {@code gzip},
+ * {@code deflate}, {@code br} or {@code zstd} encoding while respecting the {@code "Accept-Encoding"} header.
+ * {@code br} is only used if {@link Brotli#isAvailable()} and {@code zstd} only if {@link Zstd#isAvailable()}.
  * If there is no matching encoding, no compression is done.  For more
  * information on how this handler modifies the message, please refer to
  * {@link HttpContentEncoder}.
@@ -33,6 +39,8 @@ public class HttpContentCompressor extends HttpContentEncoder {
     private final int windowBits;
     private final int memLevel;
     private final int contentSizeThreshold;
+    private final int brotliQuality;
+    private final int zstdLevel;
     private ChannelHandlerContext ctx;
 
     /**
@@ -103,6 +111,76 @@ public class HttpContentCompressor extends HttpContentEncoder {
      *        number. {@code 0} will enable compression for all responses.
      */
     public HttpContentCompressor(int compressionLevel, int windowBits, int memLevel, int contentSizeThreshold) {
+        this(compressionLevel, windowBits, memLevel, contentSizeThreshold, BrotliEncoder.DEFAULT_QUALITY);
+    }
+
+    /**
+     * Creates a new handler with the specified compression level, window size,
+     * memory level and brotli quality.
+     *
+     * @param compressionLevel
+     *        {@code 1} yields the fastest compression and {@code 9} yields the
+     *        best compression.  {@code 0} means no compression.  The default
+     *        compression level is {@code 6}.
+     * @param windowBits
+     *        The base two logarithm of the size of the history buffer.  The
+     *        value should be in the range {@code 9} to {@code 15} inclusive.
+     *        Larger values result in better compression at the expense of
+     *        memory usage.  The default value is {@code 15}.
+     * @param memLevel
+     *        How much memory should be allocated for the internal compression
+     *        state.  {@code 1} uses minimum memory and {@code 9} uses maximum
+     *        memory.  Larger values result in better and faster compression
+     *        at the expense of memory usage.  The default value is {@code 8}
+     * @param contentSizeThreshold
+     *        The response body is compressed when the size of the response
+     *        body exceeds the threshold. The value should be a non negative
+     *        number. {@code 0} will enable compression for all responses.
+     * @param brotliQuality
+     *        The quality used for the {@code br} encoding.  {@code 0} yields the
+     *        fastest compression and {@code 11} yields the best compression.
+     *        The default quality is {@code 4}.
+     */
+    public HttpContentCompressor(int compressionLevel, int windowBits, int memLevel, int contentSizeThreshold,
+                                 int brotliQuality) {
+        this(compressionLevel, windowBits, memLevel, contentSizeThreshold, brotliQuality,
+                ZstdEncoder.DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Creates a new handler with the specified compression level, window size,
+     * memory level, brotli quality and zstd compression level.
+     *
+     * @param compressionLevel
+     *        {@code 1} yields the fastest compression and {@code 9} yields the
+     *        best compression.  {@code 0} means no compression.  The default
+     *        compression level is {@code 6}.
+     * @param windowBits
+     *        The base two logarithm of the size of the history buffer.  The
+     *        value should be in the range {@code 9} to {@code 15} inclusive.
+     *        Larger values result in better compression at the expense of
+     *        memory usage.  The default value is {@code 15}.
+     * @param memLevel
+     *        How much memory should be allocated for the internal compression
+     *        state.  {@code 1} uses minimum memory and {@code 9} uses maximum
+     *        memory.  Larger values result in better and faster compression
+     *        at the expense of memory usage.  The default value is {@code 8}
+     * @param contentSizeThreshold
+     *        The response body is compressed when the size of the response
+     *        body exceeds the threshold. The value should be a non negative
+     *        number. {@code 0} will enable compression for all responses.
+     * @param brotliQuality
+     *        The quality used for the {@code br} encoding.  {@code 0} yields the
+     *        fastest compression and {@code 11} yields the best compression.
+     *        The default quality is {@code 4}.
+     * @param zstdLevel
+     *        The compression level used for the {@code zstd} encoding.  It must be
+     *        between {@link Zstd#minCompressionLevel()} (negative levels yield the
+     *        fastest compression) and {@link Zstd#maxCompressionLevel()} ({@code 22}
+     *        yields the best compression).  The default level is {@code 3}.
+     */
+    public HttpContentCompressor(int compressionLevel, int windowBits, int memLevel, int contentSizeThreshold,
+                                 int brotliQuality, int zstdLevel) {
         if (compressionLevel < 0 || compressionLevel > 9) {
             throw new IllegalArgumentException(
                     "compressionLevel: " + compressionLevel +
@@ -120,10 +198,25 @@ public class HttpContentCompressor extends HttpContentEncoder {
             throw new IllegalArgumentException(
                     "contentSizeThreshold: " + contentSizeThreshold + " (expected: non negative number)");
         }
+        if (brotliQuality < 0 || brotliQuality > 11) {
+            throw new IllegalArgumentException(
+                    "brotliQuality: " + brotliQuality + " (expected: 0-11)");
+        }
+        if (Zstd.isAvailable()) {
+            // Use the same bounds as the ZstdEncoder, so each level it supports can be used.
+            int minLevel = Zstd.minCompressionLevel();
+            int maxLevel = Zstd.maxCompressionLevel();
+            if (zstdLevel < minLevel || zstdLevel > maxLevel) {
+                throw new IllegalArgumentException(
+                        "zstdLevel: " + zstdLevel + " (expected: " + minLevel + '-' + maxLevel + ')');
+            }
+        }
         this.compressionLevel = compressionLevel;
         this.windowBits = windowBits;
         this.memLevel = memLevel;
         this.contentSizeThreshold = contentSizeThreshold;
+        this.brotliQuality = brotliQuality;
+        this.zstdLevel = zstdLevel;
     }
 
     @Override
@@ -147,28 +240,83 @@ public class HttpContentCompressor extends HttpContentEncoder {
             return null;
         }
 
+        String targetContentEncoding = determineEncoding(acceptEncoding);
+        if (targetContentEncoding == null) {
+            return null;
+        }
+
+        ChannelHandler encoder;
+        if ("br".equals(targetContentEncoding)) {
+            encoder = new BrotliEncoder(brotliQuality);
+        } else if ("zstd".equals(targetContentEncoding)) {
+            encoder = new ZstdEncoder(zstdLevel);
+        } else if ("gzip".equals(targetContentEncoding)) {
+            encoder = ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP, compressionLevel, windowBits, memLevel);
+        } else if ("deflate".equals(targetContentEncoding)) {
+            encoder = ZlibCodecFactory.newZlibEncoder(ZlibWrapper.ZLIB, compressionLevel, windowBits, memLevel);
+        } else {
+            throw new Error();
+        }
+
+        return new Result(
+                targetContentEncoding,
+                new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
+                        ctx.channel().config(), encoder));
+    }
+
+    /**
+     * Returns the content encoding ({@code "br"}, {@code "zstd"}, {@code "gzip"} or {@code "deflate"}) to use for
+     * the given {@code "Accept-Encoding"} header, or {@code null} if the content should not be compressed.
+     * {@code "br"} and {@code "zstd"} (in this order) are chosen if they are available and accepted with a quality
+     * which is not lower than the one of any other supported encoding (which includes the quality {@code "*"} gives
+     * to {@code "gzip"} and {@code "deflate"}), otherwise {@link #determineWrapper(String)} is used.
+     */
+    @SuppressWarnings("FloatingPointEquality")
+    protected String determineEncoding(String acceptEncoding) {
+        boolean brotli = Brotli.isAvailable();
+        boolean zstd = Zstd.isAvailable();
+        if (brotli || zstd) {
+            float brQ = -1.0f;
+            float zstdQ = -1.0f;
+            float gzipQ = -1.0f;
+            float deflateQ = -1.0f;
+            float starQ = -1.0f;
+            for (String encoding : acceptEncoding.split(",")) {
+                float q = qValue(encoding);
+                if (encoding.contains("*")) {
+                    starQ = q;
+                } else if (brotli && encoding.contains("br")) {
+                    brQ = Math.max(brQ, q);
+                } else if (zstd && encoding.contains("zstd")) {
+                    zstdQ = Math.max(zstdQ, q);
+                } else if (encoding.contains("gzip")) {
+                    gzipQ = Math.max(gzipQ, q);
+                } else if (encoding.contains("deflate")) {
+                    deflateQ = Math.max(deflateQ, q);
+                }
+            }
+            // Just like in determineWrapper(String) "*" applies to gzip and deflate unless they are listed explicitly.
+            float zlibQ = Math.max(gzipQ != -1.0f ? gzipQ : starQ, deflateQ != -1.0f ? deflateQ : starQ);
+            if (brQ > 0.0f && brQ >= zstdQ && brQ >= zlibQ) {
+                return "br";
+            }
+            if (zstdQ > 0.0f && zstdQ >= zlibQ) {
+                return "zstd";
+            }
+        }
+
         ZlibWrapper wrapper = determineWrapper(acceptEncoding);
         if (wrapper == null) {
             return null;
         }
-
-        String targetContentEncoding;
         switch (wrapper) {
         case GZIP:
-            targetContentEncoding = "gzip";
-            break;
+            return "gzip";
         case ZLIB:
-            targetContentEncoding = "deflate";
-            break;
+            return "deflate";
         default:
             throw new Error();
         }
-
-        return new Result(
-                targetContentEncoding,
-                new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
-                        ctx.channel().config(), ZlibCodecFactory.newZlibEncoder(
-                        wrapper, compressionLevel, windowBits, memLevel)));
     }
 
     @SuppressWarnings("FloatingPointEquality")
@@ -177,16 +325,7 @@ public class HttpContentCompressor extends HttpContentEncoder {
         float gzipQ = -1.0f;
         float deflateQ = -1.0f;
         for (String encoding : acceptEncoding.split(",")) {
-            float q = 1.0f;
-            int equalsPos = encoding.indexOf('=');
-            if (equalsPos != -1) {
-                try {
-                    q = Float.parseFloat(encoding.substring(equalsPos + 1));
-                } catch (NumberFormatException e) {
-                    // Ignore encoding
-                    q = 0.0f;
-                }
-            }
+            float q = qValue(encoding);
             if (encoding.contains("*")) {
                 starQ = q;
             } else if (encoding.contains("gzip") && q > gzipQ) {
@@ -212,4 +351,17 @@ public class HttpContentCompressor extends HttpContentEncoder {
         }
         return null;
     }
+
+    private static float qValue(String encoding) {
+        int equalsPos = encoding.indexOf('=');
+        if (equalsPos != -1) {
+            try {
+                return Float.parseFloat(encoding.substring(equalsPos + 1));
+            } catch (NumberFormatException e) {
+                // Ignore encoding
+                return 0.0f;
+            }
+        }
+        return 1.0f;
+    }
 }
@@ -798,12 +798,23 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         public AppendableCharSequence parse(ByteBuf buffer) {
             final int oldSize = size;
             seq.reset();
-            int i = buffer.forEachByte(this);
-            if (i == -1) {
-                size = oldSize;
-                return null;
+            final int readerIndex = buffer.readerIndex();
+            // A line which fits and has no other CR than the one of its CRLF can not span more than the remaining
+            // size and the CRLF, so its end is searched word-at-a-time in this window first.
+            final int window = (int) Math.min(maxLength - size + 2L, buffer.readableBytes());
+            int lfIndex = buffer.indexOf(readerIndex, readerIndex + window, HttpConstants.LF);
+            if (lfIndex == -1) {
+                // The line is not complete yet, too long or contains more CRs, which do not count towards
+                // maxLength, so fall back to parse it byte by byte.
+                lfIndex = buffer.forEachByte(this);
+                if (lfIndex == -1) {
+                    size = oldSize;
+                    return null;
+                }
+            } else {
+                buffer.forEachByte(readerIndex, lfIndex - readerIndex, this);
             }
-            buffer.readerIndex(i + 1);
+            buffer.readerIndex(lfIndex + 1);
             return seq;
         }
 
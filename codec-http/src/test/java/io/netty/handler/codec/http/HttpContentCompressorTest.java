@@ -19,7 +19,9 @@ import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.compression.Brotli;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.Zstd;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
 import org.junit.Test;
@@ -30,6 +32,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 public class HttpContentCompressorTest {
 
@@ -70,6 +73,101 @@ public class HttpContentCompressorTest {
         }
     }
 
+    @Test
+    public void testGetTargetContentEncodingBrotli() throws Exception {
+        assumeTrue(Brotli.isAvailable());
+        HttpContentCompressor compressor = new HttpContentCompressor();
+
+        String[] tests = {
+            // Accept-Encoding -> Content-Encoding
+            "", null,
+            "*", "gzip",
+            "br", "br",
+            "br;q=0", null,
+            "gzip, deflate, br", "br",
+            "gzip, br;q=0.5", "gzip",
+            "br;q=0.5, deflate;q=0.5", "br",
+            "br;q=0, deflate", "deflate",
+            "br;q=0.1, *;q=1.0", "gzip",
+            "br;q=0.5, *;q=0.5", "br",
+            "br;q=0.1, gzip;q=0, *;q=1.0", "deflate",
+        };
+        for (int i = 0; i < tests.length; i += 2) {
+            assertEquals(tests[i + 1], compressor.determineEncoding(tests[i]));
+        }
+    }
+
+    @Test
+    public void testBrotliSplitContent() throws Exception {
+        assumeTrue(Brotli.isAvailable());
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor());
+        FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        req.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip, br");
+        ch.writeInbound(req);
+
+        ch.writeOutbound(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        ch.writeOutbound(new DefaultHttpContent(Unpooled.copiedBuffer("Hell", CharsetUtil.US_ASCII)));
+        ch.writeOutbound(new DefaultHttpContent(Unpooled.copiedBuffer("o, w", CharsetUtil.US_ASCII)));
+        ch.writeOutbound(new DefaultLastHttpContent(Unpooled.copiedBuffer("orld", CharsetUtil.US_ASCII)));
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res.headers().get(HttpHeaderNames.CONTENT_ENCODING), is("br"));
+        assertEquals("Hello, world", decompress(ch, res));
+    }
+
+    @Test
+    public void testGetTargetContentEncodingZstd() throws Exception {
+        assumeTrue(Zstd.isAvailable());
+        HttpContentCompressor compressor = new HttpContentCompressor();
+
+        String[] tests = {
+            // Accept-Encoding -> Content-Encoding
+            "", null,
+            "*", "gzip",
+            "zstd", "zstd",
+            "zstd;q=0", null,
+            "gzip, deflate, zstd", "zstd",
+            "gzip, zstd;q=0.5", "gzip",
+            "zstd;q=0, deflate", "deflate",
+            "zstd;q=0.1, *;q=1.0", "gzip",
+        };
+        for (int i = 0; i < tests.length; i += 2) {
+            assertEquals(tests[i + 1], compressor.determineEncoding(tests[i]));
+        }
+    }
+
+    @Test
+    public void testZstdLevelBounds() {
+        assumeTrue(Zstd.isAvailable());
+        // Negative (fast) levels are supported by the ZstdEncoder and so must be accepted as well.
+        new HttpContentCompressor(6, 15, 8, 0, 4, Zstd.minCompressionLevel());
+        new HttpContentCompressor(6, 15, 8, 0, 4, Zstd.maxCompressionLevel());
+        try {
+            new HttpContentCompressor(6, 15, 8, 0, 4, Zstd.maxCompressionLevel() + 1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testZstdSplitContent() throws Exception {
+        assumeTrue(Zstd.isAvailable());
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor());
+        FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        req.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip, zstd");
+        ch.writeInbound(req);
+
+        ch.writeOutbound(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        ch.writeOutbound(new DefaultHttpContent(Unpooled.copiedBuffer("Hell", CharsetUtil.US_ASCII)));
+        ch.writeOutbound(new DefaultHttpContent(Unpooled.copiedBuffer("o, w", CharsetUtil.US_ASCII)));
+        ch.writeOutbound(new DefaultLastHttpContent(Unpooled.copiedBuffer("orld", CharsetUtil.US_ASCII)));
+
+        HttpResponse res = ch.readOutbound();
+        assertThat(res.headers().get(HttpHeaderNames.CONTENT_ENCODING), is("zstd"));
+        assertEquals("Hello, world", decompress(ch, res));
+    }
+
     @Test
     public void testSplitContent() throws Exception {
         EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor());
@@ -496,6 +594,36 @@ public class HttpContentCompressorTest {
         assertTrue(ch.finishAndReleaseAll());
     }
 
+    /**
+     * Decompresses the response and all the content which was written to the given channel again.
+     */
+    private static String decompress(EmbeddedChannel ch, HttpResponse res) {
+        EmbeddedChannel decompressor = new EmbeddedChannel(new HttpContentDecompressor());
+        assertTrue(decompressor.writeInbound(res));
+        for (;;) {
+            Object msg = ch.readOutbound();
+            if (msg == null) {
+                break;
+            }
+            decompressor.writeInbound(msg);
+        }
+        assertTrue(ch.finishAndReleaseAll());
+
+        HttpResponse decompressed = decompressor.readInbound();
+        assertThat(decompressed.headers().get(HttpHeaderNames.CONTENT_ENCODING), is(nullValue()));
+        StringBuilder content = new StringBuilder();
+        for (;;) {
+            HttpContent chunk = decompressor.readInbound();
+            if (chunk == null) {
+                break;
+            }
+            content.append(chunk.content().toString(CharsetUtil.US_ASCII));
+            chunk.release();
+        }
+        assertFalse(decompressor.finish());
+        return content.toString();
+    }
+
     private static FullHttpRequest newRequest() {
         FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
         req.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
@@ -320,4 +320,33 @@ public class HttpRequestDecoderTest {
         assertTrue(request.decoderResult().cause() instanceof TooLongFrameException);
         assertFalse(channel.finish());
     }
+
+    @Test
+    public void testTooLargeInitialLineWithoutLf() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder(10, 1024, 1024));
+        assertFalse(channel.writeInbound(Unpooled.copiedBuffer("GET /some/", CharsetUtil.US_ASCII)));
+
+        // The line is too long as soon as one more byte is received, even if its end was not received yet.
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer("p", CharsetUtil.US_ASCII)));
+        HttpRequest request = channel.readInbound();
+        assertTrue(request.decoderResult().isFailure());
+        assertTrue(request.decoderResult().cause() instanceof TooLongFrameException);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testHeaderWithCrsWithinMaxHeaderSize() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder(1024, 8, 1024));
+        // Only the bytes which are not CR count towards the maxHeaderSize.
+        String requestStr = "GET /some/path HTTP/1.1\r\n" +
+                "Host: a\r\r\rb\r\n\r\n";
+
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer(requestStr, CharsetUtil.US_ASCII)));
+        HttpRequest request = channel.readInbound();
+        assertTrue(request.decoderResult().isSuccess());
+        assertEquals("ab", request.headers().get(HOST));
+        LastHttpContent content = channel.readInbound();
+        content.release();
+        assertFalse(channel.finish());
+    }
 }
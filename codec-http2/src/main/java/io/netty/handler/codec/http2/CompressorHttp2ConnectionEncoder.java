@@ -21,6 +21,8 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.BrotliEncoder;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.util.concurrent.PromiseCombiner;
@@ -28,6 +30,7 @@ import io.netty.util.internal.UnstableApi;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_ENCODING;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
+import static io.netty.handler.codec.http.HttpHeaderValues.BR;
 import static io.netty.handler.codec.http.HttpHeaderValues.DEFLATE;
 import static io.netty.handler.codec.http.HttpHeaderValues.GZIP;
 import static io.netty.handler.codec.http.HttpHeaderValues.IDENTITY;
@@ -43,10 +46,12 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
     public static final int DEFAULT_COMPRESSION_LEVEL = 6;
     public static final int DEFAULT_WINDOW_BITS = 15;
     public static final int DEFAULT_MEM_LEVEL = 8;
+    public static final int DEFAULT_BROTLI_QUALITY = BrotliEncoder.DEFAULT_QUALITY;
 
     private final int compressionLevel;
     private final int windowBits;
     private final int memLevel;
+    private final int brotliQuality;
     private final Http2Connection.PropertyKey propertyKey;
 
     public CompressorHttp2ConnectionEncoder(Http2ConnectionEncoder delegate) {
@@ -55,6 +60,11 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
 
     public CompressorHttp2ConnectionEncoder(Http2ConnectionEncoder delegate, int compressionLevel, int windowBits,
                                             int memLevel) {
+        this(delegate, compressionLevel, windowBits, memLevel, DEFAULT_BROTLI_QUALITY);
+    }
+
+    public CompressorHttp2ConnectionEncoder(Http2ConnectionEncoder delegate, int compressionLevel, int windowBits,
+                                            int memLevel, int brotliQuality) {
         super(delegate);
         if (compressionLevel < 0 || compressionLevel > 9) {
             throw new IllegalArgumentException("compressionLevel: " + compressionLevel + " (expected: 0-9)");
@@ -65,9 +75,13 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
         if (memLevel < 1 || memLevel > 9) {
             throw new IllegalArgumentException("memLevel: " + memLevel + " (expected: 1-9)");
         }
+        if (brotliQuality < 0 || brotliQuality > 11) {
+            throw new IllegalArgumentException("brotliQuality: " + brotliQuality + " (expected: 0-11)");
+        }
         this.compressionLevel = compressionLevel;
         this.windowBits = windowBits;
         this.memLevel = memLevel;
+        this.brotliQuality = brotliQuality;
 
         propertyKey = connection().newKey();
         connection().addListener(new Http2ConnectionAdapter() {
@@ -198,6 +212,10 @@ public class CompressorHttp2ConnectionEncoder extends DecoratingHttp2ConnectionE
         if (DEFLATE.contentEqualsIgnoreCase(contentEncoding) || X_DEFLATE.contentEqualsIgnoreCase(contentEncoding)) {
             return newCompressionChannel(ctx, ZlibWrapper.ZLIB);
         }
+        if (Brotli.isAvailable() && BR.contentEqualsIgnoreCase(contentEncoding)) {
+            return new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
+                    ctx.channel().config(), new BrotliEncoder(brotliQuality));
+        }
         // 'identity' or unsupported
         return null;
     }
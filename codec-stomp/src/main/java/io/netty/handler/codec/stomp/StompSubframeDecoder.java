@@ -26,6 +26,7 @@ import io.netty.handler.codec.DecoderResult;
 import io.netty.handler.codec.ReplayingDecoder;
 import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.stomp.StompSubframeDecoder.State;
+import io.netty.util.ByteProcessor;
 import io.netty.util.internal.AppendableCharSequence;
 
 import static io.netty.buffer.ByteBufUtil.indexOf;
@@ -260,6 +261,33 @@ public class StompSubframeDecoder extends ReplayingDecoder<State> {
     }
 
     private String readLine(ByteBuf buffer, int initialBufferSize) {
+        // Search the LF word-at-a-time first and then copy the line. The search only spans what a line of
+        // maxLineLength bytes and its CR may span, so a too long line is still detected without waiting for its end.
+        // If the LF is not received yet the ReplayingDecoder will call us again once there is more data.
+        final int readerIndex = buffer.readerIndex();
+        final int lfIndex = buffer.forEachByte(readerIndex, (int) Math.min(maxLineLength + 2L, Integer.MAX_VALUE),
+                ByteProcessor.FIND_LF);
+        if (lfIndex < 0) {
+            // The line is either too long or contains more CRs, which are not counted.
+            return readLineSlow(buffer, initialBufferSize);
+        }
+        AppendableCharSequence buf = new AppendableCharSequence(initialBufferSize);
+        int lineLength = 0;
+        for (int i = readerIndex; i < lfIndex; i++) {
+            byte nextByte = buffer.getByte(i);
+            if (nextByte != StompConstants.CR) {
+                if (lineLength >= maxLineLength) {
+                    invalidLineLength();
+                }
+                lineLength ++;
+                buf.append((char) nextByte);
+            }
+        }
+        buffer.readerIndex(lfIndex + 1);
+        return buf.toString();
+    }
+
+    private String readLineSlow(ByteBuf buffer, int initialBufferSize) {
         AppendableCharSequence buf = new AppendableCharSequence(initialBufferSize);
         int lineLength = 0;
         for (;;) {
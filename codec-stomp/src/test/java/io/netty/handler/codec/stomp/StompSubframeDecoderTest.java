@@ -18,6 +18,7 @@ package io.netty.handler.codec.stomp;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -194,4 +195,34 @@ public class StompSubframeDecoderTest {
         assertEquals("a header value or name contains a prohibited character ':', current-time:2000-01-01T00:00:00",
                 frame.decoderResult().cause().getMessage());
     }
+
+    @Test
+    public void testCommandLineSplitAcrossBuffers() {
+        channel.writeInbound(Unpooled.copiedBuffer("CONN", US_ASCII));
+        assertNull(channel.readInbound());
+        channel.writeInbound(Unpooled.copiedBuffer("ECT\r", US_ASCII));
+        assertNull(channel.readInbound());
+        channel.writeInbound(Unpooled.copiedBuffer("\naccept-version:1.2\n\n\0", US_ASCII));
+
+        StompHeadersSubframe frame = channel.readInbound();
+        assertNotNull(frame);
+        assertTrue(frame.decoderResult().isSuccess());
+        assertEquals(StompCommand.CONNECT, frame.command());
+        assertEquals("1.2", frame.headers().getAsString(StompHeaders.ACCEPT_VERSION));
+
+        StompContentSubframe content = channel.readInbound();
+        assertSame(LastStompContentSubframe.EMPTY_LAST_CONTENT, content);
+        content.release();
+    }
+
+    @Test
+    public void testTooLongCommandLine() {
+        channel = new EmbeddedChannel(new StompSubframeDecoder(4, 8192));
+
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer("CONNECT", US_ASCII)));
+
+        StompHeadersSubframe frame = channel.readInbound();
+        assertNotNull(frame);
+        assertTrue(frame.decoderResult().cause() instanceof TooLongFrameException);
+    }
 }
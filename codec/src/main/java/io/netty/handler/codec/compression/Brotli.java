@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * Utility to check if the <a href="https://github.com/hyperxpro/Brotli4j">Brotli4j</a> library, which is used by
+ * {@link BrotliEncoder} and {@link BrotliDecoder}, is present and its native library could be loaded.
+ */
+public final class Brotli {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Brotli.class);
+    private static final ClassNotFoundException CNFE;
+    private static final Throwable CAUSE;
+
+    static {
+        ClassNotFoundException cnfe = null;
+        try {
+            Class.forName("com.aayushatharva.brotli4j.Brotli4jLoader", false,
+                    PlatformDependent.getClassLoader(Brotli.class));
+        } catch (ClassNotFoundException t) {
+            cnfe = t;
+            logger.debug("brotli4j not in the classpath; Brotli support will be unavailable.");
+        }
+        CNFE = cnfe;
+
+        Throwable cause = cnfe;
+        if (cause == null) {
+            cause = Brotli4jLoader.getUnavailabilityCause();
+            if (cause != null) {
+                logger.debug("Failed to load brotli4j; Brotli support will be unavailable.", cause);
+            }
+        }
+        CAUSE = cause;
+    }
+
+    /**
+     * Returns {@code true} if and only if the Brotli4j library and its native library are available.
+     */
+    public static boolean isAvailable() {
+        return CAUSE == null;
+    }
+
+    /**
+     * Throws the cause of the unavailability if Brotli is not available.
+     *
+     * @throws Throwable the cause why Brotli is not available
+     */
+    public static void ensureAvailability() throws Throwable {
+        if (CNFE != null) {
+            throw CNFE;
+        }
+        Brotli4jLoader.ensureAvailability();
+    }
+
+    /**
+     * Returns the cause of unavailability or {@code null} if Brotli is available.
+     */
+    public static Throwable cause() {
+        return CAUSE;
+    }
+
+    private Brotli() {
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.aayushatharva.brotli4j.decoder.DecoderJNI;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.internal.ObjectUtil;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Decompresses a {@link ByteBuf} encoded with the <a href="https://tools.ietf.org/html/rfc7932">Brotli</a> format.
+ *
+ * This decoder requires the <a href="https://github.com/hyperxpro/Brotli4j">Brotli4j</a> library,
+ * see {@link Brotli#isAvailable()}.
+ */
+public class BrotliDecoder extends ByteToMessageDecoder {
+
+    private enum State {
+        DONE, NEEDS_MORE_INPUT, ERROR
+    }
+
+    static {
+        try {
+            Brotli.ensureAvailability();
+        } catch (Throwable cause) {
+            throw new ExceptionInInitializerError(cause);
+        }
+    }
+
+    private final int inputBufferSize;
+    private DecoderJNI.Wrapper decoder;
+    private boolean destroyed;
+
+    /**
+     * Creates a new decoder with a default input buffer size of 8 KB.
+     */
+    public BrotliDecoder() {
+        this(8 * 1024);
+    }
+
+    /**
+     * Creates a new decoder.
+     *
+     * @param inputBufferSize the size of the native buffer into which the compressed bytes are copied before
+     *                        they are decompressed
+     */
+    public BrotliDecoder(int inputBufferSize) {
+        this.inputBufferSize = ObjectUtil.checkPositive(inputBufferSize, "inputBufferSize");
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        decoder = new DecoderJNI.Wrapper(inputBufferSize);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (destroyed) {
+            // Skip data received after the end of the stream.
+            in.skipBytes(in.readableBytes());
+            return;
+        }
+        if (!in.isReadable()) {
+            return;
+        }
+
+        try {
+            State state = decompress(in, out, ctx.alloc());
+            if (state == State.DONE) {
+                destroy();
+            } else if (state == State.ERROR) {
+                throw new DecompressionException("Brotli stream corrupted");
+            }
+        } catch (Exception e) {
+            destroy();
+            throw e;
+        }
+    }
+
+    private State decompress(ByteBuf in, List<Object> out, ByteBufAllocator alloc) {
+        for (;;) {
+            switch (decoder.getStatus()) {
+            case DONE:
+                return State.DONE;
+            case OK:
+                decoder.push(0);
+                break;
+            case NEEDS_MORE_INPUT:
+                if (decoder.hasOutput()) {
+                    out.add(pull(alloc));
+                }
+                if (!in.isReadable()) {
+                    return State.NEEDS_MORE_INPUT;
+                }
+                ByteBuffer inputBuffer = decoder.getInputBuffer();
+                inputBuffer.clear();
+                int length = Math.min(in.readableBytes(), inputBuffer.remaining());
+                inputBuffer.limit(length);
+                in.readBytes(inputBuffer);
+                decoder.push(length);
+                break;
+            case NEEDS_MORE_OUTPUT:
+                out.add(pull(alloc));
+                break;
+            default:
+                return State.ERROR;
+            }
+        }
+    }
+
+    private ByteBuf pull(ByteBufAllocator alloc) {
+        ByteBuffer nioBuffer = decoder.pull();
+        ByteBuf buf = alloc.buffer(nioBuffer.remaining());
+        buf.writeBytes(nioBuffer);
+        return buf;
+    }
+
+    private void destroy() {
+        if (!destroyed) {
+            destroyed = true;
+            decoder.destroy();
+        }
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        try {
+            destroy();
+        } finally {
+            super.handlerRemoved0(ctx);
+        }
+    }
+}
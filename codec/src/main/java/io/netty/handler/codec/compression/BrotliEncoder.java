@@ -0,0 +1,245 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compresses a {@link ByteBuf} using the <a href="https://tools.ietf.org/html/rfc7932">Brotli</a> format.
+ *
+ * All the {@link ByteBuf}s written belong to the same Brotli stream. The output is flushed after every
+ * {@link ByteBuf}, so the peer can decompress everything that was written so far, and the stream is finished
+ * once the {@link io.netty.channel.Channel} is closed.
+ *
+ * This encoder requires the <a href="https://github.com/hyperxpro/Brotli4j">Brotli4j</a> library,
+ * see {@link Brotli#isAvailable()}.
+ */
+public class BrotliEncoder extends MessageToByteEncoder<ByteBuf> {
+
+    /**
+     * The default quality, which gives a good ratio between speed and compression for dynamic content.
+     */
+    public static final int DEFAULT_QUALITY = 4;
+
+    /**
+     * The default base two logarithm of the sliding window size.
+     */
+    public static final int DEFAULT_WINDOW = 22;
+
+    static {
+        try {
+            Brotli.ensureAvailability();
+        } catch (Throwable cause) {
+            throw new ExceptionInInitializerError(cause);
+        }
+    }
+
+    private final Encoder.Parameters parameters;
+    private final Sink sink = new Sink();
+    private BrotliOutputStream encoder;
+    private volatile boolean finished;
+    private volatile ChannelHandlerContext ctx;
+
+    /**
+     * Creates a new encoder with the default quality ({@code 4}) and window ({@code 22}).
+     */
+    public BrotliEncoder() {
+        this(DEFAULT_QUALITY);
+    }
+
+    /**
+     * Creates a new encoder with the specified quality and the default window ({@code 22}).
+     *
+     * @param quality
+     *        {@code 0} yields the fastest compression and {@code 11} yields the best compression.
+     */
+    public BrotliEncoder(int quality) {
+        this(quality, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Creates a new encoder with the specified quality and window.
+     *
+     * @param quality
+     *        {@code 0} yields the fastest compression and {@code 11} yields the best compression.
+     * @param window
+     *        The base two logarithm of the sliding window size. The value should be in the range
+     *        {@code 10} to {@code 24} inclusive. Larger values result in better compression at the
+     *        expense of memory usage on both sides.
+     */
+    public BrotliEncoder(int quality, int window) {
+        if (quality < 0 || quality > 11) {
+            throw new IllegalArgumentException("quality: " + quality + " (expected: 0-11)");
+        }
+        if (window < 10 || window > 24) {
+            throw new IllegalArgumentException("window: " + window + " (expected: 10-24)");
+        }
+        parameters = new Encoder.Parameters().setQuality(quality).setWindow(window);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        encoder = new BrotliOutputStream(sink, parameters);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (!finished) {
+            // Release the native resources, the remaining output is discarded as the sink has no target.
+            finished = true;
+            encoder.close();
+        }
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) throws Exception {
+        if (finished) {
+            out.writeBytes(in);
+            return;
+        }
+        if (!in.isReadable()) {
+            return;
+        }
+
+        sink.target = out;
+        try {
+            in.readBytes(encoder, in.readableBytes());
+            encoder.flush();
+        } catch (IOException e) {
+            throw new CompressionException(e);
+        } finally {
+            sink.target = null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if and only if the end of the compressed stream has been reached.
+     */
+    public boolean isClosed() {
+        return finished;
+    }
+
+    /**
+     * Close this {@link BrotliEncoder} and so finish the encoding.
+     *
+     * The returned {@link ChannelFuture} will be notified once the operation completes.
+     */
+    public ChannelFuture close() {
+        return close(ctx().newPromise());
+    }
+
+    /**
+     * Close this {@link BrotliEncoder} and so finish the encoding.
+     * The given {@link ChannelFuture} will be notified once the operation
+     * completes and will also be returned.
+     */
+    public ChannelFuture close(final ChannelPromise promise) {
+        final ChannelHandlerContext ctx = ctx();
+        if (ctx.executor().inEventLoop()) {
+            return finishEncode(ctx, promise);
+        }
+        ctx.executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                finishEncode(ctx, promise);
+            }
+        });
+        return promise;
+    }
+
+    @Override
+    public void close(final ChannelHandlerContext ctx, final ChannelPromise promise) throws Exception {
+        ChannelFuture f = finishEncode(ctx, ctx.newPromise());
+        f.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                ctx.close(promise);
+            }
+        });
+
+        if (!f.isDone()) {
+            // Ensure the channel is closed even if the write operation completes in time.
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    ctx.close(promise);
+                }
+            }, 10, TimeUnit.SECONDS); // FIXME: Magic number
+        }
+    }
+
+    private ChannelFuture finishEncode(ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (finished) {
+            promise.setSuccess();
+            return promise;
+        }
+        finished = true;
+
+        ByteBuf footer = ctx.alloc().heapBuffer();
+        sink.target = footer;
+        try {
+            encoder.close();
+        } catch (IOException e) {
+            footer.release();
+            promise.setFailure(new CompressionException(e));
+            return promise;
+        } finally {
+            sink.target = null;
+        }
+        return ctx.writeAndFlush(footer, promise);
+    }
+
+    private ChannelHandlerContext ctx() {
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx == null) {
+            throw new IllegalStateException("not added to a pipeline");
+        }
+        return ctx;
+    }
+
+    /**
+     * Collects the output of the {@link BrotliOutputStream} into the {@link ByteBuf} which is currently encoded to.
+     */
+    private static final class Sink extends OutputStream {
+        ByteBuf target;
+
+        @Override
+        public void write(int b) {
+            if (target != null) {
+                target.writeByte(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (target != null) {
+                target.writeBytes(b, off, len);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.github.luben.zstd.util.Native;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * Utility to check if the <a href="https://github.com/luben/zstd-jni">zstd-jni</a> library, which is used by
+ * {@link ZstdEncoder} and {@link ZstdDecoder}, is present and its native library could be loaded.
+ */
+public final class Zstd {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Zstd.class);
+    private static final Throwable CAUSE;
+
+    static {
+        Throwable cause = null;
+        try {
+            Class.forName("com.github.luben.zstd.Zstd", false, PlatformDependent.getClassLoader(Zstd.class));
+        } catch (ClassNotFoundException t) {
+            cause = t;
+            logger.debug("zstd-jni not in the classpath; Zstd support will be unavailable.");
+        }
+        if (cause == null) {
+            try {
+                Native.load();
+            } catch (Throwable t) {
+                cause = t;
+                logger.debug("Failed to load zstd-jni; Zstd support will be unavailable.", t);
+            }
+        }
+        CAUSE = cause;
+    }
+
+    /**
+     * Returns {@code true} if and only if the zstd-jni library and its native library are available.
+     */
+    public static boolean isAvailable() {
+        return CAUSE == null;
+    }
+
+    /**
+     * Throws the cause of the unavailability if Zstd is not available.
+     *
+     * @throws Throwable the cause why Zstd is not available
+     */
+    public static void ensureAvailability() throws Throwable {
+        if (CAUSE != null) {
+            throw CAUSE;
+        }
+    }
+
+    /**
+     * Returns the lowest (fastest) compression level supported by the native library, which is negative. Must only
+     * be called if {@link #isAvailable()}.
+     */
+    public static int minCompressionLevel() {
+        return com.github.luben.zstd.Zstd.minCompressionLevel();
+    }
+
+    /**
+     * Returns the highest (best) compression level supported by the native library. Must only be called if
+     * {@link #isAvailable()}.
+     */
+    public static int maxCompressionLevel() {
+        return com.github.luben.zstd.Zstd.maxCompressionLevel();
+    }
+
+    /**
+     * Returns the cause of unavailability or {@code null} if Zstd is available.
+     */
+    public static Throwable cause() {
+        return CAUSE;
+    }
+
+    private Zstd() {
+    }
+}
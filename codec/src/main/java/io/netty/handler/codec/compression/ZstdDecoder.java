@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.internal.ObjectUtil;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Decompresses a {@link ByteBuf} encoded with the <a href="https://tools.ietf.org/html/rfc8478">Zstandard</a>
+ * format, which may consist of any number of frames.
+ *
+ * The decompression is streamed between direct {@link ByteBuf}s, so the decompressed data is produced as soon as
+ * it is available and never more than {@code maxChunkSize} bytes are allocated at once.
+ *
+ * This decoder requires the <a href="https://github.com/luben/zstd-jni">zstd-jni</a> library,
+ * see {@link Zstd#isAvailable()}.
+ */
+public class ZstdDecoder extends ByteToMessageDecoder {
+
+    static {
+        try {
+            Zstd.ensureAvailability();
+        } catch (Throwable cause) {
+            throw new ExceptionInInitializerError(cause);
+        }
+    }
+
+    private final int maxChunkSize;
+    private final ZstdDictDecompress dictionary;
+    private ZstdDecompressCtx decompressor;
+    private boolean corrupted;
+
+    /**
+     * Creates a new decoder which produces chunks of at most 64 KB.
+     */
+    public ZstdDecoder() {
+        this(null);
+    }
+
+    /**
+     * Creates a new decoder which produces chunks of at most 64 KB.
+     *
+     * @param dictionary the dictionary the data was compressed with or {@code null}
+     */
+    public ZstdDecoder(ZstdDictDecompress dictionary) {
+        this(64 * 1024, dictionary);
+    }
+
+    /**
+     * Creates a new decoder.
+     *
+     * @param maxChunkSize the maximum size of a decompressed {@link ByteBuf}
+     * @param dictionary   the dictionary the data was compressed with or {@code null}
+     */
+    public ZstdDecoder(int maxChunkSize, ZstdDictDecompress dictionary) {
+        this.maxChunkSize = ObjectUtil.checkPositive(maxChunkSize, "maxChunkSize");
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        decompressor = new ZstdDecompressCtx();
+        if (dictionary != null) {
+            decompressor.loadDict(dictionary);
+        }
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (corrupted) {
+            in.skipBytes(in.readableBytes());
+            return;
+        }
+        int length = in.readableBytes();
+        if (length == 0) {
+            return;
+        }
+
+        ByteBuf direct = null;
+        try {
+            if (!in.isDirect() || in.nioBufferCount() != 1) {
+                direct = ctx.alloc().directBuffer(length).writeBytes(in, in.readerIndex(), length);
+            }
+            ByteBuf src = direct == null ? in : direct;
+            ByteBuffer srcBuffer = src.internalNioBuffer(src.readerIndex(), length);
+            int srcStart = srcBuffer.position();
+            for (;;) {
+                ByteBuf decompressed = ctx.alloc().directBuffer(maxChunkSize);
+                boolean full;
+                try {
+                    ByteBuffer dstBuffer = decompressed.internalNioBuffer(0, maxChunkSize);
+                    int dstStart = dstBuffer.position();
+                    decompressor.decompressDirectByteBufferStream(dstBuffer, srcBuffer);
+                    decompressed.writerIndex(dstBuffer.position() - dstStart);
+                    full = !dstBuffer.hasRemaining();
+                } catch (ZstdException e) {
+                    decompressed.release();
+                    throw new DecompressionException(e);
+                }
+                if (decompressed.isReadable()) {
+                    out.add(decompressed);
+                } else {
+                    decompressed.release();
+                }
+                // Only stop once all the input was consumed and there is no more output pending.
+                if (!full && !srcBuffer.hasRemaining()) {
+                    break;
+                }
+            }
+            in.skipBytes(srcBuffer.position() - srcStart);
+        } catch (DecompressionException e) {
+            corrupted = true;
+            throw e;
+        } finally {
+            if (direct != null) {
+                direct.release();
+            }
+        }
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        try {
+            decompressor.close();
+        } finally {
+            super.handlerRemoved0(ctx);
+        }
+    }
+}
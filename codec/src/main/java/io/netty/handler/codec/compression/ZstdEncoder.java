@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses a {@link ByteBuf} using the <a href="https://tools.ietf.org/html/rfc8478">Zstandard</a> format.
+ *
+ * Every {@link ByteBuf} is compressed into its own Zstandard frame, so each written message can be decompressed as
+ * soon as it was received and a {@link ZstdDecoder} will produce the concatenation of all messages. The frames are
+ * written into direct {@link ByteBuf}s and direct input is compressed in place; heap input is copied into a direct
+ * buffer first.
+ *
+ * A pre-trained {@link ZstdDictCompress} can be used to compress small, similar messages much better. It is
+ * immutable and so should be created once and shared by the encoders of all channels.
+ *
+ * This encoder requires the <a href="https://github.com/luben/zstd-jni">zstd-jni</a> library,
+ * see {@link Zstd#isAvailable()}.
+ */
+public class ZstdEncoder extends MessageToByteEncoder<ByteBuf> {
+
+    /**
+     * The default compression level.
+     */
+    public static final int DEFAULT_COMPRESSION_LEVEL = 3;
+
+    /**
+     * Let the compression level decide the window size.
+     */
+    public static final int DEFAULT_WINDOW_LOG = 0;
+
+    /**
+     * The largest window which every decoder must support without special configuration.
+     */
+    public static final int MAX_WINDOW_LOG = 27;
+
+    private static final int MIN_WINDOW_LOG = 10;
+
+    static {
+        try {
+            Zstd.ensureAvailability();
+        } catch (Throwable cause) {
+            throw new ExceptionInInitializerError(cause);
+        }
+    }
+
+    private final int compressionLevel;
+    private final int windowLog;
+    private final ZstdDictCompress dictionary;
+    private ZstdCompressCtx compressor;
+
+    /**
+     * Creates a new encoder with the default compression level ({@code 3}) and window size.
+     */
+    public ZstdEncoder() {
+        this(DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Creates a new encoder with the specified compression level and the default window size.
+     *
+     * @param compressionLevel
+     *        negative levels yield the fastest compression and {@code 22} yields the best compression.
+     */
+    public ZstdEncoder(int compressionLevel) {
+        this(compressionLevel, DEFAULT_WINDOW_LOG);
+    }
+
+    /**
+     * Creates a new encoder with the specified compression level and window size.
+     *
+     * @param compressionLevel
+     *        negative levels yield the fastest compression and {@code 22} yields the best compression.
+     * @param windowLog
+     *        The base two logarithm of the maximum distance a match may refer back to. The value should be in the
+     *        range {@code 10} to {@code 27} inclusive, or {@link #DEFAULT_WINDOW_LOG} to use the default of the
+     *        compression level. Larger values result in better compression of large messages at the expense of
+     *        memory usage on both sides.
+     */
+    public ZstdEncoder(int compressionLevel, int windowLog) {
+        this(compressionLevel, windowLog, null);
+    }
+
+    /**
+     * Creates a new encoder with the specified compression level, window size and dictionary.
+     *
+     * @param compressionLevel
+     *        negative levels yield the fastest compression and {@code 22} yields the best compression.
+     * @param windowLog
+     *        The base two logarithm of the maximum distance a match may refer back to. The value should be in the
+     *        range {@code 10} to {@code 27} inclusive, or {@link #DEFAULT_WINDOW_LOG} to use the default of the
+     *        compression level. Larger values result in better compression of large messages at the expense of
+     *        memory usage on both sides.
+     * @param dictionary
+     *        the dictionary to compress with or {@code null}. The {@link ZstdDecoder} needs to use the same one.
+     */
+    public ZstdEncoder(int compressionLevel, int windowLog, ZstdDictCompress dictionary) {
+        int minLevel = Zstd.minCompressionLevel();
+        int maxLevel = Zstd.maxCompressionLevel();
+        if (compressionLevel < minLevel || compressionLevel > maxLevel) {
+            throw new IllegalArgumentException(
+                    "compressionLevel: " + compressionLevel + " (expected: " + minLevel + '-' + maxLevel + ')');
+        }
+        if (windowLog != DEFAULT_WINDOW_LOG && (windowLog < MIN_WINDOW_LOG || windowLog > MAX_WINDOW_LOG)) {
+            throw new IllegalArgumentException(
+                    "windowLog: " + windowLog + " (expected: " + DEFAULT_WINDOW_LOG + " or " +
+                    MIN_WINDOW_LOG + '-' + MAX_WINDOW_LOG + ')');
+        }
+        this.compressionLevel = compressionLevel;
+        this.windowLog = windowLog;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        compressor = new ZstdCompressCtx().setLevel(compressionLevel).setWindowLog(windowLog);
+        if (dictionary != null) {
+            compressor.loadDict(dictionary);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        compressor.close();
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+        long maxCompressedLength = com.github.luben.zstd.Zstd.compressBound(msg.readableBytes());
+        if (maxCompressedLength > Integer.MAX_VALUE) {
+            throw new EncoderException("too much data to allocate a buffer for compression");
+        }
+        // The native library can only work on direct memory.
+        return ctx.alloc().directBuffer(msg.isReadable() ? (int) maxCompressedLength : 0);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        if (length == 0) {
+            return;
+        }
+
+        ByteBuf direct = null;
+        try {
+            if (!in.isDirect() || in.nioBufferCount() != 1) {
+                direct = ctx.alloc().directBuffer(length).writeBytes(in, in.readerIndex(), length);
+            }
+            ByteBuf src = direct == null ? in : direct;
+            ByteBuffer srcBuffer = src.internalNioBuffer(src.readerIndex(), length);
+            ByteBuffer dstBuffer = out.internalNioBuffer(out.writerIndex(), out.writableBytes());
+            int compressedLength = compressor.compressDirectByteBuffer(
+                    dstBuffer, dstBuffer.position(), dstBuffer.remaining(),
+                    srcBuffer, srcBuffer.position(), length);
+            in.skipBytes(length);
+            out.writerIndex(out.writerIndex() + compressedLength);
+        } finally {
+            if (direct != null) {
+                direct.release();
+            }
+        }
+    }
+}
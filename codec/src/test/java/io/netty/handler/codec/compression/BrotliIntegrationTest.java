@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class BrotliIntegrationTest extends AbstractIntegrationTest {
+
+    @BeforeClass
+    public static void checkAvailability() {
+        assumeTrue(Brotli.isAvailable());
+    }
+
+    @Override
+    protected EmbeddedChannel createEncoder() {
+        return new EmbeddedChannel(new BrotliEncoder());
+    }
+
+    @Override
+    protected EmbeddedChannel createDecoder() {
+        return new EmbeddedChannel(new BrotliDecoder());
+    }
+
+    @Test
+    public void testFlushAfterEachWrite() throws Exception {
+        String[] parts = { "Netty is a NIO client server framework ", "which enables quick and easy ",
+                "development of network applications" };
+        for (String part : parts) {
+            assertTrue(encoder.writeOutbound(Unpooled.copiedBuffer(part, CharsetUtil.US_ASCII)));
+
+            // Everything written so far must be decodable before the stream was finished.
+            StringBuilder decoded = new StringBuilder();
+            for (;;) {
+                ByteBuf compressed = encoder.readOutbound();
+                if (compressed == null) {
+                    break;
+                }
+                decoder.writeInbound(compressed);
+            }
+            for (;;) {
+                ByteBuf decompressed = decoder.readInbound();
+                if (decompressed == null) {
+                    break;
+                }
+                decoded.append(decompressed.toString(CharsetUtil.US_ASCII));
+                decompressed.release();
+            }
+            assertEquals(part, decoded.toString());
+        }
+
+        assertTrue(encoder.finish());
+        for (;;) {
+            ByteBuf compressed = encoder.readOutbound();
+            if (compressed == null) {
+                break;
+            }
+            decoder.writeInbound(compressed);
+        }
+        assertFalse(decoder.finish());
+    }
+}
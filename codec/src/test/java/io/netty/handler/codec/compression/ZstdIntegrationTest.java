@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ZstdIntegrationTest extends AbstractIntegrationTest {
+
+    private static final byte[] DICTIONARY = ("{\"id\":0,\"method\":\"getUser\",\"params\":{\"name\":\"\"," +
+            "\"email\":\"\",\"roles\":[\"admin\",\"user\"]}}").getBytes(CharsetUtil.US_ASCII);
+
+    @BeforeClass
+    public static void checkAvailability() {
+        assumeTrue(Zstd.isAvailable());
+    }
+
+    @Override
+    protected EmbeddedChannel createEncoder() {
+        return new EmbeddedChannel(new ZstdEncoder());
+    }
+
+    @Override
+    protected EmbeddedChannel createDecoder() {
+        return new EmbeddedChannel(new ZstdDecoder());
+    }
+
+    @Test
+    public void testDirectBuffers() throws Exception {
+        byte[] data = new byte[256 * 1024];
+        rand.nextBytes(data);
+        ByteBuf in = Unpooled.directBuffer(data.length).writeBytes(data);
+        assertTrue(encoder.writeOutbound(in));
+        ByteBuf compressed = encoder.readOutbound();
+        assertTrue(compressed.isDirect());
+
+        ByteBuf directCompressed = Unpooled.directBuffer(compressed.readableBytes()).writeBytes(compressed);
+        compressed.release();
+        assertTrue(decoder.writeInbound(directCompressed));
+        ByteBuf decompressed = readDecompressed(decoder);
+        assertEquals(Unpooled.wrappedBuffer(data), decompressed);
+        decompressed.release();
+    }
+
+    @Test
+    public void testMultipleMessages() throws Exception {
+        String[] messages = { "first message", "second message", "third message" };
+        CompositeByteBuf compressed = Unpooled.compositeBuffer();
+        for (String message : messages) {
+            assertTrue(encoder.writeOutbound(Unpooled.copiedBuffer(message, CharsetUtil.US_ASCII)));
+            compressed.addComponent(true, (ByteBuf) encoder.readOutbound());
+        }
+
+        // Feed the frames byte by byte so every frame is split up.
+        while (compressed.isReadable()) {
+            decoder.writeInbound(compressed.readRetainedSlice(1));
+        }
+        compressed.release();
+        ByteBuf decompressed = readDecompressed(decoder);
+        assertEquals("first messagesecond messagethird message", decompressed.toString(CharsetUtil.US_ASCII));
+        decompressed.release();
+    }
+
+    @Test
+    public void testDictionary() throws Exception {
+        ZstdDictCompress compressDictionary = new ZstdDictCompress(DICTIONARY, ZstdEncoder.DEFAULT_COMPRESSION_LEVEL);
+        ZstdDictDecompress decompressDictionary = new ZstdDictDecompress(DICTIONARY);
+        EmbeddedChannel dictEncoder = new EmbeddedChannel(
+                new ZstdEncoder(ZstdEncoder.DEFAULT_COMPRESSION_LEVEL, ZstdEncoder.DEFAULT_WINDOW_LOG,
+                        compressDictionary));
+        // The same dictionary is shared by multiple decoders.
+        EmbeddedChannel dictDecoder = new EmbeddedChannel(new ZstdDecoder(decompressDictionary));
+        EmbeddedChannel dictDecoder2 = new EmbeddedChannel(new ZstdDecoder(decompressDictionary));
+        try {
+            String message = "{\"id\":42,\"method\":\"getUser\",\"params\":{\"name\":\"netty\"}}";
+            for (EmbeddedChannel ch : new EmbeddedChannel[] { dictDecoder, dictDecoder2 }) {
+                assertTrue(dictEncoder.writeOutbound(Unpooled.copiedBuffer(message, CharsetUtil.US_ASCII)));
+                ByteBuf compressed = dictEncoder.readOutbound();
+                assertTrue(ch.writeInbound(compressed));
+                ByteBuf decompressed = readDecompressed(ch);
+                assertEquals(message, decompressed.toString(CharsetUtil.US_ASCII));
+                decompressed.release();
+            }
+        } finally {
+            assertFalse(dictEncoder.finishAndReleaseAll());
+            assertFalse(dictDecoder.finishAndReleaseAll());
+            assertFalse(dictDecoder2.finishAndReleaseAll());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindowLog() {
+        new ZstdEncoder(ZstdEncoder.DEFAULT_COMPRESSION_LEVEL, ZstdEncoder.MAX_WINDOW_LOG + 1);
+    }
+
+    private static ByteBuf readDecompressed(EmbeddedChannel ch) {
+        CompositeByteBuf decompressed = Unpooled.compositeBuffer();
+        for (;;) {
+            ByteBuf buf = ch.readInbound();
+            if (buf == null) {
+                return decompressed;
+            }
+            decompressed.addComponent(true, buf);
+        }
+    }
+}
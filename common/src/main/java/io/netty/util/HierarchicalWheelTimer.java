@@ -0,0 +1,590 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.StringUtil.simpleClassName;
+
+/**
+ * A {@link Timer} optimized for a large number of approximated timeouts, like the deadlines of many outstanding
+ * requests.
+ * <p>
+ * Like {@link HashedWheelTimer}, it checks on every tick if there are any {@link TimerTask}s behind the schedule and
+ * expires them. It differs in the following ways:
+ * <ul>
+ * <li>The timeouts are kept in hierarchical wheels of 64 slots, where a slot of the first wheel covers a tick and a
+ * slot of every other wheel covers the whole wheel below. A timeout is moved down a wheel when its slot is reached,
+ * so unlike the buckets of {@link HashedWheelTimer} a slot never holds timeouts which are due in a later round, and
+ * empty slots are skipped at once, however long the timer was late.</li>
+ * <li>The timeouts can be sharded across several worker threads, which each own their wheels and their queues of
+ * new and cancelled timeouts. Scheduling and cancelling a timeout never takes a lock, and the pending count drops as
+ * soon as a timeout is cancelled.</li>
+ * <li>The {@link TimerTask}s which expire in the same tick can be run on an {@link Executor} in batches, so a slow
+ * {@link TimerTask} does not delay the ticks of the wheels.</li>
+ * <li>The number of pending timeouts and how late the ticks are processed are exposed as metrics.</li>
+ * </ul>
+ * <p>
+ * As {@link HashedWheelTimer}, every instance creates its own threads, so you should make sure to create only a few
+ * instances and share them across your application.
+ */
+@UnstableApi
+public class HierarchicalWheelTimer implements Timer {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HierarchicalWheelTimer.class);
+
+    private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimer> WORKER_STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimer.class, "workerState");
+
+    private static final int WORKER_STATE_INIT = 0;
+    private static final int WORKER_STATE_STARTED = 1;
+    private static final int WORKER_STATE_SHUTDOWN = 2;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    // Enough wheels to cover every tick, so there is no overflow.
+    private static final int LEVELS = (63 + SLOT_BITS - 1) / SLOT_BITS;
+
+    // The maximum number of new timeouts which are moved into the wheels per tick, so the ticks can not be delayed
+    // indefinitely by a flood of new timeouts.
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+    private static final int EXPIRY_BATCH_SIZE = 1024;
+
+    @SuppressWarnings({ "unused", "FieldMayBeFinal" })
+    private volatile int workerState; // 0 - init, 1 - started, 2 - shut down
+
+    private final long startTime = System.nanoTime();
+    private final long tickDuration;
+    private final long maxPendingTimeouts;
+    private final Executor expiryExecutor;
+    private final Shard[] shards;
+
+    /**
+     * Creates a new timer with a single worker thread created by the default thread factory
+     * ({@link Executors#defaultThreadFactory()}) and a tick duration of 10 milliseconds.
+     */
+    public HierarchicalWheelTimer() {
+        this(10, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new timer with a single worker thread created by the default thread factory
+     * ({@link Executors#defaultThreadFactory()}).
+     *
+     * @param tickDuration   the duration between tick
+     * @param unit           the time unit of the {@code tickDuration}
+     * @throws NullPointerException     if {@code unit} is {@code null}
+     * @throws IllegalArgumentException if {@code tickDuration} is &lt;= 0
+     */
+    public HierarchicalWheelTimer(long tickDuration, TimeUnit unit) {
+        this(Executors.defaultThreadFactory(), tickDuration, unit, 1, null, -1);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param threadFactory      a {@link ThreadFactory} that creates the background {@link Thread}s which are
+     *                           dedicated to the wheels
+     * @param tickDuration       the duration between tick
+     * @param unit               the time unit of the {@code tickDuration}
+     * @param shards             the number of worker threads across which the timeouts are distributed
+     * @param expiryExecutor     the {@link Executor} which runs the expired {@link TimerTask}s in batches, or
+     *                           {@code null} to run them on the worker threads
+     * @param maxPendingTimeouts the maximum number of pending timeouts per worker thread after which a call to
+     *                           {@code newTimeout} will result in {@link RejectedExecutionException} being thrown.
+     *                           No maximum pending timeouts limit is assumed if this value is 0 or negative.
+     * @throws NullPointerException     if either of {@code threadFactory} and {@code unit} is {@code null}
+     * @throws IllegalArgumentException if either of {@code tickDuration} and {@code shards} is &lt;= 0
+     */
+    public HierarchicalWheelTimer(
+            ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int shards,
+            Executor expiryExecutor, long maxPendingTimeouts) {
+        checkNotNull(threadFactory, "threadFactory");
+        checkNotNull(unit, "unit");
+        this.tickDuration = unit.toNanos(checkPositive(tickDuration, "tickDuration"));
+        this.expiryExecutor = expiryExecutor;
+        this.maxPendingTimeouts = maxPendingTimeouts;
+        this.shards = new Shard[checkPositive(shards, "shards")];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(threadFactory);
+        }
+    }
+
+    /**
+     * Starts the background threads explicitly.  The background threads will
+     * start automatically on demand even if you did not call this method.
+     *
+     * @throws IllegalStateException if this timer has been
+     *                               {@linkplain #stop() stopped} already
+     */
+    public void start() {
+        switch (WORKER_STATE_UPDATER.get(this)) {
+            case WORKER_STATE_INIT:
+                if (WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_INIT, WORKER_STATE_STARTED)) {
+                    for (Shard shard: shards) {
+                        shard.thread.start();
+                    }
+                }
+                break;
+            case WORKER_STATE_STARTED:
+                break;
+            case WORKER_STATE_SHUTDOWN:
+                throw new IllegalStateException("cannot be started once stopped");
+            default:
+                throw new Error("Invalid WorkerState");
+        }
+    }
+
+    @Override
+    public Set<Timeout> stop() {
+        for (Shard shard: shards) {
+            if (Thread.currentThread() == shard.thread) {
+                throw new IllegalStateException(
+                        HierarchicalWheelTimer.class.getSimpleName() +
+                                ".stop() cannot be called from " +
+                                TimerTask.class.getSimpleName());
+            }
+        }
+
+        if (!WORKER_STATE_UPDATER.compareAndSet(this, WORKER_STATE_STARTED, WORKER_STATE_SHUTDOWN)) {
+            // workerState can be 0 or 2 at this moment - let it always be 2.
+            WORKER_STATE_UPDATER.set(this, WORKER_STATE_SHUTDOWN);
+            return Collections.emptySet();
+        }
+
+        boolean interrupted = false;
+        Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
+        for (Shard shard: shards) {
+            while (shard.thread.isAlive()) {
+                shard.thread.interrupt();
+                try {
+                    shard.thread.join(100);
+                } catch (InterruptedException ignored) {
+                    interrupted = true;
+                }
+            }
+            unprocessedTimeouts.addAll(shard.unprocessedTimeouts);
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return Collections.unmodifiableSet(unprocessedTimeouts);
+    }
+
+    @Override
+    public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+        checkNotNull(task, "task");
+        checkNotNull(unit, "unit");
+
+        Shard shard = shards.length == 1 ? shards[0] :
+                shards[PlatformDependent.threadLocalRandom().nextInt(shards.length)];
+        long pendingTimeoutsCount = shard.pendingTimeouts.incrementAndGet();
+
+        if (maxPendingTimeouts > 0 && pendingTimeoutsCount > maxPendingTimeouts) {
+            shard.pendingTimeouts.decrementAndGet();
+            throw new RejectedExecutionException("Number of pending timeouts ("
+                + pendingTimeoutsCount + ") is greater than or equal to maximum allowed pending "
+                + "timeouts (" + maxPendingTimeouts + ")");
+        }
+
+        start();
+
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+
+        // Guard against overflow.
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        HierarchicalWheelTimeout timeout = new HierarchicalWheelTimeout(this, shard, task, deadline);
+        shard.newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of pending timeouts of this {@link Timer}, which were neither expired nor cancelled.
+     */
+    public long pendingTimeouts() {
+        long pendingTimeouts = 0;
+        for (Shard shard: shards) {
+            pendingTimeouts += shard.pendingTimeouts.get();
+        }
+        return pendingTimeouts;
+    }
+
+    /**
+     * Returns how late the last tick of the most late worker thread was processed, which grows when the worker
+     * threads can not keep up with the timeouts.
+     */
+    public long tickLag(TimeUnit unit) {
+        long tickLag = 0;
+        for (Shard shard: shards) {
+            tickLag = Math.max(tickLag, shard.tickLag);
+        }
+        return unit.convert(tickLag, TimeUnit.NANOSECONDS);
+    }
+
+    private final class Shard implements Runnable {
+        final Queue<HierarchicalWheelTimeout> newTimeouts = PlatformDependent.newMpscQueue();
+        final Queue<HierarchicalWheelTimeout> cancelledTimeouts = PlatformDependent.newMpscQueue();
+        final AtomicLong pendingTimeouts = new AtomicLong();
+        final Thread thread;
+        volatile long tickLag;
+        // Only set once the thread terminated.
+        final Set<Timeout> unprocessedTimeouts = new HashSet<Timeout>();
+
+        // Only accessed by the thread.
+        private final HierarchicalWheelTimeout[] wheel = new HierarchicalWheelTimeout[LEVELS * SLOTS];
+        private final long[] occupied = new long[LEVELS];
+        private List<HierarchicalWheelTimeout> expired = new ArrayList<HierarchicalWheelTimeout>();
+        private long tick;
+
+        Shard(ThreadFactory threadFactory) {
+            thread = threadFactory.newThread(this);
+        }
+
+        @Override
+        public void run() {
+            do {
+                final long currentTime = waitForNextTick();
+                if (currentTime > 0) {
+                    processCancelledTimeouts();
+                    transferTimeoutsToWheels();
+                    advance(currentTime / tickDuration);
+                    expireTimeouts();
+                }
+            } while (WORKER_STATE_UPDATER.get(HierarchicalWheelTimer.this) == WORKER_STATE_STARTED);
+
+            // Fill the unprocessedTimeouts so we can return them from stop() method.
+            for (HierarchicalWheelTimeout timeout: wheel) {
+                for (; timeout != null; timeout = timeout.next) {
+                    if (!timeout.isCancelled()) {
+                        unprocessedTimeouts.add(timeout);
+                    }
+                }
+            }
+            for (HierarchicalWheelTimeout timeout: expired) {
+                if (!timeout.isCancelled()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+            }
+            for (;;) {
+                HierarchicalWheelTimeout timeout = newTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (!timeout.isCancelled()) {
+                    unprocessedTimeouts.add(timeout);
+                }
+            }
+        }
+
+        /**
+         * Waits until the next tick and returns the current time, or {@code Long.MIN_VALUE} if the timer was
+         * stopped.
+         */
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+
+            for (;;) {
+                final long currentTime = System.nanoTime() - startTime;
+                long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+
+                if (sleepTimeMs <= 0) {
+                    tickLag = currentTime - deadline;
+                    return currentTime == Long.MIN_VALUE ? -Long.MAX_VALUE : currentTime;
+                }
+                if (PlatformDependent.isWindows()) {
+                    sleepTimeMs = sleepTimeMs / 10 * 10;
+                }
+
+                try {
+                    Thread.sleep(sleepTimeMs);
+                } catch (InterruptedException ignored) {
+                    if (WORKER_STATE_UPDATER.get(HierarchicalWheelTimer.this) == WORKER_STATE_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+
+        private void processCancelledTimeouts() {
+            for (;;) {
+                HierarchicalWheelTimeout timeout = cancelledTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.wheelIndex >= 0) {
+                    unlink(timeout);
+                }
+            }
+        }
+
+        private void transferTimeoutsToWheels() {
+            for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+                HierarchicalWheelTimeout timeout = newTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (!timeout.isCancelled()) {
+                    place(timeout);
+                }
+            }
+        }
+
+        /**
+         * Moves the wheels forward to the given tick, and collects the timeouts which expired on the way.
+         */
+        private void advance(long currentTick) {
+            while (tick < currentTick) {
+                int level = 0;
+                while (level < LEVELS && occupied[level] == 0) {
+                    level++;
+                }
+                if (level == LEVELS) {
+                    break;
+                }
+                // All the non-empty slots of a wheel are after the current one, and the lowest wheel holds the
+                // earliest timeouts, so the first of its slots is the next one which needs to be moved down.
+                int slot = Long.numberOfTrailingZeros(occupied[level]);
+                int shift = level * SLOT_BITS;
+                int upperShift = shift + SLOT_BITS;
+                long upper = upperShift >= 64 ? 0 : tick >>> upperShift << upperShift;
+                long nextTick = upper | (long) slot << shift;
+                if (nextTick > currentTick) {
+                    break;
+                }
+                tick = nextTick;
+                cascade(level << SLOT_BITS | slot);
+            }
+            tick = Math.max(tick, currentTick);
+        }
+
+        private void place(HierarchicalWheelTimeout timeout) {
+            // Round up, so a timeout never expires early.
+            long timeoutTick = timeout.deadline / tickDuration + (timeout.deadline % tickDuration == 0 ? 0 : 1);
+            if (timeoutTick <= tick) {
+                expired.add(timeout);
+                return;
+            }
+            long diff = timeoutTick ^ tick;
+            int level = (63 - Long.numberOfLeadingZeros(diff)) / SLOT_BITS;
+            int slot = (int) (timeoutTick >>> level * SLOT_BITS) & SLOT_MASK;
+            int index = level << SLOT_BITS | slot;
+            HierarchicalWheelTimeout head = wheel[index];
+            timeout.wheelIndex = index;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            wheel[index] = timeout;
+            occupied[level] |= 1L << slot;
+        }
+
+        private void unlink(HierarchicalWheelTimeout timeout) {
+            int index = timeout.wheelIndex;
+            HierarchicalWheelTimeout prev = timeout.prev;
+            HierarchicalWheelTimeout next = timeout.next;
+            if (prev == null) {
+                wheel[index] = next;
+                if (next == null) {
+                    occupied[index >>> SLOT_BITS] &= ~(1L << (index & SLOT_MASK));
+                }
+            } else {
+                prev.next = next;
+            }
+            if (next != null) {
+                next.prev = prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.wheelIndex = -1;
+        }
+
+        private void cascade(int index) {
+            HierarchicalWheelTimeout timeout = wheel[index];
+            wheel[index] = null;
+            occupied[index >>> SLOT_BITS] &= ~(1L << (index & SLOT_MASK));
+            while (timeout != null) {
+                HierarchicalWheelTimeout next = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                timeout.wheelIndex = -1;
+                place(timeout);
+                timeout = next;
+            }
+        }
+
+        private void expireTimeouts() {
+            List<HierarchicalWheelTimeout> expired = this.expired;
+            if (expired.isEmpty()) {
+                return;
+            }
+            if (expiryExecutor == null) {
+                for (int i = 0; i < expired.size(); i++) {
+                    expired.get(i).expire();
+                }
+                expired.clear();
+                return;
+            }
+            for (int i = 0; i < expired.size(); i += EXPIRY_BATCH_SIZE) {
+                final List<HierarchicalWheelTimeout> batch =
+                        expired.subList(i, Math.min(expired.size(), i + EXPIRY_BATCH_SIZE));
+                try {
+                    expiryExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int i = 0; i < batch.size(); i++) {
+                                batch.get(i).expire();
+                            }
+                        }
+                    });
+                } catch (Throwable t) {
+                    logger.warn("Failed to submit expired timeouts to {}, running them on the worker thread.",
+                                expiryExecutor, t);
+                    for (int j = 0; j < batch.size(); j++) {
+                        batch.get(j).expire();
+                    }
+                }
+            }
+            // The batches are still referenced by the tasks, so use a new list.
+            this.expired = new ArrayList<HierarchicalWheelTimeout>();
+        }
+    }
+
+    private static final class HierarchicalWheelTimeout implements Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<HierarchicalWheelTimeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(HierarchicalWheelTimeout.class, "state");
+
+        private final HierarchicalWheelTimer timer;
+        private final Shard shard;
+        private final TimerTask task;
+        final long deadline;
+
+        @SuppressWarnings({"unused", "FieldMayBeFinal", "RedundantFieldInitialization" })
+        private volatile int state = ST_INIT;
+
+        // The slot and the links in the wheels of the shard, only accessed by its thread.
+        int wheelIndex = -1;
+        HierarchicalWheelTimeout prev;
+        HierarchicalWheelTimeout next;
+
+        HierarchicalWheelTimeout(HierarchicalWheelTimer timer, Shard shard, TimerTask task, long deadline) {
+            this.timer = timer;
+            this.shard = shard;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Timer timer() {
+            return timer;
+        }
+
+        @Override
+        public TimerTask task() {
+            return task;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            shard.pendingTimeouts.decrementAndGet();
+            // The thread of the shard removes it from the wheels on its next tick.
+            shard.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            shard.pendingTimeouts.decrementAndGet();
+
+            try {
+                task.run(this);
+            } catch (Throwable t) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("An exception was thrown by " + TimerTask.class.getSimpleName() + '.', t);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            long remaining = deadline - System.nanoTime() + timer.startTime;
+
+            StringBuilder buf = new StringBuilder(192)
+               .append(simpleClassName(this))
+               .append('(')
+               .append("deadline: ");
+            if (remaining > 0) {
+                buf.append(remaining)
+                   .append(" ns later");
+            } else if (remaining < 0) {
+                buf.append(-remaining)
+                   .append(" ns ago");
+            } else {
+                buf.append("now");
+            }
+
+            if (isCancelled()) {
+                buf.append(", cancelled");
+            }
+
+            return buf.append(", task: ")
+                      .append(task())
+                      .append(')')
+                      .toString();
+        }
+    }
+}
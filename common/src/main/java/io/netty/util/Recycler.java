@@ -17,6 +17,8 @@
 package io.netty.util;
 
 import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
@@ -24,8 +26,10 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Queue;
 import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static io.netty.util.internal.MathUtil.safeFindNextPositivePowerOfTwo;
 import static java.lang.Math.max;
@@ -49,6 +53,7 @@ public abstract class Recycler<T> {
     };
     private static final AtomicInteger ID_GENERATOR = new AtomicInteger(Integer.MIN_VALUE);
     private static final int OWN_THREAD_ID = ID_GENERATOR.getAndIncrement();
+    private static final int CROSS_THREAD_ID = ID_GENERATOR.getAndIncrement();
     private static final int DEFAULT_INITIAL_MAX_CAPACITY_PER_THREAD = 4 * 1024; // Use 4k instances as default.
     private static final int DEFAULT_MAX_CAPACITY_PER_THREAD;
     private static final int INITIAL_CAPACITY;
@@ -56,6 +61,8 @@ public abstract class Recycler<T> {
     private static final int MAX_DELAYED_QUEUES_PER_THREAD;
     private static final int LINK_CAPACITY;
     private static final int RATIO;
+    private static final boolean USE_MPSC_QUEUE;
+    private static final boolean METRICS;
 
     static {
         // In the future, we might have different maxCapacity for different object types.
@@ -86,17 +93,29 @@ public abstract class Recycler<T> {
         // bursts.
         RATIO = safeFindNextPositivePowerOfTwo(SystemPropertyUtil.getInt("io.netty.recycler.ratio", 8));
 
+        // Objects recycled by other threads are returned through a bounded MPSC queue per Stack instead of the
+        // WeakOrderQueues, which needs no thread-local map and no per-thread limit.
+        USE_MPSC_QUEUE = SystemPropertyUtil.getBoolean("io.netty.recycler.useMpscQueue", false);
+
+        // The counters are shared by all threads, so they are only maintained on demand to keep get() and recycle()
+        // cheap.
+        METRICS = SystemPropertyUtil.getBoolean("io.netty.recycler.metrics", false);
+
         if (logger.isDebugEnabled()) {
             if (DEFAULT_MAX_CAPACITY_PER_THREAD == 0) {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: disabled");
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: disabled");
                 logger.debug("-Dio.netty.recycler.linkCapacity: disabled");
                 logger.debug("-Dio.netty.recycler.ratio: disabled");
+                logger.debug("-Dio.netty.recycler.useMpscQueue: disabled");
+                logger.debug("-Dio.netty.recycler.metrics: disabled");
             } else {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: {}", DEFAULT_MAX_CAPACITY_PER_THREAD);
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: {}", MAX_SHARED_CAPACITY_FACTOR);
                 logger.debug("-Dio.netty.recycler.linkCapacity: {}", LINK_CAPACITY);
                 logger.debug("-Dio.netty.recycler.ratio: {}", RATIO);
+                logger.debug("-Dio.netty.recycler.useMpscQueue: {}", USE_MPSC_QUEUE);
+                logger.debug("-Dio.netty.recycler.metrics: {}", METRICS);
             }
         }
 
@@ -107,12 +126,20 @@ public abstract class Recycler<T> {
     private final int maxSharedCapacityFactor;
     private final int ratioMask;
     private final int maxDelayedQueuesPerThread;
+    private final boolean useMpscQueue;
+    private final boolean metrics;
+
+    // We need to use the LongCounter here as the handles may be recycled by any thread. Only updated if metrics is set.
+    private final LongCounter hits = PlatformDependent.newLongCounter();
+    private final LongCounter misses = PlatformDependent.newLongCounter();
+    private final LongCounter drops = PlatformDependent.newLongCounter();
+    private final LongCounter crossThreadReturns = PlatformDependent.newLongCounter();
 
     private final FastThreadLocal<Stack<T>> threadLocal = new FastThreadLocal<Stack<T>>() {
         @Override
         protected Stack<T> initialValue() {
             return new Stack<T>(Recycler.this, Thread.currentThread(), maxCapacityPerThread, maxSharedCapacityFactor,
-                    ratioMask, maxDelayedQueuesPerThread);
+                    ratioMask, maxDelayedQueuesPerThread, useMpscQueue);
         }
 
         @Override
@@ -140,6 +167,13 @@ public abstract class Recycler<T> {
 
     protected Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
                        int ratio, int maxDelayedQueuesPerThread) {
+        this(maxCapacityPerThread, maxSharedCapacityFactor, ratio, maxDelayedQueuesPerThread, USE_MPSC_QUEUE, METRICS);
+    }
+
+    Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
+             int ratio, int maxDelayedQueuesPerThread, boolean useMpscQueue, boolean metrics) {
+        this.useMpscQueue = useMpscQueue;
+        this.metrics = metrics;
         ratioMask = safeFindNextPositivePowerOfTwo(ratio) - 1;
         if (maxCapacityPerThread <= 0) {
             this.maxCapacityPerThread = 0;
@@ -160,12 +194,62 @@ public abstract class Recycler<T> {
         Stack<T> stack = threadLocal.get();
         DefaultHandle<T> handle = stack.pop();
         if (handle == null) {
+            if (metrics) {
+                misses.increment();
+            }
             handle = stack.newHandle();
             handle.value = newObject(handle);
+        } else if (metrics) {
+            hits.increment();
         }
         return (T) handle.value;
     }
 
+    private void recordDrop() {
+        if (metrics) {
+            drops.increment();
+        }
+    }
+
+    private void recordCrossThreadReturn() {
+        if (metrics) {
+            crossThreadReturns.increment();
+        }
+    }
+
+    /**
+     * Returns the number of {@link #get()} calls which were served by a recycled object.
+     * Only counted if {@code -Dio.netty.recycler.metrics=true}.
+     */
+    public final long numHits() {
+        return hits.value();
+    }
+
+    /**
+     * Returns the number of {@link #get()} calls which had to create a new object.
+     * Only counted if {@code -Dio.netty.recycler.metrics=true}.
+     */
+    public final long numMisses() {
+        return misses.value();
+    }
+
+    /**
+     * Returns the number of recycled objects which were dropped, either because the pool was full or because of
+     * the configured ratio of objects to keep.
+     * Only counted if {@code -Dio.netty.recycler.metrics=true}.
+     */
+    public final long numDrops() {
+        return drops.value();
+    }
+
+    /**
+     * Returns the number of objects which were recycled by a different thread than the one they were obtained from.
+     * Only counted if {@code -Dio.netty.recycler.metrics=true}.
+     */
+    public final long numCrossThreadReturns() {
+        return crossThreadReturns.value();
+    }
+
     /**
      * @deprecated use {@link Handle#recycle(Object)}.
      */
@@ -348,7 +432,10 @@ public abstract class Recycler<T> {
                     ? newQueue(stack, thread) : null;
         }
 
-        void add(DefaultHandle<?> handle) {
+        /**
+         * Adds the handle to this queue, returning {@code false} if it had to be dropped.
+         */
+        boolean add(DefaultHandle<?> handle) {
             handle.lastRecycledId = id;
 
             Link tail = this.tail;
@@ -356,7 +443,7 @@ public abstract class Recycler<T> {
             if ((writeIndex = tail.get()) == LINK_CAPACITY) {
                 if (!head.reserveSpace(LINK_CAPACITY)) {
                     // Drop it.
-                    return;
+                    return false;
                 }
                 // We allocate a Link so reserve the space
                 this.tail = tail = tail.next = new Link();
@@ -371,6 +458,7 @@ public abstract class Recycler<T> {
             //https://github.com/netty/netty/issues/8215
             //http://ifeve.com/juc-atomic-class-lazyset-que/
             tail.lazySet(writeIndex + 1);
+            return true;
         }
 
         boolean hasFinalData() {
@@ -422,6 +510,7 @@ public abstract class Recycler<T> {
 
                     if (dst.dropHandle(element)) {
                         // Drop the object.
+                        dst.parent.recordDrop();
                         continue;
                     }
                     element.stack = dst;
@@ -449,6 +538,10 @@ public abstract class Recycler<T> {
 
     static final class Stack<T> {
 
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Stack, Queue> PENDING_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Stack.class, Queue.class, "pending");
+
         // we keep a queue of per-thread queues, which is appended to once only, each time a new thread other
         // than the stack owner recycles: when we run out of items in our stack we iterate this collection
         // to scavenge those that can be reused. this permits us to incur minimal thread synchronisation whilst
@@ -464,6 +557,7 @@ public abstract class Recycler<T> {
         final WeakReference<Thread> threadRef;
         final AtomicInteger availableSharedCapacity;
         final int maxDelayedQueues;
+        final boolean useMpscQueue;
 
         private final int maxCapacity;
         private final int ratioMask;
@@ -472,9 +566,11 @@ public abstract class Recycler<T> {
         private int handleRecycleCount = -1; // Start with -1 so the first one will be recycled.
         private WeakOrderQueue cursor, prev;
         private volatile WeakOrderQueue head;
+        // The handles recycled by other threads if useMpscQueue is set, created on the first such recycle.
+        private volatile Queue<DefaultHandle<?>> pending;
 
         Stack(Recycler<T> parent, Thread thread, int maxCapacity, int maxSharedCapacityFactor,
-              int ratioMask, int maxDelayedQueues) {
+              int ratioMask, int maxDelayedQueues, boolean useMpscQueue) {
             this.parent = parent;
             threadRef = new WeakReference<Thread>(thread);
             this.maxCapacity = maxCapacity;
@@ -482,6 +578,7 @@ public abstract class Recycler<T> {
             elements = new DefaultHandle[min(INITIAL_CAPACITY, maxCapacity)];
             this.ratioMask = ratioMask;
             this.maxDelayedQueues = maxDelayedQueues;
+            this.useMpscQueue = useMpscQueue;
         }
 
         // Marked as synchronized to ensure this is serialized.
@@ -509,7 +606,7 @@ public abstract class Recycler<T> {
         DefaultHandle<T> pop() {
             int size = this.size;
             if (size == 0) {
-                if (!scavenge()) {
+                if (useMpscQueue ? !drainPending() : !scavenge()) {
                     return null;
                 }
                 size = this.size;
@@ -588,6 +685,43 @@ public abstract class Recycler<T> {
             return success;
         }
 
+        /**
+         * Moves a batch of the handles recycled by other threads from the MPSC queue to the stack, returning
+         * {@code true} if any were moved.
+         */
+        boolean drainPending() {
+            Queue<DefaultHandle<?>> pending = this.pending;
+            if (pending == null) {
+                return false;
+            }
+            int size = this.size;
+            int batchSize = min(LINK_CAPACITY, maxCapacity - size);
+            if (size + batchSize > elements.length) {
+                batchSize = min(batchSize, increaseCapacity(size + batchSize) - size);
+            }
+            DefaultHandle<?>[] elements = this.elements;
+            DefaultHandle<?> handle;
+            while (batchSize > 0 && (handle = pending.poll()) != null) {
+                if (handle.recycleId == 0) {
+                    handle.recycleId = handle.lastRecycledId;
+                } else if (handle.recycleId != handle.lastRecycledId) {
+                    throw new IllegalStateException("recycled already");
+                }
+                if (dropHandle(handle)) {
+                    parent.recordDrop();
+                    continue;
+                }
+                handle.stack = this;
+                elements[size ++] = handle;
+                batchSize --;
+            }
+            if (this.size == size) {
+                return false;
+            }
+            this.size = size;
+            return true;
+        }
+
         void push(DefaultHandle<?> item) {
             Thread currentThread = Thread.currentThread();
             if (threadRef.get() == currentThread) {
@@ -597,7 +731,12 @@ public abstract class Recycler<T> {
                 // The current Thread is not the one that belongs to the Stack
                 // (or the Thread that belonged to the Stack was collected already), we need to signal that the push
                 // happens later.
-                pushLater(item, currentThread);
+                parent.recordCrossThreadReturn();
+                if (useMpscQueue) {
+                    pushPending(item);
+                } else {
+                    pushLater(item, currentThread);
+                }
             }
         }
 
@@ -610,6 +749,7 @@ public abstract class Recycler<T> {
             int size = this.size;
             if (size >= maxCapacity || dropHandle(item)) {
                 // Hit the maximum capacity or should drop - drop the possibly youngest object.
+                parent.recordDrop();
                 return;
             }
             if (size == elements.length) {
@@ -630,20 +770,44 @@ public abstract class Recycler<T> {
                 if (delayedRecycled.size() >= maxDelayedQueues) {
                     // Add a dummy queue so we know we should drop the object
                     delayedRecycled.put(this, WeakOrderQueue.DUMMY);
+                    parent.recordDrop();
                     return;
                 }
                 // Check if we already reached the maximum number of delayed queues and if we can allocate at all.
                 if ((queue = WeakOrderQueue.allocate(this, thread)) == null) {
                     // drop object
+                    parent.recordDrop();
                     return;
                 }
                 delayedRecycled.put(this, queue);
             } else if (queue == WeakOrderQueue.DUMMY) {
                 // drop object
+                parent.recordDrop();
                 return;
             }
 
-            queue.add(item);
+            if (!queue.add(item)) {
+                parent.recordDrop();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void pushPending(DefaultHandle<?> item) {
+            Queue<DefaultHandle<?>> pending = this.pending;
+            if (pending == null) {
+                // The queue holds at most as many handles as the WeakOrderQueues would have been allowed to hold.
+                pending = PlatformDependent.newFixedMpscQueue(availableSharedCapacity.get());
+                if (!PENDING_UPDATER.compareAndSet(this, null, pending)) {
+                    pending = this.pending;
+                }
+            }
+            item.lastRecycledId = CROSS_THREAD_ID;
+            // Null out the stack before the handle is published by the queue, so a second recycle fails.
+            item.stack = null;
+            if (!pending.offer(item)) {
+                // The queue is full, drop the object.
+                parent.recordDrop();
+            }
         }
 
         boolean dropHandle(DefaultHandle<?> handle) {
@@ -15,64 +15,83 @@
  */
 package io.netty.util.concurrent;
 
-import java.util.Arrays;
-
+/**
+ * An immutable list of two or more listeners, so {@link DefaultPromise} can swap it atomically. It is a stack which
+ * shares all the listeners with the list it was created from, so adding a listener does not copy the others.
+ */
 final class DefaultFutureListeners {
 
-    private GenericFutureListener<? extends Future<?>>[] listeners;
-    private int size;
-    private int progressiveSize; // the number of progressive listeners
+    // The most recently added listener and the ones added before, next is null for the first listener only.
+    private final GenericFutureListener<? extends Future<?>> listener;
+    private final DefaultFutureListeners next;
+    private final int size;
+    private final int progressiveSize; // the number of progressive listeners
 
-    @SuppressWarnings("unchecked")
     DefaultFutureListeners(
             GenericFutureListener<? extends Future<?>> first, GenericFutureListener<? extends Future<?>> second) {
-        listeners = new GenericFutureListener[2];
-        listeners[0] = first;
-        listeners[1] = second;
-        size = 2;
-        if (first instanceof GenericProgressiveFutureListener) {
-            progressiveSize ++;
-        }
-        if (second instanceof GenericProgressiveFutureListener) {
-            progressiveSize ++;
-        }
+        this(second, new DefaultFutureListeners(first, (DefaultFutureListeners) null));
     }
 
-    public void add(GenericFutureListener<? extends Future<?>> l) {
-        GenericFutureListener<? extends Future<?>>[] listeners = this.listeners;
-        final int size = this.size;
-        if (size == listeners.length) {
-            this.listeners = listeners = Arrays.copyOf(listeners, size << 1);
-        }
-        listeners[size] = l;
-        this.size = size + 1;
-
-        if (l instanceof GenericProgressiveFutureListener) {
-            progressiveSize ++;
+    private DefaultFutureListeners(GenericFutureListener<? extends Future<?>> listener, DefaultFutureListeners next) {
+        this.listener = listener;
+        this.next = next;
+        int size = 1;
+        int progressiveSize = listener instanceof GenericProgressiveFutureListener ? 1 : 0;
+        if (next != null) {
+            size += next.size;
+            progressiveSize += next.progressiveSize;
         }
+        this.size = size;
+        this.progressiveSize = progressiveSize;
     }
 
-    public void remove(GenericFutureListener<? extends Future<?>> l) {
-        final GenericFutureListener<? extends Future<?>>[] listeners = this.listeners;
-        int size = this.size;
-        for (int i = 0; i < size; i ++) {
-            if (listeners[i] == l) {
-                int listenersToMove = size - i - 1;
-                if (listenersToMove > 0) {
-                    System.arraycopy(listeners, i + 1, listeners, i, listenersToMove);
-                }
-                listeners[-- size] = null;
-                this.size = size;
+    /**
+     * Returns a new instance which contains the listeners of this instance followed by the given one.
+     */
+    public DefaultFutureListeners add(GenericFutureListener<? extends Future<?>> l) {
+        return new DefaultFutureListeners(l, this);
+    }
 
-                if (l instanceof GenericProgressiveFutureListener) {
-                    progressiveSize --;
-                }
-                return;
+    /**
+     * Returns the listeners which remain after removing the first added occurrence of the given one, either this
+     * instance if it was not found, the single remaining {@link GenericFutureListener} or a new instance.
+     */
+    public Object remove(GenericFutureListener<? extends Future<?>> l) {
+        DefaultFutureListeners found = null;
+        for (DefaultFutureListeners node = this; node != null; node = node.next) {
+            if (node.listener == l) {
+                found = node;
             }
         }
+        if (found == null) {
+            return this;
+        }
+        if (size == 2) {
+            return found == this ? next.listener : listener;
+        }
+        // Copy the listeners which were added after the removed one, the ones added before are shared.
+        GenericFutureListener<?>[] newer = new GenericFutureListener[size - found.size];
+        int i = 0;
+        for (DefaultFutureListeners node = this; node != found; node = node.next) {
+            newer[i ++] = node.listener;
+        }
+        DefaultFutureListeners remaining = found.next;
+        while (i > 0) {
+            remaining = new DefaultFutureListeners(newer[-- i], remaining);
+        }
+        return remaining;
     }
 
+    /**
+     * Returns the listeners in the order they were added.
+     */
+    @SuppressWarnings("unchecked")
     public GenericFutureListener<? extends Future<?>>[] listeners() {
+        GenericFutureListener<? extends Future<?>>[] listeners = new GenericFutureListener[size];
+        int i = size;
+        for (DefaultFutureListeners node = this; node != null; node = node.next) {
+            listeners[-- i] = node.listener;
+        }
         return listeners;
     }
 
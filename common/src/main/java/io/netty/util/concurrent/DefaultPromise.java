@@ -25,7 +25,9 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -39,6 +41,15 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     @SuppressWarnings("rawtypes")
     private static final AtomicReferenceFieldUpdater<DefaultPromise, Object> RESULT_UPDATER =
             AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, Object.class, "result");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<DefaultPromise, Object> LISTENERS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, Object.class, "listeners");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<DefaultPromise, WaitNode> WAITERS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultPromise.class, WaitNode.class, "waiters");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<DefaultPromise> NOTIFYING_LISTENERS_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(DefaultPromise.class, "notifyingListeners");
     private static final Object SUCCESS = new Object();
     private static final Object UNCANCELLABLE = new Object();
     private static final CauseHolder CANCELLATION_CAUSE_HOLDER = new CauseHolder(ThrowableUtil.unknownStackTrace(
@@ -47,22 +58,26 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     private volatile Object result;
     private final EventExecutor executor;
     /**
-     * One or more listeners. Can be a {@link GenericFutureListener} or a {@link DefaultFutureListeners}.
+     * One or more listeners. Can be a {@link GenericFutureListener} or an immutable {@link DefaultFutureListeners}.
      * If {@code null}, it means either 1) no listeners were added yet or 2) all listeners were notified.
      *
-     * Threading - synchronized(this). We must support adding listeners when there is no EventExecutor.
+     * Threading - compare and set. We must support adding listeners when there is no EventExecutor.
      */
-    private Object listeners;
+    private volatile Object listeners;
     /**
-     * Threading - synchronized(this). We are required to hold the monitor to use Java's underlying wait()/notifyAll().
+     * The threads waiting for this promise to complete, as a stack of {@link WaitNode}s.
+     *
+     * Threading - compare and set. The waiting threads are parked with {@link LockSupport}.
      */
-    private short waiters;
+    private volatile WaitNode waiters;
 
     /**
-     * Threading - synchronized(this). We must prevent concurrent notification and FIFO listener notification if the
+     * {@code 1} while a thread notifies the listeners, {@code 0} otherwise.
+     *
+     * Threading - compare and set. We must prevent concurrent notification and FIFO listener notification if the
      * executor changes.
      */
-    private boolean notifyingListeners;
+    private volatile int notifyingListeners;
 
     /**
      * Creates a new instance.
@@ -154,9 +169,7 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     public Promise<V> addListener(GenericFutureListener<? extends Future<? super V>> listener) {
         checkNotNull(listener, "listener");
 
-        synchronized (this) {
-            addListener0(listener);
-        }
+        addListener0(listener);
 
         if (isDone()) {
             notifyListeners();
@@ -169,13 +182,11 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     public Promise<V> addListeners(GenericFutureListener<? extends Future<? super V>>... listeners) {
         checkNotNull(listeners, "listeners");
 
-        synchronized (this) {
-            for (GenericFutureListener<? extends Future<? super V>> listener : listeners) {
-                if (listener == null) {
-                    break;
-                }
-                addListener0(listener);
+        for (GenericFutureListener<? extends Future<? super V>> listener : listeners) {
+            if (listener == null) {
+                break;
             }
+            addListener0(listener);
         }
 
         if (isDone()) {
@@ -189,9 +200,7 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     public Promise<V> removeListener(final GenericFutureListener<? extends Future<? super V>> listener) {
         checkNotNull(listener, "listener");
 
-        synchronized (this) {
-            removeListener0(listener);
-        }
+        removeListener0(listener);
 
         return this;
     }
@@ -200,13 +209,11 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     public Promise<V> removeListeners(final GenericFutureListener<? extends Future<? super V>>... listeners) {
         checkNotNull(listeners, "listeners");
 
-        synchronized (this) {
-            for (GenericFutureListener<? extends Future<? super V>> listener : listeners) {
-                if (listener == null) {
-                    break;
-                }
-                removeListener0(listener);
+        for (GenericFutureListener<? extends Future<? super V>> listener : listeners) {
+            if (listener == null) {
+                break;
             }
+            removeListener0(listener);
         }
 
         return this;
@@ -224,16 +231,7 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
 
         checkDeadLock();
 
-        synchronized (this) {
-            while (!isDone()) {
-                incWaiters();
-                try {
-                    wait();
-                } finally {
-                    decWaiters();
-                }
-            }
-        }
+        awaitDone(false, 0, true);
         return this;
     }
 
@@ -245,25 +243,12 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
 
         checkDeadLock();
 
-        boolean interrupted = false;
-        synchronized (this) {
-            while (!isDone()) {
-                incWaiters();
-                try {
-                    wait();
-                } catch (InterruptedException e) {
-                    // Interrupted while waiting.
-                    interrupted = true;
-                } finally {
-                    decWaiters();
-                }
-            }
-        }
-
-        if (interrupted) {
-            Thread.currentThread().interrupt();
+        try {
+            awaitDone(false, 0, false);
+        } catch (InterruptedException e) {
+            // Should not be raised at all.
+            throw new InternalError();
         }
-
         return this;
     }
 
@@ -440,7 +425,7 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     /**
      * The logic in this method should be identical to {@link #notifyListeners()} but
      * cannot share code because the listener(s) cannot be cached for an instance of {@link DefaultPromise} since the
-     * listener(s) may be changed and is protected by a synchronized operation.
+     * listener(s) may be changed concurrently.
      */
     private static void notifyListenerWithStackOverFlowProtection(final EventExecutor executor,
                                                                   final Future<?> future,
@@ -468,32 +453,21 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     }
 
     private void notifyListenersNow() {
-        Object listeners;
-        synchronized (this) {
-            // Only proceed if there are listeners to notify and we are not already notifying listeners.
-            if (notifyingListeners || this.listeners == null) {
-                return;
-            }
-            notifyingListeners = true;
-            listeners = this.listeners;
-            this.listeners = null;
-        }
-        for (;;) {
-            if (listeners instanceof DefaultFutureListeners) {
-                notifyListeners0((DefaultFutureListeners) listeners);
-            } else {
-                notifyListener0(this, (GenericFutureListener<?>) listeners);
-            }
-            synchronized (this) {
-                if (this.listeners == null) {
-                    // Nothing can throw from within this method, so setting notifyingListeners back to false does not
-                    // need to be in a finally block.
-                    notifyingListeners = false;
-                    return;
+        // Only proceed if there are listeners to notify and we are not already notifying listeners. The listeners which
+        // are added meanwhile are taken by the thread which notifies, after the ones it took before.
+        while (listeners != null && NOTIFYING_LISTENERS_UPDATER.compareAndSet(this, 0, 1)) {
+            Object listeners;
+            while ((listeners = LISTENERS_UPDATER.getAndSet(this, null)) != null) {
+                if (listeners instanceof DefaultFutureListeners) {
+                    notifyListeners0((DefaultFutureListeners) listeners);
+                } else {
+                    notifyListener0(this, (GenericFutureListener<?>) listeners);
                 }
-                listeners = this.listeners;
-                this.listeners = null;
             }
+            // Nothing can throw from within this method, so setting notifyingListeners back to 0 does not need to be
+            // in a finally block. Check the listeners again afterwards, as another thread may have added a listener
+            // and given up on notifying it just before.
+            notifyingListeners = 0;
         }
     }
 
@@ -517,20 +491,36 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
     }
 
     private void addListener0(GenericFutureListener<? extends Future<? super V>> listener) {
-        if (listeners == null) {
-            listeners = listener;
-        } else if (listeners instanceof DefaultFutureListeners) {
-            ((DefaultFutureListeners) listeners).add(listener);
-        } else {
-            listeners = new DefaultFutureListeners((GenericFutureListener<?>) listeners, listener);
+        for (;;) {
+            Object listeners = this.listeners;
+            Object newListeners;
+            if (listeners == null) {
+                newListeners = listener;
+            } else if (listeners instanceof DefaultFutureListeners) {
+                newListeners = ((DefaultFutureListeners) listeners).add(listener);
+            } else {
+                newListeners = new DefaultFutureListeners((GenericFutureListener<?>) listeners, listener);
+            }
+            if (LISTENERS_UPDATER.compareAndSet(this, listeners, newListeners)) {
+                return;
+            }
         }
     }
 
     private void removeListener0(GenericFutureListener<? extends Future<? super V>> listener) {
-        if (listeners instanceof DefaultFutureListeners) {
-            ((DefaultFutureListeners) listeners).remove(listener);
-        } else if (listeners == listener) {
-            listeners = null;
+        for (;;) {
+            Object listeners = this.listeners;
+            Object newListeners;
+            if (listeners instanceof DefaultFutureListeners) {
+                newListeners = ((DefaultFutureListeners) listeners).remove(listener);
+            } else if (listeners == listener) {
+                newListeners = null;
+            } else {
+                return;
+            }
+            if (newListeners == listeners || LISTENERS_UPDATER.compareAndSet(this, listeners, newListeners)) {
+                return;
+            }
         }
     }
 
@@ -551,21 +541,100 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
         return false;
     }
 
-    private synchronized void checkNotifyWaiters() {
-        if (waiters > 0) {
-            notifyAll();
+    private void checkNotifyWaiters() {
+        // A waiter pushes itself before checking the result again, so either it sees the result or we see it.
+        if (waiters == null) {
+            return;
+        }
+        WaitNode node = WAITERS_UPDATER.getAndSet(this, null);
+        while (node != null) {
+            Thread thread = node.thread;
+            if (thread != null) {
+                node.thread = null;
+                LockSupport.unpark(thread);
+            }
+            WaitNode next = node.next;
+            // Unlink to help GC.
+            node.next = null;
+            node = next;
         }
     }
 
-    private void incWaiters() {
-        if (waiters == Short.MAX_VALUE) {
-            throw new IllegalStateException("too many waiters: " + this);
+    /**
+     * Parks the current thread until this promise is done or, if {@code timed}, the timeout elapsed.
+     *
+     * @return {@link #isDone()}
+     */
+    private boolean awaitDone(boolean timed, long timeoutNanos, boolean interruptable) throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + timeoutNanos : 0;
+        WaitNode node = null;
+        boolean queued = false;
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                if (isDone()) {
+                    return true;
+                }
+                if (node == null) {
+                    node = new WaitNode();
+                } else if (!queued) {
+                    WaitNode next = waiters;
+                    node.next = next;
+                    queued = WAITERS_UPDATER.compareAndSet(this, next, node);
+                } else {
+                    if (timed) {
+                        long waitTime = deadline - System.nanoTime();
+                        if (waitTime <= 0) {
+                            return isDone();
+                        }
+                        LockSupport.parkNanos(this, waitTime);
+                    } else {
+                        LockSupport.park(this);
+                    }
+                    if (Thread.interrupted()) {
+                        if (interruptable) {
+                            throw new InterruptedException(toString());
+                        }
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (queued && !isDone()) {
+                removeWaiter(node);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
-        ++waiters;
     }
 
-    private void decWaiters() {
-        --waiters;
+    /**
+     * Unlinks the given node and all the other nodes of waiters which gave up from the stack of waiters. The nodes
+     * are marked by a {@code null} thread first, so concurrent removals can not revive them.
+     */
+    private void removeWaiter(WaitNode node) {
+        node.thread = null;
+        retry:
+        for (;;) {
+            WaitNode pred = null;
+            WaitNode next;
+            for (WaitNode q = waiters; q != null; q = next) {
+                next = q.next;
+                if (q.thread != null) {
+                    pred = q;
+                } else if (pred != null) {
+                    pred.next = next;
+                    if (pred.thread == null) {
+                        // pred was removed concurrently, start over.
+                        continue retry;
+                    }
+                } else if (!WAITERS_UPDATER.compareAndSet(this, q, next)) {
+                    continue retry;
+                }
+            }
+            return;
+        }
     }
 
     private void rethrowIfFailed() {
@@ -592,42 +661,7 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
 
         checkDeadLock();
 
-        long startTime = System.nanoTime();
-        long waitTime = timeoutNanos;
-        boolean interrupted = false;
-        try {
-            for (;;) {
-                synchronized (this) {
-                    if (isDone()) {
-                        return true;
-                    }
-                    incWaiters();
-                    try {
-                        wait(waitTime / 1000000, (int) (waitTime % 1000000));
-                    } catch (InterruptedException e) {
-                        if (interruptable) {
-                            throw e;
-                        } else {
-                            interrupted = true;
-                        }
-                    } finally {
-                        decWaiters();
-                    }
-                }
-                if (isDone()) {
-                    return true;
-                } else {
-                    waitTime = timeoutNanos - (System.nanoTime() - startTime);
-                    if (waitTime <= 0) {
-                        return isDone();
-                    }
-                }
-            }
-        } finally {
-            if (interrupted) {
-                Thread.currentThread().interrupt();
-            }
-        }
+        return awaitDone(true, timeoutNanos, interruptable);
     }
 
     /**
@@ -685,7 +719,7 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
      * Returns a {@link GenericProgressiveFutureListener}, an array of {@link GenericProgressiveFutureListener}, or
      * {@code null}.
      */
-    private synchronized Object progressiveListeners() {
+    private Object progressiveListeners() {
         Object listeners = this.listeners;
         if (listeners == null) {
             // No listeners added
@@ -756,6 +790,11 @@ public class DefaultPromise<V> extends AbstractFuture<V> implements Promise<V> {
         return result != null && result != UNCANCELLABLE;
     }
 
+    private static final class WaitNode {
+        volatile Thread thread = Thread.currentThread();
+        volatile WaitNode next;
+    }
+
     private static final class CauseHolder {
         final Throwable cause;
         CauseHolder(Throwable cause) {
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.util.internal.DefaultPriorityQueue;
+import io.netty.util.internal.PriorityQueue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link PriorityQueue} of {@link ScheduledFutureTask}s backed by a hierarchical timing wheel, so scheduling and
+ * cancelling a task are {@code O(1)} and a cancelled task is removed immediately.
+ * <p>
+ * The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots, where a slot of the first level covers a tick of
+ * 2<sup>{@value #TICK_SHIFT}</sup> nanoseconds (about a millisecond) and a slot of every other level covers all the
+ * slots of the level below. A task is put in the slot of the lowest level which distinguishes its tick from the
+ * current tick, and moved down a level each time the current tick reaches its slot. Once its tick is reached, a task
+ * is moved to a small heap which orders the tasks by their exact deadline. Tasks which are due after the last level,
+ * about 4.9 hours from now, are kept in a heap until the wheel reaches them.
+ * <p>
+ * As the {@link DefaultPriorityQueue} used by default, this must only be used by the {@link EventExecutor} the
+ * tasks belong to.
+ */
+final class TimingWheelScheduledTaskQueue extends AbstractQueue<ScheduledFutureTask<?>>
+        implements PriorityQueue<ScheduledFutureTask<?>> {
+
+    private static final int TICK_SHIFT = 20;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final int WHEEL_BITS = SLOT_BITS * LEVELS;
+
+    // The tasks whose tick was reached.
+    private final DefaultPriorityQueue<ScheduledFutureTask<?>> ready;
+    // The tasks which are due after the last level of the wheel.
+    private final DefaultPriorityQueue<ScheduledFutureTask<?>> far;
+    // The head of the list of tasks of every slot, and a bitmap of the non-empty slots of every level.
+    private final ScheduledFutureTask<?>[] wheel = new ScheduledFutureTask<?>[LEVELS * SLOTS];
+    private final long[] occupied = new long[LEVELS];
+    private long currentTick;
+    private int wheelSize;
+    private int size;
+    // The earliest task which is not ready yet, or null if it needs to be looked up again.
+    private ScheduledFutureTask<?> earliest;
+
+    TimingWheelScheduledTaskQueue(Comparator<ScheduledFutureTask<?>> comparator, int initialSize) {
+        ready = new DefaultPriorityQueue<ScheduledFutureTask<?>>(comparator, initialSize);
+        far = new DefaultPriorityQueue<ScheduledFutureTask<?>>(comparator, initialSize);
+        currentTick = ScheduledFutureTask.nanoTime() >>> TICK_SHIFT;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean offer(ScheduledFutureTask<?> task) {
+        if (task.wheelIndex >= 0) {
+            throw new IllegalArgumentException("task already in the queue: " + task);
+        }
+        if (!place(task)) {
+            // Not ready, so it may be the earliest task.
+            if (earliest != null && task.compareTo(earliest) < 0) {
+                earliest = task;
+            }
+        }
+        size++;
+        return true;
+    }
+
+    @Override
+    public ScheduledFutureTask<?> peek() {
+        advance(ScheduledFutureTask.nanoTime());
+        ScheduledFutureTask<?> task = ready.peek();
+        if (task != null) {
+            return task;
+        }
+        if (earliest == null) {
+            earliest = findEarliest();
+        }
+        return earliest;
+    }
+
+    @Override
+    public ScheduledFutureTask<?> poll() {
+        ScheduledFutureTask<?> task = peek();
+        if (task != null) {
+            removeTyped(task);
+        }
+        return task;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof ScheduledFutureTask && removeTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean removeTyped(ScheduledFutureTask<?> task) {
+        if (task.wheelIndex >= 0) {
+            unlink(task);
+        } else if (!ready.removeTyped(task) && !far.removeTyped(task)) {
+            return false;
+        }
+        if (task == earliest) {
+            earliest = null;
+        }
+        size--;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof ScheduledFutureTask && containsTyped((ScheduledFutureTask<?>) o);
+    }
+
+    @Override
+    public boolean containsTyped(ScheduledFutureTask<?> task) {
+        return task.wheelIndex >= 0 || ready.containsTyped(task) || far.containsTyped(task);
+    }
+
+    @Override
+    public void priorityChanged(ScheduledFutureTask<?> task) {
+        if (removeTyped(task)) {
+            offer(task);
+        }
+    }
+
+    @Override
+    public void clear() {
+        ready.clear();
+        far.clear();
+        for (int i = 0; i < wheel.length; i++) {
+            ScheduledFutureTask<?> task = wheel[i];
+            while (task != null) {
+                ScheduledFutureTask<?> next = task.wheelNext;
+                task.wheelPrev = null;
+                task.wheelNext = null;
+                task.wheelIndex = -1;
+                task = next;
+            }
+        }
+        clearIgnoringIndexes();
+    }
+
+    @Override
+    public void clearIgnoringIndexes() {
+        ready.clearIgnoringIndexes();
+        far.clearIgnoringIndexes();
+        Arrays.fill(wheel, null);
+        Arrays.fill(occupied, 0);
+        wheelSize = 0;
+        size = 0;
+        earliest = null;
+    }
+
+    /**
+     * This iterator does not return elements in any particular order.
+     */
+    @Override
+    public Iterator<ScheduledFutureTask<?>> iterator() {
+        List<ScheduledFutureTask<?>> tasks = new ArrayList<ScheduledFutureTask<?>>(size);
+        for (ScheduledFutureTask<?> task: ready) {
+            tasks.add(task);
+        }
+        for (ScheduledFutureTask<?> task: wheel) {
+            for (; task != null; task = task.wheelNext) {
+                tasks.add(task);
+            }
+        }
+        for (ScheduledFutureTask<?> task: far) {
+            tasks.add(task);
+        }
+        return Collections.unmodifiableList(tasks).iterator();
+    }
+
+    /**
+     * Moves the wheel forward to the given time, so the tasks whose tick was reached become ready.
+     */
+    void advance(long nanoTime) {
+        long tick = nanoTime >>> TICK_SHIFT;
+        while (currentTick < tick) {
+            long nextTick;
+            if (wheelSize != 0) {
+                // The lowest level holds the earliest tasks, and all of its non-empty slots are after the current
+                // one. So the first of them is the next slot which needs to be moved down.
+                int level = 0;
+                while (occupied[level] == 0) {
+                    level++;
+                }
+                int slot = Long.numberOfTrailingZeros(occupied[level]);
+                int shift = level * SLOT_BITS;
+                nextTick = currentTick >>> shift + SLOT_BITS << shift + SLOT_BITS | (long) slot << shift;
+                if (nextTick > tick) {
+                    break;
+                }
+                currentTick = nextTick;
+                cascade(level << SLOT_BITS | slot);
+            } else {
+                ScheduledFutureTask<?> task = far.peek();
+                if (task == null) {
+                    break;
+                }
+                nextTick = task.deadlineNanos() >>> TICK_SHIFT >>> WHEEL_BITS << WHEEL_BITS;
+                if (nextTick > tick) {
+                    break;
+                }
+                currentTick = nextTick;
+                while ((task = far.peek()) != null &&
+                       ((task.deadlineNanos() >>> TICK_SHIFT) ^ currentTick) >>> WHEEL_BITS == 0) {
+                    far.poll();
+                    place(task);
+                }
+            }
+            earliest = null;
+        }
+        // Every non-empty slot is after the given tick, so they all stay in place.
+        currentTick = Math.max(currentTick, tick);
+    }
+
+    /**
+     * Puts the task in the ready heap, the wheel or the far heap, and returns {@code true} if it is ready.
+     */
+    private boolean place(ScheduledFutureTask<?> task) {
+        long tick = task.deadlineNanos() >>> TICK_SHIFT;
+        if (tick <= currentTick) {
+            ready.offer(task);
+            return true;
+        }
+        long diff = tick ^ currentTick;
+        if (diff >>> WHEEL_BITS != 0) {
+            far.offer(task);
+            return false;
+        }
+        int level = (63 - Long.numberOfLeadingZeros(diff)) / SLOT_BITS;
+        int slot = (int) (tick >>> level * SLOT_BITS) & SLOT_MASK;
+        int index = level << SLOT_BITS | slot;
+        ScheduledFutureTask<?> head = wheel[index];
+        task.wheelIndex = index;
+        task.wheelNext = head;
+        if (head != null) {
+            head.wheelPrev = task;
+        }
+        wheel[index] = task;
+        occupied[level] |= 1L << slot;
+        wheelSize++;
+        return false;
+    }
+
+    private void unlink(ScheduledFutureTask<?> task) {
+        int index = task.wheelIndex;
+        ScheduledFutureTask<?> prev = task.wheelPrev;
+        ScheduledFutureTask<?> next = task.wheelNext;
+        if (prev == null) {
+            wheel[index] = next;
+            if (next == null) {
+                occupied[index >>> SLOT_BITS] &= ~(1L << (index & SLOT_MASK));
+            }
+        } else {
+            prev.wheelNext = next;
+        }
+        if (next != null) {
+            next.wheelPrev = prev;
+        }
+        task.wheelPrev = null;
+        task.wheelNext = null;
+        task.wheelIndex = -1;
+        wheelSize--;
+    }
+
+    /**
+     * Moves all the tasks of the given slot to a lower level or to the ready heap, as the current tick reached it.
+     */
+    private void cascade(int index) {
+        ScheduledFutureTask<?> task = wheel[index];
+        wheel[index] = null;
+        occupied[index >>> SLOT_BITS] &= ~(1L << (index & SLOT_MASK));
+        while (task != null) {
+            ScheduledFutureTask<?> next = task.wheelNext;
+            task.wheelPrev = null;
+            task.wheelNext = null;
+            task.wheelIndex = -1;
+            wheelSize--;
+            place(task);
+            task = next;
+        }
+    }
+
+    private ScheduledFutureTask<?> findEarliest() {
+        if (wheelSize == 0) {
+            return far.peek();
+        }
+        int level = 0;
+        while (occupied[level] == 0) {
+            level++;
+        }
+        ScheduledFutureTask<?> task = wheel[level << SLOT_BITS | Long.numberOfTrailingZeros(occupied[level])];
+        ScheduledFutureTask<?> earliest = task;
+        for (task = task.wheelNext; task != null; task = task.wheelNext) {
+            if (task.compareTo(earliest) < 0) {
+                earliest = task;
+            }
+        }
+        return earliest;
+    }
+}
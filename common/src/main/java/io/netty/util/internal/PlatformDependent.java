@@ -420,6 +420,10 @@ public final class PlatformDependent {
         return PlatformDependent0.getInt(address);
     }
 
+    public static int getIntVolatile(long address) {
+        return PlatformDependent0.getIntVolatile(address);
+    }
+
     public static long getLong(long address) {
         return PlatformDependent0.getLong(address);
     }
@@ -548,6 +552,10 @@ public final class PlatformDependent {
         PlatformDependent0.putInt(address, value);
     }
 
+    public static void putIntOrdered(long address, int newValue) {
+        PlatformDependent0.putIntOrdered(address, newValue);
+    }
+
     public static void putLong(long address, long value) {
         PlatformDependent0.putLong(address, value);
     }
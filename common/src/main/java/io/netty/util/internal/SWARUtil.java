@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.netty.util.internal;
+
+/**
+ * SWAR (SIMD Within A Register) utility methods, which search all the 8 bytes of a {@code long} at once.
+ */
+public final class SWARUtil {
+
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private SWARUtil() {
+    }
+
+    /**
+     * Compiles the given byte into a pattern which contains it in each of its 8 bytes, for use with
+     * {@link #applyPattern(long, long)}.
+     */
+    public static long compilePattern(byte byteToFind) {
+        return (byteToFind & 0xFFL) * 0x0101010101010101L;
+    }
+
+    /**
+     * Applies a pattern compiled by {@link #compilePattern(byte)} to the given word.
+     *
+     * @return a word in which the most significant bit of a byte is set if and only if the same byte of the given
+     *         word matched the pattern, all other bits are zero. So it is {@code 0} if no byte matched.
+     */
+    public static long applyPattern(long word, long pattern) {
+        long input = word ^ pattern;
+        // The sum of the low seven bits and 0x7F overflows into the high bit for every non-zero byte. No carry ever
+        // crosses into the next byte so, unlike the cheaper "(input - 0x01..) & ~input" trick, there are no false
+        // positives after a match.
+        long tmp = (input & LOW_SEVEN_BITS) + LOW_SEVEN_BITS;
+        return ~(tmp | input | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * Returns the index of the first matching byte in a non-zero result of {@link #applyPattern(long, long)}.
+     *
+     * @param isBigEndian {@code true} if the word was read in big endian order, so the first byte is the most
+     *                    significant one.
+     */
+    public static int getIndex(long word, boolean isBigEndian) {
+        int zeros = isBigEndian ? Long.numberOfLeadingZeros(word) : Long.numberOfTrailingZeros(word);
+        return zeros >>> 3;
+    }
+}
@@ -18,6 +18,12 @@ package io.netty.util;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 public class DefaultAttributeMapTest {
@@ -96,4 +102,89 @@ public class DefaultAttributeMapTest {
         assertSame(2, attr2.get());
         assertSame(attr, attr2);
     }
+
+    @Test
+    public void testHasAttrAfterRemove() {
+        AttributeKey<Integer> key = AttributeKey.valueOf("hasAttr");
+        assertFalse(map.hasAttr(key));
+
+        Attribute<Integer> attr = map.attr(key);
+        assertTrue(map.hasAttr(key));
+        attr.set(null);
+        assertTrue(map.hasAttr(key));
+
+        attr.remove();
+        assertFalse(map.hasAttr(key));
+
+        // Removing an attribute twice must not remove the attribute which replaced it.
+        Attribute<Integer> attr2 = map.attr(key);
+        attr.remove();
+        assertTrue(map.hasAttr(key));
+        assertSame(attr2, map.attr(key));
+    }
+
+    @Test
+    public void testManyAttributesInRandomOrder() {
+        List<AttributeKey<Integer>> keys = Arrays.asList(newKeys("random", 64));
+        List<AttributeKey<Integer>> shuffled = new ArrayList<AttributeKey<Integer>>(keys);
+        Collections.shuffle(shuffled, new Random(42));
+
+        for (AttributeKey<Integer> key : shuffled) {
+            map.attr(key).set(key.id());
+        }
+        for (AttributeKey<Integer> key : keys) {
+            assertTrue(map.hasAttr(key));
+            assertEquals(Integer.valueOf(key.id()), map.attr(key).get());
+        }
+
+        // Remove every other attribute, the others must be left untouched.
+        for (int i = 0; i < keys.size(); i += 2) {
+            assertEquals(Integer.valueOf(keys.get(i).id()), map.attr(keys.get(i)).getAndRemove());
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            AttributeKey<Integer> key = keys.get(i);
+            assertEquals(i % 2 != 0, map.hasAttr(key));
+            if (i % 2 != 0) {
+                assertEquals(Integer.valueOf(key.id()), map.attr(key).get());
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentAttr() throws Exception {
+        final AttributeKey<Integer>[] keys = newKeys("concurrent", 16);
+        final Attribute<?>[][] seen = new Attribute<?>[4][keys.length];
+        Thread[] threads = new Thread[seen.length];
+        for (int i = 0; i < threads.length; i++) {
+            final Attribute<?>[] attributes = seen[i];
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < keys.length; j++) {
+                        attributes[j] = map.attr(keys[j]);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        // All the threads must have observed the same Attribute for each key.
+        for (int j = 0; j < keys.length; j++) {
+            for (Attribute<?>[] attributes : seen) {
+                assertSame(map.attr(keys[j]), attributes[j]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AttributeKey<Integer>[] newKeys(String prefix, int count) {
+        AttributeKey<Integer>[] keys = new AttributeKey[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = AttributeKey.valueOf(DefaultAttributeMapTest.class, prefix + i);
+        }
+        return keys;
+    }
 }
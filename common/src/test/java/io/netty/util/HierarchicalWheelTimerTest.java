@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HierarchicalWheelTimerTest {
+
+    @Test(timeout = 5000)
+    public void testScheduleTimeoutShouldRunAfterDelay() throws InterruptedException {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer();
+        final CountDownLatch barrier = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        final AtomicBoolean early = new AtomicBoolean();
+        Timeout timeout = timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                early.set(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+                barrier.countDown();
+            }
+        }, 500, TimeUnit.MILLISECONDS);
+        assertEquals(1, timer.pendingTimeouts());
+        barrier.await();
+        assertFalse("timer should not expire early", early.get());
+        assertTrue("timer should expire", timeout.isExpired());
+        assertEquals(0, timer.pendingTimeouts());
+        assertTrue(timer.tickLag(TimeUnit.NANOSECONDS) >= 0);
+        timer.stop();
+    }
+
+    @Test(timeout = 5000)
+    public void testCancel() throws InterruptedException {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer();
+        Timeout timeout = timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                fail("This should not have run");
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        // The pending count drops at once, the worker thread only unlinks the timeout later.
+        assertEquals(0, timer.pendingTimeouts());
+        Thread.sleep(300);
+        assertFalse(timeout.isExpired());
+        assertTrue(timer.stop().isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void testStopReturnsUnprocessedTimeouts() {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(
+                Executors.defaultThreadFactory(), 10, TimeUnit.MILLISECONDS, 2, null, -1);
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                fail("This should not have run");
+            }
+        };
+        Timeout first = timer.newTimeout(task, 1, TimeUnit.MINUTES);
+        // Longer than HashedWheelTimer can wait without going around its wheel many times.
+        Timeout second = timer.newTimeout(task, 100, TimeUnit.DAYS);
+        Timeout cancelled = timer.newTimeout(task, 1, TimeUnit.MINUTES);
+        cancelled.cancel();
+        assertEquals(2, timer.pendingTimeouts());
+
+        Set<Timeout> unprocessed = timer.stop();
+        assertEquals(2, unprocessed.size());
+        assertTrue(unprocessed.contains(first));
+        assertTrue(unprocessed.contains(second));
+    }
+
+    @Test(timeout = 10000)
+    public void testExpireInBatchesOnExecutor() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            HierarchicalWheelTimer timer = new HierarchicalWheelTimer(
+                    Executors.defaultThreadFactory(), 1, TimeUnit.MILLISECONDS, 4, executor, -1);
+            final int count = 20000;
+            final CountDownLatch latch = new CountDownLatch(count);
+            for (int i = 0; i < count; i++) {
+                timer.newTimeout(new TimerTask() {
+                    @Override
+                    public void run(Timeout timeout) {
+                        latch.countDown();
+                    }
+                }, i % 200, TimeUnit.MILLISECONDS);
+            }
+            latch.await();
+            assertEquals(0, timer.pendingTimeouts());
+            assertTrue(timer.stop().isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectNewTimeoutsAboveMaxPending() {
+        HierarchicalWheelTimer timer = new HierarchicalWheelTimer(
+                Executors.defaultThreadFactory(), 10, TimeUnit.MILLISECONDS, 1, null, 2);
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+            }
+        };
+        timer.newTimeout(task, 1, TimeUnit.MINUTES);
+        Timeout timeout = timer.newTimeout(task, 1, TimeUnit.MINUTES);
+        try {
+            timer.newTimeout(task, 1, TimeUnit.MINUTES);
+            fail("Timer allowed adding 3 timeouts when maxPendingTimeouts was 2");
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+        timeout.cancel();
+        timer.newTimeout(task, 1, TimeUnit.MINUTES);
+        assertEquals(2, timer.pendingTimeouts());
+        timer.stop();
+    }
+}
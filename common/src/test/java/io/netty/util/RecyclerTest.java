@@ -17,7 +17,10 @@ package io.netty.util;
 
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -277,6 +280,134 @@ public class RecyclerTest {
                 " internally", array.length - maxCapacity / 2 <= instancesCount.get());
     }
 
+    @Test
+    public void testCountersDisabledByDefault() {
+        Recycler<HandledObject> recycler = newRecycler(1024);
+        recycler.get().recycle();
+        recycler.get();
+        assertEquals(0, recycler.numHits());
+        assertEquals(0, recycler.numMisses());
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+        final Recycler<HandledObject> recycler = new Recycler<HandledObject>(1024, 2, 8, 16, false, true) {
+            @Override
+            protected HandledObject newObject(Recycler.Handle<HandledObject> handle) {
+                return new HandledObject(handle);
+            }
+        };
+        final HandledObject o = recycler.get();
+        final HandledObject o2 = recycler.get();
+        o.recycle();
+        assertSame(o, recycler.get());
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                o2.recycle();
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertEquals(1, recycler.numHits());
+        assertEquals(2, recycler.numMisses());
+        assertEquals(1, recycler.numCrossThreadReturns());
+        // o2 still waits in the queue of the other thread, so the ratio was not applied to it yet.
+        assertEquals(0, recycler.numDrops());
+    }
+
+    @Test
+    public void testRecycleAtDifferentThreadWithMpscQueue() throws Exception {
+        final Recycler<HandledObject> recycler = newMpscRecycler(256, 10, 2);
+
+        final HandledObject o = recycler.get();
+        final HandledObject o2 = recycler.get();
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                o.recycle();
+                o2.recycle();
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertSame(recycler.get(), o);
+        assertNotSame(recycler.get(), o2);
+        assertEquals(1, recycler.numHits());
+        assertEquals(3, recycler.numMisses());
+        assertEquals(1, recycler.numDrops());
+        assertEquals(2, recycler.numCrossThreadReturns());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMultipleRecycleAtDifferentThreadWithMpscQueue() throws Throwable {
+        final Recycler<HandledObject> recycler = newMpscRecycler(1024, 2, 1);
+        final HandledObject object = recycler.get();
+        final AtomicReference<Throwable> exceptionStore = new AtomicReference<Throwable>();
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                object.recycle();
+                try {
+                    object.recycle();
+                } catch (Throwable cause) {
+                    exceptionStore.set(cause);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        Throwable exception = exceptionStore.get();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    @Test
+    public void testMpscQueueIsBounded() throws Exception {
+        final int maxCapacity = 64;
+        // The queue holds maxCapacity / maxSharedCapacityFactor handles.
+        final Recycler<HandledObject> recycler = newMpscRecycler(maxCapacity, 2, 1);
+        final HandledObject[] array = new HandledObject[maxCapacity * 2];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = recycler.get();
+        }
+
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                for (HandledObject object: array) {
+                    object.recycle();
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertEquals(array.length, recycler.numCrossThreadReturns());
+        assertEquals(array.length - maxCapacity / 2, recycler.numDrops());
+
+        Set<HandledObject> recycled = Collections.newSetFromMap(new IdentityHashMap<HandledObject, Boolean>());
+        Collections.addAll(recycled, array);
+        for (int i = 0; i < maxCapacity / 2; i++) {
+            assertTrue(recycled.remove(recycler.get()));
+        }
+        assertFalse(recycled.contains(recycler.get()));
+        assertEquals(maxCapacity / 2, recycler.numHits());
+        assertEquals(array.length + 1, recycler.numMisses());
+    }
+
+    private static Recycler<HandledObject> newMpscRecycler(int maxCapacity, int maxSharedCapacityFactor, int ratio) {
+        return new Recycler<HandledObject>(maxCapacity, maxSharedCapacityFactor, ratio, 0, true, true) {
+            @Override
+            protected HandledObject newObject(Recycler.Handle<HandledObject> handle) {
+                return new HandledObject(handle);
+            }
+        };
+    }
+
     static final class HandledObject {
         Recycler.Handle<HandledObject> handle;
 
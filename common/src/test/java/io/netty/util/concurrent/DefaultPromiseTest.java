@@ -239,6 +239,115 @@ public class DefaultPromiseTest {
         }
     }
 
+    @Test(timeout = 10000)
+    public void testConcurrentAddListenerAndComplete() throws Exception {
+        final int threads = 4;
+        final int listenersPerThread = 10000;
+        EventExecutor executor = new TestEventExecutor();
+        try {
+            final DefaultPromise<Void> promise = new DefaultPromise<Void>(executor);
+            final AtomicInteger notified = new AtomicInteger();
+            final GenericFutureListener<Future<Void>> listener = new FutureListener<Void>() {
+                @Override
+                public void operationComplete(Future<Void> future) {
+                    notified.incrementAndGet();
+                }
+            };
+            final CountDownLatch started = new CountDownLatch(threads);
+            Thread[] adders = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                adders[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        started.countDown();
+                        for (int j = 0; j < listenersPerThread; j++) {
+                            promise.addListener(listener);
+                        }
+                    }
+                };
+                adders[i].start();
+            }
+            started.await();
+            promise.setSuccess(null);
+            for (Thread adder : adders) {
+                adder.join();
+            }
+            // Wait for all the notifications, which are done by the executor.
+            while (notified.get() != threads * listenersPerThread) {
+                Thread.sleep(1);
+            }
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }).sync();
+            assertEquals(threads * listenersPerThread, notified.get());
+        } finally {
+            executor.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testRemoveListener() {
+        final Promise<Void> promise = new DefaultPromise<Void>(ImmediateEventExecutor.INSTANCE);
+        final StringBuilder notified = new StringBuilder();
+        GenericFutureListener<Future<Void>>[] listeners = new GenericFutureListener[4];
+        for (int i = 0; i < listeners.length; i++) {
+            final int id = i;
+            listeners[i] = new FutureListener<Void>() {
+                @Override
+                public void operationComplete(Future<Void> future) {
+                    notified.append(id);
+                }
+            };
+        }
+        promise.addListeners(listeners);
+        promise.removeListener(listeners[1]);
+        promise.addListener(listeners[1]);
+        promise.removeListeners(listeners[0], listeners[3]);
+        promise.setSuccess(null);
+        assertEquals("21", notified.toString());
+    }
+
+    @Test(timeout = 5000)
+    public void testAwaitTimeoutAndInterrupt() throws Exception {
+        final Promise<Void> promise = new DefaultPromise<Void>(GlobalEventExecutor.INSTANCE);
+        assertFalse(promise.await(10, TimeUnit.MILLISECONDS));
+        assertFalse(promise.awaitUninterruptibly(10));
+
+        final BlockingQueue<Object> results = new LinkedBlockingQueue<Object>();
+        Thread interrupted = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    promise.await();
+                    results.add("done");
+                } catch (InterruptedException e) {
+                    results.add(e);
+                }
+            }
+        };
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                promise.awaitUninterruptibly();
+                results.add(promise.isDone());
+            }
+        };
+        interrupted.start();
+        waiter.start();
+        // Give both threads time to park.
+        Thread.sleep(50);
+        interrupted.interrupt();
+        assertTrue(results.take() instanceof InterruptedException);
+
+        promise.setSuccess(null);
+        assertEquals(Boolean.TRUE, results.take());
+        interrupted.join();
+        waiter.join();
+    }
+
     @Test
     public void signalUncancellableCompletionValue() {
         final Promise<Signal> promise = new DefaultPromise<Signal>(ImmediateEventExecutor.INSTANCE);
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelScheduledTaskQueueTest {
+
+    private static final Comparator<ScheduledFutureTask<?>> COMPARATOR = new Comparator<ScheduledFutureTask<?>>() {
+        @Override
+        public int compare(ScheduledFutureTask<?> o1, ScheduledFutureTask<?> o2) {
+            return o1.compareTo(o2);
+        }
+    };
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    private static ScheduledFutureTask<Void> newTask(long deadlineNanos) {
+        return new ScheduledFutureTask<Void>(GlobalEventExecutor.INSTANCE, NOOP, null, deadlineNanos);
+    }
+
+    private static List<ScheduledFutureTask<?>> newTasks(Random random, long now, int count) {
+        List<ScheduledFutureTask<?>> tasks = new ArrayList<ScheduledFutureTask<?>>(count);
+        for (int i = 0; i < count; i++) {
+            long delay;
+            switch (random.nextInt(5)) {
+            case 0:
+                // Already due.
+                delay = -random.nextInt(1000000);
+                break;
+            case 1:
+                delay = TimeUnit.MILLISECONDS.toNanos(random.nextInt(100));
+                break;
+            case 2:
+                delay = TimeUnit.SECONDS.toNanos(random.nextInt(3600));
+                break;
+            case 3:
+                // After the last level of the wheel.
+                delay = TimeUnit.HOURS.toNanos(5 + random.nextInt(1000));
+                break;
+            default:
+                delay = random.nextInt(Integer.MAX_VALUE);
+                break;
+            }
+            tasks.add(newTask(Math.max(0, now + delay)));
+        }
+        // Tasks with the same deadline are ordered by their id.
+        tasks.add(newTask(now + 42));
+        tasks.add(newTask(now + 42));
+        tasks.add(newTask(Long.MAX_VALUE));
+        return tasks;
+    }
+
+    @Test
+    public void testPollInOrder() {
+        Random random = new Random(42);
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, 11);
+        List<ScheduledFutureTask<?>> tasks = newTasks(random, ScheduledFutureTask.nanoTime(), 10000);
+        for (ScheduledFutureTask<?> task: tasks) {
+            assertTrue(queue.offer(task));
+        }
+        assertEquals(tasks.size(), queue.size());
+
+        // Remove a third of the tasks, wherever they are.
+        List<ScheduledFutureTask<?>> expected = new ArrayList<ScheduledFutureTask<?>>();
+        for (ScheduledFutureTask<?> task: tasks) {
+            if (random.nextInt(3) == 0) {
+                assertTrue(queue.removeTyped(task));
+                assertFalse(queue.removeTyped(task));
+                assertFalse(queue.containsTyped(task));
+            } else {
+                assertTrue(queue.containsTyped(task));
+                expected.add(task);
+            }
+        }
+        assertEquals(expected.size(), queue.size());
+
+        Collections.sort(expected, COMPARATOR);
+        for (ScheduledFutureTask<?> task: expected) {
+            assertSame(task, queue.peek());
+            assertSame(task, queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+    }
+
+    @Test
+    public void testAdvance() {
+        Random random = new Random(42);
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, 11);
+        long now = ScheduledFutureTask.nanoTime();
+        List<ScheduledFutureTask<?>> expected = newTasks(random, now, 10000);
+        for (ScheduledFutureTask<?> task: expected) {
+            queue.offer(task);
+        }
+        Collections.sort(expected, COMPARATOR);
+
+        // Move forward in increasing steps, and check that exactly the due tasks are polled in order.
+        long end = now + TimeUnit.HOURS.toNanos(2000);
+        int polled = 0;
+        for (long step = TimeUnit.MILLISECONDS.toNanos(1); now < end; step += step >>> 2) {
+            now += step;
+            queue.advance(now);
+            // A task scheduled while time moves forward.
+            ScheduledFutureTask<?> task = newTask(now + step / 2);
+            queue.offer(task);
+            expected.add(task);
+            Collections.sort(expected, COMPARATOR);
+
+            while ((task = queue.peek()).deadlineNanos() <= now) {
+                assertSame(expected.get(polled++), queue.poll());
+            }
+            assertSame(expected.get(polled), task);
+            assertEquals(expected.size() - polled, queue.size());
+        }
+        // Only the last task scheduled while moving forward and the one which never runs are left.
+        assertEquals(2, queue.size());
+        assertSame(expected.get(polled), queue.poll());
+        assertEquals(Long.MAX_VALUE, queue.poll().deadlineNanos());
+    }
+
+    @Test
+    public void testCancelScheduledInWheel() {
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, 11);
+        long now = ScheduledFutureTask.nanoTime();
+        ScheduledFutureTask<?> first = newTask(now + TimeUnit.MINUTES.toNanos(1));
+        ScheduledFutureTask<?> second = newTask(now + TimeUnit.MINUTES.toNanos(2));
+        queue.offer(second);
+        queue.offer(first);
+        assertSame(first, queue.peek());
+
+        assertTrue(queue.removeTyped(first));
+        assertSame(second, queue.peek());
+        assertTrue(queue.remove(second));
+        assertNull(queue.peek());
+        assertEquals(0, queue.size());
+
+        // The tasks can be scheduled again.
+        queue.offer(first);
+        assertSame(first, queue.peek());
+    }
+
+    @Test
+    public void testToArrayAndClear() {
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(COMPARATOR, 11);
+        List<ScheduledFutureTask<?>> tasks = newTasks(new Random(42), ScheduledFutureTask.nanoTime(), 100);
+        queue.addAll(tasks);
+
+        ScheduledFutureTask<?>[] array = queue.toArray(new ScheduledFutureTask<?>[0]);
+        assertEquals(tasks.size(), array.length);
+        for (ScheduledFutureTask<?> task: array) {
+            assertTrue(tasks.contains(task));
+        }
+
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+        for (ScheduledFutureTask<?> task: tasks) {
+            assertFalse(queue.containsTyped(task));
+        }
+    }
+}
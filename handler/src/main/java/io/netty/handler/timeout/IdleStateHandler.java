@@ -25,6 +25,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
 
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -92,6 +93,13 @@ import java.util.concurrent.TimeUnit;
  * ...
  * </pre>
  *
+ * <h3>Sweeping idle channels</h3>
+ * By default every {@link IdleStateHandler} schedules its own timeouts, and schedules them again whenever they
+ * expire. When most of the channels are idle, like many long-lived connections of a server, it can instead be
+ * created with a sweep resolution. Then all the handlers of an {@link EventLoop} with the same resolution are checked
+ * together by a single task which runs once per resolution, and an {@link IdleStateEvent} is fired up to the
+ * resolution later than the idle time.
+ *
  * @see ReadTimeoutHandler
  * @see WriteTimeoutHandler
  */
@@ -111,6 +119,7 @@ public class IdleStateHandler extends ChannelDuplexHandler {
     private final long readerIdleTimeNanos;
     private final long writerIdleTimeNanos;
     private final long allIdleTimeNanos;
+    private final long sweepResolutionNanos;
 
     private ScheduledFuture<?> readerIdleTimeout;
     private long lastReadTime;
@@ -130,6 +139,14 @@ public class IdleStateHandler extends ChannelDuplexHandler {
     private int lastMessageHashCode;
     private long lastPendingWriteBytes;
 
+    // Only used with a sweep resolution.
+    private IdleStateSweeper sweeper;
+    private ChannelHandlerContext sweepCtx;
+    int sweeperIndex = -1;
+    private long readerIdleDeadline;
+    private long writerIdleDeadline;
+    private long allIdleDeadline;
+
     /**
      * Creates a new instance firing {@link IdleStateEvent}s.
      *
@@ -189,9 +206,47 @@ public class IdleStateHandler extends ChannelDuplexHandler {
     public IdleStateHandler(boolean observeOutput,
             long readerIdleTime, long writerIdleTime, long allIdleTime,
             TimeUnit unit) {
+        this(observeOutput, readerIdleTime, writerIdleTime, allIdleTime, unit, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new instance firing {@link IdleStateEvent}s, which is checked by a sweeper shared with the other
+     * handlers of the same {@link EventLoop} instead of its own timeouts.
+     *
+     * @param observeOutput
+     *        whether or not the consumption of {@code bytes} should be taken into
+     *        consideration when assessing write idleness. The default is {@code false}.
+     * @param readerIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#READER_IDLE}
+     *        will be triggered when no read was performed for the specified
+     *        period of time.  Specify {@code 0} to disable.
+     * @param writerIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#WRITER_IDLE}
+     *        will be triggered when no write was performed for the specified
+     *        period of time.  Specify {@code 0} to disable.
+     * @param allIdleTime
+     *        an {@link IdleStateEvent} whose state is {@link IdleState#ALL_IDLE}
+     *        will be triggered when neither read nor write was performed for
+     *        the specified period of time.  Specify {@code 0} to disable.
+     * @param unit
+     *        the {@link TimeUnit} of {@code readerIdleTime},
+     *        {@code writeIdleTime}, and {@code allIdleTime}
+     * @param sweepResolution
+     *        the period between two checks of the sweeper, which is how late an
+     *        {@link IdleStateEvent} may be triggered.  Specify {@code 0} to use
+     *        the timeouts of this handler instead.
+     * @param sweepResolutionUnit
+     *        the {@link TimeUnit} of {@code sweepResolution}
+     */
+    public IdleStateHandler(boolean observeOutput,
+            long readerIdleTime, long writerIdleTime, long allIdleTime,
+            TimeUnit unit, long sweepResolution, TimeUnit sweepResolutionUnit) {
         if (unit == null) {
             throw new NullPointerException("unit");
         }
+        if (sweepResolutionUnit == null) {
+            throw new NullPointerException("sweepResolutionUnit");
+        }
 
         this.observeOutput = observeOutput;
 
@@ -210,6 +265,11 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         } else {
             allIdleTimeNanos = Math.max(unit.toNanos(allIdleTime), MIN_TIMEOUT_NANOS);
         }
+        if (sweepResolution <= 0) {
+            sweepResolutionNanos = 0;
+        } else {
+            sweepResolutionNanos = Math.max(sweepResolutionUnit.toNanos(sweepResolution), MIN_TIMEOUT_NANOS);
+        }
     }
 
     /**
@@ -318,6 +378,16 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         initOutputChanged(ctx);
 
         lastReadTime = lastWriteTime = ticksInNanos();
+        if (sweepResolutionNanos > 0) {
+            if (readerIdleTimeNanos > 0 || writerIdleTimeNanos > 0 || allIdleTimeNanos > 0) {
+                readerIdleDeadline = lastReadTime + readerIdleTimeNanos;
+                writerIdleDeadline = lastWriteTime + writerIdleTimeNanos;
+                allIdleDeadline = lastReadTime + allIdleTimeNanos;
+                sweepCtx = ctx;
+                sweeper = IdleStateSweeper.register(this, ctx.executor(), sweepResolutionNanos);
+            }
+            return;
+        }
         if (readerIdleTimeNanos > 0) {
             readerIdleTimeout = schedule(ctx, new ReaderIdleTimeoutTask(ctx),
                     readerIdleTimeNanos, TimeUnit.NANOSECONDS);
@@ -361,6 +431,52 @@ public class IdleStateHandler extends ChannelDuplexHandler {
             allIdleTimeout.cancel(false);
             allIdleTimeout = null;
         }
+        if (sweeper != null) {
+            sweeper.deregister(this);
+            sweeper = null;
+            sweepCtx = null;
+        }
+    }
+
+    /**
+     * Called by the {@link IdleStateSweeper} to fire the {@link IdleStateEvent}s which are due, as the timeouts would
+     * do without a sweep resolution.
+     */
+    void sweep() {
+        ChannelHandlerContext ctx = sweepCtx;
+        if (!ctx.channel().isOpen()) {
+            return;
+        }
+
+        // The handler may be removed by any event it fires, so check the state after every event.
+        long now = ticksInNanos();
+        if (readerIdleTimeNanos > 0 && now - readerIdleDeadline >= 0) {
+            long nextDelay = nextReaderIdleDelay(now);
+            if (nextDelay <= 0) {
+                readerIdleDeadline = now + readerIdleTimeNanos;
+                readerIdle(ctx);
+            } else {
+                readerIdleDeadline = now + nextDelay;
+            }
+        }
+        if (state == 1 && writerIdleTimeNanos > 0 && now - writerIdleDeadline >= 0) {
+            long nextDelay = nextWriterIdleDelay(now);
+            if (nextDelay <= 0) {
+                writerIdleDeadline = now + writerIdleTimeNanos;
+                writerIdle(ctx);
+            } else {
+                writerIdleDeadline = now + nextDelay;
+            }
+        }
+        if (state == 1 && allIdleTimeNanos > 0 && now - allIdleDeadline >= 0) {
+            long nextDelay = nextAllIdleDelay(now);
+            if (nextDelay <= 0) {
+                allIdleDeadline = now + allIdleTimeNanos;
+                allIdle(ctx);
+            } else {
+                allIdleDeadline = now + nextDelay;
+            }
+        }
     }
 
     /**
@@ -449,6 +565,70 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         return false;
     }
 
+    private long nextReaderIdleDelay(long now) {
+        long nextDelay = readerIdleTimeNanos;
+        if (!reading) {
+            nextDelay -= now - lastReadTime;
+        }
+        return nextDelay;
+    }
+
+    private long nextWriterIdleDelay(long now) {
+        return writerIdleTimeNanos - (now - lastWriteTime);
+    }
+
+    private long nextAllIdleDelay(long now) {
+        long nextDelay = allIdleTimeNanos;
+        if (!reading) {
+            nextDelay -= now - Math.max(lastReadTime, lastWriteTime);
+        }
+        return nextDelay;
+    }
+
+    private void readerIdle(ChannelHandlerContext ctx) {
+        boolean first = firstReaderIdleEvent;
+        firstReaderIdleEvent = false;
+
+        try {
+            IdleStateEvent event = newIdleStateEvent(IdleState.READER_IDLE, first);
+            channelIdle(ctx, event);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
+    private void writerIdle(ChannelHandlerContext ctx) {
+        boolean first = firstWriterIdleEvent;
+        firstWriterIdleEvent = false;
+
+        try {
+            if (hasOutputChanged(ctx, first)) {
+                return;
+            }
+
+            IdleStateEvent event = newIdleStateEvent(IdleState.WRITER_IDLE, first);
+            channelIdle(ctx, event);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
+    private void allIdle(ChannelHandlerContext ctx) {
+        boolean first = firstAllIdleEvent;
+        firstAllIdleEvent = false;
+
+        try {
+            if (hasOutputChanged(ctx, first)) {
+                return;
+            }
+
+            IdleStateEvent event = newIdleStateEvent(IdleState.ALL_IDLE, first);
+            channelIdle(ctx, event);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+
     private abstract static class AbstractIdleTask implements Runnable {
 
         private final ChannelHandlerContext ctx;
@@ -477,24 +657,12 @@ public class IdleStateHandler extends ChannelDuplexHandler {
 
         @Override
         protected void run(ChannelHandlerContext ctx) {
-            long nextDelay = readerIdleTimeNanos;
-            if (!reading) {
-                nextDelay -= ticksInNanos() - lastReadTime;
-            }
+            long nextDelay = nextReaderIdleDelay(ticksInNanos());
 
             if (nextDelay <= 0) {
                 // Reader is idle - set a new timeout and notify the callback.
                 readerIdleTimeout = schedule(ctx, this, readerIdleTimeNanos, TimeUnit.NANOSECONDS);
-
-                boolean first = firstReaderIdleEvent;
-                firstReaderIdleEvent = false;
-
-                try {
-                    IdleStateEvent event = newIdleStateEvent(IdleState.READER_IDLE, first);
-                    channelIdle(ctx, event);
-                } catch (Throwable t) {
-                    ctx.fireExceptionCaught(t);
-                }
+                readerIdle(ctx);
             } else {
                 // Read occurred before the timeout - set a new timeout with shorter delay.
                 readerIdleTimeout = schedule(ctx, this, nextDelay, TimeUnit.NANOSECONDS);
@@ -511,25 +679,11 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         @Override
         protected void run(ChannelHandlerContext ctx) {
 
-            long lastWriteTime = IdleStateHandler.this.lastWriteTime;
-            long nextDelay = writerIdleTimeNanos - (ticksInNanos() - lastWriteTime);
+            long nextDelay = nextWriterIdleDelay(ticksInNanos());
             if (nextDelay <= 0) {
                 // Writer is idle - set a new timeout and notify the callback.
                 writerIdleTimeout = schedule(ctx, this, writerIdleTimeNanos, TimeUnit.NANOSECONDS);
-
-                boolean first = firstWriterIdleEvent;
-                firstWriterIdleEvent = false;
-
-                try {
-                    if (hasOutputChanged(ctx, first)) {
-                        return;
-                    }
-
-                    IdleStateEvent event = newIdleStateEvent(IdleState.WRITER_IDLE, first);
-                    channelIdle(ctx, event);
-                } catch (Throwable t) {
-                    ctx.fireExceptionCaught(t);
-                }
+                writerIdle(ctx);
             } else {
                 // Write occurred before the timeout - set a new timeout with shorter delay.
                 writerIdleTimeout = schedule(ctx, this, nextDelay, TimeUnit.NANOSECONDS);
@@ -546,28 +700,12 @@ public class IdleStateHandler extends ChannelDuplexHandler {
         @Override
         protected void run(ChannelHandlerContext ctx) {
 
-            long nextDelay = allIdleTimeNanos;
-            if (!reading) {
-                nextDelay -= ticksInNanos() - Math.max(lastReadTime, lastWriteTime);
-            }
+            long nextDelay = nextAllIdleDelay(ticksInNanos());
             if (nextDelay <= 0) {
                 // Both reader and writer are idle - set a new timeout and
                 // notify the callback.
                 allIdleTimeout = schedule(ctx, this, allIdleTimeNanos, TimeUnit.NANOSECONDS);
-
-                boolean first = firstAllIdleEvent;
-                firstAllIdleEvent = false;
-
-                try {
-                    if (hasOutputChanged(ctx, first)) {
-                        return;
-                    }
-
-                    IdleStateEvent event = newIdleStateEvent(IdleState.ALL_IDLE, first);
-                    channelIdle(ctx, event);
-                } catch (Throwable t) {
-                    ctx.fireExceptionCaught(t);
-                }
+                allIdle(ctx);
             } else {
                 // Either read or write occurred before the timeout - set a new
                 // timeout with shorter delay.
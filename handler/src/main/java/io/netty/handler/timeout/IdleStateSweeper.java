@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.timeout;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks all the {@link IdleStateHandler}s of an {@link EventExecutor} which use the same resolution with a single
+ * periodic task, so the handlers do not need to schedule and reschedule their own timeouts.
+ * <p>
+ * The sweepers are only accessed by the thread of their {@link EventExecutor}, and a sweeper is dropped as soon as
+ * its last handler is removed.
+ */
+final class IdleStateSweeper implements Runnable {
+
+    private static final FastThreadLocal<List<IdleStateSweeper>> SWEEPERS =
+            new FastThreadLocal<List<IdleStateSweeper>>() {
+                @Override
+                protected List<IdleStateSweeper> initialValue() {
+                    return new ArrayList<IdleStateSweeper>(2);
+                }
+            };
+
+    private final EventExecutor executor;
+    private final long resolutionNanos;
+    private final List<IdleStateSweeper> sweepers;
+    private IdleStateHandler[] handlers = new IdleStateHandler[16];
+    private int size;
+    private ScheduledFuture<?> sweepFuture;
+
+    private IdleStateSweeper(EventExecutor executor, long resolutionNanos, List<IdleStateSweeper> sweepers) {
+        this.executor = executor;
+        this.resolutionNanos = resolutionNanos;
+        this.sweepers = sweepers;
+    }
+
+    /**
+     * Adds the handler to the sweeper of the given {@link EventExecutor} and resolution, which must be called from
+     * the thread of the {@link EventExecutor}.
+     */
+    static IdleStateSweeper register(IdleStateHandler handler, EventExecutor executor, long resolutionNanos) {
+        assert executor.inEventLoop();
+
+        List<IdleStateSweeper> sweepers = SWEEPERS.get();
+        IdleStateSweeper sweeper = null;
+        for (int i = 0; i < sweepers.size(); i++) {
+            IdleStateSweeper s = sweepers.get(i);
+            if (s.executor == executor && s.resolutionNanos == resolutionNanos) {
+                sweeper = s;
+                break;
+            }
+        }
+        if (sweeper == null) {
+            sweeper = new IdleStateSweeper(executor, resolutionNanos, sweepers);
+            sweepers.add(sweeper);
+        }
+        sweeper.add(handler);
+        return sweeper;
+    }
+
+    private void add(IdleStateHandler handler) {
+        if (size == handlers.length) {
+            handlers = Arrays.copyOf(handlers, size << 1);
+        }
+        handler.sweeperIndex = size;
+        handlers[size++] = handler;
+        if (sweepFuture == null) {
+            sweepFuture = executor.scheduleAtFixedRate(this, resolutionNanos, resolutionNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Removes the handler from this sweeper, which must be called from the thread of its {@link EventExecutor}.
+     */
+    void deregister(IdleStateHandler handler) {
+        assert executor.inEventLoop();
+
+        int index = handler.sweeperIndex;
+        assert handlers[index] == handler;
+        // Move the last handler into the free slot.
+        IdleStateHandler last = handlers[--size];
+        handlers[index] = last;
+        last.sweeperIndex = index;
+        handlers[size] = null;
+        handler.sweeperIndex = -1;
+
+        if (size == 0) {
+            sweepFuture.cancel(false);
+            sweepFuture = null;
+            sweepers.remove(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        // Go backwards, as a handler may be removed while it fires an event and then the last handler, which was
+        // already checked, takes its place.
+        for (int i = size - 1; i >= 0; i--) {
+            if (i < size) {
+                handlers[i].sweep();
+            }
+        }
+    }
+}
@@ -300,11 +300,102 @@ public class IdleStateHandlerTest {
         }
     }
 
+    @Test
+    public void testSweepReaderIdle() throws Exception {
+        TestableIdleStateHandler idleStateHandler = new TestableIdleStateHandler(
+                false, 1L, 0L, 0L, TimeUnit.SECONDS, 1L, TimeUnit.MILLISECONDS);
+        final List<Object> events = new ArrayList<Object>();
+        EmbeddedChannel channel = new EmbeddedChannel(idleStateHandler, new EventCollector(events));
+        try {
+            idleStateHandler.tick(999L, TimeUnit.MILLISECONDS);
+            idleStateHandler.sweep();
+            assertEquals(0, events.size());
+
+            idleStateHandler.tick(1L, TimeUnit.MILLISECONDS);
+            idleStateHandler.sweep();
+            assertEquals(1, events.size());
+            assertSame(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, events.get(0));
+
+            // Not idle again before the full idle time passed.
+            idleStateHandler.tick(500L, TimeUnit.MILLISECONDS);
+            idleStateHandler.sweep();
+            assertEquals(1, events.size());
+            idleStateHandler.tick(500L, TimeUnit.MILLISECONDS);
+            idleStateHandler.sweep();
+            assertEquals(2, events.size());
+            assertSame(IdleStateEvent.READER_IDLE_STATE_EVENT, events.get(1));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testSweepAllNotIdle() throws Exception {
+        TestableIdleStateHandler idleStateHandler = new TestableIdleStateHandler(
+                false, 0L, 0L, 1L, TimeUnit.SECONDS, 1L, TimeUnit.MILLISECONDS);
+        final List<Object> events = new ArrayList<Object>();
+        EmbeddedChannel channel = new EmbeddedChannel(idleStateHandler, new EventCollector(events));
+        try {
+            idleStateHandler.tick(500L, TimeUnit.MILLISECONDS);
+            channel.writeAndFlush("Hello, World!");
+            idleStateHandler.tick(600L, TimeUnit.MILLISECONDS);
+            idleStateHandler.sweep();
+            assertEquals(0, events.size());
+
+            idleStateHandler.tick(400L, TimeUnit.MILLISECONDS);
+            idleStateHandler.sweep();
+            assertEquals(1, events.size());
+            assertSame(IdleStateEvent.FIRST_ALL_IDLE_STATE_EVENT, events.get(0));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testSweeperSharedByHandlers() throws Exception {
+        TestableIdleStateHandler readerIdleHandler = new TestableIdleStateHandler(
+                false, 1L, 0L, 0L, TimeUnit.SECONDS, 1L, TimeUnit.MILLISECONDS);
+        TestableIdleStateHandler writerIdleHandler = new TestableIdleStateHandler(
+                false, 0L, 1L, 0L, TimeUnit.SECONDS, 1L, TimeUnit.MILLISECONDS);
+        final List<Object> events = new ArrayList<Object>();
+        EmbeddedChannel channel = new EmbeddedChannel(readerIdleHandler, writerIdleHandler, new EventCollector(events));
+        try {
+            readerIdleHandler.tick(1L, TimeUnit.SECONDS);
+            writerIdleHandler.tick(1L, TimeUnit.SECONDS);
+            Thread.sleep(10);
+            channel.runPendingTasks();
+            assertEquals(2, events.size());
+            assertTrue(events.contains(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT));
+            assertTrue(events.contains(IdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT));
+
+            // The sweeper is cancelled with its last handler.
+            channel.pipeline().remove(readerIdleHandler);
+            assertNotEquals(-1L, channel.runScheduledPendingTasks());
+            channel.pipeline().remove(writerIdleHandler);
+            assertEquals(-1L, channel.runScheduledPendingTasks());
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
     private static void assertNotNullAndRelease(Object msg) {
         assertNotNull(msg);
         ReferenceCountUtil.release(msg);
     }
 
+    private static final class EventCollector extends ChannelInboundHandlerAdapter {
+        private final List<Object> events;
+
+        EventCollector(List<Object> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            events.add(evt);
+        }
+    }
+
     private interface Action {
         void run(EmbeddedChannel channel) throws Exception;
     }
@@ -323,6 +414,13 @@ public class IdleStateHandlerTest {
             super(observeOutput, readerIdleTime, writerIdleTime, allIdleTime, unit);
         }
 
+        public TestableIdleStateHandler(boolean observeOutput,
+                long readerIdleTime, long writerIdleTime, long allIdleTime,
+                TimeUnit unit, long sweepResolution, TimeUnit sweepResolutionUnit) {
+            super(observeOutput, readerIdleTime, writerIdleTime, allIdleTime, unit,
+                  sweepResolution, sweepResolutionUnit);
+        }
+
         public long delay(TimeUnit unit) {
             return unit.convert(delayInNanos, TimeUnit.NANOSECONDS);
         }
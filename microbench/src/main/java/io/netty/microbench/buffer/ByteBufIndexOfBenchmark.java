@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ByteProcessor;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Compares the word-at-a-time search of {@link ByteBuf#indexOf(int, int, byte)} and of the {@link ByteProcessor}
+ * constants with a search which processes a single byte at a time.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ByteBufIndexOfBenchmark extends AbstractMicrobenchmark {
+
+    private static final ByteProcessor BYTE_BY_BYTE_FIND_LF = new ByteProcessor() {
+        @Override
+        public boolean process(byte value) {
+            return value != '\n';
+        }
+    };
+
+    private static final ByteProcessor BYTE_BY_BYTE_FIND_CRLF = new ByteProcessor() {
+        @Override
+        public boolean process(byte value) {
+            return value != '\r' && value != '\n';
+        }
+    };
+
+    private static final ByteBuf CRLF = Unpooled.copiedBuffer("\r\n", CharsetUtil.US_ASCII);
+
+    @Param({ "7", "16", "64", "256", "1024" })
+    private int lineLength;
+
+    @Param({ "true", "false" })
+    private boolean direct;
+
+    private ByteBuf buffer;
+    private int[] starts;
+    private int index;
+
+    @Setup
+    public void setup() {
+        // Lines of random letters terminated by a CRLF, the starting offsets vary to cover all the alignments.
+        Random random = new Random(42);
+        int lines = 1024;
+        starts = new int[lines];
+        buffer = direct ? PooledByteBufAllocator.DEFAULT.directBuffer() : PooledByteBufAllocator.DEFAULT.heapBuffer();
+        for (int i = 0; i < lines; i++) {
+            starts[i] = buffer.writerIndex();
+            int length = lineLength + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                buffer.writeByte('a' + random.nextInt(26));
+            }
+            buffer.writeByte('\r');
+            buffer.writeByte('\n');
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        buffer.release();
+    }
+
+    private int nextStart() {
+        int index = this.index;
+        this.index = index + 1 & starts.length - 1;
+        return starts[index];
+    }
+
+    @Benchmark
+    public int indexOf() {
+        return buffer.indexOf(nextStart(), buffer.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int forEachByteFindLf() {
+        int start = nextStart();
+        return buffer.forEachByte(start, buffer.writerIndex() - start, ByteProcessor.FIND_LF);
+    }
+
+    @Benchmark
+    public int forEachByteFindLfByteByByte() {
+        int start = nextStart();
+        return buffer.forEachByte(start, buffer.writerIndex() - start, BYTE_BY_BYTE_FIND_LF);
+    }
+
+    @Benchmark
+    public int forEachByteFindCrlf() {
+        int start = nextStart();
+        return buffer.forEachByte(start, buffer.writerIndex() - start, ByteProcessor.FIND_CRLF);
+    }
+
+    @Benchmark
+    public int forEachByteFindCrlfByteByByte() {
+        int start = nextStart();
+        return buffer.forEachByte(start, buffer.writerIndex() - start, BYTE_BY_BYTE_FIND_CRLF);
+    }
+
+    @Benchmark
+    public int indexOfDelimiter() {
+        int start = nextStart();
+        int writerIndex = buffer.writerIndex();
+        buffer.setIndex(start, writerIndex);
+        try {
+            return ByteBufUtil.indexOf(CRLF, buffer);
+        } finally {
+            buffer.setIndex(0, writerIndex);
+        }
+    }
+}
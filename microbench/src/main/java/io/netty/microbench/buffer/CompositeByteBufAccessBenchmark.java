@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Measures the random and sequential access of {@link CompositeByteBuf}s with many components, as well as
+ * adding components to and discarding them from such a buffer, as done when cumulating HTTP/2 DATA frames.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class CompositeByteBufAccessBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "8", "64", "512" })
+    private int components;
+
+    @Param({ "16", "1024" })
+    private int componentSize;
+
+    private CompositeByteBuf buffer;
+    private ByteBuf[] buffers;
+    private int[] indexes;
+    private int index;
+
+    @Setup
+    public void setup() {
+        buffers = new ByteBuf[components];
+        for (int i = 0; i < components; i++) {
+            buffers[i] = Unpooled.unreleasableBuffer(Unpooled.directBuffer(componentSize).writeZero(componentSize));
+        }
+        buffer = Unpooled.compositeBuffer(Integer.MAX_VALUE).addComponents(true, buffers);
+
+        Random random = new Random(42);
+        indexes = new int[1024];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = random.nextInt(buffer.capacity() - 7);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        buffer.release();
+    }
+
+    @Benchmark
+    public long randomGetLong() {
+        int index = this.index;
+        this.index = index + 1 & indexes.length - 1;
+        return buffer.getLong(indexes[index]);
+    }
+
+    @Benchmark
+    public long sequentialGetLong() {
+        long sum = 0;
+        for (int i = 0, end = buffer.capacity() - 7; i < end; i += 8) {
+            sum += buffer.getLong(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int sequentialGetByte() {
+        int sum = 0;
+        for (int i = 0, capacity = buffer.capacity(); i < capacity; i++) {
+            sum += buffer.getByte(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int addAndDiscardComponents() {
+        CompositeByteBuf cumulation = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        for (ByteBuf b : buffers) {
+            cumulation.addComponent(true, b);
+            // Read half a component, so every other call really discards a component.
+            cumulation.skipBytes(componentSize >>> 1);
+            cumulation.discardReadComponents();
+        }
+        int numComponents = cumulation.numComponents();
+        cumulation.release();
+        return numComponents;
+    }
+
+    @Benchmark
+    public int insertComponentsInMiddle() {
+        CompositeByteBuf composite = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        composite.addComponents(true, buffers[0], buffers[0]);
+        composite.addComponents(1, buffers);
+        int capacity = composite.capacity();
+        composite.release();
+        return capacity;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PoolChunkListMetric;
+import io.netty.buffer.PoolChunkMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Compares the alloc latency and the memory overhead of the power of two size classes of the
+ * {@link PooledByteBufAllocator} with its fine size classes.
+ */
+@State(Scope.Benchmark)
+@Threads(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class PooledByteBufAllocatorSizeClassesBenchmark extends AbstractMicrobenchmark {
+
+    private static final int BATCH_SIZE = 1024;
+
+    @Param({ "false", "true" })
+    private boolean fineSizeClasses;
+
+    // All sizes are allocated with the same probability, 16393 is a HTTP/2 frame of the default max size.
+    @Param({ "512-65536", "16393" })
+    private String sizes;
+
+    private PooledByteBufAllocator cachedAllocator;
+    private PooledByteBufAllocator uncachedAllocator;
+    private int[] capacities;
+    private final ByteBuf[] buffers = new ByteBuf[BATCH_SIZE];
+    private int index;
+
+    @Setup
+    public void setup() {
+        cachedAllocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 512, 256, 64, true, 0, fineSizeClasses);
+        uncachedAllocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0, 0, true, 0, fineSizeClasses);
+
+        int min;
+        int max;
+        int separator = sizes.indexOf('-');
+        if (separator < 0) {
+            min = max = Integer.parseInt(sizes);
+        } else {
+            min = Integer.parseInt(sizes.substring(0, separator));
+            max = Integer.parseInt(sizes.substring(separator + 1));
+        }
+        Random random = new Random(42);
+        capacities = new int[BATCH_SIZE];
+        for (int i = 0; i < capacities.length; i++) {
+            capacities[i] = min + random.nextInt(max - min + 1);
+        }
+    }
+
+    /**
+     * The memory used by the chunks of the arena compared to the requested capacities.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class MemoryCounters {
+        public long requestedBytes;
+        public long usedBytes;
+    }
+
+    @Benchmark
+    public void allocateAndFreeCached() {
+        int index = this.index;
+        cachedAllocator.directBuffer(capacities[index]).release();
+        this.index = index + 1 & BATCH_SIZE - 1;
+    }
+
+    @Benchmark
+    public void allocateAndFreeBatch() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            buffers[i] = uncachedAllocator.directBuffer(capacities[i]);
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            buffers[i].release();
+        }
+    }
+
+    @Benchmark
+    public void memoryOverhead(MemoryCounters counters) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            buffers[i] = uncachedAllocator.directBuffer(capacities[i]);
+            counters.requestedBytes += capacities[i];
+        }
+        counters.usedBytes += usedBytes(uncachedAllocator.metric().directArenas().get(0));
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            buffers[i].release();
+        }
+    }
+
+    private static long usedBytes(PoolArenaMetric arena) {
+        long usedBytes = 0;
+        for (PoolChunkListMetric chunkList : arena.chunkLists()) {
+            for (PoolChunkMetric chunk : chunkList) {
+                usedBytes += chunk.chunkSize() - chunk.freeBytes();
+            }
+        }
+        return usedBytes;
+    }
+}
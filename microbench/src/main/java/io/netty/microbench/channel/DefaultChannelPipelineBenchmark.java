@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the propagation of events through a deep pipeline in which most of the handlers only care about a few
+ * of the events, so the others can be skipped.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DefaultChannelPipelineBenchmark extends AbstractMicrobenchmark {
+
+    @ChannelHandler.Sharable
+    private static final class ReadHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static final class WriteHandler extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ctx.write(msg, promise);
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static final class UserEventHandler extends ChannelDuplexHandler {
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            ctx.fireUserEventTriggered(evt);
+        }
+    }
+
+    @Param({ "4", "16" })
+    private int handlers;
+
+    private EmbeddedChannel channel;
+    private ChannelPipeline pipeline;
+
+    @Setup
+    public void setup() {
+        channel = new EmbeddedChannel();
+        pipeline = channel.pipeline();
+        ChannelHandler[] kinds = { new ReadHandler(), new WriteHandler(), new UserEventHandler() };
+        for (int i = 0; i < handlers; i++) {
+            pipeline.addLast(kinds[i % kinds.length]);
+        }
+        // The only handler which cares about all the benchmarked events.
+        pipeline.addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelReadComplete(ChannelHandlerContext ctx) {
+                // Consume the event.
+            }
+
+            @Override
+            public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+                // Consume the event.
+            }
+        });
+    }
+
+    @TearDown
+    public void teardown() {
+        channel.close();
+    }
+
+    @Benchmark
+    public void fireChannelReadComplete() {
+        pipeline.fireChannelReadComplete();
+    }
+
+    @Benchmark
+    public void fireChannelWritabilityChanged() {
+        pipeline.fireChannelWritabilityChanged();
+    }
+
+    @Benchmark
+    public void fireUserEventTriggered() {
+        pipeline.fireUserEventTriggered(Boolean.TRUE);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.concurrent;
+
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures adding listeners to and completing {@link DefaultPromise}s from several threads at once, including
+ * {@link Promise}s which are shared by all the threads.
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DefaultPromiseBenchmark extends AbstractMicrobenchmark {
+
+    private static final FutureListener<Void> LISTENER = new FutureListener<Void>() {
+        @Override
+        public void operationComplete(Future<Void> future) {
+            // NOOP
+        }
+    };
+
+    private Promise<Void> incomplete;
+    private Promise<Void> complete;
+
+    @Setup
+    public void setup() {
+        incomplete = new DefaultPromise<Void>(ImmediateEventExecutor.INSTANCE);
+        complete = new DefaultPromise<Void>(ImmediateEventExecutor.INSTANCE).setSuccess(null);
+    }
+
+    @Benchmark
+    public Promise<Void> addListenerAndSetSuccess() {
+        Promise<Void> promise = new DefaultPromise<Void>(ImmediateEventExecutor.INSTANCE);
+        promise.addListener(LISTENER);
+        promise.addListener(LISTENER);
+        return promise.setSuccess(null);
+    }
+
+    @Benchmark
+    public Promise<Void> addAndRemoveListenerShared() {
+        return incomplete.addListener(LISTENER).removeListener(LISTENER);
+    }
+
+    @Benchmark
+    public Promise<Void> addListenerToCompletedShared() {
+        return complete.addListener(LISTENER);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.util;
+
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.DefaultAttributeMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the lookup of existing attributes and the creation of new {@link DefaultAttributeMap}s holding a few
+ * attributes, which is what happens for every {@link io.netty.channel.Channel}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DefaultAttributeMapBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "1", "4", "16" })
+    private int keyCount;
+
+    private AttributeKey<Integer>[] keys;
+    private DefaultAttributeMap map;
+    private int index;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setup() {
+        keys = new AttributeKey[keyCount];
+        map = new DefaultAttributeMap();
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = AttributeKey.valueOf(DefaultAttributeMapBenchmark.class, "key" + i);
+            map.attr(keys[i]).set(i);
+        }
+    }
+
+    private AttributeKey<Integer> nextKey() {
+        int index = this.index;
+        this.index = index + 1 == keys.length ? 0 : index + 1;
+        return keys[index];
+    }
+
+    @Benchmark
+    public Attribute<Integer> attr() {
+        return map.attr(nextKey());
+    }
+
+    @Benchmark
+    public boolean hasAttr() {
+        return map.hasAttr(nextKey());
+    }
+
+    @Benchmark
+    public DefaultAttributeMap newMapWithAttributes() {
+        DefaultAttributeMap map = new DefaultAttributeMap();
+        for (AttributeKey<Integer> key : keys) {
+            map.attr(key).set(0);
+        }
+        return map;
+    }
+}
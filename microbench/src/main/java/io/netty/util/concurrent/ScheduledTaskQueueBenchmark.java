@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.util.concurrent;
+
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.internal.DefaultPriorityQueue;
+import io.netty.util.internal.PriorityQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the heap and the timing wheel which can hold the scheduled tasks of an {@link EventExecutor}, when
+ * timeouts are scheduled and cancelled while many other timeouts are pending, as done by the timeout handlers of
+ * many connections. See also {@code io.netty.microbench.concurrent.ScheduledFutureTaskBenchmark}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ScheduledTaskQueueBenchmark extends AbstractMicrobenchmark {
+
+    private static final Comparator<ScheduledFutureTask<?>> COMPARATOR = new Comparator<ScheduledFutureTask<?>>() {
+        @Override
+        public int compare(ScheduledFutureTask<?> o1, ScheduledFutureTask<?> o2) {
+            return o1.compareTo(o2);
+        }
+    };
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    public enum QueueType {
+        HEAP {
+            @Override
+            PriorityQueue<ScheduledFutureTask<?>> newQueue() {
+                return new DefaultPriorityQueue<ScheduledFutureTask<?>>(COMPARATOR, 11);
+            }
+        },
+        TIMING_WHEEL {
+            @Override
+            PriorityQueue<ScheduledFutureTask<?>> newQueue() {
+                return new TimingWheelScheduledTaskQueue(COMPARATOR, 11);
+            }
+        };
+        abstract PriorityQueue<ScheduledFutureTask<?>> newQueue();
+    }
+
+    @Param
+    public QueueType queueType;
+
+    @Param({ "1000", "100000" })
+    public int pending;
+
+    private PriorityQueue<ScheduledFutureTask<?>> queue;
+    private ScheduledFutureTask<?>[] timeouts;
+    private int index;
+
+    @Setup
+    public void setup() {
+        queue = queueType.newQueue();
+        Random random = new Random(42);
+        long now = ScheduledFutureTask.nanoTime();
+        // Timeouts of up to a minute, which are scheduled again once they are cancelled.
+        timeouts = new ScheduledFutureTask<?>[1024];
+        for (int i = 0; i < timeouts.length; i++) {
+            timeouts[i] = newTask(now + TimeUnit.MILLISECONDS.toNanos(1 + random.nextInt(60000)));
+        }
+        for (int i = 0; i < pending; i++) {
+            queue.add(newTask(now + TimeUnit.MILLISECONDS.toNanos(1 + random.nextInt(3600000))));
+        }
+    }
+
+    private static ScheduledFutureTask<Void> newTask(long deadlineNanos) {
+        return new ScheduledFutureTask<Void>(GlobalEventExecutor.INSTANCE, NOOP, null, deadlineNanos);
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        int index = this.index;
+        this.index = index + 1 & timeouts.length - 1;
+        ScheduledFutureTask<?> timeout = timeouts[index];
+        queue.offer(timeout);
+        return queue.removeTyped(timeout);
+    }
+
+    @Benchmark
+    public ScheduledFutureTask<?> peek() {
+        return queue.peek();
+    }
+}
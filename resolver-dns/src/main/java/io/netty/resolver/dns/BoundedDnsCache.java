@@ -0,0 +1,579 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.util.internal.MathUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * A {@link DnsCache} which holds at most {@code maxSize} hostnames.
+ * <p>
+ * Unlike {@link DefaultDnsCache} it does not schedule a task per hostname to expire it. Instead the hostnames are
+ * kept in a hashed wheel of one second ticks which a single task sweeps, and expired hostnames are also dropped when
+ * they are looked up. Once the cache is full, a new hostname is only admitted if it was requested more often
+ * recently than the least recently used one, which is then evicted (a TinyLFU admission policy in front of an LRU),
+ * so a burst of hostnames which are resolved only once can not flush the popular ones.
+ * <p>
+ * If refresh-ahead is enabled, a {@link DnsNameResolver} which finds a hostname that was requested repeatedly in the
+ * last tenth of its TTL will resolve it again in the background, so the popular hostnames do not expire and force
+ * their callers to wait for a new query.
+ * <p>
+ * If any additional {@link DnsRecord} is used, no caching takes place.
+ */
+@UnstableApi
+public class BoundedDnsCache implements RefreshAheadDnsCache {
+
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int WHEEL_SIZE = 256;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    // A hostname must have been requested at least this often recently to be refreshed ahead of its expiration.
+    private static final int REFRESH_MIN_FREQUENCY = 2;
+
+    private final int maxSize;
+    private final int minTtl;
+    private final int maxTtl;
+    private final int negativeTtl;
+    private final boolean refreshAhead;
+
+    // All the fields below are guarded by this.
+    private final LinkedHashMap<String, HostEntry> entries;
+    private final FrequencySketch sketch;
+    private final HostEntry[] wheel = new HostEntry[WHEEL_SIZE];
+    private long lastSweptTick = Long.MIN_VALUE;
+    private ScheduledFuture<?> sweepFuture;
+
+    private final Runnable sweepTask = new Runnable() {
+        @Override
+        public void run() {
+            expire();
+        }
+    };
+
+    /**
+     * Create a cache that respects the TTL returned by the DNS server, doesn't cache negative responses and
+     * refreshes the popular hostnames ahead of their expiration.
+     *
+     * @param maxSize the maximum number of hostnames to cache
+     */
+    public BoundedDnsCache(int maxSize) {
+        this(maxSize, 0, Cache.MAX_SUPPORTED_TTL_SECS, 0, true);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize the maximum number of hostnames to cache
+     * @param minTtl the minimum TTL
+     * @param maxTtl the maximum TTL
+     * @param negativeTtl the TTL for failed queries
+     * @param refreshAhead {@code true} if the popular hostnames should be resolved again shortly before they expire
+     */
+    public BoundedDnsCache(int maxSize, int minTtl, int maxTtl, int negativeTtl, boolean refreshAhead) {
+        this.maxSize = checkPositive(maxSize, "maxSize");
+        this.minTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(minTtl, "minTtl"));
+        this.maxTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(maxTtl, "maxTtl"));
+        if (minTtl > maxTtl) {
+            throw new IllegalArgumentException(
+                    "minTtl: " + minTtl + ", maxTtl: " + maxTtl + " (expected: 0 <= minTtl <= maxTtl)");
+        }
+        this.negativeTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(negativeTtl, "negativeTtl"));
+        this.refreshAhead = refreshAhead;
+        entries = new LinkedHashMap<String, HostEntry>(16, 0.75f, true);
+        sketch = new FrequencySketch(maxSize);
+    }
+
+    /**
+     * Returns the maximum number of hostnames this cache holds.
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the minimum TTL of the cached DNS resource records (in seconds).
+     *
+     * @see #maxTtl()
+     */
+    public int minTtl() {
+        return minTtl;
+    }
+
+    /**
+     * Returns the maximum TTL of the cached DNS resource records (in seconds).
+     *
+     * @see #minTtl()
+     */
+    public int maxTtl() {
+        return maxTtl;
+    }
+
+    /**
+     * Returns the TTL of the cache for the failed DNS queries (in seconds). The default value is {@code 0}, which
+     * disables the cache for negative results.
+     */
+    public int negativeTtl() {
+        return negativeTtl;
+    }
+
+    /**
+     * Returns {@code true} if the popular hostnames are resolved again shortly before they expire.
+     */
+    public boolean isRefreshAhead() {
+        return refreshAhead;
+    }
+
+    /**
+     * Returns the number of hostnames which are currently cached, including the expired ones which were not
+     * swept yet.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        Arrays.fill(wheel, null);
+        if (sweepFuture != null) {
+            sweepFuture.cancel(false);
+            sweepFuture = null;
+        }
+    }
+
+    @Override
+    public boolean clear(String hostname) {
+        checkNotNull(hostname, "hostname");
+        synchronized (this) {
+            HostEntry e = entries.remove(appendDot(hostname));
+            if (e == null) {
+                return false;
+            }
+            unlink(e);
+            return true;
+        }
+    }
+
+    private static boolean emptyAdditionals(DnsRecord[] additionals) {
+        return additionals == null || additionals.length == 0;
+    }
+
+    @Override
+    public List<? extends DnsCacheEntry> get(String hostname, DnsRecord[] additionals) {
+        checkNotNull(hostname, "hostname");
+        if (!emptyAdditionals(additionals)) {
+            return Collections.<DnsCacheEntry>emptyList();
+        }
+
+        String key = appendDot(hostname);
+        synchronized (this) {
+            // Misses are recorded as well, so a hostname which is requested often can be admitted once resolved.
+            sketch.increment(key);
+            HostEntry e = entries.get(key);
+            if (e == null) {
+                return null;
+            }
+            if (e.expirationNanos - nanoTime() <= 0) {
+                remove(e);
+                return null;
+            }
+            return e.entries;
+        }
+    }
+
+    @Override
+    public DnsCacheEntry cache(String hostname, DnsRecord[] additionals,
+                               InetAddress address, long originalTtl, EventLoop loop) {
+        checkNotNull(hostname, "hostname");
+        checkNotNull(address, "address");
+        checkNotNull(loop, "loop");
+        BoundedDnsCacheEntry e = new BoundedDnsCacheEntry(hostname, address);
+        if (maxTtl == 0 || !emptyAdditionals(additionals)) {
+            return e;
+        }
+        int ttl = Math.max(minTtl, (int) Math.min(maxTtl, originalTtl));
+        String key = appendDot(hostname);
+        synchronized (this) {
+            long nanoTime = nanoTime();
+            HostEntry hostEntry = getUnexpired(key, nanoTime);
+            if (hostEntry == null) {
+                hostEntry = admit(key);
+                if (hostEntry == null) {
+                    return e;
+                }
+                hostEntry.entries = Collections.singletonList(e);
+                schedule(hostEntry, nanoTime, ttl);
+            } else if (hostEntry.refreshing || hostEntry.entries.get(0).cause() != null) {
+                // The first address of a refresh or a success after a failure replaces everything.
+                hostEntry.refreshing = false;
+                hostEntry.entries = Collections.singletonList(e);
+                schedule(hostEntry, nanoTime, ttl);
+            } else {
+                hostEntry.entries = add(hostEntry.entries, e);
+                // Like DefaultDnsCache, all the addresses of a hostname expire with the one which expires first.
+                if (nanoTime + TimeUnit.SECONDS.toNanos(ttl) - hostEntry.expirationNanos < 0) {
+                    schedule(hostEntry, nanoTime, ttl);
+                }
+            }
+            scheduleSweepIfNeeded(loop);
+        }
+        return e;
+    }
+
+    @Override
+    public DnsCacheEntry cache(String hostname, DnsRecord[] additionals, Throwable cause, EventLoop loop) {
+        checkNotNull(hostname, "hostname");
+        checkNotNull(cause, "cause");
+        checkNotNull(loop, "loop");
+
+        BoundedDnsCacheEntry e = new BoundedDnsCacheEntry(hostname, cause);
+        if (negativeTtl == 0 || !emptyAdditionals(additionals)) {
+            return e;
+        }
+        String key = appendDot(hostname);
+        synchronized (this) {
+            long nanoTime = nanoTime();
+            HostEntry hostEntry = getUnexpired(key, nanoTime);
+            if (hostEntry == null) {
+                hostEntry = admit(key);
+                if (hostEntry == null) {
+                    return e;
+                }
+            } else if (hostEntry.refreshing) {
+                // A failed refresh keeps serving the addresses which were resolved before until they expire.
+                return e;
+            }
+            hostEntry.entries = Collections.singletonList(e);
+            schedule(hostEntry, nanoTime, negativeTtl);
+            scheduleSweepIfNeeded(loop);
+        }
+        return e;
+    }
+
+    /**
+     * Returns {@code true} if the caller should resolve the given hostname again because it will expire soon and
+     * was requested often recently. This returns {@code true} only once per cached result, so only a single refresh
+     * is in progress at a time.
+     */
+    @Override
+    public boolean shouldRefresh(String hostname, DnsRecord[] additionals) {
+        if (!refreshAhead || !emptyAdditionals(additionals)) {
+            return false;
+        }
+        String key = appendDot(hostname);
+        synchronized (this) {
+            HostEntry e = entries.get(key);
+            if (e == null || e.refreshing || e.entries.get(0).cause() != null ||
+                nanoTime() - e.refreshNanos < 0 || sketch.frequency(key) < REFRESH_MIN_FREQUENCY) {
+                return false;
+            }
+            e.refreshing = true;
+            return true;
+        }
+    }
+
+    /**
+     * Removes all the hostnames whose TTL was reached.
+     */
+    final synchronized void expire() {
+        long nanoTime = nanoTime();
+        long tick = floorTick(nanoTime);
+        // Sweep every slot once at most, even if the previous sweep happened a while ago.
+        long fromTick = tick - WHEEL_MASK;
+        if (lastSweptTick != Long.MIN_VALUE) {
+            fromTick = Math.max(fromTick, lastSweptTick + 1);
+        }
+        for (long t = fromTick; t <= tick; t++) {
+            int slot = (int) (t & WHEEL_MASK);
+            HostEntry e = wheel[slot];
+            while (e != null) {
+                HostEntry next = e.next;
+                if (e.expirationNanos - nanoTime <= 0) {
+                    remove(e);
+                }
+                e = next;
+            }
+        }
+        lastSweptTick = tick;
+
+        if (entries.isEmpty() && sweepFuture != null) {
+            sweepFuture.cancel(false);
+            sweepFuture = null;
+        }
+    }
+
+    /**
+     * Returns the current time in nanoseconds, overridden by the tests.
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private static long floorTick(long nanoTime) {
+        // System.nanoTime() may be negative, so round towards negative infinity.
+        long tick = nanoTime / TICK_NANOS;
+        return nanoTime % TICK_NANOS < 0 ? tick - 1 : tick;
+    }
+
+    private HostEntry getUnexpired(String key, long nanoTime) {
+        HostEntry e = entries.get(key);
+        if (e != null && e.expirationNanos - nanoTime <= 0) {
+            remove(e);
+            return null;
+        }
+        return e;
+    }
+
+    /**
+     * Returns a new {@link HostEntry} for the given hostname, or {@code null} if the cache is full and the hostname
+     * was not requested more often than the least recently used one.
+     */
+    private HostEntry admit(String key) {
+        if (entries.size() >= maxSize) {
+            // The access order puts the least recently used hostname first.
+            HostEntry victim = entries.values().iterator().next();
+            if (sketch.frequency(key) <= sketch.frequency(victim.hostname)) {
+                return null;
+            }
+            remove(victim);
+        }
+        HostEntry e = new HostEntry(key);
+        entries.put(key, e);
+        return e;
+    }
+
+    private void remove(HostEntry e) {
+        entries.remove(e.hostname);
+        unlink(e);
+    }
+
+    private void schedule(HostEntry e, long nanoTime, int ttl) {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttl);
+        e.expirationNanos = nanoTime + ttlNanos;
+        e.refreshNanos = e.expirationNanos - ttlNanos / 10;
+
+        unlink(e);
+        // Round up, so the hostname is due when its slot is swept.
+        long tick = -floorTick(-e.expirationNanos);
+        int slot = (int) (Math.max(tick, lastSweptTick + 1) & WHEEL_MASK);
+        HostEntry head = wheel[slot];
+        e.slot = slot;
+        e.next = head;
+        if (head != null) {
+            head.prev = e;
+        }
+        wheel[slot] = e;
+    }
+
+    private void unlink(HostEntry e) {
+        if (e.slot < 0) {
+            return;
+        }
+        if (e.prev == null) {
+            wheel[e.slot] = e.next;
+        } else {
+            e.prev.next = e.next;
+        }
+        if (e.next != null) {
+            e.next.prev = e.prev;
+        }
+        e.prev = null;
+        e.next = null;
+        e.slot = -1;
+    }
+
+    private void scheduleSweepIfNeeded(EventLoop loop) {
+        if (sweepFuture != null && !sweepFuture.isDone()) {
+            return;
+        }
+        try {
+            sweepFuture = loop.scheduleAtFixedRate(sweepTask, 1, 1, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException ignore) {
+            // The EventLoop is shutting down, the expired hostnames are still dropped when they are looked up and
+            // the next EventLoop which caches something will take over the sweep.
+            sweepFuture = null;
+        }
+    }
+
+    private static List<BoundedDnsCacheEntry> add(List<BoundedDnsCacheEntry> entries, BoundedDnsCacheEntry e) {
+        List<BoundedDnsCacheEntry> newEntries = new ArrayList<BoundedDnsCacheEntry>(entries.size() + 1);
+        boolean replaced = false;
+        for (int i = 0; i < entries.size(); i++) {
+            BoundedDnsCacheEntry entry = entries.get(i);
+            // Replace the same address, as the new entry may have more up-to-date data.
+            if (!replaced && entry.address().equals(e.address())) {
+                newEntries.add(e);
+                replaced = true;
+            } else {
+                newEntries.add(entry);
+            }
+        }
+        if (!replaced) {
+            newEntries.add(e);
+        }
+        return Collections.unmodifiableList(newEntries);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("BoundedDnsCache(maxSize=")
+                .append(maxSize).append(", minTtl=")
+                .append(minTtl).append(", maxTtl=")
+                .append(maxTtl).append(", negativeTtl=")
+                .append(negativeTtl).append(", refreshAhead=")
+                .append(refreshAhead).append(", cached resolved hostname=")
+                .append(size()).append(')')
+                .toString();
+    }
+
+    private static final class HostEntry {
+        final String hostname;
+        // The cached entries are never modified but replaced, so they can be returned without a copy.
+        List<BoundedDnsCacheEntry> entries;
+        long expirationNanos;
+        long refreshNanos;
+        boolean refreshing;
+
+        // The links of the wheel slot.
+        int slot = -1;
+        HostEntry prev;
+        HostEntry next;
+
+        HostEntry(String hostname) {
+            this.hostname = hostname;
+        }
+    }
+
+    /**
+     * Estimates how often a hostname was requested recently with four 4-bit counters per hostname, which are halved
+     * once enough hostnames were counted, so the old popularity fades out.
+     */
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = { 0x97cb3127, 0xb3e4a3c1, 0x3cd0e6a1, 0x5fb4a1d9 };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int size;
+
+        FrequencySketch(int maxSize) {
+            int length = MathUtil.safeFindNextPositivePowerOfTwo(Math.max(maxSize, 16));
+            table = new long[length];
+            mask = length - 1;
+            sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maxSize);
+        }
+
+        int frequency(String key) {
+            int hash = key.hashCode();
+            int frequency = 15;
+            for (int seed : SEEDS) {
+                int h = index(hash, seed);
+                frequency = Math.min(frequency, (int) (table[h & mask] >>> offset(h)) & 15);
+            }
+            return frequency;
+        }
+
+        void increment(String key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int seed : SEEDS) {
+                int h = index(hash, seed);
+                int i = h & mask;
+                int offset = offset(h);
+                if ((table[i] >>> offset & 15) != 15) {
+                    table[i] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++size == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = table[i] >>> 1 & RESET_MASK;
+                }
+                size >>>= 1;
+            }
+        }
+
+        private static int index(int hash, int seed) {
+            int h = (hash ^ seed) * 0x9e3779b9;
+            return h ^ h >>> 16;
+        }
+
+        private static int offset(int h) {
+            // Use the high bits, which are not used for the index, to select one of the 16 counters of the long.
+            return (h >>> 28) << 2;
+        }
+    }
+
+    private static final class BoundedDnsCacheEntry implements DnsCacheEntry {
+        private final String hostname;
+        private final InetAddress address;
+        private final Throwable cause;
+
+        BoundedDnsCacheEntry(String hostname, InetAddress address) {
+            this.hostname = hostname;
+            this.address = address;
+            cause = null;
+        }
+
+        BoundedDnsCacheEntry(String hostname, Throwable cause) {
+            this.hostname = hostname;
+            this.cause = cause;
+            address = null;
+        }
+
+        @Override
+        public InetAddress address() {
+            return address;
+        }
+
+        @Override
+        public Throwable cause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            if (cause != null) {
+                return hostname + '/' + cause;
+            } else {
+                return address.toString();
+            }
+        }
+    }
+
+    private static String appendDot(String hostname) {
+        return StringUtil.endsWith(hostname, '.') ? hostname : hostname + '.';
+    }
+}
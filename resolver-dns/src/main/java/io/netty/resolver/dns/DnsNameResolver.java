@@ -32,6 +32,7 @@ import io.netty.channel.EventLoop;
 import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.dns.DatagramDnsQueryEncoder;
 import io.netty.handler.codec.dns.DatagramDnsResponse;
 import io.netty.handler.codec.dns.DatagramDnsResponseDecoder;
@@ -160,6 +161,10 @@ public class DnsNameResolver extends InetNameResolver {
      * Manages the {@link DnsQueryContext}s in progress and their query IDs.
      */
     final DnsQueryContextManager queryContextManager = new DnsQueryContextManager();
+    /**
+     * The TCP connections used to retry the queries whose response was truncated, or {@code null} if disabled.
+     */
+    final DnsTcpConnectionPool tcpConnectionPool;
 
     /**
      * Cache for {@link #doResolve(String, Promise)} and {@link #doResolveAll(String, Promise)}.
@@ -290,6 +295,39 @@ public class DnsNameResolver extends InetNameResolver {
             String[] searchDomains,
             int ndots,
             boolean decodeIdn) {
+        this(eventLoop, channelFactory, null, 0, 0, resolveCache, authoritativeDnsServerCache,
+             dnsQueryLifecycleObserverFactory, queryTimeoutMillis, resolvedAddressTypes, recursionDesired,
+             maxQueriesPerResolve, traceEnabled, maxPayloadSize, optResourceEnabled, hostsFileEntriesResolver,
+             dnsServerAddressStreamProvider, searchDomains, ndots, decodeIdn);
+    }
+
+    /**
+     * Creates a new DNS-based name resolver, see {@link DnsNameResolverBuilder} for the meaning of the parameters.
+     *
+     * @param socketChannelFactory the {@link ChannelFactory} that will create the {@link SocketChannel}s used to retry
+     *                             the queries whose response was truncated, or {@code null} to not retry them
+     */
+    DnsNameResolver(
+            EventLoop eventLoop,
+            ChannelFactory<? extends DatagramChannel> channelFactory,
+            ChannelFactory<? extends SocketChannel> socketChannelFactory,
+            int maxTcpConnectionsPerNameServer,
+            long tcpIdleTimeoutMillis,
+            final DnsCache resolveCache,
+            final AuthoritativeDnsServerCache authoritativeDnsServerCache,
+            DnsQueryLifecycleObserverFactory dnsQueryLifecycleObserverFactory,
+            long queryTimeoutMillis,
+            ResolvedAddressTypes resolvedAddressTypes,
+            boolean recursionDesired,
+            int maxQueriesPerResolve,
+            boolean traceEnabled,
+            int maxPayloadSize,
+            boolean optResourceEnabled,
+            HostsFileEntriesResolver hostsFileEntriesResolver,
+            DnsServerAddressStreamProvider dnsServerAddressStreamProvider,
+            String[] searchDomains,
+            int ndots,
+            boolean decodeIdn) {
         super(eventLoop);
         this.queryTimeoutMillis = checkPositive(queryTimeoutMillis, "queryTimeoutMillis");
         this.resolvedAddressTypes = resolvedAddressTypes != null ? resolvedAddressTypes : DEFAULT_RESOLVE_ADDRESS_TYPES;
@@ -342,6 +380,8 @@ public class DnsNameResolver extends InetNameResolver {
         preferredAddressType = preferredAddressType(resolvedAddressTypes);
         this.authoritativeDnsServerCache = checkNotNull(authoritativeDnsServerCache, "authoritativeDnsServerCache");
         nameServerComparator = new NameServerComparator(preferredAddressType.addressType());
+        tcpConnectionPool = socketChannelFactory == null ? null : new DnsTcpConnectionPool(
+                this, socketChannelFactory, maxTcpConnectionsPerNameServer, tcpIdleTimeoutMillis);
 
         Bootstrap b = new Bootstrap();
         b.group(executor());
@@ -375,6 +415,9 @@ public class DnsNameResolver extends InetNameResolver {
             public void operationComplete(ChannelFuture future) {
                 resolveCache.clear();
                 authoritativeDnsServerCache.clear();
+                if (tcpConnectionPool != null) {
+                    tcpConnectionPool.close();
+                }
             }
         });
     }
@@ -520,9 +563,9 @@ public class DnsNameResolver extends InetNameResolver {
     }
 
     /**
-     * Closes the internal datagram channel used for sending and receiving DNS messages, and clears all DNS resource
-     * records from the cache. Attempting to send a DNS query or to resolve a domain name will fail once this method
-     * has been called.
+     * Closes the internal datagram channel used for sending and receiving DNS messages and the TCP connections used to
+     * retry the queries whose response was truncated, and clears all DNS resource records from the cache. Attempting
+     * to send a DNS query or to resolve a domain name will fail once this method has been called.
      */
     @Override
     public void close() {
@@ -777,6 +820,19 @@ public class DnsNameResolver extends InetNameResolver {
 
         if (!doResolveCached(hostname, additionals, promise, resolveCache)) {
             doResolveUncached(hostname, additionals, promise, resolveCache);
+        } else {
+            refreshIfNeeded(hostname, additionals, resolveCache);
+        }
+    }
+
+    /**
+     * Resolves the given hostname again in the background if the {@link RefreshAheadDnsCache} asks for it to be
+     * refreshed before it expires. The result is only used to update the {@link DnsCache}.
+     */
+    private void refreshIfNeeded(String hostname, DnsRecord[] additionals, DnsCache resolveCache) {
+        if (resolveCache instanceof RefreshAheadDnsCache &&
+            ((RefreshAheadDnsCache) resolveCache).shouldRefresh(hostname, additionals)) {
+            doResolveAllUncached(hostname, additionals, executor().<List<InetAddress>>newPromise(), resolveCache);
         }
     }
 
@@ -874,6 +930,8 @@ public class DnsNameResolver extends InetNameResolver {
 
         if (!doResolveAllCached(hostname, additionals, promise, resolveCache, resolvedInternetProtocolFamilies)) {
             doResolveAllUncached(hostname, additionals, promise, resolveCache);
+        } else {
+            refreshIfNeeded(hostname, additionals, resolveCache);
         }
     }
 
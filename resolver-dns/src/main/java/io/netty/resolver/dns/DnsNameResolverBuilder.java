@@ -20,6 +20,7 @@ import io.netty.channel.EventLoop;
 import io.netty.channel.ReflectiveChannelFactory;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.InternetProtocolFamily;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.resolver.HostsFileEntriesResolver;
 import io.netty.resolver.ResolvedAddressTypes;
 import io.netty.util.internal.UnstableApi;
@@ -39,6 +40,9 @@ import static io.netty.util.internal.ObjectUtil.intValue;
 public final class DnsNameResolverBuilder {
     private EventLoop eventLoop;
     private ChannelFactory<? extends DatagramChannel> channelFactory;
+    private ChannelFactory<? extends SocketChannel> socketChannelFactory;
+    private int maxTcpConnectionsPerNameServer = 2;
+    private long tcpIdleTimeoutMillis = 10000;
     private DnsCache resolveCache;
     private AuthoritativeDnsServerCache authoritativeDnsServerCache;
     private Integer minTtl;
@@ -113,7 +117,55 @@ public final class DnsNameResolverBuilder {
     }
 
     /**
-     * Sets the cache for resolution results.
+     * Sets the {@link ChannelFactory} that will create the {@link SocketChannel}s used to retry the queries whose
+     * response was truncated over TCP. If not set, the truncated responses are used as they are.
+     *
+     * @param socketChannelFactory the {@link ChannelFactory}
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder socketChannelFactory(ChannelFactory<? extends SocketChannel> socketChannelFactory) {
+        this.socketChannelFactory = socketChannelFactory;
+        return this;
+    }
+
+    /**
+     * Sets the {@link ChannelFactory} used to retry the queries over TCP as a {@link ReflectiveChannelFactory} of this
+     * type. Use as an alternative to {@link #socketChannelFactory(ChannelFactory)}.
+     *
+     * @param socketChannelType the type
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder socketChannelType(Class<? extends SocketChannel> socketChannelType) {
+        return socketChannelFactory(new ReflectiveChannelFactory<SocketChannel>(socketChannelType));
+    }
+
+    /**
+     * Sets the maximum number of TCP connections kept open to each name server. The queries retried over TCP are
+     * pipelined on these connections. The default value is {@code 2}.
+     *
+     * @param maxTcpConnectionsPerNameServer the maximum number of connections per name server
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder maxTcpConnectionsPerNameServer(int maxTcpConnectionsPerNameServer) {
+        this.maxTcpConnectionsPerNameServer = maxTcpConnectionsPerNameServer;
+        return this;
+    }
+
+    /**
+     * Sets the time after which a TCP connection to a name server is closed if no query is in progress on it.
+     * The default value is {@code 10000} milliseconds.
+     *
+     * @param tcpIdleTimeoutMillis the idle timeout in milliseconds
+     * @return {@code this}
+     */
+    public DnsNameResolverBuilder tcpIdleTimeoutMillis(long tcpIdleTimeoutMillis) {
+        this.tcpIdleTimeoutMillis = tcpIdleTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Sets the cache for resolution results. A {@link BoundedDnsCache} bounds the memory used by the cache and
+     * can refresh the popular hostnames before they expire, as can any other {@link RefreshAheadDnsCache}.
      *
      * @param resolveCache the DNS resolution results cache
      * @return {@code this}
@@ -412,6 +464,9 @@ public final class DnsNameResolverBuilder {
         return new DnsNameResolver(
                 eventLoop,
                 channelFactory,
+                socketChannelFactory,
+                maxTcpConnectionsPerNameServer,
+                tcpIdleTimeoutMillis,
                 resolveCache,
                 authoritativeDnsServerCache,
                 dnsQueryLifecycleObserverFactory,
@@ -445,6 +500,12 @@ public final class DnsNameResolverBuilder {
             copiedBuilder.channelFactory(channelFactory);
         }
 
+        if (socketChannelFactory != null) {
+            copiedBuilder.socketChannelFactory(socketChannelFactory);
+        }
+        copiedBuilder.maxTcpConnectionsPerNameServer(maxTcpConnectionsPerNameServer);
+        copiedBuilder.tcpIdleTimeoutMillis(tcpIdleTimeoutMillis);
+
         if (resolveCache != null) {
             copiedBuilder.resolveCache(resolveCache);
         }
@@ -22,6 +22,7 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.dns.DatagramDnsQuery;
 import io.netty.handler.codec.dns.AbstractDnsOptPseudoRrRecord;
+import io.netty.handler.codec.dns.DefaultDnsQuery;
 import io.netty.handler.codec.dns.DnsQuery;
 import io.netty.handler.codec.dns.DnsQuestion;
 import io.netty.handler.codec.dns.DnsRecord;
@@ -55,6 +56,10 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
     private final boolean recursionDesired;
     private volatile ScheduledFuture<?> timeoutFuture;
 
+    // Only accessed from the EventLoop, set once the query is retried over TCP because its response was truncated.
+    private DnsTcpConnectionPool.Connection tcpConnection;
+    private AddressedEnvelope<DnsResponse, InetSocketAddress> truncatedResponse;
+
     DnsQueryContext(DnsNameResolver parent,
                     InetSocketAddress nameServerAddr,
                     DnsQuestion question,
@@ -90,13 +95,19 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
     }
 
     void query(ChannelPromise writePromise) {
-        final DnsQuestion question = question();
-        final InetSocketAddress nameServerAddr = nameServerAddr();
-        final DatagramDnsQuery query = new DatagramDnsQuery(null, nameServerAddr, id);
+        final DnsQuery query = newQuery(new DatagramDnsQuery(null, nameServerAddr(), id));
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} WRITE: [{}: {}], {}", parent.ch, id, nameServerAddr(), question());
+        }
+
+        sendQuery(query, writePromise);
+    }
 
+    private DnsQuery newQuery(DnsQuery query) {
         query.setRecursionDesired(recursionDesired);
 
-        query.addRecord(DnsSection.QUESTION, question);
+        query.addRecord(DnsSection.QUESTION, question());
 
         for (DnsRecord record: additionals) {
             query.addRecord(DnsSection.ADDITIONAL, record);
@@ -105,12 +116,7 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
         if (optResource != null) {
             query.addRecord(DnsSection.ADDITIONAL, optResource);
         }
-
-        if (logger.isDebugEnabled()) {
-            logger.debug("{} WRITE: [{}: {}], {}", parent.ch, id, nameServerAddr, question);
-        }
-
-        sendQuery(query, writePromise);
+        return query;
     }
 
     private void sendQuery(final DnsQuery query, final ChannelPromise writePromise) {
@@ -133,7 +139,10 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
     }
 
     private void writeQuery(final DnsQuery query, final ChannelPromise writePromise) {
-        final ChannelFuture writeFuture = parent.ch.writeAndFlush(query, writePromise);
+        onQueryWrite(parent.ch.writeAndFlush(query, writePromise));
+    }
+
+    private void onQueryWrite(final ChannelFuture writeFuture) {
         if (writeFuture.isDone()) {
             onQueryWriteCompletion(writeFuture);
         } else {
@@ -170,18 +179,79 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
     }
 
     void finish(AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope) {
+        if (tcpConnection != null) {
+            // The query was retried over TCP already, so this is a duplicate of the truncated response.
+            return;
+        }
+        if (!isValid(envelope)) {
+            return;
+        }
+
+        if (envelope.content().isTruncated() && parent.tcpConnectionPool != null) {
+            retryWithTcp(envelope);
+            return;
+        }
+        setSuccess(envelope);
+    }
+
+    /**
+     * Called when a response was received over the TCP connection on which this query was retried.
+     */
+    void finish(DnsTcpConnectionPool.Connection connection,
+                AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope) {
+        if (tcpConnection == connection && isValid(envelope)) {
+            setSuccess(envelope);
+        }
+    }
+
+    /**
+     * Called when the TCP connection on which this query was retried was closed before the response was received.
+     */
+    void tcpConnectionClosed(DnsTcpConnectionPool.Connection connection) {
+        if (tcpConnection == connection) {
+            setFailure("connection closed before the response was received", null);
+        }
+    }
+
+    private boolean isValid(AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope) {
         final DnsResponse res = envelope.content();
         if (res.count(DnsSection.QUESTION) != 1) {
             logger.warn("Received a DNS response with invalid number of questions: {}", envelope);
-            return;
+            return false;
         }
 
         if (!question().equals(res.recordAt(DnsSection.QUESTION))) {
             logger.warn("Received a mismatching DNS response: {}", envelope);
+            return false;
+        }
+        return true;
+    }
+
+    private void retryWithTcp(AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope) {
+        final DnsTcpConnectionPool.Connection connection = parent.tcpConnectionPool.acquire(nameServerAddr());
+        if (connection == null) {
+            // The resolver is closing, the truncated response is all we are going to get.
+            setSuccess(envelope);
             return;
         }
 
-        setSuccess(envelope);
+        // Keep the truncated response, it is still better than nothing if the query fails over TCP.
+        @SuppressWarnings("unchecked")
+        AddressedEnvelope<DnsResponse, InetSocketAddress> castResponse =
+                (AddressedEnvelope<DnsResponse, InetSocketAddress>) envelope.retain();
+        truncatedResponse = castResponse;
+        tcpConnection = connection;
+        // The query timeout starts again once the query is written over TCP.
+        cancelTimeout();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} WRITE: [{}: {}], {} (truncated response over UDP, retrying over TCP)",
+                    connection.channel(), id, nameServerAddr(), question());
+        }
+
+        final ChannelPromise writePromise = connection.channel().newPromise();
+        connection.write(this, newQuery(new DefaultDnsQuery(id)), writePromise);
+        onQueryWrite(writePromise);
     }
 
     private void setSuccess(AddressedEnvelope<? extends DnsResponse, InetSocketAddress> envelope) {
@@ -196,6 +266,16 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
     }
 
     private void setFailure(String message, Throwable cause) {
+        final AddressedEnvelope<DnsResponse, InetSocketAddress> truncatedResponse = this.truncatedResponse;
+        if (truncatedResponse != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} Failed to retry [{}: {}] over TCP, using the truncated response: {}",
+                        parent.ch, id, nameServerAddr(), message, cause);
+            }
+            setSuccess(truncatedResponse);
+            return;
+        }
+
         final InetSocketAddress nameServerAddr = nameServerAddr();
 
         final StringBuilder buf = new StringBuilder(message.length() + 64);
@@ -219,14 +299,40 @@ final class DnsQueryContext implements FutureListener<AddressedEnvelope<DnsRespo
     @Override
     public void operationComplete(Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future) {
         // Cancel the timeout task.
+        cancelTimeout();
+
+        // Remove the id from the manager as soon as the query completes. This may be because of success, failure or
+        // cancellation
+        parent.queryContextManager.remove(nameServerAddr, id);
+
+        if (tcpConnection != null) {
+            if (parent.executor().inEventLoop()) {
+                releaseTcpConnection();
+            } else {
+                parent.executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        releaseTcpConnection();
+                    }
+                });
+            }
+        }
+    }
+
+    private void releaseTcpConnection() {
+        tcpConnection.remove(this);
+        final AddressedEnvelope<DnsResponse, InetSocketAddress> truncatedResponse = this.truncatedResponse;
+        if (truncatedResponse != null) {
+            this.truncatedResponse = null;
+            truncatedResponse.release();
+        }
+    }
+
+    private void cancelTimeout() {
         final ScheduledFuture<?> timeoutFuture = this.timeoutFuture;
         if (timeoutFuture != null) {
             this.timeoutFuture = null;
             timeoutFuture.cancel(false);
         }
-
-        // Remove the id from the manager as soon as the query completes. This may be because of success, failure or
-        // cancellation
-        parent.queryContextManager.remove(nameServerAddr, id);
     }
 }
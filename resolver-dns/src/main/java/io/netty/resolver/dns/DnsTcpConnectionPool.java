@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFactory;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.dns.DnsQuery;
+import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.TcpDnsQueryEncoder;
+import io.netty.handler.codec.dns.TcpDnsResponseDecoder;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Keeps a few persistent TCP connections per name server, which are used to retry the queries whose response was
+ * truncated when received over UDP. Several queries are pipelined on the same connection, and a connection which has
+ * no query in progress is closed once it has been idle for a while.
+ * <p>
+ * Must only be used from the {@link io.netty.channel.EventLoop} of the {@link DnsNameResolver}.
+ */
+final class DnsTcpConnectionPool {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(DnsTcpConnectionPool.class);
+    private static final TcpDnsQueryEncoder ENCODER = new TcpDnsQueryEncoder();
+
+    private final DnsNameResolver parent;
+    private final Bootstrap bootstrap;
+    private final int maxConnectionsPerNameServer;
+    private final long idleTimeoutMillis;
+    private final Map<InetSocketAddress, List<Connection>> connections =
+            new HashMap<InetSocketAddress, List<Connection>>();
+    private boolean closed;
+
+    DnsTcpConnectionPool(DnsNameResolver parent, ChannelFactory<? extends SocketChannel> channelFactory,
+                         int maxConnectionsPerNameServer, long idleTimeoutMillis) {
+        this.parent = parent;
+        this.maxConnectionsPerNameServer = checkPositive(maxConnectionsPerNameServer, "maxConnectionsPerNameServer");
+        this.idleTimeoutMillis = checkPositive(idleTimeoutMillis, "idleTimeoutMillis");
+        bootstrap = new Bootstrap();
+        bootstrap.group(parent.executor());
+        bootstrap.channelFactory(channelFactory);
+        bootstrap.option(ChannelOption.TCP_NODELAY, true);
+    }
+
+    /**
+     * Returns the {@link Connection} to the given name server with the fewest queries in progress, opening a new one
+     * if all of them are busy and the limit is not reached yet. Returns {@code null} once this pool is closed.
+     */
+    Connection acquire(InetSocketAddress nameServerAddr) {
+        assert parent.executor().inEventLoop();
+        if (closed) {
+            return null;
+        }
+
+        List<Connection> list = connections.get(nameServerAddr);
+        if (list == null) {
+            list = new ArrayList<Connection>(maxConnectionsPerNameServer);
+            connections.put(nameServerAddr, list);
+        }
+
+        Connection connection = null;
+        for (Connection c: list) {
+            if (connection == null || c.queries.size() < connection.queries.size()) {
+                connection = c;
+            }
+        }
+        if (connection == null || !connection.queries.isEmpty() && list.size() < maxConnectionsPerNameServer) {
+            connection = new Connection(nameServerAddr);
+            list.add(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Closes all the connections. The queries in progress fall back to their truncated responses.
+     */
+    void close() {
+        assert parent.executor().inEventLoop();
+        closed = true;
+        // Closing a connection removes it from the map, so copy them first.
+        List<Connection> all = new ArrayList<Connection>();
+        for (List<Connection> list: connections.values()) {
+            all.addAll(list);
+        }
+        for (Connection connection: all) {
+            connection.channel.close();
+        }
+    }
+
+    /**
+     * A TCP connection to a name server.
+     */
+    final class Connection {
+
+        private final InetSocketAddress nameServerAddr;
+        private final ChannelFuture connectFuture;
+        private final Channel channel;
+        // The queries waiting for their response on this connection.
+        private final Set<DnsQueryContext> queries = new LinkedHashSet<DnsQueryContext>();
+        private ScheduledFuture<?> idleTimeoutFuture;
+
+        Connection(final InetSocketAddress nameServerAddr) {
+            this.nameServerAddr = nameServerAddr;
+            connectFuture = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) {
+                    ch.pipeline().addLast(ENCODER, new TcpDnsResponseDecoder(), new TcpDnsResponseHandler());
+                }
+            }).connect(nameServerAddr);
+            channel = connectFuture.channel();
+            channel.closeFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    closed();
+                }
+            });
+        }
+
+        Channel channel() {
+            return channel;
+        }
+
+        /**
+         * Writes the query of the given {@link DnsQueryContext} once the connection is established.
+         */
+        void write(DnsQueryContext qCtx, final DnsQuery query, final ChannelPromise writePromise) {
+            queries.add(qCtx);
+            cancelIdleTimeout();
+
+            if (connectFuture.isDone()) {
+                write0(query, writePromise);
+            } else {
+                connectFuture.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        write0(query, writePromise);
+                    }
+                });
+            }
+        }
+
+        private void write0(DnsQuery query, ChannelPromise writePromise) {
+            if (connectFuture.isSuccess()) {
+                channel.writeAndFlush(query, writePromise);
+            } else {
+                ReferenceCountUtil.release(query);
+                writePromise.tryFailure(connectFuture.cause());
+            }
+        }
+
+        /**
+         * Called once the given {@link DnsQueryContext} is done, so this connection may become idle.
+         */
+        void remove(DnsQueryContext qCtx) {
+            if (queries.remove(qCtx) && queries.isEmpty() && channel.isOpen()) {
+                idleTimeoutFuture = channel.eventLoop().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (queries.isEmpty()) {
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("{} Closing the idle connection to {}", channel, nameServerAddr);
+                            }
+                            channel.close();
+                        }
+                    }
+                }, idleTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void cancelIdleTimeout() {
+            ScheduledFuture<?> idleTimeoutFuture = this.idleTimeoutFuture;
+            if (idleTimeoutFuture != null) {
+                this.idleTimeoutFuture = null;
+                idleTimeoutFuture.cancel(false);
+            }
+        }
+
+        private void closed() {
+            cancelIdleTimeout();
+            List<Connection> list = connections.get(nameServerAddr);
+            if (list != null) {
+                list.remove(this);
+                if (list.isEmpty()) {
+                    connections.remove(nameServerAddr);
+                }
+            }
+
+            if (!queries.isEmpty()) {
+                for (DnsQueryContext qCtx: queries.toArray(new DnsQueryContext[0])) {
+                    qCtx.tcpConnectionClosed(this);
+                }
+            }
+        }
+
+        private final class TcpDnsResponseHandler extends ChannelInboundHandlerAdapter {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                final DnsResponse res = (DnsResponse) msg;
+                final AddressedEnvelope<DnsResponse, InetSocketAddress> envelope =
+                        new DefaultAddressedEnvelope<DnsResponse, InetSocketAddress>(
+                                res, (InetSocketAddress) ctx.channel().localAddress(), nameServerAddr);
+                try {
+                    final int queryId = res.id();
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("{} RECEIVED: [{}: {}], {}", ctx.channel(), queryId, nameServerAddr, res);
+                    }
+
+                    final DnsQueryContext qCtx = parent.queryContextManager.get(nameServerAddr, queryId);
+                    if (qCtx == null || !queries.contains(qCtx)) {
+                        logger.warn("{} Received a DNS response with an unknown ID: {}", ctx.channel(), queryId);
+                        return;
+                    }
+
+                    qCtx.finish(Connection.this, envelope);
+                } finally {
+                    envelope.release();
+                }
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                logger.warn("{} Unexpected exception, closing the connection: ", ctx.channel(), cause);
+                ctx.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * A {@link DnsCache} which asks the {@link DnsNameResolver} to resolve a cached hostname again in the background
+ * before it expires. The result of such a refresh is passed to the cache like any other.
+ */
+@UnstableApi
+public interface RefreshAheadDnsCache extends DnsCache {
+
+    /**
+     * Called by the {@link DnsNameResolver} after the given hostname was served from this cache.
+     *
+     * @param hostname the hostname
+     * @param additionals the additional records
+     * @return {@code true} if the {@link DnsNameResolver} should resolve the hostname again.
+     */
+    boolean shouldRefresh(String hostname, DnsRecord[] additionals);
+}
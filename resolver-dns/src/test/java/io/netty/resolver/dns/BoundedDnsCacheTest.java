@@ -0,0 +1,232 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedDnsCacheTest {
+
+    private EventLoopGroup group;
+    private EventLoop loop;
+    private InetAddress addr1;
+    private InetAddress addr2;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(1);
+        loop = group.next();
+        addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        addr2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+    }
+
+    @After
+    public void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    @Test
+    public void testExpire() {
+        TestBoundedDnsCache cache = new TestBoundedDnsCache(16, 0);
+        cache.cache("netty.io", null, addr1, 1, loop);
+        cache.cache("netty.io", null, addr2, 10000, loop);
+        assertEquals(2, cache.get("netty.io", null).size());
+
+        // All the addresses expire with the first one.
+        cache.advance(1);
+        assertNull(cache.get("netty.io", null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSweepRemovesExpiredHostnames() {
+        TestBoundedDnsCache cache = new TestBoundedDnsCache(16, 0);
+        cache.cache("a.netty.io", null, addr1, 1, loop);
+        cache.cache("b.netty.io", null, addr1, 300, loop);
+        cache.cache("c.netty.io", null, addr1, 1000, loop);
+
+        cache.advance(1);
+        cache.expire();
+        assertEquals(2, cache.size());
+
+        // Longer than a full turn of the wheel.
+        cache.advance(299);
+        cache.expire();
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get("c.netty.io", null));
+
+        cache.advance(700);
+        cache.expire();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testReplaceAddress() {
+        TestBoundedDnsCache cache = new TestBoundedDnsCache(16, 0);
+        cache.cache("netty.io", null, addr1, 100, loop);
+        DnsCacheEntry entry = cache.cache("netty.io", null, addr1, 100, loop);
+        List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+        assertEquals(1, entries.size());
+        assertSame(entry, entries.get(0));
+    }
+
+    @Test
+    public void testNegativeEntryReplacedBySuccess() {
+        TestBoundedDnsCache cache = new TestBoundedDnsCache(16, 10);
+        cache.cache("netty.io", null, new UnknownHostException(), loop);
+        assertNotNull(cache.get("netty.io", null).get(0).cause());
+
+        cache.cache("netty.io", null, addr1, 100, loop);
+        List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+        assertEquals(1, entries.size());
+        assertEquals(addr1, entries.get(0).address());
+
+        // The negative TTL does not apply anymore.
+        cache.advance(10);
+        assertNotNull(cache.get("netty.io", null));
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        TestBoundedDnsCache cache = new TestBoundedDnsCache(2, 0);
+        cache.cache("a.netty.io", null, addr1, 100, loop);
+        cache.cache("b.netty.io", null, addr1, 100, loop);
+        cache.get("b.netty.io", null);
+        cache.get("a.netty.io", null);
+        assertEquals(2, cache.size());
+
+        // Requested more often than the least recently used hostname, which is evicted.
+        cache.get("c.netty.io", null);
+        cache.get("c.netty.io", null);
+        cache.cache("c.netty.io", null, addr1, 100, loop);
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a.netty.io", null));
+        assertNull(cache.get("b.netty.io", null));
+        assertNotNull(cache.get("c.netty.io", null));
+    }
+
+    @Test
+    public void testRejectRarelyRequestedHostname() {
+        TestBoundedDnsCache cache = new TestBoundedDnsCache(2, 0);
+        for (int i = 0; i < 3; i++) {
+            cache.get("a.netty.io", null);
+            cache.get("b.netty.io", null);
+        }
+        cache.cache("a.netty.io", null, addr1, 100, loop);
+        cache.cache("b.netty.io", null, addr1, 100, loop);
+
+        cache.get("c.netty.io", null);
+        cache.cache("c.netty.io", null, addr1, 100, loop);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("c.netty.io", null));
+        assertNotNull(cache.get("a.netty.io", null));
+        assertNotNull(cache.get("b.netty.io", null));
+    }
+
+    @Test
+    public void testRefreshAhead() {
+        TestBoundedDnsCache cache = new TestBoundedDnsCache(16, 0);
+        cache.cache("netty.io", null, addr1, 100, loop);
+        cache.get("netty.io", null);
+        cache.get("netty.io", null);
+        assertFalse(cache.shouldRefresh("netty.io", null));
+
+        cache.advance(90);
+        assertTrue(cache.shouldRefresh("netty.io", null));
+        // Only a single refresh at a time.
+        assertFalse(cache.shouldRefresh("netty.io", null));
+
+        // The result of the refresh replaces the previous addresses and their TTL.
+        cache.cache("netty.io", null, addr2, 100, loop);
+        List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+        assertEquals(1, entries.size());
+        assertEquals(addr2, entries.get(0).address());
+        cache.advance(50);
+        assertNotNull(cache.get("netty.io", null));
+    }
+
+    @Test
+    public void testNoRefreshOfRarelyRequestedHostname() {
+        TestBoundedDnsCache cache = new TestBoundedDnsCache(16, 0);
+        cache.cache("netty.io", null, addr1, 100, loop);
+        cache.advance(90);
+        assertFalse(cache.shouldRefresh("netty.io", null));
+    }
+
+    @Test
+    public void testFailedRefreshKeepsAddresses() {
+        TestBoundedDnsCache cache = new TestBoundedDnsCache(16, 10);
+        cache.cache("netty.io", null, addr1, 100, loop);
+        cache.get("netty.io", null);
+        cache.get("netty.io", null);
+        cache.advance(95);
+        assertTrue(cache.shouldRefresh("netty.io", null));
+
+        cache.cache("netty.io", null, new UnknownHostException(), loop);
+        assertEquals(addr1, cache.get("netty.io", null).get(0).address());
+        cache.advance(5);
+        assertNull(cache.get("netty.io", null));
+    }
+
+    @Test
+    public void testClear() {
+        TestBoundedDnsCache cache = new TestBoundedDnsCache(16, 0);
+        cache.cache("a.netty.io", null, addr1, 100, loop);
+        cache.cache("b.netty.io", null, addr1, 100, loop);
+        assertTrue(cache.clear("a.netty.io"));
+        assertFalse(cache.clear("a.netty.io"));
+        assertNull(cache.get("a.netty.io", null));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        cache.advance(100);
+        cache.expire();
+    }
+
+    private static final class TestBoundedDnsCache extends BoundedDnsCache {
+        private long nanoTime;
+
+        TestBoundedDnsCache(int maxSize, int negativeTtl) {
+            super(maxSize, 0, Cache.MAX_SUPPORTED_TTL_SECS, negativeTtl, true);
+        }
+
+        void advance(int seconds) {
+            nanoTime += TimeUnit.SECONDS.toNanos(seconds);
+        }
+
+        @Override
+        long nanoTime() {
+            return nanoTime;
+        }
+    }
+}
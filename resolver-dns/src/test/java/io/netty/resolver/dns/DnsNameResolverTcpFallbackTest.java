@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.dns.DatagramDnsQuery;
+import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
+import io.netty.handler.codec.dns.DatagramDnsResponse;
+import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
+import io.netty.handler.codec.dns.DefaultDnsQuestion;
+import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DnsQuestion;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.DnsSection;
+import io.netty.resolver.ResolvedAddressTypes;
+import io.netty.util.NetUtil;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DnsNameResolverTcpFallbackTest {
+
+    private static final String HOSTNAME = "netty.io";
+    private static final int ADDRESSES = 32;
+
+    private EventLoopGroup group;
+    private Channel tcpServer;
+    private Channel udpServer;
+    private final BlockingQueue<Channel> tcpConnections = new LinkedBlockingQueue<Channel>();
+
+    @Before
+    public void setup() throws Exception {
+        group = new NioEventLoopGroup(2);
+        final ReplyHandler tcpReplyHandler = new ReplyHandler(false);
+        tcpServer = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        tcpConnections.add(ch);
+                        // Reuse the datagram codecs, the messages only differ by their length prefix.
+                        ch.pipeline().addLast(
+                                new LengthFieldBasedFrameDecoder(0xFFFF, 0, 2, 0, 2), new FrameToPacketDecoder(),
+                                new DatagramDnsQueryDecoder(), new LengthFieldPrepender(2),
+                                new PacketToFrameEncoder(), new DatagramDnsResponseEncoder(), tcpReplyHandler);
+                    }
+                }).bind(NetUtil.LOCALHOST4, 0).sync().channel();
+
+        // The name server must answer over UDP and TCP on the same port.
+        final ReplyHandler udpReplyHandler = new ReplyHandler(true);
+        udpServer = new Bootstrap()
+                .group(group)
+                .channel(NioDatagramChannel.class)
+                .handler(new ChannelInitializer<NioDatagramChannel>() {
+                    @Override
+                    protected void initChannel(NioDatagramChannel ch) {
+                        ch.pipeline().addLast(
+                                new DatagramDnsQueryDecoder(), new DatagramDnsResponseEncoder(), udpReplyHandler);
+                    }
+                }).bind(tcpServer.localAddress()).sync().channel();
+    }
+
+    @After
+    public void teardown() {
+        tcpServer.close();
+        udpServer.close();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    private DnsNameResolverBuilder newResolver(boolean tcp) {
+        DnsNameResolverBuilder builder = new DnsNameResolverBuilder(group.next())
+                .channelType(NioDatagramChannel.class)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(
+                        (InetSocketAddress) udpServer.localAddress()))
+                .resolvedAddressTypes(ResolvedAddressTypes.IPV4_ONLY)
+                .maxQueriesPerResolve(1)
+                .optResourceEnabled(false)
+                .ndots(1);
+        if (tcp) {
+            builder.socketChannelType(NioSocketChannel.class);
+        }
+        return builder;
+    }
+
+    private static int queryAnswers(DnsNameResolver resolver) {
+        AddressedEnvelope<DnsResponse, InetSocketAddress> envelope =
+                resolver.query(new DefaultDnsQuestion(HOSTNAME, DnsRecordType.A)).syncUninterruptibly().getNow();
+        try {
+            return envelope.content().count(DnsSection.ANSWER);
+        } finally {
+            envelope.release();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTruncatedResponseRetriedOverTcp() throws Exception {
+        DnsNameResolver resolver = newResolver(true).build();
+        try {
+            assertEquals(ADDRESSES, queryAnswers(resolver));
+            assertEquals(ADDRESSES, queryAnswers(resolver));
+
+            List<InetAddress> addresses = resolver.resolveAll(HOSTNAME).sync().getNow();
+            assertEquals(ADDRESSES, addresses.size());
+
+            // All the queries were sent one after the other, so the connection was reused.
+            assertEquals(1, tcpConnections.size());
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPipelinedQueries() throws Exception {
+        DnsNameResolver resolver = newResolver(true).maxTcpConnectionsPerNameServer(1).build();
+        try {
+            List<Future<AddressedEnvelope<DnsResponse, InetSocketAddress>>> futures =
+                    new ArrayList<Future<AddressedEnvelope<DnsResponse, InetSocketAddress>>>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(resolver.query(new DefaultDnsQuestion(HOSTNAME, DnsRecordType.A)));
+            }
+            for (Future<AddressedEnvelope<DnsResponse, InetSocketAddress>> future: futures) {
+                AddressedEnvelope<DnsResponse, InetSocketAddress> envelope = future.sync().getNow();
+                assertEquals(ADDRESSES, envelope.content().count(DnsSection.ANSWER));
+                assertFalse(envelope.content().isTruncated());
+                envelope.release();
+            }
+            assertEquals(1, tcpConnections.size());
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTruncatedResponseWithoutTcp() throws Exception {
+        DnsNameResolver resolver = newResolver(false).build();
+        try {
+            assertEquals(1, queryAnswers(resolver));
+            assertNull(tcpConnections.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTruncatedResponseIfTcpFails() throws Exception {
+        tcpServer.close().sync();
+        DnsNameResolver resolver = newResolver(true).build();
+        try {
+            assertEquals(1, queryAnswers(resolver));
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleConnectionClosed() throws Exception {
+        DnsNameResolver resolver = newResolver(true).tcpIdleTimeoutMillis(100).build();
+        try {
+            assertEquals(ADDRESSES, queryAnswers(resolver));
+            Channel connection = tcpConnections.take();
+            connection.closeFuture().sync();
+
+            // A new connection is opened for the next query.
+            assertEquals(ADDRESSES, queryAnswers(resolver));
+            assertTrue(tcpConnections.take().isOpen());
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static final class ReplyHandler extends SimpleChannelInboundHandler<DatagramDnsQuery> {
+        private final boolean truncate;
+
+        ReplyHandler(boolean truncate) {
+            this.truncate = truncate;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DatagramDnsQuery query) {
+            DnsQuestion question = query.recordAt(DnsSection.QUESTION);
+            DatagramDnsResponse response = new DatagramDnsResponse(query.recipient(), query.sender(), query.id());
+            response.addRecord(DnsSection.QUESTION, question);
+            // Only the first address fits in the response sent over UDP.
+            int addresses = truncate ? 1 : ADDRESSES;
+            for (int i = 0; i < addresses; i++) {
+                response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord(question.name(), DnsRecordType.A, 60,
+                        Unpooled.wrappedBuffer(new byte[] { 10, 0, 0, (byte) i })));
+            }
+            response.setTruncated(truncate);
+            ctx.writeAndFlush(response);
+        }
+    }
+
+    private static final class FrameToPacketDecoder extends MessageToMessageDecoder<ByteBuf> {
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+            out.add(new DatagramPacket(msg.retain(), (InetSocketAddress) ctx.channel().localAddress(),
+                    (InetSocketAddress) ctx.channel().remoteAddress()));
+        }
+    }
+
+    private static final class PacketToFrameEncoder extends MessageToMessageEncoder<DatagramPacket> {
+        @Override
+        protected void encode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out) {
+            out.add(msg.content().retain());
+        }
+    }
+}
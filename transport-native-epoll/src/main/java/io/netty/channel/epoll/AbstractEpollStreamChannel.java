@@ -18,11 +18,13 @@ package io.netty.channel.epoll;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
 import io.netty.channel.ChannelConfig;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelMetadata;
 import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelOutboundBuffer.MessageProcessor;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultFileRegion;
@@ -37,6 +39,7 @@ import io.netty.channel.unix.SocketWritableByteChannel;
 import io.netty.channel.unix.UnixChannelUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.ThrowableUtil;
 import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
@@ -47,8 +50,10 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static io.netty.channel.internal.ChannelUtils.MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD;
 import static io.netty.channel.internal.ChannelUtils.WRITE_STATUS_SNDBUF_FULL;
@@ -70,6 +75,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
     private static final ClosedChannelException FAIL_SPLICE_IF_CLOSED_CLOSED_CHANNEL_EXCEPTION =
             ThrowableUtil.unknownStackTrace(new ClosedChannelException(),
             AbstractEpollStreamChannel.class, "failSpliceIfClosed(...)");
+    private static final ChannelException CLEAR_ZERO_COPY_WRITES_CHANNEL_EXCEPTION =
+            ThrowableUtil.unknownStackTrace(new ChannelException("channel closed before the kernel signaled the " +
+                    "completion of the MSG_ZEROCOPY write, the data may still be delivered"),
+                    AbstractEpollStreamChannel.class, "clearZeroCopyWrites()");
+    private static final long ZERO_COPY_CLOSE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(0, SystemPropertyUtil.getLong("io.netty.epoll.zeroCopyCloseTimeoutMillis", 1000)));
     private final Runnable flushTask = new Runnable() {
         @Override
         public void run() {
@@ -86,6 +97,12 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     private WritableByteChannel byteChannel;
 
+    // Lazy init these if we write via MSG_ZEROCOPY
+    private ArrayDeque<ZeroCopyWrite> zeroCopyWrites;
+    private ZeroCopyIovArrayProcessor zeroCopyProcessor;
+    private int[] zeroCopyRange;
+    private int zeroCopyNextId;
+
     protected AbstractEpollStreamChannel(Channel parent, int fd) {
         this(parent, new LinuxSocket(fd));
     }
@@ -233,6 +250,37 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         return promise;
     }
 
+    /**
+     * Splice all the data which is received by this {@link AbstractEpollStreamChannel} to {@code ch} until the end
+     * of the stream is reached. This is used by {@link EpollRelay} which takes care of the half-closure.
+     * <p>
+     * Must be called from the {@link EventLoop} of both channels and requires {@link EpollMode#LEVEL_TRIGGERED}.
+     */
+    final ChannelFuture spliceRelayTo(AbstractEpollStreamChannel ch, EpollRelay relay) {
+        assert eventLoop().inEventLoop() && ch.eventLoop() == eventLoop();
+        ChannelPromise promise = newPromise();
+        addToSpliceQueue(new SpliceInRelayTask(ch, relay, promise));
+        failSpliceIfClosed(promise);
+        return promise;
+    }
+
+    /**
+     * Returns the write end of the pipe which is used to splice data to this channel, and creates it if needed.
+     */
+    private FileDescriptor spliceOutPipe() throws IOException {
+        // We create the pipe on the target channel as this will allow us to just handle pending writes
+        // later in a correct fashion without get into any ordering issues when spliceTo(...) is called
+        // on multiple Channels pointing to one target Channel.
+        FileDescriptor pipeOut = this.pipeOut;
+        if (pipeOut == null) {
+            // Create a new pipe as non was created before.
+            FileDescriptor[] pipe = pipe();
+            pipeIn = pipe[0];
+            pipeOut = this.pipeOut = pipe[1];
+        }
+        return pipeOut;
+    }
+
     private void failSpliceIfClosed(ChannelPromise promise) {
         if (!isOpen()) {
             // Seems like the Channel was closed in the meantime try to fail the promise to prevent any
@@ -270,6 +318,10 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             return 0;
         }
 
+        if (isZeroCopyWrite(buf, zeroCopyThreshold())) {
+            return writeBytesZeroCopy(in, buf);
+        }
+
         if (buf.hasMemoryAddress() || buf.nioBufferCount() == 1) {
             return doWriteBytes(in, buf);
         } else {
@@ -357,6 +409,187 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         return WRITE_STATUS_SNDBUF_FULL;
     }
 
+    /**
+     * Write a {@link ByteBuf} via {@code MSG_ZEROCOPY}. The buffer is retained until the kernel signals via the error
+     * queue that it does not reference its memory anymore, and the {@link ChannelPromise} of the write is only
+     * notified at this point.
+     * @param in the collection which contains objects to write.
+     * @param buf the {@link ByteBuf} from which the bytes should be written
+     * @return The value that should be decremented from the write quantum which starts at
+     * {@link ChannelConfig#getWriteSpinCount()}. The typical use cases are as follows:
+     * <ul>
+     *     <li>1 - if a single call to write data was made to the OS</li>
+     *     <li>{@link ChannelUtils#WRITE_STATUS_SNDBUF_FULL} - if an attempt to write data was made to the OS, but
+     *     no data was accepted</li>
+     * </ul>
+     * @throws IOException If an I/O exception occurs during write.
+     */
+    private int writeBytesZeroCopy(ChannelOutboundBuffer in, ByteBuf buf) throws IOException {
+        IovArray array = ((EpollEventLoop) eventLoop()).cleanIovArray();
+        array.maxBytes(config().getMaxBytesPerGatheringWrite());
+        array.add(buf);
+
+        final long localWrittenBytes = socket.writevAddressesZeroCopy(array.memoryAddress(0), array.count());
+        if (localWrittenBytes < 0) {
+            // The kernel could not allocate a completion notification, just copy the data this time.
+            ZeroCopyWrite last = zeroCopyWrites == null ? null : zeroCopyWrites.peekLast();
+            int flushed = in.size();
+            int res = writeBytesMultiple(in, array);
+            if (last != null && last.buf == buf && last.promise == null && in.size() != flushed) {
+                // The buffer was partially written via MSG_ZEROCOPY before and the ChannelOutboundBuffer completed the
+                // write now. We still need to keep the memory alive until the kernel is done with it.
+                last.promise = voidPromise();
+            }
+            return res;
+        }
+        if (localWrittenBytes == 0) {
+            return WRITE_STATUS_SNDBUF_FULL;
+        }
+
+        // Every successful sendmsg(...) call consumes an id, which is reported back once the kernel is done.
+        final int id = zeroCopyNextId++;
+        if (zeroCopyWrites == null) {
+            zeroCopyWrites = new ArrayDeque<ZeroCopyWrite>();
+        }
+        ZeroCopyWrite write = zeroCopyWrites.peekLast();
+        if (write == null || write.buf != buf || write.promise != null) {
+            write = new ZeroCopyWrite(buf.retain(), id);
+            zeroCopyWrites.add(write);
+        } else {
+            write.ids++;
+        }
+
+        if (localWrittenBytes < buf.readableBytes()) {
+            in.removeBytes(localWrittenBytes);
+        } else {
+            in.progress(localWrittenBytes);
+            write.promise = in.removeAndDetach();
+            assert write.promise != null;
+            // We were handed the reference of the ChannelOutboundBuffer but hold our own already.
+            buf.release();
+        }
+        return 1;
+    }
+
+    private boolean isZeroCopyWrite(ByteBuf buf, int zeroCopyThreshold) {
+        if (zeroCopyThreshold > 0 && buf.readableBytes() >= zeroCopyThreshold) {
+            return true;
+        }
+        // Once we started to write a buffer via MSG_ZEROCOPY we need to finish it the same way, even if what is left
+        // of it is below the threshold now.
+        ZeroCopyWrite last = zeroCopyWrites == null ? null : zeroCopyWrites.peekLast();
+        return last != null && last.buf == buf && last.promise == null;
+    }
+
+    /**
+     * Returns the minimum number of readable bytes a {@link ByteBuf} must have to be written via
+     * {@code MSG_ZEROCOPY} or {@code 0} if zero copy writes are not used.
+     */
+    int zeroCopyThreshold() {
+        return 0;
+    }
+
+    /**
+     * Read all {@code MSG_ZEROCOPY} completion notifications from the error queue, and release the buffers and notify
+     * the {@link ChannelPromise}s of the writes which are done now.
+     */
+    private void processZeroCopyCompletions() throws IOException {
+        if (zeroCopyRange == null) {
+            zeroCopyRange = new int[2];
+        }
+        while (socket.recvZeroCopyNotification(zeroCopyRange)) {
+            for (ZeroCopyWrite write: zeroCopyWrites) {
+                write.ack(zeroCopyRange[0], zeroCopyRange[1]);
+            }
+        }
+        // Notify in the same order as the zero copy writes were done. Copied writes which were done after a pending
+        // zero copy write were already notified by the ChannelOutboundBuffer, so these may complete out of order.
+        for (;;) {
+            ZeroCopyWrite write = zeroCopyWrites.peek();
+            if (write == null || !write.isDone()) {
+                break;
+            }
+            zeroCopyWrites.remove();
+            write.buf.release();
+            write.promise.trySuccess();
+        }
+    }
+
+    final boolean hasZeroCopyWrites() {
+        return zeroCopyWrites != null && !zeroCopyWrites.isEmpty();
+    }
+
+    /**
+     * Shutdown the output and wait for the kernel to signal the completion of the pending {@code MSG_ZEROCOPY}
+     * writes, as it may still reference the memory of the buffers after the socket was closed. This only blocks
+     * (for at most {@code io.netty.epoll.zeroCopyCloseTimeoutMillis}) if not called from the {@link EventLoop}.
+     */
+    private void drainZeroCopyWrites() {
+        try {
+            if (!socket.isOutputShutdown()) {
+                // Let the kernel send what it has queued already, so it can complete the writes.
+                socket.shutdown(false, true);
+            }
+        } catch (IOException ignore) {
+            // The socket may not be connected anymore, just collect what was signaled already.
+        }
+        final boolean block = !eventLoop().inEventLoop();
+        final long deadline = System.nanoTime() + ZERO_COPY_CLOSE_TIMEOUT_NANOS;
+        try {
+            for (;;) {
+                processZeroCopyCompletions();
+                if (!block || allZeroCopyWritesAcked() || deadline - System.nanoTime() <= 0) {
+                    break;
+                }
+                Thread.sleep(1);
+            }
+        } catch (IOException ignore) {
+            // The writes which are still pending are handled by clearZeroCopyWrites().
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean allZeroCopyWritesAcked() {
+        for (ZeroCopyWrite write: zeroCopyWrites) {
+            if (!write.isAcked()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void clearZeroCopyWrites() {
+        if (zeroCopyWrites == null) {
+            return;
+        }
+        int leaked = 0;
+        for (;;) {
+            ZeroCopyWrite write = zeroCopyWrites.poll();
+            if (write == null) {
+                break;
+            }
+            // If the promise is still null the write is failed by the ChannelOutboundBuffer.
+            if (write.isAcked()) {
+                write.buf.release();
+                if (write.promise != null) {
+                    write.promise.trySuccess();
+                }
+            } else {
+                // The kernel may still reference the memory, so never give it back to the allocator as it could be
+                // reused and so corrupt the data on the wire.
+                leaked++;
+                if (write.promise != null) {
+                    write.promise.tryFailure(CLEAR_ZERO_COPY_WRITES_CHANNEL_EXCEPTION);
+                }
+            }
+        }
+        if (leaked > 0 && logger.isWarnEnabled()) {
+            logger.warn("{} buffer(s) of MSG_ZEROCOPY writes are not released as the kernel did not signal their " +
+                    "completion before the channel was closed: {}", leaked, this);
+        }
+    }
+
     /**
      * Write a {@link DefaultFileRegion}
      * @param in the collection which contains objects to write.
@@ -512,10 +745,23 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
      * @throws Exception If an I/O error occurs.
      */
     private int doWriteMultiple(ChannelOutboundBuffer in) throws Exception {
+        final int zeroCopyThreshold = zeroCopyThreshold();
+        ByteBuf first = (ByteBuf) in.current();
+        if (first.isReadable() && isZeroCopyWrite(first, zeroCopyThreshold)) {
+            return writeBytesZeroCopy(in, first);
+        }
+
         final long maxBytesPerGatheringWrite = config().getMaxBytesPerGatheringWrite();
         IovArray array = ((EpollEventLoop) eventLoop()).cleanIovArray();
         array.maxBytes(maxBytesPerGatheringWrite);
-        in.forEachFlushedMessage(array);
+        if (zeroCopyThreshold > 0) {
+            if (zeroCopyProcessor == null) {
+                zeroCopyProcessor = new ZeroCopyIovArrayProcessor();
+            }
+            in.forEachFlushedMessage(zeroCopyProcessor.init(array, zeroCopyThreshold));
+        } else {
+            in.forEachFlushedMessage(array);
+        }
 
         if (array.count() >= 1) {
             // TODO: Handle the case where cnt == 1 specially.
@@ -679,6 +925,9 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
     @Override
     protected void doClose() throws Exception {
+        if (hasZeroCopyWrites()) {
+            drainZeroCopyWrites();
+        }
         try {
             // Calling super.doClose() first so spliceTo(...) will fail on next call.
             super.doClose();
@@ -686,6 +935,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
             safeClosePipe(pipeIn);
             safeClosePipe(pipeOut);
             clearSpliceQueue();
+            clearZeroCopyWrites();
         }
     }
 
@@ -746,6 +996,16 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
 
         @Override
         void epollInReady() {
+            if (hasZeroCopyWrites()) {
+                // The completion notifications of MSG_ZEROCOPY writes are signaled via EPOLLERR.
+                try {
+                    processZeroCopyCompletions();
+                } catch (IOException e) {
+                    pipeline().fireExceptionCaught(e);
+                    close(voidPromise());
+                    return;
+                }
+            }
             final ChannelConfig config = config();
             if (shouldBreakEpollInReady(config)) {
                 clearEpollIn0();
@@ -903,18 +1163,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                 return true;
             }
             try {
-                // We create the pipe on the target channel as this will allow us to just handle pending writes
-                // later in a correct fashion without get into any ordering issues when spliceTo(...) is called
-                // on multiple Channels pointing to one target Channel.
-                FileDescriptor pipeOut = ch.pipeOut;
-                if (pipeOut == null) {
-                    // Create a new pipe as non was created before.
-                    FileDescriptor[] pipe = pipe();
-                    ch.pipeIn = pipe[0];
-                    pipeOut = ch.pipeOut = pipe[1];
-                }
-
-                int splicedIn = spliceIn(pipeOut, handle);
+                int splicedIn = spliceIn(ch.spliceOutPipe(), handle);
                 if (splicedIn > 0) {
                     // Integer.MAX_VALUE is a special value which will result in splice forever.
                     if (len != Integer.MAX_VALUE) {
@@ -953,6 +1202,61 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
     }
 
+    private final class SpliceInRelayTask extends SpliceInTask {
+        private final AbstractEpollStreamChannel ch;
+        private final EpollRelay relay;
+
+        SpliceInRelayTask(AbstractEpollStreamChannel ch, EpollRelay relay, ChannelPromise promise) {
+            super(Integer.MAX_VALUE, promise);
+            this.ch = ch;
+            this.relay = relay;
+        }
+
+        @Override
+        public boolean spliceIn(RecvByteBufAllocator.Handle handle) {
+            assert ch.eventLoop().inEventLoop();
+            try {
+                FileDescriptor pipeOut = ch.spliceOutPipe();
+                int splicedIn = 0;
+                boolean eof = false;
+                for (;;) {
+                    // Splice until the pipe is full or there is nothing left to splice.
+                    int localSplicedIn = Native.spliceOrEof(socket.intValue(), -1, pipeOut.intValue(), -1, len);
+                    if (localSplicedIn <= 0) {
+                        eof = localSplicedIn < 0;
+                        break;
+                    }
+                    splicedIn += localSplicedIn;
+                }
+
+                if (splicedIn > 0) {
+                    relay.relayed(AbstractEpollStreamChannel.this, splicedIn);
+
+                    ChannelPromise splicePromise = ch.newPromise();
+                    boolean autoRead = config().isAutoRead();
+                    ch.unsafe().write(new SpliceOutTask(ch, splicedIn, autoRead), splicePromise);
+                    ch.unsafe().flush();
+                    if (autoRead && !splicePromise.isDone()) {
+                        // The target channel can not keep up, stop reading until everything in the pipe was spliced
+                        // to it as otherwise we would be woken up again and again while the pipe is full.
+                        config().setAutoRead(false);
+                    }
+                }
+
+                if (eof) {
+                    // Once this task is removed the end of the stream is read the usual way, which shuts down the
+                    // input and so notifies the EpollRelay.
+                    promise.setSuccess();
+                    return true;
+                }
+                return false;
+            } catch (Throwable cause) {
+                promise.setFailure(cause);
+                return true;
+            }
+        }
+    }
+
     private final class SpliceOutTask {
         private final AbstractEpollStreamChannel ch;
         private final boolean autoRead;
@@ -1039,6 +1343,62 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
         }
     }
 
+    private static final class ZeroCopyWrite {
+        final ByteBuf buf;
+        final int firstId;
+        // The number of sendmsg(...) calls (and so ids) which were needed to write the buffer.
+        int ids = 1;
+        int acked;
+        // Set once the whole buffer was written.
+        ChannelPromise promise;
+
+        ZeroCopyWrite(ByteBuf buf, int firstId) {
+            this.buf = buf;
+            this.firstId = firstId;
+        }
+
+        void ack(int first, int last) {
+            // Ids are 32 bit and may wrap around, so only work with the distance to the first id of this write.
+            int from = Math.max(first - firstId, 0);
+            int to = Math.min(last - firstId, ids - 1);
+            if (to >= from) {
+                acked += to - from + 1;
+            }
+        }
+
+        // The kernel does not reference the memory anymore, which does not mean the whole buffer was written yet.
+        boolean isAcked() {
+            return acked == ids;
+        }
+
+        boolean isDone() {
+            return promise != null && isAcked();
+        }
+    }
+
+    /**
+     * Gathers the flushed messages into an {@link IovArray} but stops at the first {@link ByteBuf} which should be
+     * written via {@code MSG_ZEROCOPY}.
+     */
+    private static final class ZeroCopyIovArrayProcessor implements MessageProcessor {
+        private IovArray array;
+        private int zeroCopyThreshold;
+
+        ZeroCopyIovArrayProcessor init(IovArray array, int zeroCopyThreshold) {
+            this.array = array;
+            this.zeroCopyThreshold = zeroCopyThreshold;
+            return this;
+        }
+
+        @Override
+        public boolean processMessage(Object msg) throws Exception {
+            if (msg instanceof ByteBuf && ((ByteBuf) msg).readableBytes() >= zeroCopyThreshold) {
+                return false;
+            }
+            return array.processMessage(msg);
+        }
+    }
+
     private final class EpollSocketWritableByteChannel extends SocketWritableByteChannel {
         EpollSocketWritableByteChannel() {
             super(socket);
@@ -30,6 +30,8 @@ import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.unix.DatagramSocketAddress;
 import io.netty.channel.unix.IovArray;
 import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.RecyclableArrayList;
 import io.netty.util.internal.StringUtil;
 
 import java.io.IOException;
@@ -268,8 +270,10 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             }
 
             try {
-                // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+
-                if (Native.IS_SUPPORTING_SENDMMSG && in.size() > 1) {
+                // Check if sendmmsg(...) is supported which is only the case for GLIBC 2.14+. It is also used to
+                // write a single SegmentedDatagramPacket as the segment size is passed as a control message.
+                if (Native.IS_SUPPORTING_SENDMMSG && (in.size() > 1 ||
+                        Native.IS_SUPPORTING_UDP_SEGMENT && msg instanceof SegmentedDatagramPacket)) {
                     NativeDatagramPacketArray array = ((EpollEventLoop) eventLoop()).cleanDatagramPacketArray();
                     in.forEachFlushedMessage(array);
                     int cnt = array.count();
@@ -333,6 +337,30 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
             remoteAddress = null;
         }
 
+        if (msg instanceof SegmentedDatagramPacket) {
+            return doWriteSegments(data, ((SegmentedDatagramPacket) msg).segmentSize(), remoteAddress);
+        }
+        return doWriteBytes(data, remoteAddress);
+    }
+
+    /**
+     * Write the content of a {@link SegmentedDatagramPacket} as one datagram per segment, which is used if
+     * it can not be offloaded to the kernel via {@code UDP_SEGMENT}. The reader index of {@code data} is advanced
+     * after each written segment, so a partial write is continued with the next segment.
+     */
+    private boolean doWriteSegments(ByteBuf data, int segmentSize, InetSocketAddress remoteAddress)
+            throws Exception {
+        while (data.isReadable()) {
+            int len = Math.min(segmentSize, data.readableBytes());
+            if (!doWriteBytes(data.slice(data.readerIndex(), len), remoteAddress)) {
+                return false;
+            }
+            data.skipBytes(len);
+        }
+        return true;
+    }
+
+    private boolean doWriteBytes(ByteBuf data, InetSocketAddress remoteAddress) throws Exception {
         final int dataLen = data.readableBytes();
         if (dataLen == 0) {
             return true;
@@ -377,8 +405,14 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
         if (msg instanceof DatagramPacket) {
             DatagramPacket packet = (DatagramPacket) msg;
             ByteBuf content = packet.content();
-            return UnixChannelUtil.isBufferCopyNeededForWrite(content) ?
-                    new DatagramPacket(newDirectBuffer(packet, content), packet.recipient()) : msg;
+            if (!UnixChannelUtil.isBufferCopyNeededForWrite(content)) {
+                return msg;
+            }
+            if (packet instanceof SegmentedDatagramPacket) {
+                int segmentSize = ((SegmentedDatagramPacket) packet).segmentSize();
+                return new SegmentedDatagramPacket(newDirectBuffer(packet, content), segmentSize, packet.recipient());
+            }
+            return new DatagramPacket(newDirectBuffer(packet, content), packet.recipient());
         }
 
         if (msg instanceof ByteBuf) {
@@ -449,47 +483,25 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
 
             Throwable exception = null;
             try {
-                ByteBuf data = null;
                 try {
+                    int datagramSize = config().getMaxDatagramPayloadSize();
+                    boolean gro = config().isUdpGro();
+                    boolean read;
                     do {
-                        data = allocHandle.allocate(allocator);
-                        allocHandle.attemptedBytesRead(data.writableBytes());
-                        final DatagramSocketAddress remoteAddress;
-                        if (data.hasMemoryAddress()) {
-                            // has a memory address so use optimized call
-                            remoteAddress = socket.recvFromAddress(data.memoryAddress(), data.writerIndex(),
-                                                                 data.capacity());
+                        ByteBuf data = allocHandle.allocate(allocator);
+                        int numDatagram = datagramSize == 0 ? 1 : Math.min(
+                                data.writableBytes() / datagramSize, allocHandle.remainingMessagesPerRead());
+                        if (numDatagram > 1 && Native.IS_SUPPORTING_RECVMMSG) {
+                            read = scatteringRead(allocHandle, data, datagramSize, numDatagram);
+                        } else if (gro && Native.IS_SUPPORTING_RECVMMSG) {
+                            // The segment size of coalesced datagrams is only reported via a control message,
+                            // which is not received by recvfrom(...).
+                            read = scatteringRead(allocHandle, data, data.writableBytes(), 1);
                         } else {
-                            ByteBuffer nioData = data.internalNioBuffer(data.writerIndex(), data.writableBytes());
-                            remoteAddress = socket.recvFrom(nioData, nioData.position(), nioData.limit());
-                        }
-
-                        if (remoteAddress == null) {
-                            allocHandle.lastBytesRead(-1);
-                            data.release();
-                            data = null;
-                            break;
+                            read = singleRead(allocHandle, data);
                         }
-
-                        InetSocketAddress localAddress = remoteAddress.localAddress();
-                        if (localAddress == null) {
-                            localAddress = (InetSocketAddress) localAddress();
-                        }
-
-                        allocHandle.incMessagesRead(1);
-                        allocHandle.lastBytesRead(remoteAddress.receivedAmount());
-                        data.writerIndex(data.writerIndex() + allocHandle.lastBytesRead());
-
-                        readPending = false;
-                        pipeline.fireChannelRead(
-                                new DatagramPacket(data, localAddress, remoteAddress));
-
-                        data = null;
-                    } while (allocHandle.continueReading());
+                    } while (read && allocHandle.continueReading());
                 } catch (Throwable t) {
-                    if (data != null) {
-                        data.release();
-                    }
                     exception = t;
                 }
 
@@ -503,5 +515,116 @@ public final class EpollDatagramChannel extends AbstractEpollChannel implements
                 epollInFinally(config);
             }
         }
+
+        /**
+         * Read a single datagram into {@code data} via {@code recvfrom(...)}. The ownership of {@code data} is
+         * transferred to this method. Returns {@code false} if there was nothing to read.
+         */
+        private boolean singleRead(EpollRecvByteAllocatorHandle allocHandle, ByteBuf data) throws IOException {
+            try {
+                allocHandle.attemptedBytesRead(data.writableBytes());
+                final DatagramSocketAddress remoteAddress;
+                if (data.hasMemoryAddress()) {
+                    // has a memory address so use optimized call
+                    remoteAddress = socket.recvFromAddress(data.memoryAddress(), data.writerIndex(),
+                                                         data.capacity());
+                } else {
+                    ByteBuffer nioData = data.internalNioBuffer(data.writerIndex(), data.writableBytes());
+                    remoteAddress = socket.recvFrom(nioData, nioData.position(), nioData.limit());
+                }
+
+                if (remoteAddress == null) {
+                    allocHandle.lastBytesRead(-1);
+                    return false;
+                }
+
+                InetSocketAddress localAddress = remoteAddress.localAddress();
+                if (localAddress == null) {
+                    localAddress = (InetSocketAddress) localAddress();
+                }
+
+                allocHandle.incMessagesRead(1);
+                allocHandle.lastBytesRead(remoteAddress.receivedAmount());
+                data.writerIndex(data.writerIndex() + allocHandle.lastBytesRead());
+
+                readPending = false;
+                DatagramPacket packet = new DatagramPacket(data, localAddress, remoteAddress);
+                data = null;
+                pipeline().fireChannelRead(packet);
+                return true;
+            } finally {
+                if (data != null) {
+                    data.release();
+                }
+            }
+        }
+
+        /**
+         * Read up to {@code numDatagram} datagrams with one {@code recvmmsg(...)} call, each into its own slice of
+         * {@code datagramSize} bytes of {@code data}. Data which was coalesced by the kernel because of
+         * {@code UDP_GRO} is split into one {@link DatagramPacket} per segment. The ownership of {@code data} is
+         * transferred to this method. Returns {@code false} if there was nothing to read.
+         */
+        private boolean scatteringRead(EpollRecvByteAllocatorHandle allocHandle, ByteBuf data,
+                                       int datagramSize, int numDatagram) throws IOException {
+            RecyclableArrayList datagramPackets = null;
+            int fired = 0;
+            try {
+                int writerIndex = data.writerIndex();
+                NativeDatagramPacketArray array = ((EpollEventLoop) eventLoop()).cleanDatagramPacketArray();
+                for (int i = 0; i < numDatagram; i++) {
+                    if (!array.addWritable(data, writerIndex + i * datagramSize, datagramSize)) {
+                        break;
+                    }
+                }
+                allocHandle.attemptedBytesRead(array.count() * datagramSize);
+
+                NativeDatagramPacketArray.NativeDatagramPacket[] packets = array.packets();
+                int received = Native.recvmmsg(socket.intValue(), packets, 0, array.count());
+                if (received == 0) {
+                    allocHandle.lastBytesRead(-1);
+                    return false;
+                }
+                int bytesReceived = received * datagramSize;
+                data.writerIndex(writerIndex + bytesReceived);
+
+                // Create all DatagramPackets before calling fireChannelRead(...), as the NativeDatagramPacketArray
+                // is shared with writes and so will be reused if the user calls flush() from channelRead(...).
+                InetSocketAddress localAddress = (InetSocketAddress) localAddress();
+                datagramPackets = RecyclableArrayList.newInstance(received);
+                for (int i = 0; i < received; i++) {
+                    NativeDatagramPacketArray.NativeDatagramPacket packet = packets[i];
+                    InetSocketAddress sender = packet.sender();
+                    InetSocketAddress recipient = packet.recipient();
+                    if (recipient == null) {
+                        recipient = localAddress;
+                    }
+                    int index = writerIndex + i * datagramSize;
+                    int end = index + packet.receivedAmount();
+                    int segmentSize = packet.segmentSize() > 0 ? packet.segmentSize() : packet.receivedAmount();
+                    do {
+                        int len = Math.min(segmentSize, end - index);
+                        datagramPackets.add(new DatagramPacket(data.retainedSlice(index, len), recipient, sender));
+                        index += len;
+                    } while (index < end);
+                }
+                allocHandle.incMessagesRead(datagramPackets.size());
+                allocHandle.lastBytesRead(bytesReceived);
+
+                readPending = false;
+                while (fired < datagramPackets.size()) {
+                    pipeline().fireChannelRead(datagramPackets.get(fired++));
+                }
+                return true;
+            } finally {
+                data.release();
+                if (datagramPackets != null) {
+                    for (int i = fired; i < datagramPackets.size(); i++) {
+                        ReferenceCountUtil.release(datagramPackets.get(i));
+                    }
+                    datagramPackets.recycle();
+                }
+            }
+        }
     }
 }
@@ -15,8 +15,11 @@
  */
 package io.netty.channel.epoll;
 
+import io.netty.channel.AdaptiveIoRatio;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopTaskQueueFactory;
+import io.netty.channel.IoRatioMetric;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
 import io.netty.channel.epoll.AbstractEpollChannel.AbstractEpollUnsafe;
@@ -37,6 +40,7 @@ import java.util.Collection;
 import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static java.lang.Math.min;
@@ -44,7 +48,7 @@ import static java.lang.Math.min;
 /**
  * {@link EventLoop} which uses epoll under the covers. Only works on Linux!
  */
-final class EpollEventLoop extends SingleThreadEventLoop {
+final class EpollEventLoop extends SingleThreadEventLoop implements IoRatioMetric {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollEventLoop.class);
     private static final AtomicIntegerFieldUpdater<EpollEventLoop> WAKEN_UP_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(EpollEventLoop.class, "wakenUp");
@@ -77,13 +81,16 @@ final class EpollEventLoop extends SingleThreadEventLoop {
     };
     private volatile int wakenUp;
     private volatile int ioRatio = 50;
+    private volatile AdaptiveIoRatio adaptiveIoRatio;
 
     // See http://man7.org/linux/man-pages/man2/timerfd_create.2.html.
     private static final long MAX_SCHEDULED_TIMERFD_NS = 999999999;
 
     EpollEventLoop(EventLoopGroup parent, Executor executor, int maxEvents,
-                   SelectStrategy strategy, RejectedExecutionHandler rejectedExecutionHandler) {
-        super(parent, executor, false, DEFAULT_MAX_PENDING_TASKS, rejectedExecutionHandler);
+                   SelectStrategy strategy, RejectedExecutionHandler rejectedExecutionHandler,
+                   EventLoopTaskQueueFactory queueFactory) {
+        super(parent, executor, false, newTaskQueue(queueFactory), newTaskQueue(queueFactory),
+                rejectedExecutionHandler);
         selectStrategy = ObjectUtil.checkNotNull(strategy, "strategy");
         if (maxEvents == 0) {
             allowGrowing = true;
@@ -151,7 +158,8 @@ final class EpollEventLoop extends SingleThreadEventLoop {
     }
 
     /**
-     * Return a cleared {@link NativeDatagramPacketArray} that can be used for writes in this {@link EventLoop}.
+     * Return a cleared {@link NativeDatagramPacketArray} that can be used for writes and reads in this
+     * {@link EventLoop}.
      */
     NativeDatagramPacketArray cleanDatagramPacketArray() {
         if (datagramPacketArray == null) {
@@ -206,6 +214,17 @@ final class EpollEventLoop extends SingleThreadEventLoop {
 
     @Override
     protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        return newTaskQueue0(maxPendingTasks);
+    }
+
+    private static Queue<Runnable> newTaskQueue(EventLoopTaskQueueFactory queueFactory) {
+        if (queueFactory == null) {
+            return newTaskQueue0(DEFAULT_MAX_PENDING_TASKS);
+        }
+        return queueFactory.newTaskQueue(DEFAULT_MAX_PENDING_TASKS);
+    }
+
+    private static Queue<Runnable> newTaskQueue0(int maxPendingTasks) {
         // This event loop never calls takeTask()
         return maxPendingTasks == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
                                                     : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
@@ -214,8 +233,10 @@ final class EpollEventLoop extends SingleThreadEventLoop {
     /**
      * Returns the percentage of the desired amount of time spent for I/O in the event loop.
      */
+    @Override
     public int getIoRatio() {
-        return ioRatio;
+        AdaptiveIoRatio adaptiveIoRatio = this.adaptiveIoRatio;
+        return adaptiveIoRatio != null ? adaptiveIoRatio.ioRatio() : ioRatio;
     }
 
     /**
@@ -227,6 +248,28 @@ final class EpollEventLoop extends SingleThreadEventLoop {
             throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
         }
         this.ioRatio = ioRatio;
+        adaptiveIoRatio = null;
+    }
+
+    /**
+     * Lets the event loop adjust the percentage of the desired amount of time spent for I/O by itself, so its tasks
+     * wait about the given latency in the task queue. It starts from the current ratio, and {@link #setIoRatio(int)}
+     * makes it fixed again.
+     */
+    public void setAdaptiveIoRatio(long targetTaskLatency, TimeUnit unit) {
+        adaptiveIoRatio = new AdaptiveIoRatio(this, targetTaskLatency, unit, ioRatio);
+    }
+
+    /**
+     * Returns the average time the tasks wait in the task queue, or {@code -1} if the percentage of the desired
+     * amount of time spent for I/O is not adjusted by the event loop.
+     *
+     * @see #setAdaptiveIoRatio(long, TimeUnit)
+     */
+    @Override
+    public long getTaskQueueLatency(TimeUnit unit) {
+        AdaptiveIoRatio adaptiveIoRatio = this.adaptiveIoRatio;
+        return adaptiveIoRatio != null ? adaptiveIoRatio.taskLatency(unit) : -1;
     }
 
     private int epollWait(boolean oldWakeup) throws IOException {
@@ -303,7 +346,9 @@ final class EpollEventLoop extends SingleThreadEventLoop {
                     default:
                 }
 
-                final int ioRatio = this.ioRatio;
+                final AdaptiveIoRatio adaptiveIoRatio = this.adaptiveIoRatio;
+                final int ioRatio = adaptiveIoRatio != null ?
+                        adaptiveIoRatio.nextIoRatio(Math.max(0, strategy), hasTasks()) : this.ioRatio;
                 if (ioRatio == 100) {
                     try {
                         if (strategy > 0) {
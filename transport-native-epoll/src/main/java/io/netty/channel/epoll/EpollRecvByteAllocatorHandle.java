@@ -18,6 +18,7 @@ package io.netty.channel.epoll;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelConfig;
+import io.netty.channel.MaxMessagesRecvByteBufAllocator;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.unix.PreferredDirectByteBufAllocator;
 import io.netty.util.UncheckedBooleanSupplier;
@@ -35,6 +36,8 @@ class EpollRecvByteAllocatorHandle implements RecvByteBufAllocator.ExtendedHandl
     };
     private boolean isEdgeTriggered;
     private boolean receivedRdHup;
+    private int maxMessagesPerRead;
+    private int totalMessages;
 
     EpollRecvByteAllocatorHandle(RecvByteBufAllocator.ExtendedHandle handle) {
         delegate = ObjectUtil.checkNotNull(handle, "handle");
@@ -70,6 +73,15 @@ class EpollRecvByteAllocatorHandle implements RecvByteBufAllocator.ExtendedHandl
         return isEdgeTriggered;
     }
 
+    /**
+     * Returns the number of messages that can still be read in the current read loop before
+     * {@link MaxMessagesRecvByteBufAllocator#maxMessagesPerRead()} is reached. This is used to bound the number of
+     * datagrams which are received with a single {@code recvmmsg(...)} call.
+     */
+    final int remainingMessagesPerRead() {
+        return maxMessagesPerRead - totalMessages;
+    }
+
     @Override
     public final ByteBuf allocate(ByteBufAllocator alloc) {
         // We need to ensure we always allocate a direct ByteBuf as we can only use a direct buffer to read via JNI.
@@ -85,10 +97,15 @@ class EpollRecvByteAllocatorHandle implements RecvByteBufAllocator.ExtendedHandl
     @Override
     public final void reset(ChannelConfig config) {
         delegate.reset(config);
+        RecvByteBufAllocator allocator = config.getRecvByteBufAllocator();
+        maxMessagesPerRead = allocator instanceof MaxMessagesRecvByteBufAllocator ?
+                ((MaxMessagesRecvByteBufAllocator) allocator).maxMessagesPerRead() : Integer.MAX_VALUE;
+        totalMessages = 0;
     }
 
     @Override
     public final void incMessagesRead(int numMessages) {
+        totalMessages += numMessages;
         delegate.incMessagesRead(numMessages);
     }
 
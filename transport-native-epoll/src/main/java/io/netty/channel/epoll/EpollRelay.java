@@ -0,0 +1,261 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Relays all the bytes which are received by one {@link AbstractEpollStreamChannel} to another one and the other way
+ * around, which is what a TCP proxy does (for example once a {@code HTTP CONNECT} request was accepted).
+ * <p>
+ * If the {@link ChannelPipeline}s of both channels do not contain any {@link ChannelHandler} and both channels use
+ * {@link EpollMode#LEVEL_TRIGGERED}, the bytes are spliced through a pipe and so never copied to user space.
+ * Otherwise the bytes are read into {@link ByteBuf}s and written to the other channel, so handlers which need to see
+ * the data (like a {@code SslHandler}) keep on working. Because of this all handlers which are not needed anymore
+ * should be removed before the relay is started.
+ * <p>
+ * Reading from one channel is suspended as long as the other channel can not keep up. Once the end of the stream was
+ * reached on one channel the output of the other channel is shutdown, and once this happened in both directions or
+ * one of the channels was closed both channels are closed.
+ */
+public final class EpollRelay {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(EpollRelay.class);
+
+    private final AbstractEpollStreamChannel first;
+    private final AbstractEpollStreamChannel second;
+    private final boolean splice;
+    private final Promise<Void> terminationPromise;
+
+    // Only modified from the EventLoop.
+    private volatile long firstToSecondBytes;
+    private volatile long secondToFirstBytes;
+    private int outputShutdowns;
+    private int closedChannels;
+
+    private EpollRelay(AbstractEpollStreamChannel first, AbstractEpollStreamChannel second) {
+        this.first = first;
+        this.second = second;
+        splice = canSplice(first) && canSplice(second);
+        terminationPromise = first.eventLoop().newPromise();
+    }
+
+    /**
+     * Start to relay the bytes between the given channels, which must be registered to the same {@link EpollEventLoop}.
+     */
+    public static EpollRelay relay(AbstractEpollStreamChannel first, AbstractEpollStreamChannel second) {
+        checkNotNull(first, "first");
+        checkNotNull(second, "second");
+        if (first == second) {
+            throw new IllegalArgumentException("Can not relay a channel to itself.");
+        }
+        if (first.eventLoop() != second.eventLoop()) {
+            throw new IllegalArgumentException("EventLoops are not the same.");
+        }
+        final EpollRelay relay = new EpollRelay(first, second);
+        if (first.eventLoop().inEventLoop()) {
+            relay.start();
+        } else {
+            first.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    relay.start();
+                }
+            });
+        }
+        return relay;
+    }
+
+    /**
+     * Returns {@code true} if the bytes are spliced, {@code false} if they are copied via {@link ByteBuf}s.
+     */
+    public boolean isSplicing() {
+        return splice;
+    }
+
+    /**
+     * Returns the number of bytes which were received by the first channel and relayed to the second channel.
+     */
+    public long firstToSecondBytes() {
+        return firstToSecondBytes;
+    }
+
+    /**
+     * Returns the number of bytes which were received by the second channel and relayed to the first channel.
+     */
+    public long secondToFirstBytes() {
+        return secondToFirstBytes;
+    }
+
+    /**
+     * Returns a {@link Future} which is notified once both channels were closed.
+     */
+    public Future<Void> terminationFuture() {
+        return terminationPromise;
+    }
+
+    private static boolean canSplice(AbstractEpollStreamChannel ch) {
+        return ch.pipeline().first() == null && ch.config().getEpollMode() == EpollMode.LEVEL_TRIGGERED;
+    }
+
+    private void start() {
+        ChannelFutureListener closeListener = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (++closedChannels == 2) {
+                    terminationPromise.trySuccess(null);
+                }
+            }
+        };
+        first.closeFuture().addListener(closeListener);
+        second.closeFuture().addListener(closeListener);
+        if (!first.isActive() || !second.isActive()) {
+            closeOnFlush(first);
+            closeOnFlush(second);
+            return;
+        }
+
+        // The end of the stream is propagated via shutdownOutput() so the channels must not be closed by it.
+        first.config().setOption(ChannelOption.ALLOW_HALF_CLOSURE, true);
+        second.config().setOption(ChannelOption.ALLOW_HALF_CLOSURE, true);
+        first.pipeline().addLast(new RelayHandler(second));
+        second.pipeline().addLast(new RelayHandler(first));
+
+        if (splice) {
+            ChannelFutureListener closeOnFailure = new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    if (!future.isSuccess()) {
+                        logger.debug("Failed to splice between {} and {}", first, second, future.cause());
+                        first.close();
+                        second.close();
+                    }
+                }
+            };
+            first.spliceRelayTo(second, this).addListener(closeOnFailure);
+            second.spliceRelayTo(first, this).addListener(closeOnFailure);
+            first.config().setAutoRead(true);
+            second.config().setAutoRead(true);
+        } else {
+            first.config().setAutoRead(second.isWritable());
+            second.config().setAutoRead(first.isWritable());
+        }
+    }
+
+    void relayed(AbstractEpollStreamChannel from, int bytes) {
+        // Only called from the EventLoop so there is no need for atomic operations.
+        if (from == first) {
+            firstToSecondBytes += bytes;
+        } else {
+            secondToFirstBytes += bytes;
+        }
+    }
+
+    private void shutdownOutput(final AbstractEpollStreamChannel ch) {
+        // Write an empty buffer first so we only shutdown the output once everything before was written.
+        ch.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    ch.close();
+                    return;
+                }
+                ch.shutdownOutput().addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (!future.isSuccess() || ++outputShutdowns == 2) {
+                            // Either we failed or both directions are done.
+                            first.close();
+                            second.close();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static void closeOnFlush(AbstractEpollStreamChannel ch) {
+        if (ch.isActive()) {
+            ch.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        } else {
+            ch.close();
+        }
+    }
+
+    private final class RelayHandler extends ChannelInboundHandlerAdapter {
+        private final AbstractEpollStreamChannel peer;
+
+        RelayHandler(AbstractEpollStreamChannel peer) {
+            this.peer = peer;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof ByteBuf) {
+                relayed((AbstractEpollStreamChannel) ctx.channel(), ((ByteBuf) msg).readableBytes());
+            }
+            peer.write(msg, peer.voidPromise());
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            peer.flush();
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            if (!splice) {
+                // Only read from the peer as long as we are able to write what was read.
+                peer.config().setAutoRead(ctx.channel().isWritable());
+            }
+            ctx.fireChannelWritabilityChanged();
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            if (evt == ChannelInputShutdownEvent.INSTANCE) {
+                shutdownOutput(peer);
+            }
+            ctx.fireUserEventTriggered(evt);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            closeOnFlush(peer);
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            logger.debug("Closing {} because of an exception while relaying to {}", ctx.channel(), peer, cause);
+            ctx.close();
+        }
+    }
+}
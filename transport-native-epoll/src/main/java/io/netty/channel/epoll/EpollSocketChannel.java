@@ -100,6 +100,11 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
         return config;
     }
 
+    @Override
+    int zeroCopyThreshold() {
+        return config.getZeroCopyThreshold();
+    }
+
     @Override
     public ServerSocketChannel parent() {
         return (ServerSocketChannel) super.parent();
@@ -116,10 +121,10 @@ public final class EpollSocketChannel extends AbstractEpollStreamChannel impleme
             try {
                 // Check isOpen() first as otherwise it will throw a RuntimeException
                 // when call getSoLinger() as the fd is not valid anymore.
-                if (isOpen() && config().getSoLinger() > 0) {
+                if (isOpen() && (config().getSoLinger() > 0 || hasZeroCopyWrites())) {
                     // We need to cancel this key of the channel so we may not end up in a eventloop spin
                     // because we try to read or write until the actual close happens which may be later due
-                    // SO_LINGER handling.
+                    // SO_LINGER handling or because we wait for the completion of MSG_ZEROCOPY writes.
                     // See https://github.com/netty/netty/issues/4449
                     ((EpollEventLoop) eventLoop()).remove(EpollSocketChannel.this);
                     return GlobalEventExecutor.INSTANCE;
@@ -36,10 +36,12 @@ import static io.netty.channel.ChannelOption.SO_RCVBUF;
 import static io.netty.channel.ChannelOption.SO_REUSEADDR;
 import static io.netty.channel.ChannelOption.SO_SNDBUF;
 import static io.netty.channel.ChannelOption.TCP_NODELAY;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 public final class EpollSocketChannelConfig extends EpollChannelConfig implements SocketChannelConfig {
     private final EpollSocketChannel channel;
     private volatile boolean allowHalfClosure;
+    private volatile int zeroCopyThreshold;
 
     /**
      * Creates a new instance.
@@ -62,7 +64,8 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
                 ALLOW_HALF_CLOSURE, EpollChannelOption.TCP_CORK, EpollChannelOption.TCP_NOTSENT_LOWAT,
                 EpollChannelOption.TCP_KEEPCNT, EpollChannelOption.TCP_KEEPIDLE, EpollChannelOption.TCP_KEEPINTVL,
                 EpollChannelOption.TCP_MD5SIG, EpollChannelOption.TCP_QUICKACK, EpollChannelOption.IP_TRANSPARENT,
-                EpollChannelOption.TCP_FASTOPEN_CONNECT, EpollChannelOption.SO_BUSY_POLL);
+                EpollChannelOption.TCP_FASTOPEN_CONNECT, EpollChannelOption.SO_BUSY_POLL,
+                EpollChannelOption.ZEROCOPY_THRESHOLD);
     }
 
     @SuppressWarnings("unchecked")
@@ -122,6 +125,9 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         if (option == EpollChannelOption.SO_BUSY_POLL) {
             return (T) Integer.valueOf(getSoBusyPoll());
         }
+        if (option == EpollChannelOption.ZEROCOPY_THRESHOLD) {
+            return (T) Integer.valueOf(getZeroCopyThreshold());
+        }
         return super.getOption(option);
     }
 
@@ -169,6 +175,8 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
             setTcpFastOpenConnect((Boolean) value);
         } else if (option == EpollChannelOption.SO_BUSY_POLL) {
             setSoBusyPoll((Integer) value);
+        } else if (option == EpollChannelOption.ZEROCOPY_THRESHOLD) {
+            setZeroCopyThreshold((Integer) value);
         } else {
             return super.setOption(option, value);
         }
@@ -577,6 +585,49 @@ public final class EpollSocketChannelConfig extends EpollChannelConfig implement
         }
     }
 
+    /**
+     * Set the minimum number of readable bytes a {@link io.netty.buffer.ByteBuf} must have to be written via
+     * {@code MSG_ZEROCOPY}, which avoids copying the payload into the kernel. {@code 0} (the default) disables zero
+     * copy writes. Requires Linux kernel 4.14 or later, see the
+     * <a href="https://www.kernel.org/doc/html/latest/networking/msg_zerocopy.html">kernel documentation</a> for
+     * more details.
+     * <p>
+     * As the kernel keeps on referencing the memory of a buffer after the write returned, the buffer is only released
+     * and the {@link io.netty.channel.ChannelPromise} of the write is only notified once the kernel signaled the
+     * completion via the error queue of the socket. Zero copy only pays off for large writes, as the page pinning and
+     * the completion notification have a cost of their own. Writes over loopback are always copied by the kernel.
+     * <p>
+     * The promises of zero copy writes are notified in the order of these writes, but because of the delayed
+     * notification the promises of later writes which were copied (as they are below the threshold) may be notified
+     * first.
+     * <p>
+     * When the channel is closed the output is shutdown first and the close waits (off the
+     * {@link io.netty.channel.EventLoop}) for at most {@code io.netty.epoll.zeroCopyCloseTimeoutMillis} (default:
+     * 1000) for the pending completions. Writes which are still not completed then are failed and their buffers are
+     * never released, as the kernel may still reference their memory.
+     */
+    public EpollSocketChannelConfig setZeroCopyThreshold(int zeroCopyThreshold) {
+        checkPositiveOrZero(zeroCopyThreshold, "zeroCopyThreshold");
+        try {
+            if (zeroCopyThreshold > 0) {
+                // Never disable SO_ZEROCOPY again as there may be writes in flight whose completions we wait for.
+                channel.socket.setZeroCopy(true);
+            }
+            this.zeroCopyThreshold = zeroCopyThreshold;
+            return this;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    /**
+     * Returns the minimum number of readable bytes a {@link io.netty.buffer.ByteBuf} must have to be written via
+     * {@code MSG_ZEROCOPY} or {@code 0} if zero copy writes are disabled.
+     */
+    public int getZeroCopyThreshold() {
+        return zeroCopyThreshold;
+    }
+
     @Override
     public boolean isAllowHalfClosure() {
         return allowHalfClosure;
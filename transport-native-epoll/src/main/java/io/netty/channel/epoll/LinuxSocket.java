@@ -26,9 +26,13 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.nio.channels.ClosedChannelException;
 
+import static io.netty.channel.epoll.Native.ERRNO_ENOBUFS_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
 import static io.netty.channel.unix.Errors.ERRNO_EPIPE_NEGATIVE;
+import static io.netty.channel.unix.Errors.ERRNO_EWOULDBLOCK_NEGATIVE;
 import static io.netty.channel.unix.Errors.ioResult;
 import static io.netty.channel.unix.Errors.newConnectionResetException;
+import static io.netty.channel.unix.Errors.newIOException;
 
 /**
  * A socket which provides access Linux native methods.
@@ -39,6 +43,10 @@ final class LinuxSocket extends Socket {
             newConnectionResetException("syscall:sendfile(...)", ERRNO_EPIPE_NEGATIVE);
     private static final ClosedChannelException SENDFILE_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
             new ClosedChannelException(), Native.class, "sendfile(...)");
+    private static final NativeIoException SENDMSG_CONNECTION_RESET_EXCEPTION =
+            newConnectionResetException("syscall:sendmsg(...)", ERRNO_EPIPE_NEGATIVE);
+    private static final ClosedChannelException SENDMSG_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), Native.class, "sendmsg(...)");
 
     public LinuxSocket(int fd) {
         super(fd);
@@ -107,6 +115,14 @@ final class LinuxSocket extends Socket {
         setIpRecvOrigDestAddr(intValue(), enabled ? 1 : 0);
     }
 
+    void setUdpGro(boolean gro) throws IOException {
+        setUdpGro(intValue(), gro ? 1 : 0);
+    }
+
+    void setZeroCopy(boolean zeroCopy) throws IOException {
+        setZeroCopy(intValue(), zeroCopy ? 1 : 0);
+    }
+
     void getTcpInfo(EpollTcpInfo info) throws IOException {
         getTcpInfo(intValue(), info.info);
     }
@@ -164,6 +180,14 @@ final class LinuxSocket extends Socket {
         return isIpRecvOrigDestAddr(intValue()) != 0;
     }
 
+    boolean isUdpGro() throws IOException {
+        return isUdpGro(intValue()) != 0;
+    }
+
+    boolean isZeroCopy() throws IOException {
+        return isZeroCopy(intValue()) != 0;
+    }
+
     PeerCredentials getPeerCredentials() throws IOException {
         return getPeerCredentials(intValue());
     }
@@ -180,6 +204,47 @@ final class LinuxSocket extends Socket {
         return ioResult("sendfile", (int) res, SENDFILE_CONNECTION_RESET_EXCEPTION, SENDFILE_CLOSED_CHANNEL_EXCEPTION);
     }
 
+    /**
+     * Write the given iovecs via {@code sendmsg} using {@code MSG_ZEROCOPY}. Each call which returns a value
+     * {@code > 0} consumes one notification id, see {@link #recvZeroCopyNotification(int[])}.
+     *
+     * @return the number of bytes written, {@code 0} if the socket is not writable right now or {@code -1} if the
+     * kernel could not allocate the notification (in which case the caller should fall back to a copying write).
+     */
+    long writevAddressesZeroCopy(long memoryAddress, int length) throws IOException {
+        long res = writevAddressesZeroCopy(intValue(), memoryAddress, length);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == ERRNO_ENOBUFS_NEGATIVE) {
+            return -1;
+        }
+        return ioResult("sendmsg", (int) res, SENDMSG_CONNECTION_RESET_EXCEPTION, SENDMSG_CLOSED_CHANNEL_EXCEPTION);
+    }
+
+    /**
+     * Read the next {@code MSG_ZEROCOPY} completion notification from the error queue of the socket and store the
+     * inclusive range of ids it covers in {@code range}.
+     *
+     * @return {@code true} if a notification was read, {@code false} if the error queue is empty.
+     */
+    boolean recvZeroCopyNotification(int[] range) throws IOException {
+        for (;;) {
+            int res = recvZeroCopyNotification(intValue(), range);
+            if (res > 0) {
+                return true;
+            }
+            if (res == 0) {
+                // Not a zero copy notification, just skip it.
+                continue;
+            }
+            if (res == ERRNO_EAGAIN_NEGATIVE || res == ERRNO_EWOULDBLOCK_NEGATIVE) {
+                return false;
+            }
+            throw newIOException("recvmsg", res);
+        }
+    }
+
     public static LinuxSocket newSocketStream() {
         return new LinuxSocket(newSocketStream0());
     }
@@ -195,6 +260,9 @@ final class LinuxSocket extends Socket {
     private static native long sendFile(int socketFd, DefaultFileRegion src, long baseOffset,
                                         long offset, long length) throws IOException;
 
+    private static native long writevAddressesZeroCopy(int fd, long memoryAddress, int length);
+    private static native int recvZeroCopyNotification(int fd, int[] range);
+
     private static native int getTcpDeferAccept(int fd) throws IOException;
     private static native int isTcpQuickAck(int fd) throws IOException;
     private static native int isTcpCork(int fd) throws IOException;
@@ -207,6 +275,8 @@ final class LinuxSocket extends Socket {
     private static native int isIpFreeBind(int fd) throws IOException;
     private static native int isIpTransparent(int fd) throws IOException;
     private static native int isIpRecvOrigDestAddr(int fd) throws IOException;
+    private static native int isUdpGro(int fd) throws IOException;
+    private static native int isZeroCopy(int fd) throws IOException;
     private static native void getTcpInfo(int fd, long[] array) throws IOException;
     private static native PeerCredentials getPeerCredentials(int fd) throws IOException;
     private static native int isTcpFastOpenConnect(int fd) throws IOException;
@@ -225,5 +295,7 @@ final class LinuxSocket extends Socket {
     private static native void setIpFreeBind(int fd, int freeBind) throws IOException;
     private static native void setIpTransparent(int fd, int transparent) throws IOException;
     private static native void setIpRecvOrigDestAddr(int fd, int transparent) throws IOException;
+    private static native void setUdpGro(int fd, int gro) throws IOException;
+    private static native void setZeroCopy(int fd, int zeroCopy) throws IOException;
     private static native void setTcpMd5Sig(int fd, byte[] address, int scopeId, byte[] key) throws IOException;
 }
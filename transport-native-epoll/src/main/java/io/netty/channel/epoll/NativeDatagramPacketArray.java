@@ -19,15 +19,18 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.unix.IovArray;
+
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 
 import static io.netty.channel.unix.Limits.UIO_MAX_IOV;
 import static io.netty.channel.unix.NativeInetAddress.ipv4MappedIpv6Address;
 
 /**
- * Support <a href="http://linux.die.net/man/2/sendmmsg">sendmmsg(...)</a> on linux with GLIBC 2.14+
+ * Support <a href="http://linux.die.net/man/2/sendmmsg">sendmmsg(...)</a> on linux with GLIBC 2.14+ and
+ * <a href="http://linux.die.net/man/2/recvmmsg">recvmmsg(...)</a> on linux with GLIBC 2.12+
  */
 final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessageProcessor {
 
@@ -49,6 +52,14 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         if (count == packets.length) {
             return false;
         }
+        int segmentSize = 0;
+        if (packet instanceof SegmentedDatagramPacket) {
+            if (!Native.IS_SUPPORTING_UDP_SEGMENT) {
+                // The segments need to be written one by one.
+                return false;
+            }
+            segmentSize = ((SegmentedDatagramPacket) packet).segmentSize();
+        }
         ByteBuf content = packet.content();
         int len = content.readableBytes();
         if (len == 0) {
@@ -56,7 +67,7 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         }
         NativeDatagramPacket p = packets[count];
         InetSocketAddress recipient = packet.recipient();
-        if (!p.init(content, recipient)) {
+        if (!p.init(content, recipient, segmentSize)) {
             return false;
         }
 
@@ -64,6 +75,21 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         return true;
     }
 
+    /**
+     * Try to add a slot of {@code len} bytes which starts at {@code index} in the given {@link ByteBuf} and into which
+     * one datagram is received by {@code recvmmsg(...)}. Returns {@code true} on success, {@code false} otherwise.
+     */
+    boolean addWritable(ByteBuf buf, int index, int len) {
+        if (count == packets.length) {
+            return false;
+        }
+        if (!packets[count].init(buf, index, len)) {
+            return false;
+        }
+        count++;
+        return true;
+    }
+
     @Override
     public boolean processMessage(Object msg) {
         return msg instanceof DatagramPacket && add((DatagramPacket) msg);
@@ -108,10 +134,22 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         private long memoryAddress;
         private int count;
 
-        private byte[] addr;
+        // The address of the recipient when sending or of the sender when receiving. When receiving only the first
+        // addrLen bytes are filled.
+        private final byte[] addr = new byte[16];
+        private int addrLen;
         private int scopeId;
         private int port;
 
+        // The size of the segments when sending with UDP_SEGMENT or receiving with UDP_GRO, 0 if not used.
+        private int segmentSize;
+
+        // The original destination of a received datagram if IP_RECVORIGDSTADDR is enabled, recipientAddrLen is 0
+        // if it was not reported.
+        private final byte[] recipientAddr = new byte[4];
+        private int recipientAddrLen;
+        private int recipientPort;
+
         private void release() {
             array.release();
         }
@@ -119,7 +157,7 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
         /**
          * Init this instance and return {@code true} if the init was successful.
          */
-        private boolean init(ByteBuf buf, InetSocketAddress recipient) {
+        private boolean init(ByteBuf buf, InetSocketAddress recipient, int segmentSize) {
             array.clear();
             if (!array.add(buf)) {
                 return false;
@@ -130,14 +168,75 @@ final class NativeDatagramPacketArray implements ChannelOutboundBuffer.MessagePr
 
             InetAddress address = recipient.getAddress();
             if (address instanceof Inet6Address) {
-                addr = address.getAddress();
+                System.arraycopy(address.getAddress(), 0, addr, 0, addr.length);
                 scopeId = ((Inet6Address) address).getScopeId();
             } else {
-                addr = ipv4MappedIpv6Address(address.getAddress());
+                System.arraycopy(ipv4MappedIpv6Address(address.getAddress()), 0, addr, 0, addr.length);
                 scopeId = 0;
             }
+            addrLen = addr.length;
             port = recipient.getPort();
+            this.segmentSize = segmentSize;
             return true;
         }
+
+        /**
+         * Init this instance for receiving a datagram of at most {@code len} bytes into {@code buf} at the given
+         * {@code index} and return {@code true} if the init was successful.
+         */
+        private boolean init(ByteBuf buf, int index, int len) {
+            array.clear();
+            if (!array.add(buf, index, len)) {
+                return false;
+            }
+            // always start from offset 0
+            memoryAddress = array.memoryAddress(0);
+            count = array.count();
+            segmentSize = 0;
+            recipientAddrLen = 0;
+            return true;
+        }
+
+        /**
+         * Returns the number of bytes that were received into this instance by the last {@code recvmmsg(...)} call.
+         * The native code stores the length in {@code count}, as the iovec count is not needed after the call anymore.
+         */
+        int receivedAmount() {
+            return count;
+        }
+
+        /**
+         * Returns the size of the datagrams which were coalesced by the kernel into the data that was received by
+         * the last {@code recvmmsg(...)} call, or {@code 0} if the data is a single datagram.
+         */
+        int segmentSize() {
+            return segmentSize;
+        }
+
+        /**
+         * Returns the address of the sender of the datagram that was received by the last {@code recvmmsg(...)} call.
+         */
+        InetSocketAddress sender() throws UnknownHostException {
+            final InetAddress address;
+            if (addrLen == 4) {
+                byte[] ipv4 = new byte[4];
+                System.arraycopy(addr, 0, ipv4, 0, ipv4.length);
+                address = InetAddress.getByAddress(ipv4);
+            } else {
+                address = Inet6Address.getByAddress(null, addr.clone(), scopeId);
+            }
+            return new InetSocketAddress(address, port);
+        }
+
+        /**
+         * Returns the original destination of the datagram that was received by the last {@code recvmmsg(...)} call,
+         * or {@code null} if it was not reported as {@code IP_RECVORIGDSTADDR} is not enabled.
+         */
+        InetSocketAddress recipient() throws UnknownHostException {
+            if (recipientAddrLen == 0) {
+                return null;
+            }
+            return new InetSocketAddress(InetAddress.getByAddress(recipientAddr.clone()), recipientPort);
+        }
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.testsuite.transport.TestsuitePermutation;
+import io.netty.testsuite.transport.socket.AbstractDatagramTest;
+import io.netty.util.NetUtil;
+import io.netty.util.internal.PlatformDependent;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class EpollDatagramScatteringReadTest extends AbstractDatagramTest {
+
+    private static final int MAX_DATAGRAM_PAYLOAD_SIZE = 512;
+    private static final int NUM_DATAGRAMS = 4;
+
+    @Override
+    protected List<TestsuitePermutation.BootstrapComboFactory<Bootstrap, Bootstrap>> newFactories() {
+        return EpollSocketTestPermutation.INSTANCE.epollOnlyDatagram();
+    }
+
+    @Test
+    public void testScatteringRead() throws Throwable {
+        run();
+    }
+
+    public void testScatteringRead(Bootstrap sb, Bootstrap cb) throws Throwable {
+        testScatteringRead(sb, cb, NUM_DATAGRAMS, false);
+    }
+
+    @Test
+    public void testScatteringReadWithOrigDstAddr() throws Throwable {
+        run();
+    }
+
+    public void testScatteringReadWithOrigDstAddr(Bootstrap sb, Bootstrap cb) throws Throwable {
+        // The server is bound to the wildcard address, so the recipient must be the original destination.
+        testScatteringRead(sb, cb, NUM_DATAGRAMS, true);
+    }
+
+    @Test
+    public void testScatteringReadPartial() throws Throwable {
+        run();
+    }
+
+    public void testScatteringReadPartial(Bootstrap sb, Bootstrap cb) throws Throwable {
+        // Only half of the datagrams fit into one ByteBuf, so multiple recvmmsg calls are needed.
+        testScatteringRead(sb, cb, NUM_DATAGRAMS / 2, false);
+    }
+
+    private void testScatteringRead(Bootstrap sb, Bootstrap cb, int datagramsPerBuffer, boolean origDstAddr)
+            throws Throwable {
+        Channel sc = null;
+        Channel cc = null;
+        final BlockingQueue<DatagramPacket> received = new LinkedBlockingQueue<DatagramPacket>();
+        final AtomicReference<Throwable> errorRef = new AtomicReference<Throwable>();
+        try {
+            cb.handler(new SimpleChannelInboundHandler<Object>() {
+                @Override
+                public void channelRead0(ChannelHandlerContext ctx, Object msg) {
+                    // Nothing will be sent.
+                }
+            });
+            sb.option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, MAX_DATAGRAM_PAYLOAD_SIZE);
+            sb.option(EpollChannelOption.IP_RECVORIGDSTADDR, origDstAddr);
+            sb.option(ChannelOption.RCVBUF_ALLOCATOR,
+                    new FixedRecvByteBufAllocator(MAX_DATAGRAM_PAYLOAD_SIZE * datagramsPerBuffer)
+                            .maxMessagesPerRead(NUM_DATAGRAMS));
+            // Only start reading once all datagrams were sent. As auto read is disabled each read() results in one
+            // read loop iteration, so if recvmmsg is not used only one datagram is received per read().
+            sb.option(ChannelOption.AUTO_READ, false);
+            sb.handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+                @Override
+                protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                    received.add(msg.retain());
+                }
+
+                @Override
+                public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                    errorRef.compareAndSet(null, cause);
+                }
+            });
+
+            sc = sb.bind(origDstAddr ? new InetSocketAddress(0) : newSocketAddress()).sync().channel();
+            cc = cb.bind(newSocketAddress()).sync().channel();
+            InetSocketAddress addr = new InetSocketAddress(
+                    NetUtil.LOCALHOST4, ((InetSocketAddress) sc.localAddress()).getPort());
+
+            byte[][] expected = new byte[NUM_DATAGRAMS][];
+            ChannelFuture lastWriteFuture = null;
+            for (int i = 0; i < NUM_DATAGRAMS; i++) {
+                // Use different sizes to ensure each datagram is sliced with the number of bytes received.
+                expected[i] = new byte[MAX_DATAGRAM_PAYLOAD_SIZE - i];
+                PlatformDependent.threadLocalRandom().nextBytes(expected[i]);
+                lastWriteFuture = cc.write(new DatagramPacket(Unpooled.wrappedBuffer(expected[i]), addr));
+            }
+            cc.flush();
+            lastWriteFuture.sync();
+
+            for (int i = 0; i < NUM_DATAGRAMS; i++) {
+                if (i % datagramsPerBuffer == 0) {
+                    sc.read();
+                }
+                DatagramPacket packet = received.poll(10, TimeUnit.SECONDS);
+                assertNotNull(packet);
+                try {
+                    ByteBuf content = packet.content();
+                    assertEquals(Unpooled.wrappedBuffer(expected[i]), content);
+                    assertEquals(cc.localAddress(), packet.sender());
+                    assertEquals(addr, packet.recipient());
+                } finally {
+                    packet.release();
+                }
+            }
+            assertNull(errorRef.get());
+        } finally {
+            if (cc != null) {
+                cc.close().sync();
+            }
+            if (sc != null) {
+                sc.close().sync();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.testsuite.transport.TestsuitePermutation;
+import io.netty.testsuite.transport.socket.AbstractDatagramTest;
+import io.netty.util.internal.PlatformDependent;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+public class EpollDatagramSegmentedTest extends AbstractDatagramTest {
+
+    private static final int SEGMENT_SIZE = 100;
+    private static final int NUM_SEGMENTS = 8;
+
+    @Override
+    protected List<TestsuitePermutation.BootstrapComboFactory<Bootstrap, Bootstrap>> newFactories() {
+        return EpollSocketTestPermutation.INSTANCE.epollOnlyDatagram();
+    }
+
+    @Test
+    public void testSendSegmented() throws Throwable {
+        run();
+    }
+
+    public void testSendSegmented(Bootstrap sb, Bootstrap cb) throws Throwable {
+        // The last segment is smaller than the others.
+        testSegmented(sb, cb, false, SEGMENT_SIZE * NUM_SEGMENTS - SEGMENT_SIZE / 2);
+    }
+
+    @Test
+    public void testSendSegmentedWithGro() throws Throwable {
+        run();
+    }
+
+    public void testSendSegmentedWithGro(Bootstrap sb, Bootstrap cb) throws Throwable {
+        // UDP_GRO is supported since linux 5.0 which also supports UDP_SEGMENT.
+        assumeTrue(SegmentedDatagramPacket.isSupported());
+        testSegmented(sb, cb, true, SEGMENT_SIZE * NUM_SEGMENTS);
+    }
+
+    private void testSegmented(Bootstrap sb, Bootstrap cb, boolean gro, int size) throws Throwable {
+        Channel sc = null;
+        Channel cc = null;
+        final BlockingQueue<DatagramPacket> received = new LinkedBlockingQueue<DatagramPacket>();
+        final AtomicReference<Throwable> errorRef = new AtomicReference<Throwable>();
+        try {
+            cb.handler(new SimpleChannelInboundHandler<Object>() {
+                @Override
+                public void channelRead0(ChannelHandlerContext ctx, Object msg) {
+                    // Nothing will be sent.
+                }
+            });
+            if (gro) {
+                sb.option(EpollChannelOption.UDP_GRO, true);
+                // Use a buffer which is large enough to hold all coalesced datagrams.
+                sb.option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(64 * 1024));
+            }
+            sb.handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+                @Override
+                protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                    received.add(msg.retain());
+                }
+
+                @Override
+                public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                    errorRef.compareAndSet(null, cause);
+                }
+            });
+
+            sc = sb.bind(newSocketAddress()).sync().channel();
+            cc = cb.bind(newSocketAddress()).sync().channel();
+            InetSocketAddress addr = (InetSocketAddress) sc.localAddress();
+
+            byte[] bytes = new byte[size];
+            PlatformDependent.threadLocalRandom().nextBytes(bytes);
+            cc.writeAndFlush(new SegmentedDatagramPacket(
+                    Unpooled.directBuffer().writeBytes(bytes), SEGMENT_SIZE, addr)).sync();
+
+            ByteBuf expected = Unpooled.wrappedBuffer(bytes);
+            while (expected.isReadable()) {
+                DatagramPacket packet = received.poll(10, TimeUnit.SECONDS);
+                assertNotNull(packet);
+                try {
+                    int len = Math.min(SEGMENT_SIZE, expected.readableBytes());
+                    assertEquals(expected.readSlice(len), packet.content());
+                    assertEquals(cc.localAddress(), packet.sender());
+                } finally {
+                    packet.release();
+                }
+            }
+            assertNull(errorRef.get());
+        } finally {
+            if (cc != null) {
+                cc.close().sync();
+            }
+            if (sc != null) {
+                sc.close().sync();
+            }
+        }
+    }
+}
@@ -17,11 +17,13 @@ package io.netty.channel.epoll;
 
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.IoRatioMetric;
 import io.netty.util.concurrent.Future;
 import org.junit.Test;
 
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -43,4 +45,45 @@ public class EpollEventLoopTest {
         assertTrue(future.cancel(true));
         group.shutdownGracefully();
     }
+
+    @Test(timeout = 10000)
+    public void testAdaptiveIoRatio() throws Exception {
+        EpollEventLoopGroup group = new EpollEventLoopGroup(1);
+        try {
+            EventLoop loop = group.next();
+            IoRatioMetric metric = (IoRatioMetric) loop;
+            assertEquals(50, metric.getIoRatio());
+            assertEquals(-1, metric.getTaskQueueLatency(TimeUnit.NANOSECONDS));
+
+            group.setAdaptiveIoRatio(1, TimeUnit.MILLISECONDS);
+            // Tasks which wait much longer than the target latency, so more time is left for the tasks.
+            while (metric.getIoRatio() >= 50) {
+                for (int i = 0; i < 10; i++) {
+                    loop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                Thread.sleep(2);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    });
+                }
+                loop.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        // NOOP
+                    }
+                }).sync();
+            }
+            assertTrue(metric.getTaskQueueLatency(TimeUnit.MILLISECONDS) >= 1);
+
+            group.setIoRatio(100);
+            assertEquals(100, metric.getIoRatio());
+            assertEquals(-1, metric.getTaskQueueLatency(TimeUnit.NANOSECONDS));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PoolChunkMemoryMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.unix.HugePageChunkAllocator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EpollHugePageChunkAllocatorTest {
+
+    @BeforeClass
+    public static void loadNativeLibrary() {
+        Epoll.ensureAvailability();
+    }
+
+    @Test
+    public void testTransparentHugePages() {
+        testAllocate(false);
+    }
+
+    @Test
+    public void testHugetlb() {
+        testAllocate(true);
+    }
+
+    private static void testAllocate(boolean hugetlb) {
+        PooledByteBufAllocator allocator = new PooledByteBufAllocator(
+                true, 0, 1, 8192, 11, 0, 0, 0, true, 0, false, 0, 0, new HugePageChunkAllocator(hugetlb));
+        int chunkSize = allocator.metric().chunkSize();
+        ByteBuf buffer = allocator.directBuffer(chunkSize);
+        try {
+            PoolChunkMemoryMetric chunk = (PoolChunkMemoryMetric)
+                    allocator.metric().directArenas().get(0).chunkLists().get(5).iterator().next();
+            // The chunk falls back to ordinary direct memory if the huge pages are not available on this system.
+            if (!"direct".equals(chunk.memoryBacking())) {
+                assertEquals(hugetlb ? "hugetlb" : "thp", chunk.memoryBacking());
+                assertEquals(0, buffer.memoryAddress() & HugePageChunkAllocator.HUGE_PAGE_SIZE - 1);
+            }
+
+            for (int i = 0; i < chunkSize; i += 8) {
+                buffer.setLong(i, i);
+            }
+            for (int i = 0; i < chunkSize; i += 8) {
+                assertEquals(i, buffer.getLong(i));
+            }
+        } finally {
+            assertTrue(buffer.release());
+        }
+        // The chunk was unmapped.
+        assertFalse(allocator.metric().directArenas().get(0).chunkLists().get(5).iterator().hasNext());
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.util.NetUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class EpollRelayTest {
+
+    private static final Random random = new Random();
+    private static final byte[] data = new byte[4 * 1024 * 1024];
+
+    private static EventLoopGroup group;
+
+    static {
+        random.nextBytes(data);
+    }
+
+    @BeforeClass
+    public static void beforeClass() {
+        group = new EpollEventLoopGroup(2);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 30000)
+    public void testRelaySplice() throws Throwable {
+        testRelay(EpollMode.LEVEL_TRIGGERED, false, true);
+    }
+
+    @Test(timeout = 30000)
+    public void testRelayCopyIfHandlerPresent() throws Throwable {
+        testRelay(EpollMode.LEVEL_TRIGGERED, true, false);
+    }
+
+    @Test(timeout = 30000)
+    public void testRelayCopyIfEdgeTriggered() throws Throwable {
+        testRelay(EpollMode.EDGE_TRIGGERED, false, false);
+    }
+
+    private static void testRelay(final EpollMode mode, final boolean keepHandler, boolean expectSplice)
+            throws Throwable {
+        // Echo everything and shutdown the output once the end of the stream was reached.
+        ServerBootstrap echo = new ServerBootstrap();
+        echo.group(group).channel(EpollServerSocketChannel.class);
+        echo.childOption(ChannelOption.ALLOW_HALF_CLOSURE, true);
+        echo.childHandler(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                ctx.write(msg);
+            }
+
+            @Override
+            public void channelReadComplete(ChannelHandlerContext ctx) {
+                ctx.flush();
+            }
+
+            @Override
+            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                if (evt == ChannelInputShutdownEvent.INSTANCE) {
+                    ((EpollSocketChannel) ctx.channel()).shutdownOutput();
+                }
+            }
+        });
+        final Channel echoChannel = echo.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        final AtomicReference<EpollRelay> relayRef = new AtomicReference<EpollRelay>();
+        final CountDownLatch relayLatch = new CountDownLatch(1);
+        ServerBootstrap proxy = new ServerBootstrap();
+        proxy.group(group).channel(EpollServerSocketChannel.class);
+        proxy.childOption(EpollChannelOption.EPOLL_MODE, mode);
+        proxy.childOption(ChannelOption.AUTO_READ, false);
+        proxy.childHandler(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelActive(final ChannelHandlerContext ctx) {
+                final EpollSocketChannel inbound = (EpollSocketChannel) ctx.channel();
+                Bootstrap b = new Bootstrap();
+                b.group(inbound.eventLoop()).channel(EpollSocketChannel.class);
+                b.option(EpollChannelOption.EPOLL_MODE, mode);
+                b.handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        // Nothing to add.
+                    }
+                });
+                b.connect(echoChannel.localAddress()).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (!future.isSuccess()) {
+                            inbound.close();
+                            return;
+                        }
+                        if (!keepHandler) {
+                            ctx.pipeline().remove(ctx.handler());
+                        }
+                        relayRef.set(EpollRelay.relay(inbound, (EpollSocketChannel) future.channel()));
+                        relayLatch.countDown();
+                    }
+                });
+            }
+        });
+        Channel proxyChannel = proxy.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        final byte[] received = new byte[data.length];
+        final CountDownLatch inputShutdownLatch = new CountDownLatch(1);
+        Bootstrap client = new Bootstrap();
+        client.group(group).channel(EpollSocketChannel.class);
+        client.option(ChannelOption.ALLOW_HALF_CLOSURE, true);
+        client.handler(new SimpleChannelInboundHandler<ByteBuf>() {
+            private int index;
+
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                int len = msg.readableBytes();
+                msg.readBytes(received, index, len);
+                index += len;
+            }
+
+            @Override
+            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                if (evt == ChannelInputShutdownEvent.INSTANCE) {
+                    inputShutdownLatch.countDown();
+                }
+            }
+        });
+        EpollSocketChannel clientChannel =
+                (EpollSocketChannel) client.connect(proxyChannel.localAddress()).syncUninterruptibly().channel();
+        try {
+            assertTrue(relayLatch.await(10, TimeUnit.SECONDS));
+            EpollRelay relay = relayRef.get();
+            assertNotNull(relay);
+            assertEquals(expectSplice, relay.isSplicing());
+
+            clientChannel.writeAndFlush(Unpooled.wrappedBuffer(data)).syncUninterruptibly();
+            // The end of the stream must be propagated through the relay in both directions.
+            clientChannel.shutdownOutput().syncUninterruptibly();
+            assertTrue(inputShutdownLatch.await(10, TimeUnit.SECONDS));
+            assertArrayEquals(data, received);
+
+            assertTrue(relay.terminationFuture().await(10, TimeUnit.SECONDS));
+            assertEquals(data.length, relay.firstToSecondBytes());
+            assertEquals(data.length, relay.secondToFirstBytes());
+        } finally {
+            clientChannel.close().syncUninterruptibly();
+            proxyChannel.close().syncUninterruptibly();
+            echoChannel.close().syncUninterruptibly();
+        }
+    }
+}
@@ -149,6 +149,10 @@ class EpollSocketTestPermutation extends SocketTestPermutation {
         return combo(bfs, bfs);
     }
 
+    public List<TestsuitePermutation.BootstrapComboFactory<Bootstrap, Bootstrap>> epollOnlyDatagram() {
+        return combo(datagramSocket(), datagramSocket());
+    }
+
     public List<TestsuitePermutation.BootstrapComboFactory<ServerBootstrap, Bootstrap>> domainSocket() {
 
         List<TestsuitePermutation.BootstrapComboFactory<ServerBootstrap, Bootstrap>> list =
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.epoll;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.NetUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+public class EpollSocketZeroCopyTest {
+
+    private static final int ZEROCOPY_THRESHOLD = 64 * 1024;
+    private static final Random random = new Random();
+    private static final byte[] data = new byte[8 * 1024 * 1024];
+
+    private static EventLoopGroup group;
+
+    static {
+        random.nextBytes(data);
+    }
+
+    @BeforeClass
+    public static void beforeClass() {
+        group = new EpollEventLoopGroup(2);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        group.shutdownGracefully();
+    }
+
+    @Test(timeout = 30000)
+    public void testZeroCopyWriteEdgeTriggered() throws Throwable {
+        testZeroCopyWrite(EpollMode.EDGE_TRIGGERED);
+    }
+
+    @Test(timeout = 30000)
+    public void testZeroCopyWriteLevelTriggered() throws Throwable {
+        testZeroCopyWrite(EpollMode.LEVEL_TRIGGERED);
+    }
+
+    @Test(timeout = 30000)
+    public void testCloseWithPendingZeroCopyWrites() throws Throwable {
+        final byte[] received = new byte[data.length];
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group).channel(EpollServerSocketChannel.class);
+        sb.childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+            private int index;
+
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                int len = msg.readableBytes();
+                msg.readBytes(received, index, len);
+                index += len;
+            }
+
+            @Override
+            public void channelInactive(ChannelHandlerContext ctx) {
+                latch.countDown();
+            }
+        });
+        Channel sc = sb.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Bootstrap cb = new Bootstrap();
+        cb.group(group).channel(EpollSocketChannel.class);
+        cb.handler(new ChannelInboundHandlerAdapter());
+        EpollSocketChannel cc = (EpollSocketChannel) cb.connect(sc.localAddress()).syncUninterruptibly().channel();
+        try {
+            try {
+                cc.config().setZeroCopyThreshold(ZEROCOPY_THRESHOLD);
+            } catch (ChannelException e) {
+                // SO_ZEROCOPY requires linux kernel 4.14 or later.
+                assumeNoException(e);
+            }
+
+            List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+            List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+            int index = 0;
+            while (index < data.length) {
+                int len = Math.min(data.length - index, ZEROCOPY_THRESHOLD + random.nextInt(1024 * 1024));
+                ByteBuf buf = Unpooled.directBuffer(len).writeBytes(data, index, len);
+                buffers.add(buf);
+                futures.add(cc.write(buf));
+                index += len;
+            }
+            cc.flush();
+            // Close while the completions of the zero copy writes are still pending.
+            cc.close().syncUninterruptibly();
+
+            int written = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                ChannelFuture future = futures.get(i);
+                assertTrue(future.await(10, TimeUnit.SECONDS));
+                if (future.isSuccess()) {
+                    // The memory is only given back once the kernel is done with it.
+                    assertEquals(0, buffers.get(i).refCnt());
+                    assertEquals(written, i);
+                    written++;
+                }
+            }
+
+            // Everything which was reported as written must have made it to the remote peer.
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            int len = 0;
+            for (int i = 0; i < written; i++) {
+                len += buffers.get(i).capacity();
+            }
+            byte[] expected = new byte[len];
+            System.arraycopy(data, 0, expected, 0, len);
+            byte[] actual = new byte[len];
+            System.arraycopy(received, 0, actual, 0, len);
+            assertArrayEquals(expected, actual);
+        } finally {
+            cc.close().syncUninterruptibly();
+            sc.close().syncUninterruptibly();
+        }
+    }
+
+    private static void testZeroCopyWrite(EpollMode mode) throws Throwable {
+        final byte[] received = new byte[data.length];
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        ServerBootstrap sb = new ServerBootstrap();
+        sb.group(group).channel(EpollServerSocketChannel.class);
+        sb.childHandler(new SimpleChannelInboundHandler<ByteBuf>() {
+            private int index;
+
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                int len = msg.readableBytes();
+                msg.readBytes(received, index, len);
+                index += len;
+                if (index == received.length) {
+                    latch.countDown();
+                }
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                error.compareAndSet(null, cause);
+                ctx.close();
+            }
+        });
+        Channel sc = sb.bind(NetUtil.LOCALHOST, 0).syncUninterruptibly().channel();
+
+        Bootstrap cb = new Bootstrap();
+        cb.group(group).channel(EpollSocketChannel.class);
+        cb.option(EpollChannelOption.EPOLL_MODE, mode);
+        cb.handler(new ChannelInboundHandlerAdapter());
+        EpollSocketChannel cc = (EpollSocketChannel) cb.connect(sc.localAddress()).syncUninterruptibly().channel();
+        try {
+            try {
+                cc.config().setZeroCopyThreshold(ZEROCOPY_THRESHOLD);
+            } catch (ChannelException e) {
+                // SO_ZEROCOPY requires linux kernel 4.14 or later.
+                assumeNoException(e);
+            }
+
+            // Mix writes above and below the threshold so zero copy and copying writes need to be ordered correctly.
+            List<ByteBuf> buffers = new ArrayList<ByteBuf>();
+            List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+            int index = 0;
+            while (index < data.length) {
+                int len = Math.min(data.length - index, random.nextBoolean() ?
+                        ZEROCOPY_THRESHOLD + random.nextInt(1024 * 1024) : 1 + random.nextInt(1024));
+                ByteBuf buf = Unpooled.directBuffer(len).writeBytes(data, index, len);
+                buffers.add(buf);
+                futures.add(cc.write(buf));
+                index += len;
+            }
+            cc.flush();
+
+            for (ChannelFuture future: futures) {
+                assertTrue(future.await(10, TimeUnit.SECONDS));
+                assertNull(future.cause());
+            }
+            for (ByteBuf buf: buffers) {
+                assertEquals(0, buf.refCnt());
+            }
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertNull(error.get());
+            assertArrayEquals(data, received);
+        } finally {
+            cc.close().syncUninterruptibly();
+            sc.close().syncUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,886 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoop;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.channel.socket.ChannelInputShutdownReadComplete;
+import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.Socket;
+import io.netty.channel.unix.UnixChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.ThrowableUtil;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ConnectionPendingException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.channel.unix.UnixChannelUtil.computeRemoteAddr;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+abstract class AbstractIOUringChannel extends AbstractChannel implements UnixChannel {
+    private static final ClosedChannelException DO_CLOSE_CLOSED_CHANNEL_EXCEPTION = ThrowableUtil.unknownStackTrace(
+            new ClosedChannelException(), AbstractIOUringChannel.class, "doClose()");
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+    // Bits of ioState, each of them is set while the matching operation is owned by the kernel.
+    static final int POLL_IN_SCHEDULED = 1;
+    static final int POLL_OUT_SCHEDULED = 1 << 1;
+    static final int READ_SCHEDULED = 1 << 2;
+    static final int WRITE_SCHEDULED = 1 << 3;
+    static final int CONNECT_SCHEDULED = 1 << 4;
+
+    // Space for a struct sockaddr_in6 followed by the socklen_t that is used by accept(...).
+    private static final int ADDRESS_MEMORY_SIZE = SockaddrIn.MAX_ADDRESS_LENGTH + 4;
+
+    final Socket socket;
+    final boolean ipv6;
+    /**
+     * The future of the current connection attempt.  If not null, subsequent
+     * connection attempts will fail.
+     */
+    private ChannelPromise connectPromise;
+    private ScheduledFuture<?> connectTimeoutFuture;
+    private SocketAddress requestedRemoteAddress;
+    private ByteBuffer addressMemory;
+
+    private volatile SocketAddress local;
+    private volatile SocketAddress remote;
+
+    IOUringEventLoop.Registration registration;
+    int ioState;
+    boolean inputClosedSeenErrorOnRead;
+
+    protected volatile boolean active;
+
+    AbstractIOUringChannel(Socket fd) {
+        this(null, fd, false);
+    }
+
+    AbstractIOUringChannel(Channel parent, Socket fd, boolean active) {
+        super(parent);
+        socket = checkNotNull(fd, "fd");
+        ipv6 = Native.isIPv6(fd.intValue());
+        this.active = active;
+        if (active) {
+            // Directly cache the remote and local addresses
+            // See https://github.com/netty/netty/issues/2359
+            local = fd.localAddress();
+            remote = fd.remoteAddress();
+        }
+    }
+
+    AbstractIOUringChannel(Channel parent, Socket fd, SocketAddress remote) {
+        super(parent);
+        socket = checkNotNull(fd, "fd");
+        ipv6 = Native.isIPv6(fd.intValue());
+        active = true;
+        // Directly cache the remote and local addresses
+        // See https://github.com/netty/netty/issues/2359
+        this.remote = remote;
+        local = fd.localAddress();
+    }
+
+    static boolean isSoErrorZero(Socket fd) {
+        try {
+            return fd.getSoError() == 0;
+        } catch (IOException e) {
+            throw new ChannelException(e);
+        }
+    }
+
+    @Override
+    public final FileDescriptor fd() {
+        return socket;
+    }
+
+    @Override
+    public abstract IOUringChannelConfig config();
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        active = false;
+        // Even if we allow half closed sockets we should give up on reading. Otherwise we may allow a read attempt on a
+        // socket which has not even been connected yet. This has been observed to block during unit tests.
+        inputClosedSeenErrorOnRead = true;
+        try {
+            ChannelPromise promise = connectPromise;
+            if (promise != null) {
+                // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+                promise.tryFailure(DO_CLOSE_CLOSED_CHANNEL_EXCEPTION);
+                connectPromise = null;
+            }
+
+            ScheduledFuture<?> future = connectTimeoutFuture;
+            if (future != null) {
+                future.cancel(false);
+                connectTimeoutFuture = null;
+            }
+
+            if (isRegistered()) {
+                // Need to check if we are on the EventLoop as doClose() may be triggered by the GlobalEventExecutor
+                // if SO_LINGER is used.
+                //
+                // See https://github.com/netty/netty/issues/7159
+                EventLoop loop = eventLoop();
+                if (loop.inEventLoop()) {
+                    doDeregister();
+                } else {
+                    loop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                doDeregister();
+                            } catch (Throwable cause) {
+                                pipeline().fireExceptionCaught(cause);
+                            }
+                        }
+                    });
+                }
+            }
+        } finally {
+            socket.close();
+            releaseIfDone();
+        }
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof IOUringEventLoop;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socket.isOpen();
+    }
+
+    @Override
+    protected void doRegister() throws Exception {
+        registration = ((IOUringEventLoop) eventLoop()).add(this);
+    }
+
+    @Override
+    protected void doDeregister() throws Exception {
+        IOUringEventLoop.Registration registration = this.registration;
+        if (registration == null) {
+            return;
+        }
+        this.registration = null;
+
+        // Operations that wait for the socket to become ready will never complete on their own once the socket is
+        // closed, as the kernel holds its own reference to it. This also means the peer would never see the
+        // connection being closed. Cancel them so the registration can go away.
+        IOUringSubmissionQueue submissionQueue = registration.submissionQueue();
+        if ((ioState & READ_SCHEDULED) != 0) {
+            cancel(registration, registration.userData(((AbstractIOUringUnsafe) unsafe()).readOpcode(), 0));
+        }
+        if ((ioState & WRITE_SCHEDULED) != 0) {
+            cancelWrite(registration);
+        }
+        if ((ioState & POLL_IN_SCHEDULED) != 0) {
+            cancel(registration, registration.userData(Native.IORING_OP_POLL_ADD, Native.POLLIN));
+        }
+        if ((ioState & POLL_OUT_SCHEDULED) != 0) {
+            cancel(registration, registration.userData(Native.IORING_OP_POLL_ADD, Native.POLLOUT));
+        }
+        if ((ioState & CONNECT_SCHEDULED) != 0) {
+            cancel(registration, registration.userData(Native.IORING_OP_CONNECT, 0));
+        }
+        registration.deactivate();
+
+        // Make sure everything that references the file descriptor was handed over to the kernel before the file
+        // descriptor may be closed and so reused.
+        submissionQueue.submit();
+    }
+
+    /**
+     * Cancel the write operation which is currently in flight, if it may wait for the socket to become writable.
+     */
+    void cancelWrite(IOUringEventLoop.Registration registration) {
+        // Nothing to cancel by default.
+    }
+
+    static void cancel(IOUringEventLoop.Registration registration, long userData) {
+        registration.track(registration.submissionQueue().addCancel(
+                userData, registration.userData(Native.IORING_OP_ASYNC_CANCEL, 0)));
+    }
+
+    @Override
+    protected final void doBeginRead() throws Exception {
+        // Channel.read() or ChannelHandlerContext.read() was called
+        final AbstractIOUringUnsafe unsafe = (AbstractIOUringUnsafe) unsafe();
+        unsafe.readPending = true;
+        unsafe.scheduleReadIfNeeded();
+    }
+
+    final boolean shouldBreakReadReady(ChannelConfig config) {
+        return socket.isInputShutdown() && (inputClosedSeenErrorOnRead || !isAllowHalfClosure(config));
+    }
+
+    private static boolean isAllowHalfClosure(ChannelConfig config) {
+        return config instanceof SocketChannelConfig &&
+                ((SocketChannelConfig) config).isAllowHalfClosure();
+    }
+
+    final void clearReadPending() {
+        if (isRegistered()) {
+            final EventLoop loop = eventLoop();
+            final AbstractIOUringUnsafe unsafe = (AbstractIOUringUnsafe) unsafe();
+            if (loop.inEventLoop()) {
+                unsafe.readPending = false;
+            } else {
+                // schedule a task to clear the readPending as it is not safe to modify it directly
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!config().isAutoRead()) {
+                            // Still no read triggered so clear it now
+                            unsafe.readPending = false;
+                        }
+                    }
+                });
+            }
+        } else  {
+            // The EventLoop is not registered atm so just update the flag so the correct value
+            // will be used once the channel is registered
+            ((AbstractIOUringUnsafe) unsafe()).readPending = false;
+        }
+    }
+
+    @Override
+    protected abstract AbstractIOUringUnsafe newUnsafe();
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the original one.
+     */
+    protected final ByteBuf newDirectBuffer(ByteBuf buf) {
+        return newDirectBuffer(buf, buf);
+    }
+
+    /**
+     * Returns an off-heap copy of the specified {@link ByteBuf}, and releases the specified holder.
+     * The caller must ensure that the holder releases the original {@link ByteBuf} when the holder is released by
+     * this method.
+     */
+    protected final ByteBuf newDirectBuffer(Object holder, ByteBuf buf) {
+        final int readableBytes = buf.readableBytes();
+        if (readableBytes == 0) {
+            ReferenceCountUtil.release(holder);
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        final ByteBufAllocator alloc = alloc();
+        if (alloc.isDirectBufferPooled()) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        final ByteBuf directBuf = ByteBufUtil.threadLocalDirectBuffer();
+        if (directBuf == null) {
+            return newDirectBuffer0(holder, buf, alloc, readableBytes);
+        }
+
+        directBuf.writeBytes(buf, buf.readerIndex(), readableBytes);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    private static ByteBuf newDirectBuffer0(Object holder, ByteBuf buf, ByteBufAllocator alloc, int capacity) {
+        final ByteBuf directBuf = alloc.directBuffer(capacity);
+        directBuf.writeBytes(buf, buf.readerIndex(), capacity);
+        ReferenceCountUtil.safeRelease(holder);
+        return directBuf;
+    }
+
+    protected static void checkResolvable(InetSocketAddress addr) {
+        if (addr.isUnresolved()) {
+            throw new UnresolvedAddressException();
+        }
+    }
+
+    /**
+     * Returns the address of the first byte of the given direct {@link ByteBuf}, independent of its reader and
+     * writer index.
+     */
+    static long memoryAddress(ByteBuf buf) {
+        if (buf.hasMemoryAddress()) {
+            return buf.memoryAddress();
+        }
+        ByteBuffer nioBuffer = buf.internalNioBuffer(0, buf.capacity());
+        return Buffer.memoryAddress(nioBuffer) + nioBuffer.position();
+    }
+
+    /**
+     * Returns native memory that can hold a {@code struct sockaddr} and a {@code socklen_t} and stays valid until
+     * the channel was closed and all operations completed.
+     */
+    final long addressMemory() {
+        if (addressMemory == null) {
+            addressMemory = Buffer.allocateDirectWithNativeOrder(ADDRESS_MEMORY_SIZE);
+        }
+        return Buffer.memoryAddress(addressMemory);
+    }
+
+    /**
+     * Release the native memory that belongs to this channel once it was closed and the kernel is not using it
+     * anymore.
+     */
+    final void releaseIfDone() {
+        if (ioState == 0 && !isOpen()) {
+            releaseNativeMemory();
+        }
+    }
+
+    void releaseNativeMemory() {
+        if (addressMemory != null) {
+            Buffer.free(addressMemory);
+            addressMemory = null;
+        }
+    }
+
+    static IOException newSubmissionQueueFullException() {
+        return new IOException("io_uring submission queue is full");
+    }
+
+    static IOException newConnectException(int err) {
+        if (err == Errors.ERROR_ENETUNREACH_NEGATIVE) {
+            return new NoRouteToHostException();
+        }
+        return new ConnectException(Errors.newIOException("connect", err).getMessage());
+    }
+
+    protected abstract class AbstractIOUringUnsafe extends AbstractUnsafe {
+        boolean readPending;
+        private IOUringRecvByteAllocatorHandle allocHandle;
+
+        /**
+         * Hand over the next read operation to the kernel. Called only if no read is scheduled yet.
+         */
+        abstract void scheduleRead() throws Exception;
+
+        /**
+         * The opcode of the operation that is submitted by {@link #scheduleRead()}.
+         */
+        abstract byte readOpcode();
+
+        /**
+         * Called once the operation that was scheduled via {@link #scheduleRead()} completed.
+         */
+        abstract void readComplete(int res, int data);
+
+        /**
+         * Called once a write operation that was handed over to the kernel completed.
+         */
+        abstract void writeComplete(byte op, int res, int data);
+
+        /**
+         * Called by the {@link IOUringEventLoop} once an operation of this channel completed.
+         */
+        final void handle(byte op, int res, int data) {
+            switch (op) {
+                case Native.IORING_OP_POLL_ADD:
+                    if (data == Native.POLLIN) {
+                        ioState &= ~POLL_IN_SCHEDULED;
+                        scheduleReadIfNeeded();
+                    } else {
+                        ioState &= ~POLL_OUT_SCHEDULED;
+                        pollOutReady();
+                    }
+                    break;
+                case Native.IORING_OP_READ:
+                case Native.IORING_OP_ACCEPT:
+                case Native.IORING_OP_RECVMSG:
+                    ioState &= ~READ_SCHEDULED;
+                    readComplete(res, data);
+                    break;
+                case Native.IORING_OP_WRITE:
+                case Native.IORING_OP_WRITEV:
+                case Native.IORING_OP_SENDMSG:
+                    writeComplete(op, res, data);
+                    break;
+                case Native.IORING_OP_CONNECT:
+                    ioState &= ~CONNECT_SCHEDULED;
+                    connectComplete(res);
+                    break;
+                default:
+                    // IORING_OP_ASYNC_CANCEL, nothing to do.
+                    break;
+            }
+            releaseIfDone();
+        }
+
+        /**
+         * Handle a completion of an operation that was submitted by the {@link IOUringEventLoop} this channel was
+         * registered to before. This is done on the current {@link EventLoop} to keep all state changes on the same
+         * thread.
+         */
+        final void forward(final byte op, final int res, final int data) {
+            eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    handle(op, res, data);
+                }
+            });
+        }
+
+        final void scheduleReadIfNeeded() {
+            if ((ioState & (READ_SCHEDULED | POLL_IN_SCHEDULED)) != 0 || registration == null || !isOpen()) {
+                return;
+            }
+            final ChannelConfig config = config();
+            if (!readPending && !config.isAutoRead() || shouldBreakReadReady(config)) {
+                return;
+            }
+            try {
+                scheduleRead();
+            } catch (Throwable cause) {
+                pipeline().fireExceptionCaught(cause);
+                close(voidPromise());
+            }
+        }
+
+        /**
+         * Schedule the next read of the current read cycle. Unlike {@link #scheduleReadIfNeeded()} this does not
+         * depend on a pending read request, as the cycle itself was started by one.
+         */
+        final void scheduleNextRead() {
+            if ((ioState & (READ_SCHEDULED | POLL_IN_SCHEDULED)) != 0 || registration == null || !isOpen()) {
+                return;
+            }
+            try {
+                scheduleRead();
+            } catch (Throwable cause) {
+                pipeline().fireExceptionCaught(cause);
+                close(voidPromise());
+            }
+        }
+
+        /**
+         * Wait until the socket becomes readable. The read is scheduled again once this happened.
+         */
+        final void schedulePollIn() throws IOException {
+            if ((ioState & POLL_IN_SCHEDULED) == 0) {
+                schedulePoll(Native.POLLIN);
+                ioState |= POLL_IN_SCHEDULED;
+            }
+        }
+
+        /**
+         * Wait until the socket becomes writable. Pending writes (or a pending connect) are processed once this
+         * happened.
+         */
+        final void schedulePollOut() throws IOException {
+            if ((ioState & POLL_OUT_SCHEDULED) == 0) {
+                schedulePoll(Native.POLLOUT);
+                ioState |= POLL_OUT_SCHEDULED;
+            }
+        }
+
+        private void schedulePoll(int mask) throws IOException {
+            IOUringEventLoop.Registration registration = AbstractIOUringChannel.this.registration;
+            if (!registration.track(registration.submissionQueue().addPollAdd(
+                    socket.intValue(), mask, registration.userData(Native.IORING_OP_POLL_ADD, mask)))) {
+                throw newSubmissionQueueFullException();
+            }
+        }
+
+        /**
+         * Shutdown the input side of the channel.
+         */
+        void shutdownInput(boolean rdHup) {
+            if (!socket.isInputShutdown()) {
+                if (isAllowHalfClosure(config())) {
+                    try {
+                        socket.shutdown(true, false);
+                    } catch (IOException ignored) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                        fireEventAndClose(ChannelInputShutdownEvent.INSTANCE);
+                        return;
+                    } catch (NotYetConnectedException ignore) {
+                        // We attempted to shutdown and failed, which means the input has already effectively been
+                        // shutdown.
+                    }
+                    pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+                } else {
+                    close(voidPromise());
+                }
+            } else if (!rdHup) {
+                inputClosedSeenErrorOnRead = true;
+                pipeline().fireUserEventTriggered(ChannelInputShutdownReadComplete.INSTANCE);
+            }
+        }
+
+        private void fireEventAndClose(Object evt) {
+            pipeline().fireUserEventTriggered(evt);
+            close(voidPromise());
+        }
+
+        @Override
+        public IOUringRecvByteAllocatorHandle recvBufAllocHandle() {
+            if (allocHandle == null) {
+                allocHandle = new IOUringRecvByteAllocatorHandle(
+                        (RecvByteBufAllocator.ExtendedHandle) super.recvBufAllocHandle());
+            }
+            return allocHandle;
+        }
+
+        @Override
+        protected final void flush0() {
+            // Flush immediately only when there's no pending write, poll or connect. Once these complete the
+            // flush is triggered again.
+            if (registration != null && (ioState & (WRITE_SCHEDULED | POLL_OUT_SCHEDULED | CONNECT_SCHEDULED)) == 0) {
+                super.flush0();
+                IOUringEventLoop.Registration registration = AbstractIOUringChannel.this.registration;
+                if (registration != null && (ioState & WRITE_SCHEDULED) != 0) {
+                    try {
+                        registration.eventLoop().submitWrites();
+                    } catch (IOException ignore) {
+                        // The writes stay in the submission queue and are submitted again before the EventLoop
+                        // blocks the next time, which will also report the failure.
+                    }
+                }
+            }
+        }
+
+        private void pollOutReady() {
+            if (registration == null) {
+                // The poll was cancelled as the channel was deregistered.
+                return;
+            }
+            if (connectPromise != null) {
+                // pending connect which is now complete so handle it.
+                finishConnect();
+            } else if (!socket.isOutputShutdown()) {
+                flush0();
+            }
+        }
+
+        @Override
+        public void connect(
+                final SocketAddress remoteAddress, final SocketAddress localAddress, final ChannelPromise promise) {
+            if (!promise.setUncancellable() || !ensureOpen(promise)) {
+                return;
+            }
+
+            try {
+                if (connectPromise != null) {
+                    throw new ConnectionPendingException();
+                }
+
+                boolean wasActive = isActive();
+                if (doConnect(remoteAddress, localAddress)) {
+                    fulfillConnectPromise(promise, wasActive);
+                } else {
+                    connectPromise = promise;
+                    requestedRemoteAddress = remoteAddress;
+
+                    // Schedule connect timeout.
+                    int connectTimeoutMillis = config().getConnectTimeoutMillis();
+                    if (connectTimeoutMillis > 0) {
+                        connectTimeoutFuture = eventLoop().schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                ChannelPromise connectPromise = AbstractIOUringChannel.this.connectPromise;
+                                ConnectTimeoutException cause =
+                                        new ConnectTimeoutException("connection timed out: " + remoteAddress);
+                                if (connectPromise != null && connectPromise.tryFailure(cause)) {
+                                    close(voidPromise());
+                                }
+                            }
+                        }, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+                    }
+
+                    promise.addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) throws Exception {
+                            if (future.isCancelled()) {
+                                if (connectTimeoutFuture != null) {
+                                    connectTimeoutFuture.cancel(false);
+                                }
+                                connectPromise = null;
+                                close(voidPromise());
+                            }
+                        }
+                    });
+                }
+            } catch (Throwable t) {
+                closeIfClosed();
+                promise.tryFailure(annotateConnectException(t, remoteAddress));
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, boolean wasActive) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+            active = true;
+
+            // Get the state as trySuccess() may trigger an ChannelFutureListener that will close the Channel.
+            // We still need to ensure we call fireChannelActive() in this case.
+            boolean active = isActive();
+
+            // trySuccess() will return false if a user cancelled the connection attempt.
+            boolean promiseSet = promise.trySuccess();
+
+            // Regardless if the connection attempt was cancelled, channelActive() event should be triggered,
+            // because what happened is what happened.
+            if (!wasActive && active) {
+                pipeline().fireChannelActive();
+            }
+
+            // If a user cancelled the connection attempt, close the channel, which is followed by channelInactive().
+            if (!promiseSet) {
+                close(voidPromise());
+            } else {
+                // Write everything that was flushed while the connection attempt was in progress.
+                flush0();
+            }
+        }
+
+        private void fulfillConnectPromise(ChannelPromise promise, Throwable cause) {
+            if (promise == null) {
+                // Closed via cancellation and the promise has been notified already.
+                return;
+            }
+
+            // Use tryFailure() instead of setFailure() to avoid the race against cancel().
+            promise.tryFailure(cause);
+            closeIfClosed();
+        }
+
+        private void connectComplete(int res) {
+            if (connectPromise == null) {
+                // The connection attempt was cancelled, timed out or the channel was closed in the meantime.
+                return;
+            }
+            if (res == 0) {
+                finishConnect();
+            } else if (res == Errors.ERRNO_EINPROGRESS_NEGATIVE || res == Errors.ERRNO_EAGAIN_NEGATIVE ||
+                    res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                // The connection attempt is still in progress, wait until the socket becomes writable.
+                if (registration != null) {
+                    try {
+                        schedulePollOut();
+                    } catch (Throwable t) {
+                        failConnect(t);
+                    }
+                }
+            } else {
+                failConnect(newConnectException(res));
+            }
+        }
+
+        private void failConnect(Throwable cause) {
+            try {
+                fulfillConnectPromise(connectPromise, annotateConnectException(cause, requestedRemoteAddress));
+            } finally {
+                // Check for null as the connectTimeoutFuture is only created if a connectTimeoutMillis > 0 is used
+                // See https://github.com/netty/netty/issues/1770
+                if (connectTimeoutFuture != null) {
+                    connectTimeoutFuture.cancel(false);
+                }
+                connectPromise = null;
+            }
+        }
+
+        private void finishConnect() {
+            // Note this method is invoked by the event loop only if the connection attempt was
+            // neither cancelled nor timed out.
+
+            assert eventLoop().inEventLoop();
+
+            boolean connectStillInProgress = false;
+            try {
+                boolean wasActive = isActive();
+                if (!doFinishConnect()) {
+                    connectStillInProgress = true;
+                    return;
+                }
+                ChannelPromise promise = connectPromise;
+                // Clear the state before notifying the promise as the following flush needs to see it.
+                if (connectTimeoutFuture != null) {
+                    connectTimeoutFuture.cancel(false);
+                }
+                connectPromise = null;
+                fulfillConnectPromise(promise, wasActive);
+            } catch (Throwable t) {
+                fulfillConnectPromise(connectPromise, annotateConnectException(t, requestedRemoteAddress));
+            } finally {
+                if (!connectStillInProgress) {
+                    // Check for null as the connectTimeoutFuture is only created if a connectTimeoutMillis > 0 is used
+                    // See https://github.com/netty/netty/issues/1770
+                    if (connectTimeoutFuture != null) {
+                        connectTimeoutFuture.cancel(false);
+                    }
+                    connectPromise = null;
+                }
+            }
+        }
+
+        /**
+         * Finish the connect
+         */
+        private boolean doFinishConnect() throws Exception {
+            if (socket.finishConnect()) {
+                if (requestedRemoteAddress instanceof InetSocketAddress) {
+                    remote = computeRemoteAddr((InetSocketAddress) requestedRemoteAddress, socket.remoteAddress());
+                }
+                requestedRemoteAddress = null;
+                // The kernel only binds the socket once it processed the connect, which may have happened after
+                // doConnect(...) returned.
+                local = socket.localAddress();
+
+                return true;
+            }
+            schedulePollOut();
+            return false;
+        }
+    }
+
+    @Override
+    protected void doBind(SocketAddress local) throws Exception {
+        if (local instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) local);
+        }
+        socket.bind(local);
+        this.local = socket.localAddress();
+    }
+
+    /**
+     * Connect to the remote peer
+     */
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (localAddress instanceof InetSocketAddress) {
+            checkResolvable((InetSocketAddress) localAddress);
+        }
+
+        InetSocketAddress remoteSocketAddr = remoteAddress instanceof InetSocketAddress
+                ? (InetSocketAddress) remoteAddress : null;
+        if (remoteSocketAddr != null) {
+            checkResolvable(remoteSocketAddr);
+        }
+
+        if (remote != null) {
+            // Check if already connected before trying to connect. This is needed as connect(...) will not return -1
+            // and set errno to EISCONN if a previous connect(...) attempt was setting errno to EINPROGRESS and finished
+            // later.
+            throw new AlreadyConnectedException();
+        }
+
+        if (localAddress != null) {
+            socket.bind(localAddress);
+        }
+
+        boolean connected;
+        boolean success = false;
+        try {
+            connected = doConnect0(remoteAddress);
+            success = true;
+        } finally {
+            if (!success) {
+                doClose();
+            }
+        }
+        if (connected) {
+            remote = remoteSocketAddr == null ?
+                    remoteAddress : computeRemoteAddr(remoteSocketAddr, socket.remoteAddress());
+        }
+        // We always need to set the localAddress even if not connected yet as the bind already took place.
+        //
+        // See https://github.com/netty/netty/issues/3463
+        local = socket.localAddress();
+        return connected;
+    }
+
+    /**
+     * Start to connect the socket and return {@code true} if the connection was established already. By default
+     * this is done via {@code connect(...)} directly, which completes immediately for connectionless sockets.
+     */
+    boolean doConnect0(SocketAddress remote) throws Exception {
+        boolean connected = socket.connect(remote);
+        if (!connected) {
+            ((AbstractIOUringUnsafe) unsafe()).schedulePollOut();
+        }
+        return connected;
+    }
+
+    /**
+     * Hand over a {@code connect(...)} to the kernel. The result is processed once the operation completed.
+     */
+    final void scheduleConnect(InetSocketAddress remote) throws IOException {
+        IOUringEventLoop.Registration registration = this.registration;
+        long memory = addressMemory();
+        int length = SockaddrIn.write(ipv6, memory, remote);
+        if (!registration.track(registration.submissionQueue().addConnect(
+                socket.intValue(), memory, length, registration.userData(Native.IORING_OP_CONNECT, 0)))) {
+            throw newSubmissionQueueFullException();
+        }
+        ioState |= CONNECT_SCHEDULED;
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return local;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return remote;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.Socket;
+import io.netty.util.UncheckedBooleanSupplier;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+@UnstableApi
+public abstract class AbstractIOUringServerChannel extends AbstractIOUringChannel implements ServerChannel {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringServerChannel.class);
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+
+    AbstractIOUringServerChannel(Socket fd) {
+        this(fd, isSoErrorZero(fd));
+    }
+
+    AbstractIOUringServerChannel(Socket fd, boolean active) {
+        super(null, fd, active);
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof IOUringEventLoop;
+    }
+
+    @Override
+    protected InetSocketAddress remoteAddress0() {
+        return null;
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringServerSocketUnsafe();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    abstract Channel newChildChannel(int fd, InetSocketAddress remote) throws Exception;
+
+    final class IOUringServerSocketUnsafe extends AbstractIOUringUnsafe {
+        private boolean readCycleStarted;
+        private boolean readCycleHasData;
+
+        @Override
+        public void connect(SocketAddress socketAddress, SocketAddress socketAddress2, ChannelPromise channelPromise) {
+            // Connect not supported by ServerChannel implementations
+            channelPromise.setFailure(new UnsupportedOperationException());
+        }
+
+        @Override
+        byte readOpcode() {
+            return Native.IORING_OP_ACCEPT;
+        }
+
+        @Override
+        void scheduleRead() throws Exception {
+            if (!readCycleStarted) {
+                IOUringRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
+                allocHandle.reset(config());
+                allocHandle.attemptedBytesRead(1);
+                readCycleStarted = true;
+            }
+
+            // The kernel stores the remote address of the accepted connection in the address memory and its length
+            // right behind it, the length needs to be initialized with the size of the available space.
+            long memory = addressMemory();
+            PlatformDependent.putInt(memory + SockaddrIn.MAX_ADDRESS_LENGTH, SockaddrIn.MAX_ADDRESS_LENGTH);
+            IOUringEventLoop.Registration registration = AbstractIOUringServerChannel.this.registration;
+            if (!registration.track(registration.submissionQueue().addAccept(socket.intValue(), memory,
+                    memory + SockaddrIn.MAX_ADDRESS_LENGTH, registration.userData(Native.IORING_OP_ACCEPT, 0)))) {
+                throw newSubmissionQueueFullException();
+            }
+            ioState |= READ_SCHEDULED;
+        }
+
+        @Override
+        void readComplete(int res, int data) {
+            if (!isOpen()) {
+                if (res >= 0) {
+                    closeAcceptedSocket(res);
+                }
+                return;
+            }
+            final ChannelConfig config = config();
+            if (res == Errors.ERRNO_EAGAIN_NEGATIVE || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                // No connection to accept right now, wait until there is one.
+                if (res == Errors.ERRNO_EAGAIN_NEGATIVE && registration != null &&
+                        (readPending || config.isAutoRead())) {
+                    try {
+                        schedulePollIn();
+                    } catch (IOException e) {
+                        pipeline().fireExceptionCaught(e);
+                        close(voidPromise());
+                        return;
+                    }
+                }
+                if (readCycleHasData) {
+                    readCycleComplete();
+                }
+                scheduleReadIfNeeded();
+                return;
+            }
+
+            final ChannelPipeline pipeline = pipeline();
+            final IOUringRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
+            Throwable exception = null;
+            try {
+                if (res < 0) {
+                    throw Errors.newIOException("accept", res);
+                }
+                // lastBytesRead represents the fd. We use lastBytesRead because it must be set so that the
+                // IOUringRecvByteAllocatorHandle knows if it should try to read again or not when autoRead is
+                // enabled.
+                allocHandle.lastBytesRead(res);
+                allocHandle.incMessagesRead(1);
+                readPending = false;
+                readCycleHasData = true;
+
+                Channel child;
+                try {
+                    child = newChildChannel(res, SockaddrIn.read(addressMemory()));
+                } catch (Throwable t) {
+                    closeAcceptedSocket(res);
+                    throw t;
+                }
+                pipeline.fireChannelRead(child);
+
+                if (isOpen() && allocHandle.continueReading(UncheckedBooleanSupplier.TRUE_SUPPLIER)) {
+                    // Stay in the same read cycle.
+                    scheduleNextRead();
+                    return;
+                }
+            } catch (Throwable t) {
+                exception = t;
+            }
+            try {
+                readCycleComplete();
+
+                if (exception != null) {
+                    pipeline.fireExceptionCaught(exception);
+                }
+            } finally {
+                scheduleReadIfNeeded();
+            }
+        }
+
+        private void readCycleComplete() {
+            readCycleStarted = false;
+            readCycleHasData = false;
+            recvBufAllocHandle().readComplete();
+            pipeline().fireChannelReadComplete();
+        }
+
+        private void closeAcceptedSocket(int fd) {
+            try {
+                new Socket(fd).close();
+            } catch (IOException e) {
+                logger.warn("Failed to close an accepted socket.", e);
+            }
+        }
+
+        @Override
+        void writeComplete(byte op, int res, int data) {
+            // ServerChannels never submit writes.
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,601 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelOutboundBuffer.MessageProcessor;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.EventLoop;
+import io.netty.channel.FileRegion;
+import io.netty.channel.socket.DuplexChannel;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.unix.Socket;
+import io.netty.channel.unix.SocketWritableByteChannel;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.channel.internal.ChannelUtils.MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD;
+import static io.netty.channel.internal.ChannelUtils.WRITE_STATUS_SNDBUF_FULL;
+
+@UnstableApi
+public abstract class AbstractIOUringStreamChannel extends AbstractIOUringChannel implements DuplexChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false, 16);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(ByteBuf.class) + ", " +
+                    StringUtil.simpleClassName(DefaultFileRegion.class) + ')';
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractIOUringStreamChannel.class);
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            // Calling flush0 directly to ensure we not try to flush messages that were added via write(...) in the
+            // meantime.
+            ((AbstractIOUringUnsafe) unsafe()).flush0();
+        }
+    };
+
+    // The buffers which are referenced by the write that is currently owned by the kernel.
+    private final List<ByteBuf> writeBuffers = new ArrayList<ByteBuf>();
+    private final MessageProcessor writevProcessor = new MessageProcessor() {
+        @Override
+        public boolean processMessage(Object msg) {
+            if (!(msg instanceof ByteBuf)) {
+                return false;
+            }
+            ByteBuf buf = (ByteBuf) msg;
+            int count = writeIovArray.count();
+            boolean added = writeIovArray.add(buf);
+            if (writeIovArray.count() != count) {
+                // Also partially added buffers must stay alive until the kernel is done with them.
+                writeBuffers.add(buf.retain());
+            }
+            return added;
+        }
+    };
+    private IovArray writeIovArray;
+    private long writeAttemptedBytes;
+    private long writeMaxBytes;
+    private IOException writeError;
+
+    private WritableByteChannel byteChannel;
+
+    AbstractIOUringStreamChannel(Socket fd) {
+        this(fd, isSoErrorZero(fd));
+    }
+
+    AbstractIOUringStreamChannel(Channel parent, Socket fd, SocketAddress remote) {
+        super(parent, fd, remote);
+    }
+
+    AbstractIOUringStreamChannel(Channel parent, Socket fd, boolean active) {
+        super(parent, fd, active);
+    }
+
+    AbstractIOUringStreamChannel(Socket fd, boolean active) {
+        super(null, fd, active);
+    }
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringStreamUnsafe();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    boolean doConnect0(SocketAddress remote) throws Exception {
+        if (remote instanceof InetSocketAddress) {
+            scheduleConnect((InetSocketAddress) remote);
+            return false;
+        }
+        return super.doConnect0(remote);
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        IOException writeError = this.writeError;
+        if (writeError != null) {
+            // The last write failed, let the caller handle it.
+            this.writeError = null;
+            throw writeError;
+        }
+
+        int writeSpinCount = config().getWriteSpinCount();
+        do {
+            final int msgCount = in.size();
+            if (msgCount == 0) {
+                // Wrote all messages.
+                return;
+            }
+            Object msg = in.current();
+            if (msg instanceof ByteBuf) {
+                ByteBuf buf = (ByteBuf) msg;
+                if (msgCount > 1 || buf.nioBufferCount() > 1) {
+                    // Do gathering write if the outbound buffer entries start with more than one ByteBuf.
+                    if (scheduleWritev(in)) {
+                        return;
+                    }
+                } else if (!buf.isReadable()) {
+                    in.remove();
+                } else {
+                    scheduleWrite(buf);
+                    return;
+                }
+            } else if (msg instanceof FileRegion) {
+                writeSpinCount -= writeFileRegion(in, (FileRegion) msg);
+            } else {
+                // Should never reach here.
+                throw new Error();
+            }
+        } while (writeSpinCount > 0);
+
+        if (writeSpinCount == 0) {
+            // We used our writeSpin quantum, and should try to write again later.
+            eventLoop().execute(flushTask);
+        } else {
+            // Underlying descriptor can not accept all data currently, so wait until it can accept more data.
+            ((AbstractIOUringUnsafe) unsafe()).schedulePollOut();
+        }
+    }
+
+    /**
+     * Hand over a write of the given {@link ByteBuf} to the kernel.
+     */
+    private void scheduleWrite(ByteBuf buf) throws IOException {
+        IOUringEventLoop.Registration registration = this.registration;
+        if (!registration.track(registration.submissionQueue().addWrite(socket.intValue(), memoryAddress(buf),
+                buf.readerIndex(), buf.writerIndex(), registration.userData(Native.IORING_OP_WRITE, 0)))) {
+            throw newSubmissionQueueFullException();
+        }
+        writeBuffers.add(buf.retain());
+        ioState |= WRITE_SCHEDULED;
+    }
+
+    /**
+     * Hand over a gathering write of all flushed {@link ByteBuf}s to the kernel. Returns {@code false} if there was
+     * nothing to write.
+     */
+    private boolean scheduleWritev(ChannelOutboundBuffer in) throws Exception {
+        IOUringEventLoop.Registration registration = this.registration;
+        IovArray array = registration.eventLoop().acquireIovArray();
+        long maxBytesPerGatheringWrite = config().getMaxBytesPerGatheringWrite();
+        array.maxBytes(maxBytesPerGatheringWrite);
+        writeIovArray = array;
+        try {
+            in.forEachFlushedMessage(writevProcessor);
+        } catch (Exception e) {
+            releaseWriteBuffers();
+            throw e;
+        }
+
+        if (array.count() == 0) {
+            // cnt == 0, which means the outbound buffer contained empty buffers only.
+            releaseWriteBuffers();
+            in.removeBytes(0);
+            return false;
+        }
+        if (!registration.track(registration.submissionQueue().addWritev(socket.intValue(), array.memoryAddress(0),
+                array.count(), registration.userData(Native.IORING_OP_WRITEV, 0)))) {
+            releaseWriteBuffers();
+            throw newSubmissionQueueFullException();
+        }
+        writeAttemptedBytes = array.size();
+        writeMaxBytes = maxBytesPerGatheringWrite;
+        ioState |= WRITE_SCHEDULED;
+        return true;
+    }
+
+    @Override
+    void cancelWrite(IOUringEventLoop.Registration registration) {
+        // A write to a socket whose send buffer is full waits until the peer reads.
+        cancel(registration, registration.userData(
+                writeIovArray != null ? Native.IORING_OP_WRITEV : Native.IORING_OP_WRITE, 0));
+    }
+
+    private void releaseWriteBuffers() {
+        for (int i = 0; i < writeBuffers.size(); i++) {
+            writeBuffers.get(i).release();
+        }
+        writeBuffers.clear();
+        IovArray array = writeIovArray;
+        if (array != null) {
+            writeIovArray = null;
+            ((IOUringEventLoop) eventLoop()).releaseIovArray(array);
+        }
+    }
+
+    private void adjustMaxBytesPerGatheringWrite(long attempted, long written, long oldMaxBytesPerGatheringWrite) {
+        // By default we track the SO_SNDBUF when ever it is explicitly set. However some OSes may dynamically change
+        // SO_SNDBUF (and other characteristics that determine how much data can be written at once) so we should try
+        // make a best effort to adjust as OS behavior changes.
+        if (attempted == written) {
+            if (attempted << 1 > oldMaxBytesPerGatheringWrite) {
+                config().setMaxBytesPerGatheringWrite(attempted << 1);
+            }
+        } else if (attempted > MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD && written < attempted >>> 1) {
+            config().setMaxBytesPerGatheringWrite(attempted >>> 1);
+        }
+    }
+
+    /**
+     * Write a {@link FileRegion}
+     * @param in the collection which contains objects to write.
+     * @param region the {@link FileRegion} from which the bytes should be written
+     * @return The value that should be decremented from the write quantum which starts at
+     * {@link ChannelConfig#getWriteSpinCount()}. The typical use cases are as follows:
+     * <ul>
+     *     <li>0 - if no write was attempted. This is appropriate if an empty {@link ByteBuf} (or other empty content)
+     *     is encountered</li>
+     *     <li>1 - if a single call to write data was made to the OS</li>
+     *     <li>{@link io.netty.channel.internal.ChannelUtils#WRITE_STATUS_SNDBUF_FULL} - if an attempt to write data
+     *     was made to the OS, but no data was accepted</li>
+     * </ul>
+     */
+    private int writeFileRegion(ChannelOutboundBuffer in, FileRegion region) throws Exception {
+        if (region.transferred() >= region.count()) {
+            in.remove();
+            return 0;
+        }
+
+        if (byteChannel == null) {
+            byteChannel = new IOUringSocketWritableByteChannel();
+        }
+        final long flushedAmount = region.transferTo(byteChannel, region.transferred());
+        if (flushedAmount > 0) {
+            in.progress(flushedAmount);
+            if (region.transferred() >= region.count()) {
+                in.remove();
+            }
+            return 1;
+        }
+        return WRITE_STATUS_SNDBUF_FULL;
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return UnixChannelUtil.isBufferCopyNeededForWrite(buf)? newDirectBuffer(buf): buf;
+        }
+
+        if (msg instanceof FileRegion) {
+            return msg;
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    @UnstableApi
+    @Override
+    protected final void doShutdownOutput() throws Exception {
+        socket.shutdown(false, true);
+    }
+
+    private void shutdownInput0(final ChannelPromise promise) {
+        try {
+            socket.shutdown(true, false);
+            promise.setSuccess();
+        } catch (Throwable cause) {
+            promise.setFailure(cause);
+        }
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return socket.isOutputShutdown();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return socket.isInputShutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return socket.isShutdown();
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput() {
+        return shutdownOutput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownOutput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ((AbstractUnsafe) unsafe()).shutdownOutput(promise);
+                }
+            });
+        }
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdownInput() {
+        return shutdownInput(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdownInput(final ChannelPromise promise) {
+        EventLoop loop = eventLoop();
+        if (loop.inEventLoop()) {
+            shutdownInput0(promise);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    shutdownInput0(promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture shutdown() {
+        return shutdown(newPromise());
+    }
+
+    @Override
+    public ChannelFuture shutdown(final ChannelPromise promise) {
+        ChannelFuture shutdownOutputFuture = shutdownOutput();
+        if (shutdownOutputFuture.isDone()) {
+            shutdownOutputDone(shutdownOutputFuture, promise);
+        } else {
+            shutdownOutputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture shutdownOutputFuture) throws Exception {
+                    shutdownOutputDone(shutdownOutputFuture, promise);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void shutdownOutputDone(final ChannelFuture shutdownOutputFuture, final ChannelPromise promise) {
+        ChannelFuture shutdownInputFuture = shutdownInput();
+        if (shutdownInputFuture.isDone()) {
+            shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+        } else {
+            shutdownInputFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture shutdownInputFuture) throws Exception {
+                    shutdownDone(shutdownOutputFuture, shutdownInputFuture, promise);
+                }
+            });
+        }
+    }
+
+    private static void shutdownDone(ChannelFuture shutdownOutputFuture,
+                              ChannelFuture shutdownInputFuture,
+                              ChannelPromise promise) {
+        Throwable shutdownOutputCause = shutdownOutputFuture.cause();
+        Throwable shutdownInputCause = shutdownInputFuture.cause();
+        if (shutdownOutputCause != null) {
+            if (shutdownInputCause != null) {
+                logger.debug("Exception suppressed because a previous exception occurred.",
+                        shutdownInputCause);
+            }
+            promise.setFailure(shutdownOutputCause);
+        } else if (shutdownInputCause != null) {
+            promise.setFailure(shutdownInputCause);
+        } else {
+            promise.setSuccess();
+        }
+    }
+
+    class IOUringStreamUnsafe extends AbstractIOUringUnsafe {
+        // The buffer the kernel currently reads into.
+        private ByteBuf readBuffer;
+        // A read cycle spans all reads between resetting the RecvByteBufAllocator.Handle and calling readComplete().
+        private boolean readCycleStarted;
+        private boolean readCycleHasData;
+
+        @Override
+        byte readOpcode() {
+            return Native.IORING_OP_READ;
+        }
+
+        @Override
+        void scheduleRead() throws Exception {
+            final ChannelConfig config = config();
+            final IOUringRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
+            if (!readCycleStarted) {
+                allocHandle.reset(config);
+                readCycleStarted = true;
+            }
+
+            // we use a direct buffer here as the kernel can only read into native memory.
+            ByteBuf byteBuf = allocHandle.allocate(config.getAllocator());
+            allocHandle.attemptedBytesRead(byteBuf.writableBytes());
+            IOUringEventLoop.Registration registration = AbstractIOUringStreamChannel.this.registration;
+            if (!registration.track(registration.submissionQueue().addRead(socket.intValue(),
+                    memoryAddress(byteBuf), byteBuf.writerIndex(), byteBuf.capacity(),
+                    registration.userData(Native.IORING_OP_READ, 0)))) {
+                byteBuf.release();
+                throw newSubmissionQueueFullException();
+            }
+            readBuffer = byteBuf;
+            ioState |= READ_SCHEDULED;
+        }
+
+        @Override
+        void readComplete(int res, int data) {
+            ByteBuf byteBuf = readBuffer;
+            readBuffer = null;
+            if (!isOpen()) {
+                byteBuf.release();
+                return;
+            }
+            final ChannelConfig config = config();
+            if (shouldBreakReadReady(config)) {
+                // The read was scheduled before the input was shutdown, ChannelInputShutdownReadComplete was
+                // already fired.
+                byteBuf.release();
+                readCycleStarted = false;
+                return;
+            }
+            if (res == Errors.ERRNO_EAGAIN_NEGATIVE || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                // Nothing to read right now. Keep the read cycle open (if nothing was read yet) and wait until the
+                // socket becomes readable.
+                byteBuf.release();
+                if (res == Errors.ERRNO_EAGAIN_NEGATIVE && registration != null &&
+                        (readPending || config.isAutoRead())) {
+                    try {
+                        schedulePollIn();
+                    } catch (IOException e) {
+                        pipeline().fireExceptionCaught(e);
+                        close(voidPromise());
+                        return;
+                    }
+                }
+                if (readCycleHasData) {
+                    readCycleComplete();
+                }
+                scheduleReadIfNeeded();
+                return;
+            }
+
+            final ChannelPipeline pipeline = pipeline();
+            final IOUringRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
+            boolean close = false;
+            try {
+                if (res < 0) {
+                    throw Errors.newIOException("read", res);
+                }
+                if (res == 0) {
+                    // There is nothing left to read as we received an EOF.
+                    allocHandle.lastBytesRead(-1);
+                    byteBuf.release();
+                    byteBuf = null;
+                    close = true;
+                    readPending = false;
+                } else {
+                    allocHandle.lastBytesRead(res);
+                    byteBuf.writerIndex(byteBuf.writerIndex() + res);
+                    allocHandle.incMessagesRead(1);
+                    readPending = false;
+                    readCycleHasData = true;
+                    pipeline.fireChannelRead(byteBuf);
+                    byteBuf = null;
+
+                    if (isOpen() && !shouldBreakReadReady(config) && allocHandle.continueReading()) {
+                        // Stay in the same read cycle.
+                        scheduleNextRead();
+                        return;
+                    }
+                }
+
+                readCycleComplete();
+
+                if (close) {
+                    shutdownInput(false);
+                }
+            } catch (Throwable t) {
+                handleReadException(pipeline, byteBuf, t, close);
+            } finally {
+                scheduleReadIfNeeded();
+            }
+        }
+
+        private void readCycleComplete() {
+            readCycleStarted = false;
+            readCycleHasData = false;
+            recvBufAllocHandle().readComplete();
+            pipeline().fireChannelReadComplete();
+        }
+
+        private void handleReadException(ChannelPipeline pipeline, ByteBuf byteBuf, Throwable cause, boolean close) {
+            if (byteBuf != null) {
+                byteBuf.release();
+            }
+            readCycleComplete();
+            pipeline.fireExceptionCaught(cause);
+            if (close || cause instanceof IOException) {
+                shutdownInput(false);
+            }
+        }
+
+        @Override
+        void writeComplete(byte op, int res, int data) {
+            ioState &= ~WRITE_SCHEDULED;
+            long attempted = writeAttemptedBytes;
+            releaseWriteBuffers();
+
+            if (res >= 0) {
+                ChannelOutboundBuffer in = outboundBuffer();
+                if (in != null) {
+                    if (op == Native.IORING_OP_WRITEV) {
+                        adjustMaxBytesPerGatheringWrite(attempted, res, writeMaxBytes);
+                    }
+                    in.removeBytes(res);
+                }
+            } else if (res == Errors.ERRNO_EAGAIN_NEGATIVE) {
+                if (registration != null) {
+                    try {
+                        schedulePollOut();
+                    } catch (IOException e) {
+                        writeError = e;
+                    }
+                }
+            } else if (res != Native.ERRNO_ECANCELED_NEGATIVE) {
+                writeError = Errors.newIOException(op == Native.IORING_OP_WRITE ? "write" : "writev", res);
+            }
+            flush0();
+        }
+    }
+
+    private final class IOUringSocketWritableByteChannel extends SocketWritableByteChannel {
+        IOUringSocketWritableByteChannel() {
+            super(socket);
+        }
+
+        @Override
+        protected ByteBufAllocator alloc() {
+            return AbstractIOUringStreamChannel.this.alloc();
+        }
+    }
+}
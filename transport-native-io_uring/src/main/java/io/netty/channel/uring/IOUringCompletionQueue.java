@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * The completion queue of an io_uring instance.
+ *
+ * <pre>
+ * struct io_uring_cqe {
+ *     __u64 user_data;   // 0
+ *     __s32 res;         // 8
+ *     __u32 flags;       // 12
+ * };
+ * </pre>
+ */
+final class IOUringCompletionQueue {
+    private static final int CQE_USER_DATA_FIELD = 0;
+    private static final int CQE_RES_FIELD = 8;
+    private static final int CQE_FLAGS_FIELD = 12;
+
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final long completionQueueArrayAddress;
+    private final int ringMask;
+
+    final long ringAddress;
+    final long ringSize;
+    final int ringFd;
+
+    private int head;
+
+    IOUringCompletionQueue(long kHeadAddress, long kTailAddress, long kRingMaskAddress, long kRingEntriesAddress,
+                           long completionQueueArrayAddress, long ringAddress, long ringSize, int ringFd) {
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.completionQueueArrayAddress = completionQueueArrayAddress;
+        this.ringAddress = ringAddress;
+        this.ringSize = ringSize;
+        this.ringFd = ringFd;
+        ringMask = PlatformDependent.getInt(kRingMaskAddress);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+    }
+
+    /**
+     * Returns the number of completions which are ready to be processed.
+     */
+    int ready() {
+        return PlatformDependent.getIntVolatile(kTailAddress) - head;
+    }
+
+    boolean hasCompletions() {
+        return ready() != 0;
+    }
+
+    /**
+     * Process all completions which are ready and return how many were processed.
+     * <p>
+     * The completions of failed writes are processed before all the others which are ready, so the output is shut
+     * down before the data which the peer sent ahead of resetting the connection is read, like for the transports
+     * which write directly.
+     */
+    int process(IOUringCompletionQueueCallback callback) {
+        int processed = 0;
+        int tail = PlatformDependent.getIntVolatile(kTailAddress);
+        while (head != tail) {
+            // The slots are only given back to the kernel below, so they can be read twice.
+            for (int i = head; i != tail; i++) {
+                long cqe = cqeAddress(i);
+                long userData = PlatformDependent.getLong(cqe + CQE_USER_DATA_FIELD);
+                int res = PlatformDependent.getInt(cqe + CQE_RES_FIELD);
+                if (isFailedWrite(res, userData)) {
+                    callback.handle(res, PlatformDependent.getInt(cqe + CQE_FLAGS_FIELD), userData);
+                }
+            }
+            while (head != tail) {
+                long cqe = cqeAddress(head);
+                long userData = PlatformDependent.getLong(cqe + CQE_USER_DATA_FIELD);
+                int res = PlatformDependent.getInt(cqe + CQE_RES_FIELD);
+                int flags = PlatformDependent.getInt(cqe + CQE_FLAGS_FIELD);
+
+                // Give the slot back before calling the callback, everything we need was copied out.
+                PlatformDependent.putIntOrdered(kHeadAddress, ++head);
+                processed++;
+
+                if (!isFailedWrite(res, userData)) {
+                    callback.handle(res, flags, userData);
+                }
+            }
+            tail = PlatformDependent.getIntVolatile(kTailAddress);
+        }
+        return processed;
+    }
+
+    private long cqeAddress(int index) {
+        return completionQueueArrayAddress + (index & ringMask) * (long) Native.SIZEOF_IO_URING_CQE;
+    }
+
+    private static boolean isFailedWrite(int res, long userData) {
+        if (res >= 0) {
+            return false;
+        }
+        byte op = UserData.op(userData);
+        return op == Native.IORING_OP_WRITE || op == Native.IORING_OP_WRITEV;
+    }
+
+    interface IOUringCompletionQueueCallback {
+        void handle(int res, int flags, long userData);
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelOutboundBuffer.MessageProcessor;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramChannelConfig;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.Errors;
+import io.netty.channel.unix.Socket;
+import io.netty.channel.unix.UnixChannelUtil;
+import io.netty.util.UncheckedBooleanSupplier;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+
+import static io.netty.channel.unix.Socket.newSocketDgram;
+
+/**
+ * {@link DatagramChannel} implementation that uses linux io_uring. Multiple flushed datagrams are handed over to the
+ * kernel as a batch of {@code sendmsg(...)} operations.
+ */
+@UnstableApi
+public final class IOUringDatagramChannel extends AbstractIOUringChannel implements DatagramChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(true);
+    private static final String EXPECTED_TYPES =
+            " (expected: " + StringUtil.simpleClassName(DatagramPacket.class) + ", " +
+                    StringUtil.simpleClassName(AddressedEnvelope.class) + '<' +
+                    StringUtil.simpleClassName(ByteBuf.class) + ", " +
+                    StringUtil.simpleClassName(InetSocketAddress.class) + ">, " +
+                    StringUtil.simpleClassName(ByteBuf.class) + ')';
+
+    // The maximal number of datagrams that are handed over to the kernel at once.
+    private static final int MAX_SEND_BATCH = 64;
+
+    private final IOUringDatagramChannelConfig config;
+    private volatile boolean connected;
+
+    // One msghdr slot for receiving followed by MAX_SEND_BATCH slots for sending, allocated on first use.
+    private ByteBuffer msgHdrMemory;
+    private long msgHdrMemoryAddress;
+
+    private final ByteBuf[] sendBuffers = new ByteBuf[MAX_SEND_BATCH];
+    private final int[] sendResults = new int[MAX_SEND_BATCH];
+    private int sendCount;
+    private int sendPending;
+    private Throwable sendFailure;
+    private final MessageProcessor sendProcessor = new MessageProcessor() {
+        @Override
+        public boolean processMessage(Object msg) {
+            return scheduleSend(msg);
+        }
+    };
+
+    public IOUringDatagramChannel() {
+        super(null, newSocketDgram(), false);
+        config = new IOUringDatagramChannelConfig(this);
+    }
+
+    public IOUringDatagramChannel(int fd) {
+        this(new Socket(fd), true);
+    }
+
+    IOUringDatagramChannel(Socket socket, boolean active) {
+        super(null, socket, active);
+        config = new IOUringDatagramChannelConfig(this);
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return (InetSocketAddress) super.remoteAddress();
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) super.localAddress();
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean isActive() {
+        return socket.isOpen() && (config.getActiveOnOpen() && isRegistered() || active);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetAddress multicastAddress) {
+        return joinGroup(multicastAddress, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(InetAddress multicastAddress, ChannelPromise promise) {
+        try {
+            return joinGroup(
+                    multicastAddress,
+                    NetworkInterface.getByInetAddress(localAddress().getAddress()),
+                    null, promise);
+        } catch (SocketException e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface) {
+        return joinGroup(multicastAddress, networkInterface, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface,
+            ChannelPromise promise) {
+        return joinGroup(multicastAddress.getAddress(), networkInterface, null, promise);
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source) {
+        return joinGroup(multicastAddress, networkInterface, source, newPromise());
+    }
+
+    @Override
+    public ChannelFuture joinGroup(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface,
+            final InetAddress source, final ChannelPromise promise) {
+
+        if (multicastAddress == null) {
+            throw new NullPointerException("multicastAddress");
+        }
+
+        if (networkInterface == null) {
+            throw new NullPointerException("networkInterface");
+        }
+
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetAddress multicastAddress) {
+        return leaveGroup(multicastAddress, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(InetAddress multicastAddress, ChannelPromise promise) {
+        try {
+            return leaveGroup(
+                    multicastAddress, NetworkInterface.getByInetAddress(localAddress().getAddress()), null, promise);
+        } catch (SocketException e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetSocketAddress multicastAddress, NetworkInterface networkInterface) {
+        return leaveGroup(multicastAddress, networkInterface, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetSocketAddress multicastAddress,
+            NetworkInterface networkInterface, ChannelPromise promise) {
+        return leaveGroup(multicastAddress.getAddress(), networkInterface, null, promise);
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            InetAddress multicastAddress, NetworkInterface networkInterface, InetAddress source) {
+        return leaveGroup(multicastAddress, networkInterface, source, newPromise());
+    }
+
+    @Override
+    public ChannelFuture leaveGroup(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface, final InetAddress source,
+            final ChannelPromise promise) {
+        if (multicastAddress == null) {
+            throw new NullPointerException("multicastAddress");
+        }
+        if (networkInterface == null) {
+            throw new NullPointerException("networkInterface");
+        }
+
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture block(
+            InetAddress multicastAddress, NetworkInterface networkInterface,
+            InetAddress sourceToBlock) {
+        return block(multicastAddress, networkInterface, sourceToBlock, newPromise());
+    }
+
+    @Override
+    public ChannelFuture block(
+            final InetAddress multicastAddress, final NetworkInterface networkInterface,
+            final InetAddress sourceToBlock, final ChannelPromise promise) {
+        if (multicastAddress == null) {
+            throw new NullPointerException("multicastAddress");
+        }
+        if (sourceToBlock == null) {
+            throw new NullPointerException("sourceToBlock");
+        }
+
+        if (networkInterface == null) {
+            throw new NullPointerException("networkInterface");
+        }
+        promise.setFailure(new UnsupportedOperationException("Multicast not supported"));
+        return promise;
+    }
+
+    @Override
+    public ChannelFuture block(InetAddress multicastAddress, InetAddress sourceToBlock) {
+        return block(multicastAddress, sourceToBlock, newPromise());
+    }
+
+    @Override
+    public ChannelFuture block(
+            InetAddress multicastAddress, InetAddress sourceToBlock, ChannelPromise promise) {
+        try {
+            return block(
+                    multicastAddress,
+                    NetworkInterface.getByInetAddress(localAddress().getAddress()),
+                    sourceToBlock, promise);
+        } catch (Throwable e) {
+            promise.setFailure(e);
+        }
+        return promise;
+    }
+
+
+    @Override
+    protected AbstractIOUringUnsafe newUnsafe() {
+        return new IOUringDatagramChannelUnsafe();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        super.doBind(localAddress);
+        active = true;
+    }
+
+    private long msgHdrMemory(int slot) {
+        if (msgHdrMemory == null) {
+            msgHdrMemory = Buffer.allocateDirectWithNativeOrder((1 + MAX_SEND_BATCH) * MsgHdr.SLOT_SIZE);
+            msgHdrMemoryAddress = Buffer.memoryAddress(msgHdrMemory);
+        }
+        return msgHdrMemoryAddress + slot * (long) MsgHdr.SLOT_SIZE;
+    }
+
+    @Override
+    void releaseNativeMemory() {
+        super.releaseNativeMemory();
+        if (msgHdrMemory != null) {
+            Buffer.free(msgHdrMemory);
+            msgHdrMemory = null;
+        }
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        for (;;) {
+            if (in.isEmpty()) {
+                // Wrote all messages.
+                return;
+            }
+
+            sendCount = 0;
+            sendPending = 0;
+            sendFailure = null;
+            in.forEachFlushedMessage(sendProcessor);
+
+            if (sendPending > 0) {
+                // The results are processed once all datagrams of the batch were sent.
+                ioState |= WRITE_SCHEDULED;
+                return;
+            }
+            if (sendCount > 0) {
+                // Only empty datagrams, nothing needs to be sent for these.
+                for (int i = 0; i < sendCount; i++) {
+                    in.remove();
+                }
+                sendCount = 0;
+            } else {
+                // The first datagram could not be scheduled, fail it and try the next one.
+                // Continue on write error as a DatagramChannel can write to multiple remote peers
+                //
+                // See https://github.com/netty/netty/issues/2665
+                in.remove(sendFailure);
+            }
+        }
+    }
+
+    /**
+     * Hand over a {@code sendmsg(...)} of the given message to the kernel. Returns {@code false} if no more messages
+     * can be added to the current batch.
+     */
+    private boolean scheduleSend(Object msg) {
+        if (sendCount == MAX_SEND_BATCH) {
+            return false;
+        }
+        final ByteBuf data;
+        final InetSocketAddress remoteAddress;
+        if (msg instanceof AddressedEnvelope) {
+            @SuppressWarnings("unchecked")
+            AddressedEnvelope<ByteBuf, InetSocketAddress> envelope =
+                    (AddressedEnvelope<ByteBuf, InetSocketAddress>) msg;
+            data = envelope.content();
+            remoteAddress = envelope.recipient();
+        } else {
+            data = (ByteBuf) msg;
+            remoteAddress = null;
+        }
+
+        final int index = sendCount;
+        if (!data.isReadable()) {
+            sendResults[index] = 0;
+            sendCount++;
+            return true;
+        }
+
+        long memory = msgHdrMemory(index + 1);
+        int addressLength = 0;
+        if (remoteAddress != null) {
+            try {
+                addressLength = SockaddrIn.write(ipv6, MsgHdr.sockaddr(memory), remoteAddress);
+            } catch (IllegalArgumentException e) {
+                sendFailure = e;
+                return false;
+            }
+        }
+        MsgHdr.write(memory, memoryAddress(data) + data.readerIndex(), data.readableBytes(), addressLength);
+
+        IOUringEventLoop.Registration registration = this.registration;
+        if (!registration.track(registration.submissionQueue().addSendmsg(socket.intValue(), memory,
+                registration.userData(Native.IORING_OP_SENDMSG, index)))) {
+            sendFailure = newSubmissionQueueFullException();
+            return false;
+        }
+        // The content must stay alive until the kernel is done with it, even if the channel is closed in between.
+        sendBuffers[index] = data.retain();
+        sendCount++;
+        sendPending++;
+        return true;
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) {
+        if (msg instanceof DatagramPacket) {
+            DatagramPacket packet = (DatagramPacket) msg;
+            ByteBuf content = packet.content();
+            return isBufferCopyNeededForWrite(content) ?
+                    new DatagramPacket(newDirectBuffer(packet, content), packet.recipient()) : msg;
+        }
+
+        if (msg instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) msg;
+            return isBufferCopyNeededForWrite(buf) ? newDirectBuffer(buf) : buf;
+        }
+
+        if (msg instanceof AddressedEnvelope) {
+            @SuppressWarnings("unchecked")
+            AddressedEnvelope<Object, SocketAddress> e = (AddressedEnvelope<Object, SocketAddress>) msg;
+            if (e.content() instanceof ByteBuf &&
+                    (e.recipient() == null || e.recipient() instanceof InetSocketAddress)) {
+
+                ByteBuf content = (ByteBuf) e.content();
+                return isBufferCopyNeededForWrite(content) ?
+                        new DefaultAddressedEnvelope<ByteBuf, InetSocketAddress>(
+                                newDirectBuffer(e, content), (InetSocketAddress) e.recipient()) : e;
+            }
+        }
+
+        throw new UnsupportedOperationException(
+                "unsupported message type: " + StringUtil.simpleClassName(msg) + EXPECTED_TYPES);
+    }
+
+    private static boolean isBufferCopyNeededForWrite(ByteBuf content) {
+        // Every datagram is sent via a single struct iovec, so the content must be backed by one memory region.
+        return content.nioBufferCount() != 1 || UnixChannelUtil.isBufferCopyNeededForWrite(content);
+    }
+
+    @Override
+    public IOUringDatagramChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        socket.disconnect();
+        connected = active = false;
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        if (super.doConnect(remoteAddress, localAddress)) {
+            connected = true;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        super.doClose();
+        connected = false;
+    }
+
+    final class IOUringDatagramChannelUnsafe extends AbstractIOUringUnsafe {
+        // The buffer the kernel currently receives into.
+        private ByteBuf readBuffer;
+        private boolean readCycleStarted;
+        private boolean readCycleHasData;
+
+        @Override
+        byte readOpcode() {
+            return Native.IORING_OP_RECVMSG;
+        }
+
+        @Override
+        void scheduleRead() throws Exception {
+            final DatagramChannelConfig config = config();
+            final IOUringRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
+            if (!readCycleStarted) {
+                allocHandle.reset(config);
+                readCycleStarted = true;
+            }
+
+            ByteBuf data = allocHandle.allocate(config.getAllocator());
+            allocHandle.attemptedBytesRead(data.writableBytes());
+            long memory = msgHdrMemory(0);
+            MsgHdr.write(memory, memoryAddress(data) + data.writerIndex(), data.writableBytes(),
+                    SockaddrIn.MAX_ADDRESS_LENGTH);
+            IOUringEventLoop.Registration registration = IOUringDatagramChannel.this.registration;
+            if (!registration.track(registration.submissionQueue().addRecvmsg(socket.intValue(), memory,
+                    registration.userData(Native.IORING_OP_RECVMSG, 0)))) {
+                data.release();
+                throw newSubmissionQueueFullException();
+            }
+            readBuffer = data;
+            ioState |= READ_SCHEDULED;
+        }
+
+        @Override
+        void readComplete(int res, int ignore) {
+            ByteBuf data = readBuffer;
+            readBuffer = null;
+            if (!isOpen()) {
+                data.release();
+                return;
+            }
+            final DatagramChannelConfig config = config();
+            if (res == Errors.ERRNO_EAGAIN_NEGATIVE || res == Native.ERRNO_ECANCELED_NEGATIVE) {
+                // Nothing to receive right now, wait until the socket becomes readable.
+                data.release();
+                if (res == Errors.ERRNO_EAGAIN_NEGATIVE && registration != null &&
+                        (readPending || config.isAutoRead())) {
+                    try {
+                        schedulePollIn();
+                    } catch (IOException e) {
+                        pipeline().fireExceptionCaught(e);
+                        close(voidPromise());
+                        return;
+                    }
+                }
+                if (readCycleHasData) {
+                    readCycleComplete();
+                }
+                scheduleReadIfNeeded();
+                return;
+            }
+
+            final ChannelPipeline pipeline = pipeline();
+            final IOUringRecvByteAllocatorHandle allocHandle = recvBufAllocHandle();
+            Throwable exception = null;
+            try {
+                if (res < 0) {
+                    throw Errors.newIOException("recvmsg", res);
+                }
+                allocHandle.lastBytesRead(res);
+                allocHandle.incMessagesRead(1);
+                data.writerIndex(data.writerIndex() + res);
+                InetSocketAddress remoteAddress = SockaddrIn.read(MsgHdr.sockaddr(msgHdrMemory(0)));
+
+                readPending = false;
+                readCycleHasData = true;
+                DatagramPacket packet = new DatagramPacket(
+                        data, IOUringDatagramChannel.this.localAddress(), remoteAddress);
+                data = null;
+                pipeline.fireChannelRead(packet);
+
+                if (isOpen() && allocHandle.continueReading(UncheckedBooleanSupplier.TRUE_SUPPLIER)) {
+                    // Stay in the same read cycle.
+                    scheduleNextRead();
+                    return;
+                }
+            } catch (Throwable t) {
+                if (data != null) {
+                    data.release();
+                }
+                exception = t;
+            }
+            try {
+                readCycleComplete();
+
+                if (exception != null) {
+                    pipeline.fireExceptionCaught(exception);
+                }
+            } finally {
+                scheduleReadIfNeeded();
+            }
+        }
+
+        private void readCycleComplete() {
+            readCycleStarted = false;
+            readCycleHasData = false;
+            recvBufAllocHandle().readComplete();
+            pipeline().fireChannelReadComplete();
+        }
+
+        @Override
+        void writeComplete(byte op, int res, int data) {
+            sendResults[data] = res;
+            ByteBuf buffer = sendBuffers[data];
+            sendBuffers[data] = null;
+            buffer.release();
+            if (--sendPending != 0) {
+                // Wait until the whole batch was processed so the results can be applied in order.
+                return;
+            }
+            ioState &= ~WRITE_SCHEDULED;
+
+            boolean pollOut = false;
+            ChannelOutboundBuffer in = outboundBuffer();
+            if (in != null) {
+                for (int i = 0; i < sendCount; i++) {
+                    int result = sendResults[i];
+                    if (result >= 0) {
+                        in.remove();
+                    } else if (result == Errors.ERRNO_EAGAIN_NEGATIVE || result == Native.ERRNO_ECANCELED_NEGATIVE) {
+                        // Try again later starting with this datagram. Datagrams behind it which were sent
+                        // successfully will be sent again, which is fine for an unreliable transport.
+                        pollOut = result == Errors.ERRNO_EAGAIN_NEGATIVE;
+                        break;
+                    } else {
+                        // Continue on write error as a DatagramChannel can write to multiple remote peers
+                        //
+                        // See https://github.com/netty/netty/issues/2665
+                        in.remove(Errors.newIOException("sendmsg", result));
+                    }
+                }
+            }
+            sendCount = 0;
+
+            if (pollOut && registration != null) {
+                try {
+                    schedulePollOut();
+                } catch (IOException e) {
+                    pipeline().fireExceptionCaught(e);
+                }
+            } else {
+                flush0();
+            }
+        }
+    }
+}
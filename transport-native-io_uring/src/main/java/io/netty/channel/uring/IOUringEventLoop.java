@@ -0,0 +1,519 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SelectStrategy;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.unix.Buffer;
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.IovArray;
+import io.netty.channel.uring.IOUringCompletionQueue.IOUringCompletionQueueCallback;
+import io.netty.util.IntSupplier;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.RejectedExecutionHandler;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * {@link EventLoop} which uses io_uring under the covers. Only works on Linux!
+ */
+final class IOUringEventLoop extends SingleThreadEventLoop implements IOUringCompletionQueueCallback {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(IOUringEventLoop.class);
+    private static final AtomicIntegerFieldUpdater<IOUringEventLoop> WAKEN_UP_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(IOUringEventLoop.class, "wakenUp");
+
+    static {
+        // Ensure JNI is initialized by the time this class is loaded by this time!
+        // We use unix-common methods in this class which are backed by JNI methods.
+        IOUring.ensureAvailability();
+    }
+
+    // The registration id used for the operations that are owned by the EventLoop itself.
+    private static final int LOOP_ID = 0;
+    private static final int TIMESPEC_SIZE = 16;
+
+    private final RingBuffer ringBuffer;
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+    private final FileDescriptor eventFd;
+    private final ByteBuffer eventFdBuffer;
+    private final long eventFdBufferAddress;
+    private final ByteBuffer timespec;
+    private final long timespecAddress;
+    private final IntObjectMap<Registration> registrations = new IntObjectHashMap<Registration>(4096);
+    private final ArrayDeque<IovArray> iovArrays = new ArrayDeque<IovArray>();
+    private int nextRegistrationId = LOOP_ID + 1;
+
+    private boolean eventFdReadPending;
+    private boolean timeoutPending;
+    private long timeoutDeadlineNanos;
+    private int timeoutGeneration;
+    private boolean cleanedUp;
+    private boolean processingCompletions;
+    private boolean processCompletionsScheduled;
+    private final Runnable processCompletionsTask = new Runnable() {
+        @Override
+        public void run() {
+            processCompletionsScheduled = false;
+            if (completionQueue.hasCompletions()) {
+                processCompletions();
+            }
+        }
+    };
+
+    private final SelectStrategy selectStrategy;
+    private final IntSupplier selectNowSupplier = new IntSupplier() {
+        @Override
+        public int get() throws Exception {
+            return ioUringWaitNow();
+        }
+    };
+    private final Callable<Integer> pendingTasksCallable = new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+            return IOUringEventLoop.super.pendingTasks();
+        }
+    };
+    private volatile int wakenUp;
+    private volatile int ioRatio = 50;
+
+    IOUringEventLoop(EventLoopGroup parent, Executor executor, int ringSize,
+                     SelectStrategy strategy, RejectedExecutionHandler rejectedExecutionHandler) {
+        super(parent, executor, false, DEFAULT_MAX_PENDING_TASKS, rejectedExecutionHandler);
+        selectStrategy = ObjectUtil.checkNotNull(strategy, "strategy");
+        RingBuffer ringBuffer = null;
+        FileDescriptor eventFd = null;
+        boolean success = false;
+        try {
+            this.ringBuffer = ringBuffer = Native.createRingBuffer(ringSize == 0 ? Native.DEFAULT_RING_SIZE : ringSize);
+            this.eventFd = eventFd = Native.newEventFd();
+            success = true;
+        } finally {
+            if (!success) {
+                if (ringBuffer != null) {
+                    ringBuffer.close();
+                }
+                if (eventFd != null) {
+                    try {
+                        eventFd.close();
+                    } catch (Exception e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+        submissionQueue = ringBuffer.submissionQueue();
+        completionQueue = ringBuffer.completionQueue();
+        eventFdBuffer = Buffer.allocateDirectWithNativeOrder(8);
+        eventFdBufferAddress = Buffer.memoryAddress(eventFdBuffer);
+        timespec = Buffer.allocateDirectWithNativeOrder(TIMESPEC_SIZE);
+        timespecAddress = Buffer.memoryAddress(timespec);
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return submissionQueue;
+    }
+
+    /**
+     * Return a cleared {@link IovArray} that can be used for a write that is handed over to the kernel. The
+     * {@link IovArray} must be given back via {@link #releaseIovArray(IovArray)} once the write completed.
+     */
+    IovArray acquireIovArray() {
+        IovArray iovArray = iovArrays.poll();
+        if (iovArray == null) {
+            iovArray = new IovArray();
+        } else {
+            iovArray.clear();
+        }
+        return iovArray;
+    }
+
+    void releaseIovArray(IovArray iovArray) {
+        if (cleanedUp) {
+            iovArray.release();
+        } else {
+            iovArrays.add(iovArray);
+        }
+    }
+
+    /**
+     * Hand over the writes that were added to the submission queue. Writes that are flushed while completions are
+     * processed are batched and submitted before the {@link EventLoop} blocks the next time. Writes that are flushed
+     * from anywhere else, like a task, are submitted right away and their completions are processed by a task as
+     * well. This way everything that is scheduled after the flush, like a close, sees the result of the write.
+     */
+    void submitWrites() throws IOException {
+        if (!processingCompletions) {
+            // Schedule the task before the kernel sees the writes, as the peer may react on them immediately.
+            if (!processCompletionsScheduled && !isShutdown()) {
+                processCompletionsScheduled = true;
+                execute(processCompletionsTask);
+            }
+            submissionQueue.submit();
+        }
+    }
+
+    @Override
+    protected void wakeup(boolean inEventLoop) {
+        if (!inEventLoop && WAKEN_UP_UPDATER.compareAndSet(this, 0, 1)) {
+            // write to the evfd which will then complete the pending read and so wake-up io_uring_enter(...)
+            Native.eventFdWrite(eventFd.intValue(), 1L);
+        }
+    }
+
+    /**
+     * Register the given channel with this {@link EventLoop}.
+     */
+    Registration add(AbstractIOUringChannel ch) {
+        assert inEventLoop();
+        int id;
+        do {
+            id = nextRegistrationId++;
+        } while (id == LOOP_ID || registrations.containsKey(id));
+        Registration registration = new Registration(id, ch);
+        registrations.put(id, registration);
+        return registration;
+    }
+
+    @Override
+    protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        // This event loop never calls takeTask()
+        return maxPendingTasks == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
+                                                    : PlatformDependent.<Runnable>newMpscQueue(maxPendingTasks);
+    }
+
+    @Override
+    public int pendingTasks() {
+        // As we use a MpscQueue we need to ensure pendingTasks() is only executed from within the EventLoop as
+        // otherwise we may see unexpected behavior (as size() is only allowed to be called by a single consumer).
+        // See https://github.com/netty/netty/issues/5297
+        return inEventLoop() ? super.pendingTasks() : submit(pendingTasksCallable).syncUninterruptibly().getNow();
+    }
+
+    /**
+     * Returns the percentage of the desired amount of time spent for I/O in the event loop.
+     */
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * Sets the percentage of the desired amount of time spent for I/O in the event loop.  The default value is
+     * {@code 50}, which means the event loop will try to spend the same amount of time for I/O as for non-I/O tasks.
+     */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    private int ioUringWait(boolean oldWakeup) throws IOException {
+        // If a task was submitted when wakenUp value was 1, the task didn't get a chance to produce wakeup event.
+        // So we need to check task queue again before calling io_uring_enter. If we don't, the task might be pended
+        // until io_uring_enter was timed out. It might be pended until idle timeout if IdleStateHandler existed
+        // in pipeline.
+        if (oldWakeup && hasTasks()) {
+            return ioUringWaitNow();
+        }
+        armEventFdRead();
+        armTimeout();
+        submissionQueue.submitAndWait();
+        return completionQueue.ready();
+    }
+
+    private int ioUringWaitNow() throws IOException {
+        submissionQueue.submit();
+        return completionQueue.ready();
+    }
+
+    private void armEventFdRead() {
+        if (!eventFdReadPending) {
+            eventFdReadPending = submissionQueue.addRead(eventFd.intValue(), eventFdBufferAddress, 0, 8,
+                    UserData.encode(LOOP_ID, Native.IORING_OP_READ, 0));
+        }
+    }
+
+    private void armTimeout() {
+        long deadlineNanos = deadlineNanos();
+        if (timeoutPending) {
+            if (deadlineNanos >= timeoutDeadlineNanos) {
+                // The pending timeout will fire early enough, waking up a bit too early is harmless.
+                return;
+            }
+            submissionQueue.addTimeoutRemove(UserData.encode(LOOP_ID, Native.IORING_OP_TIMEOUT, timeoutGeneration),
+                    UserData.encode(LOOP_ID, Native.IORING_OP_TIMEOUT_REMOVE, 0));
+        }
+        long delayNanos = Math.max(0, deadlineNanos - nanoTime());
+        PlatformDependent.putLong(timespecAddress, delayNanos / 1000000000L);
+        PlatformDependent.putLong(timespecAddress + 8, delayNanos % 1000000000L);
+        timeoutGeneration = (timeoutGeneration + 1) & UserData.DATA_MASK;
+        timeoutPending = submissionQueue.addTimeout(timespecAddress,
+                UserData.encode(LOOP_ID, Native.IORING_OP_TIMEOUT, timeoutGeneration));
+        timeoutDeadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    protected void run() {
+        for (;;) {
+            try {
+                int strategy = selectStrategy.calculateStrategy(selectNowSupplier, hasTasks());
+                switch (strategy) {
+                    case SelectStrategy.CONTINUE:
+                        continue;
+                    case SelectStrategy.SELECT:
+                        strategy = ioUringWait(WAKEN_UP_UPDATER.getAndSet(this, 0) == 1);
+
+                        // Same as in EpollEventLoop: wake-up again if wakenUp was set to 1 too early, otherwise the
+                        // next io_uring_enter(...) may block unnecessarily.
+                        if (wakenUp == 1) {
+                            Native.eventFdWrite(eventFd.intValue(), 1L);
+                        }
+                        // fallthrough
+                    default:
+                }
+
+                final int ioRatio = this.ioRatio;
+                if (ioRatio == 100) {
+                    try {
+                        if (strategy > 0) {
+                            processCompletions();
+                        }
+                    } finally {
+                        // Ensure we always run tasks.
+                        runAllTasks();
+                    }
+                } else {
+                    final long ioStartTime = System.nanoTime();
+
+                    try {
+                        if (strategy > 0) {
+                            processCompletions();
+                        }
+                    } finally {
+                        // Ensure we always run tasks.
+                        final long ioTime = System.nanoTime() - ioStartTime;
+                        runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+            // Always handle shutdown even if the loop processing threw an exception.
+            try {
+                if (isShuttingDown()) {
+                    closeAll();
+                    if (confirmShutdown()) {
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                handleLoopException(t);
+            }
+        }
+    }
+
+    private void processCompletions() {
+        processingCompletions = true;
+        try {
+            completionQueue.process(this);
+        } finally {
+            processingCompletions = false;
+        }
+    }
+
+    private static void handleLoopException(Throwable t) {
+        logger.warn("Unexpected exception in the io_uring loop.", t);
+
+        // Prevent possible consecutive immediate failures that lead to
+        // excessive CPU consumption.
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            // Ignore.
+        }
+    }
+
+    private void closeAll() {
+        try {
+            ioUringWaitNow();
+            completionQueue.process(this);
+        } catch (IOException ignore) {
+            // ignore on close
+        }
+        // Using the intermediate collection to prevent ConcurrentModificationException.
+        // In the `close()` method, the channel is deregistered.
+        Collection<AbstractIOUringChannel> array = new ArrayList<AbstractIOUringChannel>(registrations.size());
+
+        for (Registration registration: registrations.values()) {
+            if (registration.isActive()) {
+                array.add(registration.channel);
+            }
+        }
+
+        for (AbstractIOUringChannel ch: array) {
+            ch.unsafe().close(ch.unsafe().voidPromise());
+        }
+    }
+
+    @Override
+    public void handle(int res, int flags, long userData) {
+        int id = UserData.id(userData);
+        byte op = UserData.op(userData);
+        int data = UserData.data(userData);
+        if (id == LOOP_ID) {
+            handleLoopCompletion(op, res, data);
+            return;
+        }
+        Registration registration = registrations.get(id);
+        if (registration == null) {
+            return;
+        }
+        if (--registration.inFlight == 0 && !registration.active) {
+            registrations.remove(id);
+        }
+        final AbstractIOUringChannel ch = registration.channel;
+        AbstractIOUringChannel.AbstractIOUringUnsafe unsafe =
+                (AbstractIOUringChannel.AbstractIOUringUnsafe) ch.unsafe();
+        if (registration.active || !ch.isRegistered() || ch.eventLoop() == this) {
+            unsafe.handle(op, res, data);
+        } else {
+            // The channel was moved to another EventLoop while the operation was in flight, so let the new
+            // EventLoop process the completion to keep all state changes on a single thread.
+            unsafe.forward(op, res, data);
+        }
+    }
+
+    private void handleLoopCompletion(byte op, int res, int data) {
+        switch (op) {
+            case Native.IORING_OP_READ:
+                // consume wakeup event, the read will be submitted again before we block the next time.
+                eventFdReadPending = false;
+                break;
+            case Native.IORING_OP_TIMEOUT:
+                if (data == timeoutGeneration) {
+                    timeoutPending = false;
+                }
+                break;
+            default:
+                // TIMEOUT_REMOVE, nothing to do.
+                break;
+        }
+    }
+
+    @Override
+    protected void cleanup() {
+        try {
+            try {
+                ioUringWaitNow();
+                completionQueue.process(this);
+            } catch (IOException e) {
+                logger.warn("Failed to process the last completions.", e);
+            }
+            try {
+                eventFd.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close the event fd.", e);
+            }
+            ringBuffer.close();
+        } finally {
+            // release native memory
+            cleanedUp = true;
+            for (;;) {
+                IovArray iovArray = iovArrays.poll();
+                if (iovArray == null) {
+                    break;
+                }
+                iovArray.release();
+            }
+            Buffer.free(eventFdBuffer);
+            Buffer.free(timespec);
+        }
+    }
+
+    /**
+     * The registration of an {@link AbstractIOUringChannel} with this {@link EventLoop}. It stays around until all
+     * operations that were submitted via it completed, even if the channel itself was closed or deregistered
+     * before, as the kernel may still write into memory that belongs to the channel until then.
+     */
+    final class Registration {
+        private final int id;
+        private final AbstractIOUringChannel channel;
+        private int inFlight;
+        private boolean active = true;
+
+        private Registration(int id, AbstractIOUringChannel channel) {
+            this.id = id;
+            this.channel = channel;
+        }
+
+        IOUringSubmissionQueue submissionQueue() {
+            return submissionQueue;
+        }
+
+        IOUringEventLoop eventLoop() {
+            return IOUringEventLoop.this;
+        }
+
+        boolean isActive() {
+            return active;
+        }
+
+        /**
+         * Returns the {@code user_data} for an operation of the given type.
+         */
+        long userData(byte op, int data) {
+            return UserData.encode(id, op, data);
+        }
+
+        /**
+         * Must be called with the result of adding an entry to the {@link IOUringSubmissionQueue}, returns the same
+         * result.
+         */
+        boolean track(boolean added) {
+            if (added) {
+                inFlight++;
+            }
+            return added;
+        }
+
+        /**
+         * Mark the registration as inactive, it will be removed once all operations in flight completed.
+         */
+        void deactivate() {
+            assert inEventLoop();
+            active = false;
+            if (inFlight == 0) {
+                registrations.remove(id);
+            }
+        }
+    }
+}
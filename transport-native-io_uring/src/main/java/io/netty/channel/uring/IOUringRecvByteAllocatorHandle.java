@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.unix.PreferredDirectByteBufAllocator;
+import io.netty.util.UncheckedBooleanSupplier;
+import io.netty.util.internal.ObjectUtil;
+
+final class IOUringRecvByteAllocatorHandle implements RecvByteBufAllocator.ExtendedHandle {
+    private final PreferredDirectByteBufAllocator preferredDirectByteBufAllocator =
+            new PreferredDirectByteBufAllocator();
+    private final RecvByteBufAllocator.ExtendedHandle delegate;
+    private final UncheckedBooleanSupplier defaultMaybeMoreDataSupplier = new UncheckedBooleanSupplier() {
+        @Override
+        public boolean get() {
+            return maybeMoreDataToRead();
+        }
+    };
+
+    IOUringRecvByteAllocatorHandle(RecvByteBufAllocator.ExtendedHandle handle) {
+        delegate = ObjectUtil.checkNotNull(handle, "handle");
+    }
+
+    private boolean maybeMoreDataToRead() {
+        // If the kernel filled the whole buffer there is most likely more data waiting in the socket, otherwise we
+        // wait for the next completion.
+        return lastBytesRead() == attemptedBytesRead();
+    }
+
+    @Override
+    public ByteBuf allocate(ByteBufAllocator alloc) {
+        // We need to ensure we always allocate a direct ByteBuf as the kernel can only read into native memory.
+        preferredDirectByteBufAllocator.updateAllocator(alloc);
+        return delegate.allocate(preferredDirectByteBufAllocator);
+    }
+
+    @Override
+    public int guess() {
+        return delegate.guess();
+    }
+
+    @Override
+    public void reset(ChannelConfig config) {
+        delegate.reset(config);
+    }
+
+    @Override
+    public void incMessagesRead(int numMessages) {
+        delegate.incMessagesRead(numMessages);
+    }
+
+    @Override
+    public void lastBytesRead(int bytes) {
+        delegate.lastBytesRead(bytes);
+    }
+
+    @Override
+    public int lastBytesRead() {
+        return delegate.lastBytesRead();
+    }
+
+    @Override
+    public int attemptedBytesRead() {
+        return delegate.attemptedBytesRead();
+    }
+
+    @Override
+    public void attemptedBytesRead(int bytes) {
+        delegate.attemptedBytesRead(bytes);
+    }
+
+    @Override
+    public void readComplete() {
+        delegate.readComplete();
+    }
+
+    @Override
+    public boolean continueReading(UncheckedBooleanSupplier maybeMoreDataSupplier) {
+        return delegate.continueReading(maybeMoreDataSupplier);
+    }
+
+    @Override
+    public boolean continueReading() {
+        // We must override the supplier which determines if there maybe more data to read.
+        return delegate.continueReading(defaultMaybeMoreDataSupplier);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+
+/**
+ * The submission queue of an io_uring instance. Entries are written directly into the memory shared with the
+ * kernel and are only handed over on the next {@link #submit()} / {@link #submitAndWait()}, so many operations are
+ * batched into a single {@code io_uring_enter(...)} call.
+ *
+ * <pre>
+ * struct io_uring_sqe {
+ *     __u8  opcode;      // 0
+ *     __u8  flags;       // 1
+ *     __u16 ioprio;      // 2
+ *     __s32 fd;          // 4
+ *     __u64 off;         // 8
+ *     __u64 addr;        // 16
+ *     __u32 len;         // 24
+ *     __u32 op_flags;    // 28 (rw_flags, poll_events, msg_flags, timeout_flags, accept_flags, ...)
+ *     __u64 user_data;   // 32
+ *     __u64 __pad2[3];   // 40
+ * };
+ * </pre>
+ */
+final class IOUringSubmissionQueue {
+    private static final int SQE_OPCODE_FIELD = 0;
+    private static final int SQE_FLAGS_FIELD = 1;
+    private static final int SQE_IOPRIO_FIELD = 2;
+    private static final int SQE_FD_FIELD = 4;
+    private static final int SQE_OFFSET_FIELD = 8;
+    private static final int SQE_ADDRESS_FIELD = 16;
+    private static final int SQE_LEN_FIELD = 24;
+    private static final int SQE_OP_FLAGS_FIELD = 28;
+    private static final int SQE_USER_DATA_FIELD = 32;
+    private static final int SQE_PAD_FIELD = 40;
+
+    private final long kHeadAddress;
+    private final long kTailAddress;
+    private final int ringMask;
+    private final int ringEntries;
+
+    final long sqesAddress;
+    final long sqesSize;
+    final long ringAddress;
+    final long ringSize;
+    final int ringFd;
+
+    private int head;
+    private int tail;
+    private int pending;
+
+    IOUringSubmissionQueue(long kHeadAddress, long kTailAddress, long kRingMaskAddress, long kRingEntriesAddress,
+                           long arrayAddress, long sqesAddress, long ringAddress, long ringSize, long sqesSize,
+                           int ringFd) {
+        this.kHeadAddress = kHeadAddress;
+        this.kTailAddress = kTailAddress;
+        this.sqesAddress = sqesAddress;
+        this.sqesSize = sqesSize;
+        this.ringAddress = ringAddress;
+        this.ringSize = ringSize;
+        this.ringFd = ringFd;
+        ringMask = PlatformDependent.getInt(kRingMaskAddress);
+        ringEntries = PlatformDependent.getInt(kRingEntriesAddress);
+        head = PlatformDependent.getIntVolatile(kHeadAddress);
+        tail = PlatformDependent.getIntVolatile(kTailAddress);
+
+        // We always fill the entries in order so the index array can be a static identity mapping.
+        for (int i = 0; i < ringEntries; i++) {
+            PlatformDependent.putInt(arrayAddress + i * 4L, i);
+        }
+    }
+
+    /**
+     * Returns the number of entries which were added but not yet submitted to the kernel.
+     */
+    int pending() {
+        return pending;
+    }
+
+    boolean addRead(int fd, long bufferAddress, int pos, int limit, long userData) {
+        return enqueueSqe(Native.IORING_OP_READ, fd, 0, bufferAddress + pos, limit - pos, 0, userData);
+    }
+
+    boolean addWrite(int fd, long bufferAddress, int pos, int limit, long userData) {
+        return enqueueSqe(Native.IORING_OP_WRITE, fd, 0, bufferAddress + pos, limit - pos, 0, userData);
+    }
+
+    boolean addWritev(int fd, long iovecArrayAddress, int length, long userData) {
+        return enqueueSqe(Native.IORING_OP_WRITEV, fd, 0, iovecArrayAddress, length, 0, userData);
+    }
+
+    boolean addPollAdd(int fd, int pollMask, long userData) {
+        return enqueueSqe(Native.IORING_OP_POLL_ADD, fd, 0, 0, 0, pollMask, userData);
+    }
+
+    boolean addAccept(int fd, long addressAddress, long addressLengthAddress, long userData) {
+        return enqueueSqe(Native.IORING_OP_ACCEPT, fd, addressLengthAddress, addressAddress, 0,
+                Native.SOCK_NONBLOCK | Native.SOCK_CLOEXEC, userData);
+    }
+
+    boolean addConnect(int fd, long sockaddrAddress, int sockaddrLength, long userData) {
+        return enqueueSqe(Native.IORING_OP_CONNECT, fd, sockaddrLength, sockaddrAddress, 0, 0, userData);
+    }
+
+    boolean addSendmsg(int fd, long msgHdrAddress, long userData) {
+        return enqueueSqe(Native.IORING_OP_SENDMSG, fd, 0, msgHdrAddress, 1, 0, userData);
+    }
+
+    boolean addRecvmsg(int fd, long msgHdrAddress, long userData) {
+        return enqueueSqe(Native.IORING_OP_RECVMSG, fd, 0, msgHdrAddress, 1, 0, userData);
+    }
+
+    boolean addTimeout(long timespecAddress, long userData) {
+        return enqueueSqe(Native.IORING_OP_TIMEOUT, -1, 0, timespecAddress, 1, 0, userData);
+    }
+
+    boolean addTimeoutRemove(long timeoutUserData, long userData) {
+        return enqueueSqe(Native.IORING_OP_TIMEOUT_REMOVE, -1, 0, timeoutUserData, 0, 0, userData);
+    }
+
+    boolean addCancel(long targetUserData, long userData) {
+        return enqueueSqe(Native.IORING_OP_ASYNC_CANCEL, -1, 0, targetUserData, 0, 0, userData);
+    }
+
+    private boolean enqueueSqe(byte op, int fd, long offset, long address, int length, int opFlags,
+                               long userData) {
+        if (tail - head == ringEntries) {
+            head = PlatformDependent.getIntVolatile(kHeadAddress);
+            if (tail - head == ringEntries) {
+                // The ring is full, hand over what we have so far to make room.
+                try {
+                    submit();
+                } catch (IOException e) {
+                    return false;
+                }
+                head = PlatformDependent.getIntVolatile(kHeadAddress);
+                if (tail - head == ringEntries) {
+                    return false;
+                }
+            }
+        }
+        long sqe = sqesAddress + (tail & ringMask) * (long) Native.SIZEOF_IO_URING_SQE;
+        PlatformDependent.putByte(sqe + SQE_OPCODE_FIELD, op);
+        PlatformDependent.putByte(sqe + SQE_FLAGS_FIELD, (byte) 0);
+        PlatformDependent.putShort(sqe + SQE_IOPRIO_FIELD, (short) 0);
+        PlatformDependent.putInt(sqe + SQE_FD_FIELD, fd);
+        PlatformDependent.putLong(sqe + SQE_OFFSET_FIELD, offset);
+        PlatformDependent.putLong(sqe + SQE_ADDRESS_FIELD, address);
+        PlatformDependent.putInt(sqe + SQE_LEN_FIELD, length);
+        PlatformDependent.putInt(sqe + SQE_OP_FLAGS_FIELD, opFlags);
+        PlatformDependent.putLong(sqe + SQE_USER_DATA_FIELD, userData);
+        PlatformDependent.setMemory(sqe + SQE_PAD_FIELD, Native.SIZEOF_IO_URING_SQE - SQE_PAD_FIELD, (byte) 0);
+
+        // Publish the entry, the kernel will only look at it once the tail was moved.
+        PlatformDependent.putIntOrdered(kTailAddress, ++tail);
+        pending++;
+        return true;
+    }
+
+    /**
+     * Hand over all pending entries to the kernel without waiting for any completion.
+     */
+    int submit() throws IOException {
+        return submit(0, 0);
+    }
+
+    /**
+     * Hand over all pending entries to the kernel and block until at least one completion is ready.
+     */
+    int submitAndWait() throws IOException {
+        return submit(1, Native.IORING_ENTER_GETEVENTS);
+    }
+
+    private int submit(int minComplete, int flags) throws IOException {
+        int toSubmit = pending;
+        if (toSubmit == 0 && minComplete == 0) {
+            return 0;
+        }
+        int submitted = Native.ioUringEnter(ringFd, toSubmit, minComplete, flags);
+        pending -= submitted;
+        return submitted;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.unix.Buffer;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Writes a {@code struct msghdr} with a single {@code struct iovec} to native memory so it can be used for
+ * {@code sendmsg(...)} / {@code recvmsg(...)} submissions.
+ *
+ * <pre>
+ * struct msghdr {
+ *     void         *msg_name;
+ *     socklen_t     msg_namelen;
+ *     struct iovec *msg_iov;
+ *     size_t        msg_iovlen;
+ *     void         *msg_control;
+ *     size_t        msg_controllen;
+ *     int           msg_flags;
+ * };
+ * </pre>
+ *
+ * Every field is aligned to the size of an address.
+ */
+final class MsgHdr {
+    private static final int ADDRESS_SIZE = Buffer.addressSize();
+    private static final int MSG_NAME_FIELD = 0;
+    private static final int MSG_NAMELEN_FIELD = ADDRESS_SIZE;
+    private static final int MSG_IOV_FIELD = 2 * ADDRESS_SIZE;
+    private static final int MSG_IOVLEN_FIELD = 3 * ADDRESS_SIZE;
+    private static final int MSG_CONTROL_FIELD = 4 * ADDRESS_SIZE;
+    private static final int MSG_CONTROLLEN_FIELD = 5 * ADDRESS_SIZE;
+    private static final int MSG_FLAGS_FIELD = 6 * ADDRESS_SIZE;
+
+    static final int SIZE = 7 * ADDRESS_SIZE;
+    static final int IOV_SIZE = 2 * ADDRESS_SIZE;
+
+    /**
+     * The size of the memory that is needed for a {@code struct msghdr}, its {@code struct iovec} and the
+     * {@code struct sockaddr} it points to, rounded up to a power of two.
+     */
+    static final int SLOT_SIZE = 128;
+
+    static {
+        assert SIZE + IOV_SIZE + SockaddrIn.MAX_ADDRESS_LENGTH <= SLOT_SIZE;
+    }
+
+    /**
+     * Write a {@code struct msghdr} to the start of the slot at {@code memory}. The {@code struct iovec} and the
+     * {@code struct sockaddr} are stored in the same slot right behind it.
+     */
+    static void write(long memory, long bufferAddress, int length, int addressLength) {
+        long iov = memory + SIZE;
+        long sockaddr = iov + IOV_SIZE;
+        putAddress(iov, bufferAddress);
+        putAddress(iov + ADDRESS_SIZE, length);
+
+        putAddress(memory + MSG_NAME_FIELD, addressLength == 0 ? 0 : sockaddr);
+        PlatformDependent.putInt(memory + MSG_NAMELEN_FIELD, addressLength);
+        putAddress(memory + MSG_IOV_FIELD, iov);
+        putAddress(memory + MSG_IOVLEN_FIELD, 1);
+        putAddress(memory + MSG_CONTROL_FIELD, 0);
+        putAddress(memory + MSG_CONTROLLEN_FIELD, 0);
+        PlatformDependent.putInt(memory + MSG_FLAGS_FIELD, 0);
+    }
+
+    /**
+     * Returns the address of the {@code struct sockaddr} of the slot at {@code memory}.
+     */
+    static long sockaddr(long memory) {
+        return memory + SIZE + IOV_SIZE;
+    }
+
+    private static void putAddress(long memory, long value) {
+        if (ADDRESS_SIZE == 8) {
+            PlatformDependent.putLong(memory, value);
+        } else {
+            PlatformDependent.putInt(memory, (int) value);
+        }
+    }
+
+    private MsgHdr() {
+        // utility
+    }
+}
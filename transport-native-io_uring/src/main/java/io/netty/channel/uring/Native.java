@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.channel.unix.FileDescriptor;
+import io.netty.channel.unix.Socket;
+import io.netty.util.internal.NativeLibraryLoader;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.ThrowableUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import static io.netty.channel.unix.Errors.ERRNO_EAGAIN_NEGATIVE;
+import static io.netty.channel.unix.Errors.newIOException;
+
+/**
+ * Native helper methods and the io_uring ABI constants used by this transport.
+ * <strong>Internal usage only!</strong>
+ */
+final class Native {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Native.class);
+
+    static {
+        try {
+            // First, try calling a side-effect free JNI method to see if the library was already
+            // loaded by the application.
+            sizeofIoUringSqe();
+        } catch (UnsatisfiedLinkError ignore) {
+            // The library was not previously loaded, load it now.
+            loadNativeLibrary();
+        }
+        Socket.initialize();
+    }
+
+    static final int DEFAULT_RING_SIZE = Math.max(64, SystemPropertyUtil.getInt("io.netty.uring.ringSize", 4096));
+
+    // The opcodes and flags below are part of the stable kernel ABI (see include/uapi/linux/io_uring.h).
+    static final byte IORING_OP_NOP = 0;
+    static final byte IORING_OP_WRITEV = 2;
+    static final byte IORING_OP_POLL_ADD = 6;
+    static final byte IORING_OP_SENDMSG = 9;
+    static final byte IORING_OP_RECVMSG = 10;
+    static final byte IORING_OP_TIMEOUT = 11;
+    static final byte IORING_OP_TIMEOUT_REMOVE = 12;
+    static final byte IORING_OP_ACCEPT = 13;
+    static final byte IORING_OP_ASYNC_CANCEL = 14;
+    static final byte IORING_OP_CONNECT = 16;
+    static final byte IORING_OP_READ = 22;
+    static final byte IORING_OP_WRITE = 23;
+
+    static final int IORING_ENTER_GETEVENTS = 1;
+
+    static final int POLLIN = 0x0001;
+    static final int POLLOUT = 0x0004;
+    static final int POLLERR = 0x0008;
+    static final int POLLHUP = 0x0010;
+    static final int POLLRDHUP = 0x2000;
+
+    // The result of operations which were cancelled via IORING_OP_ASYNC_CANCEL (-ECANCELED on linux).
+    static final int ERRNO_ECANCELED_NEGATIVE = -125;
+
+    static final int SOCK_NONBLOCK = 0x800;
+    static final int SOCK_CLOEXEC = 0x80000;
+
+    static final int SIZEOF_IO_URING_SQE = sizeofIoUringSqe();
+    static final int SIZEOF_IO_URING_CQE = sizeofIoUringCqe();
+
+    static RingBuffer createRingBuffer(int ringSize) {
+        long[] values = ioUringSetup(ringSize);
+        assert values.length == 17;
+        IOUringSubmissionQueue submissionQueue = new IOUringSubmissionQueue(
+                values[0], values[1], values[2], values[3], values[4], values[5], values[6], values[7], values[8],
+                (int) values[16]);
+        IOUringCompletionQueue completionQueue = new IOUringCompletionQueue(
+                values[9], values[10], values[11], values[12], values[13], values[14], values[15], (int) values[16]);
+        return new RingBuffer(submissionQueue, completionQueue);
+    }
+
+    /**
+     * Submit {@code toSubmit} entries and optionally wait for {@code minComplete} completions. Returns the number
+     * of submitted entries, which may be {@code 0} if the kernel was not able to accept more work right now.
+     */
+    static int ioUringEnter(int ringFd, int toSubmit, int minComplete, int flags) throws IOException {
+        int res = ioUringEnter0(ringFd, toSubmit, minComplete, flags);
+        if (res >= 0) {
+            return res;
+        }
+        if (res == ERRNO_EAGAIN_NEGATIVE) {
+            // The kernel is out of resources, just try again later.
+            return 0;
+        }
+        throw newIOException("io_uring_enter", res);
+    }
+
+    static FileDescriptor newEventFd() {
+        return new FileDescriptor(eventFd());
+    }
+
+    private static native long[] ioUringSetup(int entries);
+    private static native int ioUringEnter0(int ringFd, int toSubmit, int minComplete, int flags);
+    static native void ioUringExit(long sqRingAddress, long sqRingSize, long cqRingAddress, long cqRingSize,
+                                   long sqesAddress, long sqesSize, int ringFd);
+
+    private static native int eventFd();
+    static native void eventFdWrite(int fd, long value);
+
+    static native boolean isIPv6(int fd);
+
+    private static native int sizeofIoUringSqe();
+    private static native int sizeofIoUringCqe();
+
+    private static void loadNativeLibrary() {
+        String name = SystemPropertyUtil.get("os.name").toLowerCase(Locale.UK).trim();
+        if (!name.startsWith("linux")) {
+            throw new IllegalStateException("Only supported on Linux");
+        }
+        String staticLibName = "netty_transport_native_io_uring";
+        String sharedLibName = staticLibName + '_' + PlatformDependent.normalizedArch();
+        ClassLoader cl = PlatformDependent.getClassLoader(Native.class);
+        try {
+            NativeLibraryLoader.load(sharedLibName, cl);
+        } catch (UnsatisfiedLinkError e1) {
+            try {
+                NativeLibraryLoader.load(staticLibName, cl);
+                logger.debug("Failed to load {}", sharedLibName, e1);
+            } catch (UnsatisfiedLinkError e2) {
+                ThrowableUtil.addSuppressed(e1, e2);
+                throw e1;
+            }
+        }
+    }
+
+    private Native() {
+        // utility
+    }
+}
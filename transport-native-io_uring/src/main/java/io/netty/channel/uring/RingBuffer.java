@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * The submission and completion queue of one io_uring instance.
+ */
+final class RingBuffer {
+    private final IOUringSubmissionQueue submissionQueue;
+    private final IOUringCompletionQueue completionQueue;
+
+    RingBuffer(IOUringSubmissionQueue submissionQueue, IOUringCompletionQueue completionQueue) {
+        this.submissionQueue = submissionQueue;
+        this.completionQueue = completionQueue;
+    }
+
+    IOUringSubmissionQueue submissionQueue() {
+        return submissionQueue;
+    }
+
+    IOUringCompletionQueue completionQueue() {
+        return completionQueue;
+    }
+
+    int fd() {
+        return submissionQueue.ringFd;
+    }
+
+    /**
+     * Unmap the rings and close the io_uring file descriptor. Any operation still in flight is cancelled by the
+     * kernel.
+     */
+    void close() {
+        Native.ioUringExit(submissionQueue.ringAddress, submissionQueue.ringSize,
+                completionQueue.ringAddress, completionQueue.ringSize,
+                submissionQueue.sqesAddress, submissionQueue.sqesSize, submissionQueue.ringFd);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Reads and writes {@code struct sockaddr_in} / {@code struct sockaddr_in6} directly from / to native memory so the
+ * addresses can be passed to the kernel as part of a submission.
+ *
+ * <pre>
+ * struct sockaddr_in {                 struct sockaddr_in6 {
+ *     sa_family_t    sin_family; // 0      sa_family_t     sin6_family;   // 0
+ *     in_port_t      sin_port;   // 2      in_port_t       sin6_port;     // 2
+ *     struct in_addr sin_addr;   // 4      uint32_t        sin6_flowinfo; // 4
+ * };                                       struct in6_addr sin6_addr;     // 8
+ *                                          uint32_t        sin6_scope_id; // 24
+ *                                      };
+ * </pre>
+ */
+final class SockaddrIn {
+    static final int IPV4_ADDRESS_LENGTH = 16;
+    static final int IPV6_ADDRESS_LENGTH = 28;
+    static final int MAX_ADDRESS_LENGTH = IPV6_ADDRESS_LENGTH;
+
+    private static final short AF_INET = 2;
+    private static final short AF_INET6 = 10;
+    private static final byte[] IPV4_MAPPED_IPV6_PREFIX = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff };
+
+    /**
+     * Write the given address to {@code memory} and return the length of the written {@code struct sockaddr}.
+     */
+    static int write(boolean ipv6, long memory, InetSocketAddress address) {
+        InetAddress addr = address.getAddress();
+        if (ipv6) {
+            PlatformDependent.setMemory(memory, IPV6_ADDRESS_LENGTH, (byte) 0);
+            PlatformDependent.putShort(memory, AF_INET6);
+            PlatformDependent.putShort(memory + 2, toNetworkOrder(address.getPort()));
+            byte[] bytes = addr.getAddress();
+            if (addr instanceof Inet4Address) {
+                copy(IPV4_MAPPED_IPV6_PREFIX, memory + 8);
+                copy(bytes, memory + 8 + IPV4_MAPPED_IPV6_PREFIX.length);
+            } else {
+                copy(bytes, memory + 8);
+                PlatformDependent.putInt(memory + 24, ((Inet6Address) addr).getScopeId());
+            }
+            return IPV6_ADDRESS_LENGTH;
+        }
+        if (!(addr instanceof Inet4Address)) {
+            throw new IllegalArgumentException("IPv6 address used on an IPv4 socket: " + address);
+        }
+        PlatformDependent.setMemory(memory, IPV4_ADDRESS_LENGTH, (byte) 0);
+        PlatformDependent.putShort(memory, AF_INET);
+        PlatformDependent.putShort(memory + 2, toNetworkOrder(address.getPort()));
+        copy(addr.getAddress(), memory + 4);
+        return IPV4_ADDRESS_LENGTH;
+    }
+
+    /**
+     * Read the {@code struct sockaddr} stored at {@code memory}. IPv4-mapped IPv6 addresses are returned as
+     * {@link Inet4Address}es.
+     */
+    static InetSocketAddress read(long memory) throws UnknownHostException {
+        short family = PlatformDependent.getShort(memory);
+        int port = fromNetworkOrder(PlatformDependent.getShort(memory + 2));
+        if (family == AF_INET) {
+            byte[] bytes = new byte[4];
+            read(memory + 4, bytes);
+            return new InetSocketAddress(InetAddress.getByAddress(bytes), port);
+        }
+        if (family == AF_INET6) {
+            byte[] bytes = new byte[16];
+            read(memory + 8, bytes);
+            if (isIPv4Mapped(bytes)) {
+                byte[] ipv4 = new byte[4];
+                System.arraycopy(bytes, IPV4_MAPPED_IPV6_PREFIX.length, ipv4, 0, ipv4.length);
+                return new InetSocketAddress(InetAddress.getByAddress(ipv4), port);
+            }
+            int scopeId = PlatformDependent.getInt(memory + 24);
+            return new InetSocketAddress(Inet6Address.getByAddress(null, bytes, scopeId), port);
+        }
+        throw new UnknownHostException("Unsupported address family: " + family);
+    }
+
+    private static boolean isIPv4Mapped(byte[] bytes) {
+        for (int i = 0; i < IPV4_MAPPED_IPV6_PREFIX.length; i++) {
+            if (bytes[i] != IPV4_MAPPED_IPV6_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void copy(byte[] bytes, long memory) {
+        for (int i = 0; i < bytes.length; i++) {
+            PlatformDependent.putByte(memory + i, bytes[i]);
+        }
+    }
+
+    private static void read(long memory, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = PlatformDependent.getByte(memory + i);
+        }
+    }
+
+    private static short toNetworkOrder(int port) {
+        short value = (short) port;
+        return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? value : Short.reverseBytes(value);
+    }
+
+    private static int fromNetworkOrder(short port) {
+        short value = PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? port : Short.reverseBytes(port);
+        return value & 0xFFFF;
+    }
+
+    private SockaddrIn() {
+        // utility
+    }
+}
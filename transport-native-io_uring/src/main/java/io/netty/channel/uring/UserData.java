@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.uring;
+
+/**
+ * Encodes the {@code user_data} that is attached to every submission and returned with its completion.
+ *
+ * <pre>
+ * | 32 bits registration id | 8 bits opcode | 24 bits operation specific data |
+ * </pre>
+ *
+ * The registration id is allocated by the {@link IOUringEventLoop} and never reused while operations are in
+ * flight, so a completion can never be routed to the wrong channel even if the file descriptor number was reused.
+ */
+final class UserData {
+    static final int DATA_MASK = 0xFFFFFF;
+
+    static long encode(int id, byte op, int data) {
+        return ((long) id << 32) | ((op & 0xFFL) << 24) | (data & DATA_MASK);
+    }
+
+    static int id(long userData) {
+        return (int) (userData >>> 32);
+    }
+
+    static byte op(long userData) {
+        return (byte) (userData >>> 24);
+    }
+
+    static int data(long userData) {
+        return (int) userData & DATA_MASK;
+    }
+
+    private UserData() {
+        // utility
+    }
+}
@@ -13,6 +13,9 @@
  * License for the specific language governing permissions and limitations
  * under the License.
  */
+#include <errno.h>
+#include <stdint.h>
+#include <sys/mman.h>
 #include "netty_unix_jni.h"
 #include "netty_unix_util.h"
 #include "netty_unix_buffer.h"
@@ -26,12 +29,58 @@ static jint netty_unix_buffer_addressSize0(JNIEnv* env, jclass clazz) {
    return (jint) sizeof(int*);
 }
 
+static jlong netty_unix_buffer_mmapHugePages0(JNIEnv* env, jclass clazz, jlong size, jlong hugePageSize, jboolean hugetlb) {
+#if defined(MAP_HUGETLB) && defined(MADV_HUGEPAGE)
+    void* addr;
+    if (hugetlb == JNI_TRUE) {
+        // The memory is taken from the reserved huge pages, which are always aligned.
+        addr = mmap(NULL, (size_t) size, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS | MAP_HUGETLB, -1, 0);
+        return addr == MAP_FAILED ? -errno : (jlong) addr;
+    }
+
+    // Transparent huge pages can only back aligned memory, so map more than needed and unmap the unaligned parts.
+    size_t mapped = (size_t) (size + hugePageSize);
+    addr = mmap(NULL, mapped, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+    if (addr == MAP_FAILED) {
+        return -errno;
+    }
+    uintptr_t start = (uintptr_t) addr;
+    uintptr_t aligned = (start + hugePageSize - 1) & ~((uintptr_t) hugePageSize - 1);
+    uintptr_t end = aligned + (uintptr_t) size;
+    if (aligned != start) {
+        munmap(addr, aligned - start);
+    }
+    if (start + mapped != end) {
+        munmap((void*) end, start + mapped - end);
+    }
+    if (madvise((void*) aligned, (size_t) size, MADV_HUGEPAGE) == -1) {
+        int err = errno;
+        munmap((void*) aligned, (size_t) size);
+        return -err;
+    }
+    return (jlong) aligned;
+#else
+    return -ENOSYS;
+#endif /* defined(MAP_HUGETLB) && defined(MADV_HUGEPAGE) */
+}
+
+static jint netty_unix_buffer_munmap0(JNIEnv* env, jclass clazz, jlong address, jlong size) {
+    return munmap((void*) (intptr_t) address, (size_t) size) == -1 ? -errno : 0;
+}
+
+static jobject netty_unix_buffer_newDirectBuffer0(JNIEnv* env, jclass clazz, jlong address, jint capacity) {
+    return (*env)->NewDirectByteBuffer(env, (void*) (intptr_t) address, (jlong) capacity);
+}
+
 // JNI Registered Methods End
 
 // JNI Method Registration Table Begin
 static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "memoryAddress0", "(Ljava/nio/ByteBuffer;)J", (void *) netty_unix_buffer_memoryAddress0 },
-  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 }
+  { "addressSize0", "()I", (void *) netty_unix_buffer_addressSize0 },
+  { "mmapHugePages0", "(JJZ)J", (void *) netty_unix_buffer_mmapHugePages0 },
+  { "munmap0", "(JJ)I", (void *) netty_unix_buffer_munmap0 },
+  { "newDirectBuffer0", "(JI)Ljava/nio/ByteBuffer;", (void *) netty_unix_buffer_newDirectBuffer0 }
 };
 static const jint statically_referenced_fixed_method_table_size = sizeof(statically_referenced_fixed_method_table) / sizeof(statically_referenced_fixed_method_table[0]);
 // JNI Method Registration Table End
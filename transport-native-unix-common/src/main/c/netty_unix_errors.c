@@ -110,6 +110,10 @@ static jint netty_unix_errors_errnoEINPROGRESS(JNIEnv* env, jclass clazz) {
     return EINPROGRESS;
 }
 
+static jint netty_unix_errors_errnoENOSYS(JNIEnv* env, jclass clazz) {
+    return ENOSYS;
+}
+
 static jint netty_unix_errors_errorECONNREFUSED(JNIEnv* env, jclass clazz) {
     return ECONNREFUSED;
 }
@@ -141,6 +145,7 @@ static const JNINativeMethod statically_referenced_fixed_method_table[] = {
   { "errnoEAGAIN", "()I", (void *) netty_unix_errors_errnoEAGAIN },
   { "errnoEWOULDBLOCK", "()I", (void *) netty_unix_errors_errnoEWOULDBLOCK },
   { "errnoEINPROGRESS", "()I", (void *) netty_unix_errors_errnoEINPROGRESS },
+  { "errnoENOSYS", "()I", (void *) netty_unix_errors_errnoENOSYS },
   { "errorECONNREFUSED", "()I", (void *) netty_unix_errors_errorECONNREFUSED },
   { "errorEISCONN", "()I", (void *) netty_unix_errors_errorEISCONN },
   { "errorEALREADY", "()I", (void *) netty_unix_errors_errorEALREADY },
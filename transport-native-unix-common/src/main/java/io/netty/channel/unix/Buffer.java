@@ -62,7 +62,23 @@ public final class Buffer {
         return addressSize0();
     }
 
+    /**
+     * Returns a direct {@link ByteBuffer} which uses the given native memory, which is not freed by the
+     * {@link ByteBuffer}.
+     */
+    static ByteBuffer directBuffer(long memoryAddress, int capacity) {
+        if (PlatformDependent.hasDirectBufferNoCleanerConstructor()) {
+            return PlatformDependent.directBuffer(memoryAddress, capacity);
+        }
+        return newDirectBuffer0(memoryAddress, capacity);
+    }
+
     // If Unsafe can not be used we will need to do JNI calls.
     private static native int addressSize0();
     private static native long memoryAddress0(ByteBuffer buffer);
+    private static native ByteBuffer newDirectBuffer0(long memoryAddress, int capacity);
+
+    // Returns the address of the mapped memory or a negative errno.
+    static native long mmapHugePages0(long size, long hugePageSize, boolean hugetlb);
+    static native int munmap0(long memoryAddress, long size);
 }
@@ -38,6 +38,7 @@ final class ErrorsStaticallyReferencedJniMethods {
     static native int errnoEAGAIN();
     static native int errnoEWOULDBLOCK();
     static native int errnoEINPROGRESS();
+    static native int errnoENOSYS();
     static native int errorECONNREFUSED();
     static native int errorEISCONN();
     static native int errorEALREADY();
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel.unix;
+
+import io.netty.buffer.DirectChunkAllocator;
+import io.netty.buffer.PoolChunkMemoryMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link DirectChunkAllocator} which backs the chunks of the direct arenas of a {@link PooledByteBufAllocator} by
+ * huge pages of {@value #HUGE_PAGE_SIZE} bytes, so much fewer TLB entries are needed to access the buffers of many
+ * connections. The memory of each chunk is rounded up to a multiple of the huge page size, so the chunk size of the
+ * {@link PooledByteBufAllocator} should be one as well, which is the case for the default of 16 MiB.
+ * <p>
+ * The memory is either taken from the huge pages which were reserved for {@code MAP_HUGETLB} via
+ * {@code /proc/sys/vm/nr_hugepages}, or it is mapped with {@code madvise(MADV_HUGEPAGE)} so the kernel backs it by
+ * transparent huge pages where possible, which requires {@code /sys/kernel/mm/transparent_hugepage/enabled} to be
+ * {@code madvise} or {@code always}. If the memory of a chunk can not be mapped, like when there are not enough
+ * reserved huge pages left or on other systems than Linux, the chunk is allocated as usual, which is reported by
+ * {@link PoolChunkMemoryMetric#memoryBacking()}.
+ * <p>
+ * This requires the native library of a transport (like epoll) to be loaded, and the memory is not accounted for by
+ * {@code -Dio.netty.maxDirectMemory}.
+ */
+public final class HugePageChunkAllocator implements DirectChunkAllocator {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HugePageChunkAllocator.class);
+
+    /**
+     * The size of the huge pages, which is the default on x86_64 and aarch64 Linux systems.
+     */
+    public static final int HUGE_PAGE_SIZE = 2 * 1024 * 1024;
+
+    private final boolean hugetlb;
+    private volatile boolean unavailable;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param hugetlb {@code true} to use the reserved huge pages ({@code MAP_HUGETLB}), {@code false} to use
+     *                transparent huge pages ({@code MADV_HUGEPAGE}).
+     */
+    public HugePageChunkAllocator(boolean hugetlb) {
+        this.hugetlb = hugetlb;
+    }
+
+    @Override
+    public String memoryBacking() {
+        return hugetlb ? "hugetlb" : "thp";
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        if (unavailable) {
+            return null;
+        }
+        long size = mappingSize(capacity);
+        long memoryAddress;
+        try {
+            memoryAddress = Buffer.mmapHugePages0(size, HUGE_PAGE_SIZE, hugetlb);
+        } catch (UnsatisfiedLinkError e) {
+            unavailable = true;
+            logger.debug("Native library not loaded, falling back to direct memory for the chunks", e);
+            return null;
+        }
+        if (memoryAddress == Errors.ERRNO_ENOSYS_NEGATIVE) {
+            // Huge pages are not supported by this system, so there is no need to try again for the next chunk.
+            unavailable = true;
+            logger.debug("Huge pages are not supported, falling back to direct memory for the chunks");
+            return null;
+        }
+        if (memoryAddress < 0) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to map {} bytes of {} memory, falling back to direct memory for the chunk",
+                        size, memoryBacking(), Errors.newIOException("mmap", (int) memoryAddress));
+            }
+            return null;
+        }
+        return Buffer.directBuffer(memoryAddress, capacity);
+    }
+
+    @Override
+    public void free(ByteBuffer memory) {
+        int res = Buffer.munmap0(Buffer.memoryAddress(memory), mappingSize(memory.capacity()));
+        if (res < 0) {
+            logger.warn("Failed to unmap the memory of a chunk", Errors.newIOException("munmap", res));
+        }
+    }
+
+    private static long mappingSize(int capacity) {
+        return (capacity + (long) HUGE_PAGE_SIZE - 1) & -HUGE_PAGE_SIZE;
+    }
+}
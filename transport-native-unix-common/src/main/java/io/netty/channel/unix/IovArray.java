@@ -85,26 +85,39 @@ public final class IovArray implements MessageProcessor {
      * have been added.
      */
     public boolean add(ByteBuf buf) {
+        return add(buf, buf.readerIndex(), buf.readableBytes());
+    }
+
+    /**
+     * Add the region of a {@link ByteBuf} which starts at {@code offset} and spans {@code len} bytes to this
+     * {@link IovArray}. This can be used to describe the writable space of a {@link ByteBuf} for scattering reads.
+     * @param buf The {@link ByteBuf} to add.
+     * @param offset The index of the first byte in {@code buf} to add.
+     * @param len The number of bytes to add.
+     * @return {@code true} if the entire region has been added to this {@link IovArray}. Note in the event
+     * that {@link ByteBuf} is a {@link CompositeByteBuf} {@code false} may be returned even if some of the components
+     * have been added.
+     */
+    public boolean add(ByteBuf buf, int offset, int len) {
         if (count == IOV_MAX) {
             // No more room!
             return false;
         } else if (buf.nioBufferCount() == 1) {
-            final int len = buf.readableBytes();
             if (len == 0) {
                 return true;
             }
             if (buf.hasMemoryAddress()) {
-                return add(buf.memoryAddress(), buf.readerIndex(), len);
+                return add(buf.memoryAddress(), offset, len);
             } else {
-                ByteBuffer nioBuffer = buf.internalNioBuffer(buf.readerIndex(), len);
+                ByteBuffer nioBuffer = buf.internalNioBuffer(offset, len);
                 return add(Buffer.memoryAddress(nioBuffer), nioBuffer.position(), len);
             }
         } else {
-            ByteBuffer[] buffers = buf.nioBuffers();
+            ByteBuffer[] buffers = buf.nioBuffers(offset, len);
             for (ByteBuffer nioBuffer : buffers) {
-                final int len = nioBuffer.remaining();
-                if (len != 0 &&
-                    (!add(Buffer.memoryAddress(nioBuffer), nioBuffer.position(), len) || count == IOV_MAX)) {
+                final int remaining = nioBuffer.remaining();
+                if (remaining != 0 &&
+                    (!add(Buffer.memoryAddress(nioBuffer), nioBuffer.position(), remaining) || count == IOV_MAX)) {
                     return false;
                 }
             }
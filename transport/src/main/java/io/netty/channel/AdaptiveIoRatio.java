@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Adjusts the ratio of the time an {@link EventLoop} spends for I/O to the time it spends for its tasks, so the
+ * tasks wait about a target latency in the task queue.
+ * <p>
+ * The latency is measured by a probe task, which is added to the task queue once the previous probe ran and only if
+ * there are other pending tasks, so an idle {@link EventLoop} is not woken up by the probes. When the average
+ * latency is above the target, the ratio is lowered so more time is left for the tasks. When it is well below the
+ * target and there are channels ready for I/O, the ratio is raised again.
+ * <p>
+ * Only {@link #nextIoRatio(int, boolean)} must be called by the thread of the {@link EventLoop}, the metrics can be
+ * read by any thread.
+ */
+@UnstableApi
+public final class AdaptiveIoRatio {
+
+    private static final int MIN_IO_RATIO = 1;
+    // 100 means that all the tasks are run, so it is never used as it can not be adjusted by the latency.
+    private static final int MAX_IO_RATIO = 99;
+    private static final int IO_RATIO_STEP = 2;
+
+    private final EventExecutor executor;
+    private final long targetTaskLatencyNanos;
+    private final Runnable probe = new Runnable() {
+        @Override
+        public void run() {
+            probePending = false;
+            recordTaskLatency(System.nanoTime() - probeTime);
+        }
+    };
+
+    // Only accessed by the thread of the executor.
+    private boolean probePending;
+    private long probeTime;
+    private int readyIo;
+
+    private volatile long taskLatencyNanos;
+    private volatile int ioRatio;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param executor          the {@link EventExecutor} whose tasks are probed.
+     * @param targetTaskLatency the latency the tasks should wait about in the task queue.
+     * @param unit              the {@link TimeUnit} of {@code targetTaskLatency}.
+     * @param initialIoRatio    the ratio to start with.
+     */
+    public AdaptiveIoRatio(EventExecutor executor, long targetTaskLatency, TimeUnit unit, int initialIoRatio) {
+        this.executor = checkNotNull(executor, "executor");
+        targetTaskLatencyNanos = checkNotNull(unit, "unit").toNanos(checkPositive(targetTaskLatency,
+                                                                                  "targetTaskLatency"));
+        ioRatio = Math.max(MIN_IO_RATIO, Math.min(MAX_IO_RATIO, initialIoRatio));
+    }
+
+    /**
+     * Returns the ratio the {@link EventLoop} should use for its current iteration, and probes the task queue if
+     * needed.
+     *
+     * @param readyIo  the number of channels which are ready for I/O in the current iteration.
+     * @param hasTasks {@code true} if there are pending tasks.
+     */
+    public int nextIoRatio(int readyIo, boolean hasTasks) {
+        assert executor.inEventLoop();
+
+        this.readyIo = readyIo;
+        if (!probePending) {
+            if (hasTasks) {
+                if (!executor.isShuttingDown()) {
+                    probePending = true;
+                    probeTime = System.nanoTime();
+                    executor.execute(probe);
+                }
+            } else {
+                // Nothing is waiting.
+                recordTaskLatency(0);
+            }
+        }
+        return ioRatio;
+    }
+
+    private void recordTaskLatency(long latencyNanos) {
+        // Exponentially weighted moving average, so a single slow task does not swing the ratio.
+        long taskLatencyNanos = this.taskLatencyNanos;
+        taskLatencyNanos += (latencyNanos - taskLatencyNanos) >> 3;
+        this.taskLatencyNanos = taskLatencyNanos;
+
+        int ioRatio = this.ioRatio;
+        if (taskLatencyNanos > targetTaskLatencyNanos) {
+            ioRatio = Math.max(MIN_IO_RATIO, ioRatio - IO_RATIO_STEP);
+        } else if (taskLatencyNanos < targetTaskLatencyNanos >>> 1 && readyIo > 0) {
+            ioRatio = Math.min(MAX_IO_RATIO, ioRatio + IO_RATIO_STEP);
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    /**
+     * Returns the percentage of the desired amount of time spent for I/O which was chosen last.
+     */
+    public int ioRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * Returns the average latency of the tasks in the task queue.
+     */
+    public long taskLatency(TimeUnit unit) {
+        return unit.convert(taskLatencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the latency the tasks should wait about in the task queue.
+     */
+    public long targetTaskLatency(TimeUnit unit) {
+        return unit.convert(targetTaskLatencyNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -26,6 +26,7 @@ import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.InternalThreadLocalMap;
 import io.netty.util.internal.PromiseNotificationUtil;
 import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.UnstableApi;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
@@ -274,6 +275,39 @@ public final class ChannelOutboundBuffer {
         return remove0(cause, true);
     }
 
+    /**
+     * Will remove the current message without releasing it and without notifying its {@link ChannelPromise}. The
+     * ownership of both the message and the returned {@link ChannelPromise} is transferred to the caller which is
+     * responsible to release the message and complete the {@link ChannelPromise} once the write is really done. This
+     * is useful for transports which need to keep the memory of a message alive after it was handed to the OS.
+     *
+     * @return the {@link ChannelPromise} of the removed message or {@code null} if no flushed message exists or the
+     * message was cancelled before (in which case it was released already).
+     */
+    @UnstableApi
+    public ChannelPromise removeAndDetach() {
+        Entry e = flushedEntry;
+        if (e == null) {
+            clearNioBuffers();
+            return null;
+        }
+        ChannelPromise promise = e.promise;
+        int size = e.pendingSize;
+        boolean cancelled = e.cancelled;
+
+        removeEntry(e);
+
+        if (!cancelled) {
+            // only decrement if it was not canceled before.
+            decrementPendingOutboundBytes(size, false, true);
+        }
+
+        // recycle the entry
+        e.recycle();
+
+        return cancelled ? null : promise;
+    }
+
     private boolean remove0(Throwable cause, boolean notifyWritability) {
         Entry e = flushedEntry;
         if (e == null) {
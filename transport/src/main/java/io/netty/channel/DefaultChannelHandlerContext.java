@@ -23,11 +23,7 @@ final class DefaultChannelHandlerContext extends AbstractChannelHandlerContext {
 
     DefaultChannelHandlerContext(
             DefaultChannelPipeline pipeline, EventExecutor executor, String name, ChannelHandler handler) {
-        super(pipeline, executor, name, isInbound(handler), isOutbound(handler));
-        //handler不能为空
-        if (handler == null) {
-            throw new NullPointerException("handler");
-        }
+        super(pipeline, executor, name, handlerClass(handler));
         this.handler = handler;
     }
 
@@ -36,11 +32,11 @@ final class DefaultChannelHandlerContext extends AbstractChannelHandlerContext {
         return handler;
     }
 
-    private static boolean isInbound(ChannelHandler handler) {
-        return handler instanceof ChannelInboundHandler;
-    }
-
-    private static boolean isOutbound(ChannelHandler handler) {
-        return handler instanceof ChannelOutboundHandler;
+    private static Class<? extends ChannelHandler> handlerClass(ChannelHandler handler) {
+        //handler不能为空
+        if (handler == null) {
+            throw new NullPointerException("handler");
+        }
+        return handler.getClass();
     }
 }
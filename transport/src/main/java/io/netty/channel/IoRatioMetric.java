@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes how an {@link EventLoop} splits its time between I/O and its tasks, so the choices of an
+ * {@link AdaptiveIoRatio} can be observed.
+ */
+@UnstableApi
+public interface IoRatioMetric {
+
+    /**
+     * Returns the percentage of the desired amount of time spent for I/O in the event loop.
+     */
+    int getIoRatio();
+
+    /**
+     * Returns the average time the tasks wait in the task queue, or {@code -1} if the percentage of the desired
+     * amount of time spent for I/O is not adjusted by the event loop.
+     */
+    long getTaskQueueLatency(TimeUnit unit);
+}
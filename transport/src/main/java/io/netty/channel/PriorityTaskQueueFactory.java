@@ -0,0 +1,202 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * {@link EventLoopTaskQueueFactory} whose queues have two lanes: {@link UrgentRunnable}s are run ahead of all the
+ * other tasks, so a burst of tasks submitted by other threads does not delay them.
+ * <p>
+ * So the other tasks are not starved by a steady flow of urgent tasks, one of them is run after at most
+ * {@code maxUrgentTasksInRow} urgent tasks. The tasks of each lane are run in the order they were submitted.
+ * <p>
+ * Unlike the default task queue, tasks can be removed from these queues and they can be iterated, which is needed
+ * by {@link io.netty.util.concurrent.SingleThreadEventExecutor#removeTask(Runnable)}. In exchange every task is
+ * counted by an atomic counter, so the queues are slightly more expensive than the default one.
+ * <p>
+ * The queues may only be used by {@link EventLoop}s which never block on their task queue, like the
+ * {@link io.netty.channel.nio.NioEventLoop}.
+ */
+@UnstableApi
+public final class PriorityTaskQueueFactory implements EventLoopTaskQueueFactory {
+
+    private final int maxUrgentTasksInRow;
+
+    /**
+     * Creates a new factory which runs at most 64 urgent tasks in a row.
+     */
+    public PriorityTaskQueueFactory() {
+        this(64);
+    }
+
+    /**
+     * Creates a new factory.
+     *
+     * @param maxUrgentTasksInRow the maximum number of urgent tasks which are run in a row while other tasks are
+     *                            pending.
+     */
+    public PriorityTaskQueueFactory(int maxUrgentTasksInRow) {
+        this.maxUrgentTasksInRow = checkPositive(maxUrgentTasksInRow, "maxUrgentTasksInRow");
+    }
+
+    @Override
+    public Queue<Runnable> newTaskQueue(int maxCapacity) {
+        return new PriorityTaskQueue(maxCapacity, maxUrgentTasksInRow);
+    }
+
+    /**
+     * Can be offered and removed tasks by any thread, but only polled by a single thread.
+     */
+    static final class PriorityTaskQueue extends AbstractQueue<Runnable> {
+        // The lanes support removal and iteration, unlike the MPSC queues which are used by default.
+        private final Queue<Runnable> urgentTasks = new ConcurrentLinkedQueue<Runnable>();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        // The number of tasks in both lanes, as ConcurrentLinkedQueue.size() needs to traverse the lane.
+        private final AtomicInteger size = new AtomicInteger();
+        private final int maxCapacity;
+        private final int maxUrgentTasksInRow;
+        // Only accessed by the consumer.
+        private int urgentTasksInRow;
+
+        PriorityTaskQueue(int maxCapacity, int maxUrgentTasksInRow) {
+            this.maxCapacity = checkPositive(maxCapacity, "maxCapacity");
+            this.maxUrgentTasksInRow = maxUrgentTasksInRow;
+        }
+
+        @Override
+        public boolean offer(Runnable task) {
+            if (task == null) {
+                throw new NullPointerException("task");
+            }
+            for (;;) {
+                int size = this.size.get();
+                if (size >= maxCapacity) {
+                    return false;
+                }
+                if (this.size.compareAndSet(size, size + 1)) {
+                    break;
+                }
+            }
+            return task instanceof UrgentRunnable ? urgentTasks.offer(task) : tasks.offer(task);
+        }
+
+        @Override
+        public Runnable poll() {
+            Runnable task = poll0();
+            if (task != null) {
+                size.decrementAndGet();
+            }
+            return task;
+        }
+
+        private Runnable poll0() {
+            if (urgentTasksInRow < maxUrgentTasksInRow) {
+                Runnable task = urgentTasks.poll();
+                if (task != null) {
+                    urgentTasksInRow++;
+                    return task;
+                }
+            }
+            urgentTasksInRow = 0;
+            Runnable task = tasks.poll();
+            return task != null ? task : urgentTasks.poll();
+        }
+
+        @Override
+        public Runnable peek() {
+            if (urgentTasksInRow < maxUrgentTasksInRow) {
+                Runnable task = urgentTasks.peek();
+                if (task != null) {
+                    return task;
+                }
+            }
+            Runnable task = tasks.peek();
+            return task != null ? task : urgentTasks.peek();
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (o instanceof UrgentRunnable ? urgentTasks.remove(o) : tasks.remove(o)) {
+                size.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return urgentTasks.isEmpty() && tasks.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            return size.get();
+        }
+
+        /**
+         * Returns a weakly consistent {@link Iterator} over the urgent tasks followed by the other tasks.
+         */
+        @Override
+        public Iterator<Runnable> iterator() {
+            return new Iterator<Runnable>() {
+                private Iterator<Runnable> lane = urgentTasks.iterator();
+                private boolean urgentLane = true;
+                private Runnable last;
+
+                @Override
+                public boolean hasNext() {
+                    if (lane.hasNext()) {
+                        return true;
+                    }
+                    if (urgentLane) {
+                        urgentLane = false;
+                        lane = tasks.iterator();
+                        return lane.hasNext();
+                    }
+                    return false;
+                }
+
+                @Override
+                public Runnable next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return last = lane.next();
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    // Remove via the queue, so the task is only counted as removed if no other thread took it.
+                    PriorityTaskQueue.this.remove(last);
+                    last = null;
+                }
+            };
+        }
+    }
+}
@@ -15,6 +15,9 @@
  */
 package io.netty.channel;
 
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.RejectedExecutionHandler;
 import io.netty.util.concurrent.RejectedExecutionHandlers;
 import io.netty.util.concurrent.SingleThreadEventExecutor;
@@ -63,6 +66,13 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         tailTasks = newTaskQueue(maxPendingTasks);
     }
 
+    protected SingleThreadEventLoop(EventLoopGroup parent, Executor executor,
+                                    boolean addTaskWakesUp, Queue<Runnable> taskQueue, Queue<Runnable> tailTaskQueue,
+                                    RejectedExecutionHandler rejectedExecutionHandler) {
+        super(parent, executor, addTaskWakesUp, taskQueue, rejectedExecutionHandler);
+        tailTasks = ObjectUtil.checkNotNull(tailTaskQueue, "tailTaskQueue");
+    }
+
     @Override
     public EventLoopGroup parent() {
         return (EventLoopGroup) super.parent();
@@ -73,6 +83,22 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return (EventLoop) super.next();
     }
 
+    @Override
+    public Future<?> submit(Runnable task) {
+        return submit(task, null);
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        if (task instanceof UrgentRunnable) {
+            // Keep the marker, so the task is still run ahead of the others if the queue supports it.
+            UrgentPromiseTask<T> promiseTask = new UrgentPromiseTask<T>(this, task, result);
+            execute(promiseTask);
+            return promiseTask;
+        }
+        return super.submit(task, result);
+    }
+
     @Override
     public ChannelFuture register(Channel channel) {
         return register(new DefaultChannelPromise(channel, this));
@@ -152,6 +178,29 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return super.pendingTasks() + tailTasks.size();
     }
 
+    private static final class UrgentPromiseTask<T> extends DefaultPromise<T> implements UrgentRunnable {
+        private final Runnable task;
+        private final T result;
+
+        UrgentPromiseTask(EventExecutor executor, Runnable task, T result) {
+            super(executor);
+            this.task = task;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (setUncancellable()) {
+                    task.run();
+                    setSuccess(result);
+                }
+            } catch (Throwable e) {
+                tryFailure(e);
+            }
+        }
+    }
+
     /**
      * Marker interface for {@link Runnable} that will not trigger an {@link #wakeup(boolean)} in all cases.
      */
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Marker interface for a latency-critical {@link Runnable} of the user, like one that handles a control message. Netty
+ * itself does not mark any of its tasks as urgent. When the {@link EventLoop} uses the queues of a
+ * {@link PriorityTaskQueueFactory}, a task passed to {@link EventLoop#execute(Runnable)} or
+ * {@link EventLoop#submit(Runnable)} runs ahead of the other pending tasks. Tasks which are scheduled via
+ * {@link EventLoop#schedule(Runnable, long, java.util.concurrent.TimeUnit)} are not treated as urgent once due.
+ * <p>
+ * Be aware that an urgent task may run before the tasks which were submitted earlier by the same thread, so it must
+ * not depend on them.
+ */
+@UnstableApi
+public interface UrgentRunnable extends Runnable { }
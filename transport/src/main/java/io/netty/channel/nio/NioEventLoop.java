@@ -15,10 +15,13 @@
  */
 package io.netty.channel.nio;
 
+import io.netty.channel.AdaptiveIoRatio;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelException;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopException;
+import io.netty.channel.EventLoopTaskQueueFactory;
+import io.netty.channel.IoRatioMetric;
 import io.netty.channel.SelectStrategy;
 import io.netty.channel.SingleThreadEventLoop;
 import io.netty.util.IntSupplier;
@@ -56,7 +59,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * SingleThreadEventLoop的实现，注册Channel到一个Selector，在一个event loop中进行多路复用。
  */
-public final class NioEventLoop extends SingleThreadEventLoop {
+public final class NioEventLoop extends SingleThreadEventLoop implements IoRatioMetric {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(NioEventLoop.class);
 
@@ -130,12 +133,15 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     private final SelectStrategy selectStrategy;
 
     private volatile int ioRatio = 50;
+    private volatile AdaptiveIoRatio adaptiveIoRatio;
     private int cancelledKeys;
     private boolean needsToSelectAgain;
 
     NioEventLoop(NioEventLoopGroup parent, Executor executor, SelectorProvider selectorProvider,
-                 SelectStrategy strategy, RejectedExecutionHandler rejectedExecutionHandler) {
-        super(parent, executor, false, DEFAULT_MAX_PENDING_TASKS, rejectedExecutionHandler);
+                 SelectStrategy strategy, RejectedExecutionHandler rejectedExecutionHandler,
+                 EventLoopTaskQueueFactory queueFactory) {
+        super(parent, executor, false, newTaskQueue(queueFactory), newTaskQueue(queueFactory),
+                rejectedExecutionHandler);
         if (selectorProvider == null) {
             throw new NullPointerException("selectorProvider");
         }
@@ -271,6 +277,17 @@ public final class NioEventLoop extends SingleThreadEventLoop {
      */
     @Override
     protected Queue<Runnable> newTaskQueue(int maxPendingTasks) {
+        return newTaskQueue0(maxPendingTasks);
+    }
+
+    private static Queue<Runnable> newTaskQueue(EventLoopTaskQueueFactory queueFactory) {
+        if (queueFactory == null) {
+            return newTaskQueue0(DEFAULT_MAX_PENDING_TASKS);
+        }
+        return queueFactory.newTaskQueue(DEFAULT_MAX_PENDING_TASKS);
+    }
+
+    private static Queue<Runnable> newTaskQueue0(int maxPendingTasks) {
         // This event loop never calls takeTask()
         //这个event loop不会调用takeTask()
         return maxPendingTasks == Integer.MAX_VALUE ? PlatformDependent.<Runnable>newMpscQueue()
@@ -311,8 +328,10 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     /**
      * Returns the percentage of the desired amount of time spent for I/O in the event loop.
      */
+    @Override
     public int getIoRatio() {
-        return ioRatio;
+        AdaptiveIoRatio adaptiveIoRatio = this.adaptiveIoRatio;
+        return adaptiveIoRatio != null ? adaptiveIoRatio.ioRatio() : ioRatio;
     }
 
     /**
@@ -324,6 +343,28 @@ public final class NioEventLoop extends SingleThreadEventLoop {
             throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
         }
         this.ioRatio = ioRatio;
+        adaptiveIoRatio = null;
+    }
+
+    /**
+     * Lets the event loop adjust the percentage of the desired amount of time spent for I/O by itself, so its tasks
+     * wait about the given latency in the task queue. It starts from the current ratio, and {@link #setIoRatio(int)}
+     * makes it fixed again.
+     */
+    public void setAdaptiveIoRatio(long targetTaskLatency, TimeUnit unit) {
+        adaptiveIoRatio = new AdaptiveIoRatio(this, targetTaskLatency, unit, ioRatio);
+    }
+
+    /**
+     * Returns the average time the tasks wait in the task queue, or {@code -1} if the percentage of the desired
+     * amount of time spent for I/O is not adjusted by the event loop.
+     *
+     * @see #setAdaptiveIoRatio(long, TimeUnit)
+     */
+    @Override
+    public long getTaskQueueLatency(TimeUnit unit) {
+        AdaptiveIoRatio adaptiveIoRatio = this.adaptiveIoRatio;
+        return adaptiveIoRatio != null ? adaptiveIoRatio.taskLatency(unit) : -1;
     }
 
     /**
@@ -452,7 +493,9 @@ public final class NioEventLoop extends SingleThreadEventLoop {
 
                 cancelledKeys = 0;
                 needsToSelectAgain = false;
-                final int ioRatio = this.ioRatio;
+                final AdaptiveIoRatio adaptiveIoRatio = this.adaptiveIoRatio;
+                final int ioRatio = adaptiveIoRatio != null ?
+                        adaptiveIoRatio.nextIoRatio(readyKeys(), hasTasks()) : this.ioRatio;
                 if (ioRatio == 100) {
                     try {
                         processSelectedKeys();
@@ -487,6 +530,10 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    private int readyKeys() {
+        return selectedKeys != null ? selectedKeys.size : selector.selectedKeys().size();
+    }
+
     private static void handleLoopException(Throwable t) {
         logger.warn("Unexpected exception in the selector loop.", t);
 
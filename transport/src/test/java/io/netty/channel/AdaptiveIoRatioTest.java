@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveIoRatioTest {
+
+    private EventLoop loop;
+
+    @Before
+    public void setUp() {
+        loop = new DefaultEventLoop();
+    }
+
+    @After
+    public void tearDown() {
+        loop.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    @Test(timeout = 5000)
+    public void testLowerIoRatioWhenTasksWait() throws Exception {
+        final AdaptiveIoRatio adaptiveIoRatio = new AdaptiveIoRatio(loop, 1, TimeUnit.MILLISECONDS, 50);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(50 - 2 * i, (int) loop.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int ioRatio = adaptiveIoRatio.nextIoRatio(1, true);
+                    // Delay the probe.
+                    Thread.sleep(20);
+                    return ioRatio;
+                }
+            }).sync().getNow());
+        }
+        // Wait until the last probe ran.
+        loop.submit(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }).sync();
+        assertTrue(adaptiveIoRatio.taskLatency(TimeUnit.MILLISECONDS) >= 1);
+        assertEquals(40, adaptiveIoRatio.ioRatio());
+    }
+
+    @Test(timeout = 5000)
+    public void testRaiseIoRatioWhenTasksDoNotWait() throws Exception {
+        final AdaptiveIoRatio adaptiveIoRatio = new AdaptiveIoRatio(loop, 1, TimeUnit.MILLISECONDS, 50);
+        loop.submit(new Runnable() {
+            @Override
+            public void run() {
+                // No channel is ready, so there is no reason to change the ratio.
+                adaptiveIoRatio.nextIoRatio(0, false);
+                assertEquals(50, adaptiveIoRatio.ioRatio());
+                for (int i = 0; i < 100; i++) {
+                    adaptiveIoRatio.nextIoRatio(1, false);
+                }
+            }
+        }).sync();
+        assertEquals(0, adaptiveIoRatio.taskLatency(TimeUnit.NANOSECONDS));
+        assertEquals(99, adaptiveIoRatio.ioRatio());
+    }
+}
@@ -19,6 +19,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import org.junit.Test;
 
 import java.net.SocketAddress;
@@ -118,6 +119,30 @@ public class ChannelOutboundBufferTest {
         buf.release();
     }
 
+    @Test
+    public void testRemoveAndDetach() {
+        TestChannel channel = new TestChannel();
+
+        ChannelOutboundBuffer buffer = new ChannelOutboundBuffer(channel);
+        assertNull(buffer.removeAndDetach());
+
+        ByteBuf buf = directBuffer().writeBytes("buf1".getBytes(CharsetUtil.US_ASCII));
+        ChannelPromise promise = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+        buffer.addMessage(buf, buf.readableBytes(), promise);
+        assertTrue(buffer.totalPendingWriteBytes() > 0);
+        buffer.addFlush();
+
+        assertSame(promise, buffer.removeAndDetach());
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.totalPendingWriteBytes());
+
+        // Neither the message was released nor the promise notified, this is up to the caller now.
+        assertFalse(promise.isDone());
+        assertEquals(1, buf.refCnt());
+        promise.setSuccess();
+        buf.release();
+    }
+
     private static void release(ChannelOutboundBuffer buffer) {
         for (;;) {
             if (!buffer.remove()) {
@@ -1490,6 +1490,84 @@ public class DefaultChannelPipelineTest {
         }
     }
 
+    @Test
+    public void testHandlerMask() {
+        assertEquals(0, ChannelHandlerMask.mask(ChannelInboundHandlerAdapter.class));
+        assertEquals(0, ChannelHandlerMask.mask(ChannelOutboundHandlerAdapter.class));
+        assertEquals(0, ChannelHandlerMask.mask(ChannelDuplexHandler.class));
+
+        ChannelHandler inbound = new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                ctx.fireChannelRead(msg);
+            }
+        };
+        assertEquals(ChannelHandlerMask.MASK_CHANNEL_READ, ChannelHandlerMask.mask(inbound.getClass()));
+
+        ChannelHandler duplex = new ChannelDuplexHandler() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                ctx.write(msg, promise);
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                ctx.fireExceptionCaught(cause);
+            }
+        };
+        assertEquals(ChannelHandlerMask.MASK_WRITE | ChannelHandlerMask.MASK_EXCEPTION_CAUGHT,
+                ChannelHandlerMask.mask(duplex.getClass()));
+
+        // Handlers which do not extend the adapters handle every event.
+        assertEquals(ChannelHandlerMask.mask(DefaultChannelPipeline.HeadContext.class),
+                ChannelHandlerMask.mask(LoggingHandler.class));
+    }
+
+    @Test
+    public void testSkippedHandlersStillForwardEvents() {
+        final Queue<String> events = new ArrayDeque<String>();
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ChannelOutboundHandlerAdapter(),
+                new ChannelDuplexHandler() {
+                    @Override
+                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+                        events.add("userEventTriggered: " + evt);
+                    }
+
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                        events.add("exceptionCaught: " + cause.getMessage());
+                    }
+
+                    @Override
+                    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                        events.add("write: " + msg);
+                        ctx.write(msg, promise);
+                    }
+                },
+                new ChannelInboundHandlerAdapter(),
+                new ChannelOutboundHandlerAdapter(),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        events.add("channelRead: " + msg);
+                    }
+                });
+
+        assertFalse(channel.writeInbound("a"));
+        channel.pipeline().fireUserEventTriggered("b");
+        channel.pipeline().fireExceptionCaught(new Exception("c"));
+        assertTrue(channel.writeOutbound("d"));
+        assertEquals("d", channel.readOutbound());
+        assertFalse(channel.finish());
+
+        assertEquals("channelRead: a", events.poll());
+        assertEquals("userEventTriggered: b", events.poll());
+        assertEquals("exceptionCaught: c", events.poll());
+        assertEquals("write: d", events.poll());
+        assertNull(events.poll());
+    }
+
     private static final class WrapperExecutor extends AbstractEventExecutor {
 
         private final ExecutorService wrapped = Executors.newSingleThreadExecutor();
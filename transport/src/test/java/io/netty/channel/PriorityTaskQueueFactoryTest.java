@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PriorityTaskQueueFactoryTest {
+
+    private static final class Task implements Runnable {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    }
+
+    private static final class UrgentTask implements UrgentRunnable {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    }
+
+    @Test
+    public void testUrgentTasksFirst() {
+        Queue<Runnable> queue = new PriorityTaskQueueFactory().newTaskQueue(Integer.MAX_VALUE);
+        Runnable task1 = new Task();
+        Runnable task2 = new Task();
+        Runnable urgentTask1 = new UrgentTask();
+        Runnable urgentTask2 = new UrgentTask();
+        assertTrue(queue.offer(task1));
+        assertTrue(queue.offer(urgentTask1));
+        assertTrue(queue.offer(task2));
+        assertTrue(queue.offer(urgentTask2));
+        assertEquals(4, queue.size());
+
+        assertSame(urgentTask1, queue.peek());
+        assertSame(urgentTask1, queue.poll());
+        assertSame(urgentTask2, queue.poll());
+        assertSame(task1, queue.poll());
+        assertSame(task2, queue.poll());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testOtherTasksNotStarved() {
+        Queue<Runnable> queue = new PriorityTaskQueueFactory(2).newTaskQueue(Integer.MAX_VALUE);
+        Runnable task1 = new Task();
+        Runnable task2 = new Task();
+        queue.offer(task1);
+        queue.offer(task2);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(new UrgentTask());
+        }
+
+        assertTrue(queue.poll() instanceof UrgentRunnable);
+        assertTrue(queue.poll() instanceof UrgentRunnable);
+        assertSame(task1, queue.peek());
+        assertSame(task1, queue.poll());
+        assertTrue(queue.poll() instanceof UrgentRunnable);
+        assertTrue(queue.poll() instanceof UrgentRunnable);
+        assertSame(task2, queue.poll());
+        // Only urgent tasks are left.
+        assertTrue(queue.poll() instanceof UrgentRunnable);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        Queue<Runnable> queue = new PriorityTaskQueueFactory().newTaskQueue(16);
+        Runnable task = new Task();
+        Runnable urgentTask = new UrgentTask();
+        queue.offer(task);
+        queue.offer(urgentTask);
+        assertTrue(queue.remove(urgentTask));
+        assertFalse(queue.remove(urgentTask));
+        assertTrue(queue.remove(task));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testIterator() {
+        Queue<Runnable> queue = new PriorityTaskQueueFactory().newTaskQueue(16);
+        Runnable task1 = new Task();
+        Runnable task2 = new Task();
+        Runnable urgentTask = new UrgentTask();
+        queue.offer(task1);
+        queue.offer(urgentTask);
+        queue.offer(task2);
+
+        Iterator<Runnable> it = queue.iterator();
+        assertSame(urgentTask, it.next());
+        assertSame(task1, it.next());
+        it.remove();
+        assertSame(task2, it.next());
+        assertFalse(it.hasNext());
+
+        assertEquals(2, queue.size());
+        assertSame(urgentTask, queue.poll());
+        assertSame(task2, queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testMaxCapacity() {
+        Queue<Runnable> queue = new PriorityTaskQueueFactory().newTaskQueue(2);
+        assertTrue(queue.offer(new Task()));
+        assertTrue(queue.offer(new UrgentTask()));
+        assertFalse(queue.offer(new Task()));
+        assertFalse(queue.offer(new UrgentTask()));
+        assertEquals(2, queue.size());
+
+        queue.poll();
+        assertTrue(queue.offer(new Task()));
+    }
+}
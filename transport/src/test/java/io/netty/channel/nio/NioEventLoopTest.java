@@ -17,16 +17,30 @@ package io.netty.channel.nio;
 
 import io.netty.channel.AbstractEventLoopTest;
 import io.netty.channel.Channel;
+import io.netty.channel.DefaultSelectStrategyFactory;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoopTaskQueueFactory;
+import io.netty.channel.PriorityTaskQueueFactory;
+import io.netty.channel.UrgentRunnable;
 import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorChooserFactory;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
+import io.netty.util.concurrent.ThreadPerTaskExecutor;
 import org.junit.Test;
 
 import java.nio.channels.Selector;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -132,4 +146,103 @@ public class NioEventLoopTest extends AbstractEventLoopTest {
             group.shutdownGracefully();
         }
     }
+
+    @Test(timeout = 5000)
+    public void testCustomQueue() throws Exception {
+        final AtomicInteger queues = new AtomicInteger();
+        EventLoopTaskQueueFactory queueFactory = new EventLoopTaskQueueFactory() {
+            @Override
+            public Queue<Runnable> newTaskQueue(int maxCapacity) {
+                queues.incrementAndGet();
+                return new PriorityTaskQueueFactory().newTaskQueue(maxCapacity);
+            }
+        };
+        NioEventLoopGroup group = new NioEventLoopGroup(1,
+                new ThreadPerTaskExecutor(new DefaultThreadFactory(NioEventLoopGroup.class)),
+                DefaultEventExecutorChooserFactory.INSTANCE, SelectorProvider.provider(),
+                DefaultSelectStrategyFactory.INSTANCE, RejectedExecutionHandlers.reject(), queueFactory);
+        // The task queue and the tail task queue.
+        assertEquals(2, queues.get());
+        try {
+            final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch blocked = new CountDownLatch(1);
+            final EventLoop loop = group.next();
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            started.await();
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(1);
+                }
+            });
+            loop.execute(new UrgentRunnable() {
+                @Override
+                public void run() {
+                    order.add(2);
+                }
+            });
+            Future<?> urgentFuture = loop.submit(new UrgentRunnable() {
+                @Override
+                public void run() {
+                    order.add(3);
+                }
+            });
+            blocked.countDown();
+            loop.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }).syncUninterruptibly();
+            assertTrue(urgentFuture.isSuccess());
+            assertEquals(2, (int) order.get(0));
+            assertEquals(3, (int) order.get(1));
+            assertEquals(1, (int) order.get(2));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testAdaptiveIoRatio() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            final NioEventLoop loop = (NioEventLoop) group.next();
+            assertEquals(-1, loop.getTaskQueueLatency(TimeUnit.NANOSECONDS));
+            group.setAdaptiveIoRatio(1, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < 100; i++) {
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // NOOP
+                    }
+                });
+            }
+            loop.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // NOOP
+                }
+            }).sync();
+            assertTrue(loop.getTaskQueueLatency(TimeUnit.NANOSECONDS) >= 0);
+            assertTrue(loop.getIoRatio() > 0 && loop.getIoRatio() < 100);
+
+            group.setIoRatio(100);
+            assertEquals(100, loop.getIoRatio());
+            assertEquals(-1, loop.getTaskQueueLatency(TimeUnit.NANOSECONDS));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
 }